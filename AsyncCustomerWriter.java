@@ -0,0 +1,355 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * AsyncCustomerWriter - Background persistence thread for customer saves
+ *
+ * Saves are queued on a bounded queue and written by a single thread, so the
+ * caller (usually the Swing event dispatch thread) only pays for an enqueue.
+ * Whatever has piled up while the thread was busy is drained as one batch:
+ * repeated saves of the same phone are collapsed to the latest one and the
+ * batch is pushed to the store with a single flush.
+ *
+ * Durability follows a group-commit policy: the store is fsynced once
+ * syncEveryRecords records have been written since the last sync, or once
+ * the oldest unsynced record is syncEveryMillis old, whichever comes first.
+ * flush() waits until everything submitted so far is written and synced.
+ *
+ * A customer the store fails to take is kept and tried again with the next
+ * batch, or after RETRY_MILLIS if nothing else arrives; it is only reported
+ * as written once it is in the store. Until then flush() throws rather than
+ * report a save that never reached disk. A customer the store can never
+ * take (it throws IllegalArgumentException, say for a field too long for
+ * the record format) is not retried: it is logged and reported by the
+ * next flush() only.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class AsyncCustomerWriter {
+    /** System property overriding the record count that triggers a sync */
+    public static final String SYNC_RECORDS_PROPERTY = "pizza.syncEveryRecords";
+    /** System property overriding the delay that triggers a sync */
+    public static final String SYNC_MILLIS_PROPERTY = "pizza.syncEveryMillis";
+
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final long RETRY_MILLIS = 1000;
+
+    private final CustomerStore store;
+    private final Listener listener;
+    private final int syncEveryRecords;
+    private final long syncEveryMillis;
+    private final BlockingQueue<Request> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private int unsyncedRecords;
+    private long oldestUnsyncedNanos;
+    
+    // Customers the store failed to take, oldest first, and why
+    private final Map<Long, Customer> failed = new LinkedHashMap<>();
+    private IOException syncFailure;
+    private IOException failure; // Either of the above, as last reported
+    private IOException rejection; // First customer given up on since the last flush()
+
+    /**
+     * Callback told when a customer has reached the store
+     */
+    public interface Listener {
+        void written(long key, Customer customer);
+    }
+
+    /**
+     * Constructor - Starts the writer thread with the policy from system properties
+     * @param store Store to write to
+     * @param listener Callback for written customers
+     */
+    public AsyncCustomerWriter(CustomerStore store, Listener listener) {
+        this(store, listener, Integer.getInteger(SYNC_RECORDS_PROPERTY, 64),
+             Long.getLong(SYNC_MILLIS_PROPERTY, 200L));
+    }
+
+    /**
+     * Constructor - Starts the writer thread
+     * @param store Store to write to
+     * @param listener Callback for written customers
+     * @param syncEveryRecords Sync after this many records (1 syncs every batch)
+     * @param syncEveryMillis Sync when the oldest unsynced record is this old
+     */
+    public AsyncCustomerWriter(CustomerStore store, Listener listener,
+                               int syncEveryRecords, long syncEveryMillis) {
+        this.store = store;
+        this.listener = listener;
+        this.syncEveryRecords = Math.max(1, syncEveryRecords);
+        this.syncEveryMillis = Math.max(0, syncEveryMillis);
+        thread = new Thread(this::run, "customer-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues a customer for writing, blocking only if the queue is full
+     * @param key PhoneKey of the customer
+     * @param customer Customer to save
+     */
+    public void submit(long key, Customer customer) {
+        enqueue(new Request(key, customer, null));
+    }
+    
+    /**
+     * Queues many customers as one request, so they are written as a single
+     * batch however full the queue is
+     * @param keys PhoneKeys of the customers
+     * @param customers Customers to save, matching keys
+     * @param count Number of entries to save
+     */
+    public void submitAll(long[] keys, Customer[] customers, int count) {
+        enqueue(new Request(Arrays.copyOf(keys, count), Arrays.copyOf(customers, count)));
+    }
+
+    /**
+     * Waits until every customer submitted so far is written and synced
+     * @throws IOException If any customer could not be written or synced;
+     *         those customers stay queued and are tried again, except any
+     *         the store can never take, which only this call reports
+     */
+    public void flush() throws IOException {
+        if (!thread.isAlive()) {
+            return;
+        }
+        Request marker = new Request(0, null, new CountDownLatch(1));
+        enqueue(marker);
+        try {
+            marker.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (marker.failure != null) {
+            throw marker.failure;
+        }
+    }
+
+    /**
+     * Flushes and stops the writer thread
+     * @throws IOException If any customer could not be written or synced;
+     *         those customers are lost
+     */
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            running = false;
+            thread.interrupt();
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void enqueue(Request request) {
+        try {
+            queue.put(request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writer loop: wait for work (or for a sync or retry deadline), then
+     * drain and write a batch
+     */
+    private void run() {
+        List<Request> batch = new ArrayList<>();
+        Map<Long, Customer> latest = new LinkedHashMap<>();
+        while (running) {
+            try {
+                long wait = unsyncedRecords > 0 ? millisUntilSync() : Long.MAX_VALUE;
+                if (!failed.isEmpty()) {
+                    wait = Math.min(wait, RETRY_MILLIS);
+                }
+                Request first = wait == Long.MAX_VALUE
+                    ? queue.take()
+                    : queue.poll(wait, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                }
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            }
+
+            List<Request> flushes = new ArrayList<>();
+            latest.putAll(failed); // Older than anything just drained
+            failed.clear();
+            for (Request request : batch) {
+                if (request.done != null) {
+                    flushes.add(request);
+                } else if (request.batchKeys != null) {
+                    for (int i = 0; i < request.batchKeys.length; i++) {
+                        latest.remove(request.batchKeys[i]);
+                        latest.put(request.batchKeys[i], request.batchCustomers[i]);
+                    }
+                } else {
+                    latest.remove(request.key); // keep the latest save in arrival order
+                    latest.put(request.key, request.customer);
+                }
+            }
+            batch.clear();
+
+            IOException error = write(latest);
+            latest.clear();
+            if (!flushes.isEmpty() || syncDue()) {
+                sync();
+            }
+            report(error != null ? error : syncFailure);
+
+            for (Request flush : flushes) {
+                flush.failure = failure != null ? failure : rejection;
+                flush.done.countDown();
+            }
+            if (!flushes.isEmpty()) {
+                rejection = null;
+            }
+        }
+    }
+
+    /**
+     * Saves each customer on its own, so one the store rejects does not
+     * hold back the rest; the ones that fail are kept in failed, except
+     * those the store can never take
+     * @return The first error worth retrying, or null if there was none
+     */
+    private IOException write(Map<Long, Customer> customers) {
+        if (customers.isEmpty()) {
+            return null;
+        }
+        IOException error = null;
+        List<Map.Entry<Long, Customer>> saved = new ArrayList<>(customers.size());
+        for (Map.Entry<Long, Customer> entry : customers.entrySet()) {
+            try {
+                store.save(entry.getKey(), entry.getValue());
+                saved.add(entry);
+            } catch (IllegalArgumentException e) {
+                reject(entry.getValue(), e);
+            } catch (Exception e) {
+                failed.put(entry.getKey(), entry.getValue());
+                if (error == null) {
+                    error = asIOException(e);
+                }
+            }
+        }
+        if (saved.isEmpty()) {
+            return error;
+        }
+        try {
+            store.flush();
+        } catch (Exception e) {
+            for (Map.Entry<Long, Customer> entry : saved) {
+                failed.put(entry.getKey(), entry.getValue()); // Saving again is harmless; the latest record wins
+            }
+            return error != null ? error : asIOException(e);
+        }
+
+        if (unsyncedRecords == 0) {
+            oldestUnsyncedNanos = System.nanoTime();
+        }
+        unsyncedRecords += saved.size();
+        for (Map.Entry<Long, Customer> entry : saved) {
+            listener.written(entry.getKey(), entry.getValue());
+        }
+        return error;
+    }
+
+    /**
+     * Remembers the outcome of a pass for flush(), logging only when
+     * saving starts or stops failing, so a full disk is not reported on
+     * every retry
+     */
+    private void report(IOException error) {
+        if (error != null && failure == null) {
+            System.err.println("Error saving customers: " + error.getMessage()
+                               + (failed.isEmpty() ? "" : " (" + failed.size() + " waiting to be retried)"));
+        } else if (error == null && failure != null) {
+            System.err.println("Customers saved after earlier errors");
+        }
+        failure = error;
+    }
+
+    /**
+     * Gives up on a customer the store will never take, logging it once
+     */
+    private void reject(Customer customer, IllegalArgumentException e) {
+        System.err.println("Error saving customer " + customer.getPhone() + ", not retried: " + e.getMessage());
+        if (rejection == null) {
+            rejection = new IOException("Customer " + customer.getPhone() + " not saved: " + e.getMessage(), e);
+        }
+    }
+
+    private static IOException asIOException(Exception e) {
+        return e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+    }
+
+    private boolean syncDue() {
+        return unsyncedRecords >= syncEveryRecords
+            || (unsyncedRecords > 0 && millisUntilSync() == 0);
+    }
+
+    private long millisUntilSync() {
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldestUnsyncedNanos);
+        return Math.max(0, syncEveryMillis - elapsed);
+    }
+
+    /**
+     * Syncs the store; on failure the records stay unsynced, syncFailure is
+     * set, and the sync is tried again after syncEveryMillis
+     */
+    private void sync() {
+        if (unsyncedRecords == 0) {
+            return;
+        }
+        try {
+            store.sync();
+        } catch (Exception e) {
+            syncFailure = asIOException(e);
+            oldestUnsyncedNanos = System.nanoTime();
+            return;
+        }
+        unsyncedRecords = 0;
+        syncFailure = null;
+    }
+
+    /**
+     * A queued save, a batch of saves when batchKeys is set, or a flush
+     * marker when done is set
+     */
+    private static class Request {
+        final long key;
+        final Customer customer;
+        final CountDownLatch done;
+        final long[] batchKeys;
+        final Customer[] batchCustomers;
+        IOException failure; // Set on a flush marker before done is counted down
+
+        Request(long key, Customer customer, CountDownLatch done) {
+            this.key = key;
+            this.customer = customer;
+            this.done = done;
+            this.batchKeys = null;
+            this.batchCustomers = null;
+        }
+
+        Request(long[] batchKeys, Customer[] batchCustomers) {
+            this.key = 0;
+            this.customer = null;
+            this.done = null;
+            this.batchKeys = batchKeys;
+            this.batchCustomers = batchCustomers;
+        }
+    }
+}
@@ -1,23 +1,72 @@
-import java.io.Serializable;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Customer class - Represents a customer in the system
  * 
+ * To keep a million customers affordable in memory, fields that repeat from
+ * customer to customer (city, state, ZIP, subdivision, card type, card
+ * digits) are shared through FieldPool. With -Dpizza.packedCustomers=true
+ * the phone, name, address and intersection are also packed into a single
+ * Latin-1 byte array, each field behind a one-byte length, and turned back
+ * into Strings by the getters. Customers with text outside Latin-1 or a
+ * field longer than 255 characters keep plain Strings.
+ * 
+ * Customers read from a customer file start out as a reference to their
+ * encoded record in the reader's buffer, and are decoded the first time a
+ * getter is called, so loading a million customers makes a million small
+ * objects rather than ten million. Decoding happens once, under the
+ * customer's lock; the record is then dropped.
+ * 
+ * The serialized form is still the original ten String fields, so
+ * customers.dat files from older versions can be read.
+ * 
  * @author Infinite Doughmain Team
  * @version 2.0
  */
 public class Customer implements Serializable {
+    private static final long serialVersionUID = 5477415289551274254L;
+    
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("phone", String.class),
+        new ObjectStreamField("name", String.class),
+        new ObjectStreamField("address", String.class),
+        new ObjectStreamField("city", String.class),
+        new ObjectStreamField("state", String.class),
+        new ObjectStreamField("zip", String.class),
+        new ObjectStreamField("subdivision", String.class),
+        new ObjectStreamField("intersection", String.class),
+        new ObjectStreamField("chargeAccountType", String.class),
+        new ObjectStreamField("cardLast4", String.class)
+    };
+    
+    /** System property that turns on the packed layout */
+    public static final String PACKED_PROPERTY = "pizza.packedCustomers";
+    private static final boolean PACK = Boolean.getBoolean(PACKED_PROPERTY);
+    private static final int PACKED_PHONE = 0;
+    private static final int PACKED_NAME = 1;
+    private static final int PACKED_ADDRESS = 2;
+    private static final int PACKED_INTERSECTION = 3;
+    
+    // Null when packed is used
     private String phone;
     private String name;
     private String address;
+    private String intersection;
+    private byte[] packed;
+    
+    // Shared through FieldPool
     private String city;
     private String state;
     private String zip;
     private String subdivision;
-    private String intersection;
     private String chargeAccountType; // Visa, MasterCard, etc.
     private String cardLast4; // Last 4 digits of card
     
+    // Encoded CustomerRecordFormat payload until the first getter decodes it, then null
+    private volatile byte[] record;
+    private int recordOffset;
+    
     /**
      * Constructor
      * @param phone Customer phone number main identifier for the customer
@@ -33,36 +82,166 @@ public class Customer implements Serializable {
      */
     public Customer(String phone, String name, String address, String city, String state, String zip,
                    String subdivision, String intersection, String chargeAccountType, String cardLast4) {
-        this.phone = phone;
-        this.name = name;
-        this.address = address;
-        this.city = city;
-        this.state = state;
-        this.zip = zip;
-        this.subdivision = subdivision != null ? subdivision : "";
-        this.intersection = intersection != null ? intersection : "";
-        this.chargeAccountType = chargeAccountType != null ? chargeAccountType : "";
-        this.cardLast4 = cardLast4 != null ? cardLast4 : "";
+        init(phone, name, address, city, state, zip, subdivision, intersection, chargeAccountType, cardLast4);
+    }
+    
+    private Customer(byte[] record, int recordOffset) {
+        this.recordOffset = recordOffset;
+        this.record = record;
+    }
+    
+    /**
+     * Creates a customer that is decoded from its record when first read
+     * @param record Buffer holding a checked CustomerRecordFormat payload with every field; never changed afterwards
+     * @param offset Where the payload starts
+     * @return The customer
+     */
+    static Customer fromRecord(byte[] record, int offset) {
+        return new Customer(record, offset);
+    }
+    
+    private void init(String phone, String name, String address, String city, String state, String zip,
+                      String subdivision, String intersection, String chargeAccountType, String cardLast4) {
+        this.city = FieldPool.intern(city);
+        this.state = FieldPool.intern(state);
+        this.zip = FieldPool.intern(zip);
+        this.subdivision = subdivision != null ? FieldPool.intern(subdivision) : "";
+        this.chargeAccountType = chargeAccountType != null ? FieldPool.intern(chargeAccountType) : "";
+        this.cardLast4 = cardLast4 != null ? FieldPool.intern(cardLast4) : "";
+        intersection = intersection != null ? intersection : "";
+        
+        packed = PACK ? pack(phone, name, address, intersection) : null;
+        if (packed == null) {
+            this.phone = phone;
+            this.name = name;
+            this.address = address;
+            this.intersection = intersection;
+        }
     }
     
     // Getters for customer information
-    public String getPhone() { return phone; }
-    public String getName() { return name; }
-    public String getAddress() { return address; }
-    public String getCity() { return city; }
-    public String getState() { return state; }
-    public String getZip() { return zip; }
-    public String getSubdivision() { return subdivision; }
-    public String getIntersection() { return intersection; }
-    public String getChargeAccountType() { return chargeAccountType; }
-    public String getCardLast4() { return cardLast4; }
+    public String getPhone() { decode(); return packed == null ? phone : unpack(PACKED_PHONE); }
+    public String getName() { decode(); return packed == null ? name : unpack(PACKED_NAME); }
+    public String getAddress() { decode(); return packed == null ? address : unpack(PACKED_ADDRESS); }
+    public String getCity() { decode(); return city; }
+    public String getState() { decode(); return state; }
+    public String getZip() { decode(); return zip; }
+    public String getSubdivision() { decode(); return subdivision; }
+    public String getIntersection() { decode(); return packed == null ? intersection : unpack(PACKED_INTERSECTION); }
+    public String getChargeAccountType() { decode(); return chargeAccountType; }
+    public String getCardLast4() { decode(); return cardLast4; }
+    
+    /**
+     * Gets the PhoneKey of the phone number, without decoding the other fields
+     * @return PhoneKey.of(getPhone())
+     */
+    public long getPhoneKey() {
+        byte[] bytes = record;
+        return bytes != null ? CustomerRecordFormat.phoneKeyOf(bytes, recordOffset) : PhoneKey.of(getPhone());
+    }
+    
+    /**
+     * Gets the encoded record of a customer that has not been decoded yet
+     * @return Buffer holding the payload at getRecordOffset(), or null
+     */
+    byte[] getRecord() {
+        return record;
+    }
+    
+    int getRecordOffset() {
+        return recordOffset;
+    }
+    
+    private void decode() {
+        if (record != null) {
+            decodeRecord();
+        }
+    }
+    
+    /**
+     * Sets every field from the record. Writing the record last, as null,
+     * publishes the fields to any thread that then reads it as null.
+     */
+    private synchronized void decodeRecord() {
+        byte[] bytes = record;
+        if (bytes == null) {
+            return;
+        }
+        String[] fields = new String[CustomerRecordFormat.FIELD_COUNT];
+        CustomerRecordFormat.decodeFields(bytes, recordOffset, fields);
+        init(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5], fields[6], fields[7], fields[8],
+             fields[9]);
+        record = null;
+    }
+    
+    /**
+     * Packs fields into one Latin-1 array, each behind a one-byte length
+     * @return The packed fields, or null if any of them cannot be packed
+     */
+    private static byte[] pack(String... fields) {
+        int length = 0;
+        for (String field : fields) {
+            if (field == null || field.length() > 255) {
+                return null;
+            }
+            for (int i = 0; i < field.length(); i++) {
+                if (field.charAt(i) > 0xFF) {
+                    return null;
+                }
+            }
+            length += 1 + field.length();
+        }
+        byte[] bytes = new byte[length];
+        int p = 0;
+        for (String field : fields) {
+            bytes[p++] = (byte) field.length();
+            for (int i = 0; i < field.length(); i++) {
+                bytes[p++] = (byte) field.charAt(i);
+            }
+        }
+        return bytes;
+    }
+    
+    private String unpack(int field) {
+        int p = 0;
+        for (int i = 0; i < field; i++) {
+            p += 1 + (packed[p] & 0xFF);
+        }
+        return new String(packed, p + 1, packed[p] & 0xFF, StandardCharsets.ISO_8859_1);
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        decode();
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("phone", getPhone());
+        fields.put("name", getName());
+        fields.put("address", getAddress());
+        fields.put("city", city);
+        fields.put("state", state);
+        fields.put("zip", zip);
+        fields.put("subdivision", subdivision);
+        fields.put("intersection", getIntersection());
+        fields.put("chargeAccountType", chargeAccountType);
+        fields.put("cardLast4", cardLast4);
+        out.writeFields();
+    }
+    
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        init((String) fields.get("phone", null), (String) fields.get("name", null),
+             (String) fields.get("address", null), (String) fields.get("city", null),
+             (String) fields.get("state", null), (String) fields.get("zip", null),
+             (String) fields.get("subdivision", null), (String) fields.get("intersection", null),
+             (String) fields.get("chargeAccountType", null), (String) fields.get("cardLast4", null));
+    }
     
     /**
      * Returns formatted address string
      * @return Full address as string
      */
     public String getFullAddress() {
-        return address + ", " + city + ", " + state + " " + zip;
+        decode();
+        return getAddress() + ", " + city + ", " + state + " " + zip;
     }
     
     /**
@@ -70,10 +249,12 @@ public class Customer implements Serializable {
      * @return Delivery location details including subdivision and intersection
      */
     public String getDeliveryInfo() {
+        decode();
         StringBuilder info = new StringBuilder();
         if (subdivision != null && !subdivision.isEmpty()) {
             info.append("Subdivision: ").append(subdivision);
         }
+        String intersection = getIntersection();
         if (intersection != null && !intersection.isEmpty()) {
             if (info.length() > 0) info.append(" | ");
             info.append("Intersection: ").append(intersection);
@@ -83,7 +264,7 @@ public class Customer implements Serializable {
     
     @Override
     public String toString() {
-        return name + " (" + phone + ")";
+        return getName() + " (" + getPhone() + ")";
     }
 }
 
@@ -0,0 +1,396 @@
+import java.io.*;
+import java.lang.management.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * CustomerImporter - Bulk loads a CSV list of customers, for example when
+ * onboarding a new store
+ *
+ * The file is read in blocks that are cut at the last line break outside a
+ * quoted field, and each block is parsed and validated on a worker thread
+ * while the next one is read. Only a few blocks are in flight at a time, so
+ * the file itself never sits in memory whole. Parsed blocks are merged in
+ * file order, so when a phone appears more than once the last row wins, and
+ * the merged customers are saved as one batch through
+ * CustomerManager.saveCustomers.
+ *
+ * The first line may be a header naming the columns (phone, name, address,
+ * city, state, zip, subdivision, intersection, chargeAccountType,
+ * cardLast4, in any order and case). Without a header the columns are
+ * taken in that order. Phones are stored as plain digits. Rows missing a
+ * required field (phone, name, address, city, state, zip) or with an
+ * unusable phone are skipped and reported.
+ *
+ * Usage: java CustomerImporter customers.csv [customer directory]
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class CustomerImporter {
+    private static final int BLOCK_SIZE = 4 * 1024 * 1024;
+    private static final int MAX_REPORTED_ERRORS = 20;
+    private static final String[] COLUMNS = {"phone", "name", "address", "city", "state", "zip",
+                                             "subdivision", "intersection", "chargeaccounttype", "cardlast4"};
+    private static final int REQUIRED_COLUMNS = 6;
+
+    private final CustomerManager manager;
+    private final int threads;
+
+    /**
+     * Outcome of an import
+     */
+    public static class Result {
+        public int rows;
+        public int imported;
+        public int duplicates;
+        public int rejected;
+        /** Time to parse and hand the customers to the manager, not counting the disk write */
+        public long millis;
+        public final List<String> errors = new ArrayList<>();
+    }
+
+    /**
+     * Constructor - Parses on one thread per core
+     * @param manager Manager to save the customers through
+     */
+    public CustomerImporter(CustomerManager manager) {
+        this(manager, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor
+     * @param manager Manager to save the customers through
+     * @param threads Number of parsing threads
+     */
+    public CustomerImporter(CustomerManager manager, int threads) {
+        this.manager = manager;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Imports every valid row of a CSV file
+     * @param csv File to import
+     * @return Counts of imported, duplicate and rejected rows
+     * @throws IOException If the file cannot be read
+     */
+    public Result importCsv(File csv) throws IOException {
+        long start = System.nanoTime();
+        Result result = new Result();
+        LongCustomerMap customers = new LongCustomerMap();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "customer-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+
+        try (InputStream in = new FileInputStream(csv)) {
+            byte[] carry = new byte[0];
+            int[] columns = null;
+            int line = 1;
+            boolean eof = false;
+            while (!eof) {
+                byte[] block = new byte[carry.length + BLOCK_SIZE];
+                System.arraycopy(carry, 0, block, 0, carry.length);
+                int length = carry.length;
+                int read;
+                while (length < block.length && (read = in.read(block, length, block.length - length)) > 0) {
+                    length += read;
+                }
+                eof = length < block.length;
+
+                int cut = eof ? length : lastRecordEnd(block, length);
+                if (cut < 0) {
+                    // A single record longer than the block; read more before cutting
+                    carry = Arrays.copyOf(block, length);
+                    continue;
+                }
+                String text = new String(block, 0, cut, StandardCharsets.UTF_8);
+                carry = Arrays.copyOfRange(block, cut, length);
+
+                int offset = 0;
+                if (columns == null) {
+                    List<String> names = new ArrayList<>();
+                    int headerEnd = parseRecord(text, 0, names);
+                    columns = headerColumns(names);
+                    if (columns != null) {
+                        offset = headerEnd;
+                        line++;
+                    } else {
+                        columns = defaultColumns();
+                    }
+                }
+
+                int[] chunkColumns = columns;
+                int chunkOffset = offset;
+                int chunkLine = line;
+                inFlight.add(pool.submit(() -> parse(text, chunkOffset, chunkColumns, chunkLine)));
+                line += countRecords(text, offset);
+                while (inFlight.size() > threads * 2) {
+                    merge(inFlight.poll(), customers, result);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                merge(inFlight.poll(), customers, result);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long[] keys = new long[customers.size()];
+        Customer[] values = new Customer[customers.size()];
+        int[] count = {0};
+        customers.forEachKey(key -> {
+            keys[count[0]] = key;
+            values[count[0]++] = customers.get(key);
+        });
+        manager.saveCustomers(keys, values, count[0]);
+        result.imported = count[0];
+        result.millis = (System.nanoTime() - start) / 1_000_000;
+        return result;
+    }
+
+    /**
+     * Adds a parsed block to the merged customers, later rows replacing earlier ones
+     */
+    private static void merge(Future<Chunk> future, LongCustomerMap customers, Result result) throws IOException {
+        Chunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Error parsing customers: " + e.getCause().getMessage(), e.getCause());
+        }
+        result.rows += chunk.rows;
+        result.rejected += chunk.errors.size();
+        for (String error : chunk.errors) {
+            if (result.errors.size() < MAX_REPORTED_ERRORS) {
+                result.errors.add(error);
+            }
+        }
+        for (int i = 0; i < chunk.count; i++) {
+            if (customers.containsKey(chunk.keys[i])) {
+                result.duplicates++;
+            }
+            customers.put(chunk.keys[i], chunk.customers[i]);
+        }
+    }
+
+    /**
+     * Parses and validates the records of one block
+     */
+    private static Chunk parse(String text, int pos, int[] columns, int firstLine) {
+        Chunk chunk = new Chunk();
+        List<String> fields = new ArrayList<>(COLUMNS.length);
+        String[] values = new String[COLUMNS.length];
+        int line = firstLine;
+        while (pos < text.length()) {
+            pos = parseRecord(text, pos, fields);
+            int recordLine = line++;
+            if (fields.size() == 1 && fields.get(0).isEmpty()) {
+                continue; // blank line
+            }
+            chunk.rows++;
+
+            Arrays.fill(values, "");
+            for (int i = 0; i < fields.size() && i < columns.length; i++) {
+                if (columns[i] >= 0) {
+                    values[columns[i]] = fields.get(i).trim();
+                }
+            }
+            String problem = null;
+            for (int i = 0; i < REQUIRED_COLUMNS && problem == null; i++) {
+                if (values[i].isEmpty()) {
+                    problem = "missing " + COLUMNS[i];
+                }
+            }
+            long key = PhoneKey.of(values[0]);
+            if (problem == null && (key == PhoneKey.INVALID || key == PhoneKey.EMPTY)) {
+                problem = "unusable phone number \"" + values[0] + "\"";
+            }
+            if (problem != null) {
+                chunk.errors.add("row " + recordLine + ": " + problem);
+                continue;
+            }
+
+            chunk.add(key, new Customer(PhoneKey.toDigits(key), values[1], values[2], values[3], values[4],
+                                        values[5], values[6], values[7], values[8], values[9]));
+        }
+        return chunk;
+    }
+
+    /**
+     * Splits one CSV record starting at pos into fields. Quoted fields may
+     * contain commas, line breaks and doubled quotes.
+     * @return Position just after the record's line break
+     */
+    private static int parseRecord(String text, int pos, List<String> fields) {
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int n = text.length();
+        while (pos < n) {
+            char c = text.charAt(pos++);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (pos < n && text.charAt(pos) == '"') {
+                    field.append('"');
+                    pos++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return pos;
+    }
+
+    /**
+     * Finds where the last complete record in a block ends
+     * @return Offset just after the last line break outside quotes, or -1 if there is none
+     */
+    private static int lastRecordEnd(byte[] block, int length) {
+        boolean quoted = false;
+        int end = -1;
+        for (int i = 0; i < length; i++) {
+            if (block[i] == '"') {
+                quoted = !quoted;
+            } else if (block[i] == '\n' && !quoted) {
+                end = i + 1;
+            }
+        }
+        return end;
+    }
+
+    private static int countRecords(String text, int pos) {
+        boolean quoted = false;
+        int records = 0;
+        for (int i = pos; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == '\n' && !quoted) {
+                records++;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Reads column positions from the first record if it is a header
+     * @param names Fields of the first record
+     * @return Field index to customer field mapping, or null if the first line is data
+     */
+    private static int[] headerColumns(List<String> names) {
+        int[] columns = new int[names.size()];
+        boolean hasPhone = false;
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i).toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "");
+            if (name.equals("chargeaccount")) {
+                name = "chargeaccounttype";
+            }
+            columns[i] = Arrays.asList(COLUMNS).indexOf(name);
+            hasPhone |= columns[i] == 0;
+        }
+        return hasPhone ? columns : null;
+    }
+
+    private static int[] defaultColumns() {
+        int[] columns = new int[COLUMNS.length];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = i;
+        }
+        return columns;
+    }
+
+    /**
+     * Valid customers and errors from one block
+     */
+    private static class Chunk {
+        int rows;
+        int count;
+        long[] keys = new long[1024];
+        Customer[] customers = new Customer[1024];
+        final List<String> errors = new ArrayList<>();
+
+        void add(long key, Customer customer) {
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                customers = Arrays.copyOf(customers, count * 2);
+            }
+            keys[count] = key;
+            customers[count++] = customer;
+        }
+    }
+
+    /**
+     * Command line entry point. Honours -Dpizza.customerStore like the application.
+     * @param args CSV file and optional customer directory
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: java CustomerImporter <customers.csv> [customer directory]");
+            System.exit(2);
+        }
+        File dir = new File(args.length > 1 ? args[1] : "customers");
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+
+        CustomerManager manager = new CustomerManager(dir);
+        int before = manager.getCustomerCount();
+        long start = System.nanoTime();
+        Result result;
+        try {
+            result = new CustomerImporter(manager).importCsv(new File(args[0]));
+            manager.flush();
+        } catch (IOException e) {
+            System.err.println("Import failed: " + e.getMessage());
+            manager.close();
+            System.exit(1);
+            return;
+        }
+        long totalMillis = (System.nanoTime() - start) / 1_000_000;
+        int after = manager.getCustomerCount();
+        manager.close();
+
+        for (String error : result.errors) {
+            System.out.println("Skipped " + error);
+        }
+        if (result.rejected > result.errors.size()) {
+            System.out.println("... and " + (result.rejected - result.errors.size()) + " more skipped rows");
+        }
+        System.out.printf("Read %,d rows: %,d imported, %,d duplicate phones, %,d skipped%n",
+                          result.rows, result.imported, result.duplicates, result.rejected);
+        System.out.printf("Customers in store: %,d before, %,d after%n", before, after);
+        System.out.printf("Imported and synced to disk in %,d ms (%,d rows/s); peak heap %,d MB%n",
+                          totalMillis, result.rows * 1000L / Math.max(1, totalMillis), peakHeap() >> 20);
+    }
+
+    /**
+     * Sums the peak usage of the heap memory pools since they were last reset
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
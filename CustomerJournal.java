@@ -0,0 +1,314 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * CustomerJournal - Log-structured storage for customer records
+ *
+ * Every save appends a single record to customers.journal. On startup the
+ * last snapshot (customers.snapshot) is loaded and the journal is replayed
+ * on top of it. Once the journal grows past the size of the snapshot it is
+ * folded into a new snapshot and truncated, so the files stay bounded and
+ * each save costs O(1) disk I/O on average. Both files use
+ * CustomerRecordFormat.
+ *
+ * Appends are buffered in a JournalOutput. If writing the buffer out fails
+ * part way (a full disk, say), the bytes that did reach the file are cut
+ * off again and the buffer is kept for the next flush, so the journal never
+ * holds a torn record that would make the next replay drop everything
+ * written after it.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class CustomerJournal implements Closeable {
+    private static final String SNAPSHOT_FILE = "customers.snapshot";
+    private static final String JOURNAL_FILE = "customers.journal";
+    private static final String LEGACY_FILE = "customers.dat";
+    private static final int MIN_COMPACT_RECORDS = 1000;
+
+    private final File dir;
+    private final File snapshotFile;
+    private final File journalFile;
+    private JournalOutput journalStream;
+    private CustomerRecordWriter journalWriter;
+    private int snapshotRecords;
+    private int journalRecords;
+
+    /**
+     * Constructor
+     * @param dir Directory holding the snapshot and journal files
+     */
+    public CustomerJournal(File dir) {
+        this.dir = dir;
+        this.snapshotFile = new File(dir, SNAPSHOT_FILE);
+        this.journalFile = new File(dir, JOURNAL_FILE);
+    }
+
+    /**
+     * Replays the snapshot and then the journal, oldest record first, so
+     * that keeping the last customer seen per phone gives the current state.
+     * Migrates a legacy customers.dat file the first time it is seen.
+     * @param customers Callback for each customer record
+     * @throws IOException If the files cannot be read
+     */
+    public void load(Consumer<Customer> customers) throws IOException {
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+
+        File legacyFile = new File(dir, LEGACY_FILE);
+        if (!snapshotFile.exists() && !journalFile.exists() && legacyFile.exists()) {
+            migrateLegacy(legacyFile, customers);
+        } else if (snapshotFile.exists()) {
+            readSnapshot(customers);
+        }
+
+        journalRecords = replayJournal(customers);
+        openJournal();
+    }
+
+    /**
+     * Appends one customer record to the journal buffer
+     * @param customer Customer to append
+     * @throws IOException If the record cannot be written
+     */
+    public void append(Customer customer) throws IOException {
+        journalWriter.write(customer);
+        journalRecords++;
+    }
+
+    /**
+     * Writes buffered records to the journal file
+     * @throws IOException If the records cannot be written
+     */
+    public void flush() throws IOException {
+        journalWriter.flush();
+    }
+
+    /**
+     * Writes buffered records and forces the journal to disk
+     * @throws IOException If the journal cannot be synced
+     */
+    public void sync() throws IOException {
+        journalWriter.flush();
+        journalStream.sync();
+    }
+
+    /**
+     * Checks whether the journal has grown enough to be worth compacting
+     * @return True if compact() should be called
+     */
+    public boolean needsCompaction() {
+        return journalRecords >= Math.max(MIN_COMPACT_RECORDS, snapshotRecords);
+    }
+
+    /**
+     * Writes the given customers as a new snapshot and truncates the journal.
+     * The snapshot is written to a temporary file and renamed into place, so a
+     * crash at any point leaves either the old or the new snapshot intact.
+     * @param customers Current customer map, not modified while this runs
+     * @throws IOException If the snapshot cannot be written
+     */
+    public void compact(LongCustomerMap customers) throws IOException {
+        journalWriter.flush();
+        writeSnapshot(customers);
+
+        // Replaying the old journal over the new snapshot is harmless, so it
+        // is only truncated once the snapshot is safely in place.
+        journalWriter.close();
+        journalFile.delete();
+        openJournal();
+        journalRecords = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (journalWriter != null) {
+            journalWriter.close();
+            journalWriter = null;
+        }
+    }
+
+    /**
+     * Opens the journal for appending, starting a new file with a header if needed
+     */
+    private void openJournal() throws IOException {
+        boolean newFile = journalFile.length() == 0;
+        journalStream = new JournalOutput(openFile(journalFile, !newFile));
+        journalWriter = new CustomerRecordWriter(journalStream, newFile);
+    }
+
+    /**
+     * Opens the journal file; overridden by checks that simulate a full disk
+     * @param file Journal file
+     * @param append True to append to the existing file
+     * @return Stream writing to the file
+     * @throws IOException If the file cannot be opened
+     */
+    FileOutputStream openFile(File file, boolean append) throws IOException {
+        return new FileOutputStream(file, append);
+    }
+
+    /**
+     * Converts a legacy serialized HashMap into a snapshot
+     */
+    private void migrateLegacy(File legacyFile, Consumer<Customer> customers) throws IOException {
+        Collection<Customer> legacy = LegacyCustomerConverter.readLegacy(legacyFile);
+        legacy.forEach(customers);
+        writeSnapshot(legacy);
+
+        // Keep the original file around as a backup instead of deleting it
+        Files.move(legacyFile.toPath(), new File(dir, LEGACY_FILE + ".migrated").toPath(),
+                   StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Reads every record of the snapshot into the map
+     */
+    private void readSnapshot(Consumer<Customer> customers) throws IOException {
+        int count = 0;
+        try (CustomerRecordReader reader = new CustomerRecordReader(
+                new FileInputStream(snapshotFile))) {
+            Customer customer;
+            while ((customer = reader.read()) != null) {
+                customers.accept(customer);
+                count++;
+            }
+            if (reader.isCorrupt()) {
+                throw new IOException("Corrupt customer snapshot: " + snapshotFile);
+            }
+        }
+        snapshotRecords = count;
+    }
+
+    /**
+     * Replays the journal into the map, dropping a torn record left at the
+     * end by a crash in the middle of an append.
+     * @return Number of valid records replayed
+     */
+    private int replayJournal(Consumer<Customer> customers) throws IOException {
+        if (journalFile.length() < CustomerRecordFormat.HEADER_LENGTH) {
+            // Never written, or torn before the header was complete
+            journalFile.delete();
+            return 0;
+        }
+
+        int count = 0;
+        long validLength;
+        try (CustomerRecordReader reader = new CustomerRecordReader(
+                new FileInputStream(journalFile))) {
+            Customer customer;
+            while ((customer = reader.read()) != null) {
+                customers.accept(customer);
+                count++;
+            }
+            validLength = reader.getValidLength();
+        }
+
+        if (validLength < journalFile.length()) {
+            System.err.println("Discarding torn record at end of " + journalFile);
+            try (RandomAccessFile raf = new RandomAccessFile(journalFile, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes a complete snapshot through a temporary file
+     */
+    private void writeSnapshot(Iterable<Customer> customers) throws IOException {
+        File tmp = new File(dir, SNAPSHOT_FILE + ".tmp");
+        int count = 0;
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            CustomerRecordWriter writer = new CustomerRecordWriter(new BufferedOutputStream(fos), true);
+            for (Customer customer : customers) {
+                writer.write(customer);
+                count++;
+            }
+            writer.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmp.toPath(), snapshotFile.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        snapshotRecords = count;
+    }
+
+    /**
+     * Buffered stream over the journal file that keeps the file ending on a
+     * record boundary. The file length after the last complete write is
+     * remembered; a write that fails is cut back to it, and the buffer is
+     * kept, so the next flush writes the same bytes again.
+     */
+    private static class JournalOutput extends OutputStream {
+        private final FileOutputStream file;
+        private final byte[] buf = new byte[64 * 1024];
+        private int count;
+        private long goodLength;
+
+        JournalOutput(FileOutputStream file) throws IOException {
+            this.file = file;
+            this.goodLength = file.getChannel().size();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        /**
+         * Buffers bytes, writing the buffer out first if they do not fit.
+         * If that fails nothing of b is buffered.
+         */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > buf.length - count) {
+                flush();
+            }
+            if (len >= buf.length) {
+                writeFile(b, off, len);
+            } else {
+                System.arraycopy(b, off, buf, count, len);
+                count += len;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) {
+                writeFile(buf, 0, count);
+                count = 0;
+            }
+        }
+
+        void sync() throws IOException {
+            flush();
+            file.getFD().sync();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                file.close();
+            }
+        }
+
+        private void writeFile(byte[] b, int off, int len) throws IOException {
+            try {
+                file.write(b, off, len);
+            } catch (IOException e) {
+                try {
+                    file.getChannel().truncate(goodLength);
+                } catch (IOException truncateError) {
+                    e.addSuppressed(truncateError);
+                }
+                throw e;
+            }
+            goodLength += len;
+        }
+    }
+}
@@ -1,65 +1,188 @@
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.LongConsumer;
 
 /**
  * CustomerManager - Handles customer data persistence using file storage
  * Simulates database functionality for standalone desktop application
  * 
+ * Safe to share between registers running in the same JVM (see getShared).
+ * Lookups take no lock: pending saves sit in a concurrent map and the stores
+ * support concurrent readers. Saves are serialized so the order they reach
+ * the background writer, the only thread that writes the store, matches the
+ * order they were made visible to lookups.
+ * 
  * @author Infinite Doughmain Team
  * @version 2.0
  */
 public class CustomerManager {
     private static final String CUSTOMER_DIR = "customers";
-    private static final String CUSTOMER_FILE = CUSTOMER_DIR + File.separator + "customers.dat";
     
-    private Map<String, Customer> customers;
+    /** System property selecting the storage backend: "heap" (default) or "mapped" */
+    public static final String STORE_PROPERTY = "pizza.customerStore";
+    
+    /**
+     * System property turning name and address search "on" or "off". It is
+     * on by default with the heap store. With the mapped store it is off by
+     * default, since the index takes about 100 bytes of heap per customer
+     * and building it decodes every record.
+     */
+    public static final String SEARCH_PROPERTY = "pizza.customerSearch";
+    
+    private static FutureTask<CustomerManager> sharedLoad; // Opens the shared manager once
+    
+    // Read here so Metrics is initialized with this class, not inside the first timed lookup
+    private static final LatencyHistogram FIND_TIMES = Metrics.CUSTOMER_FIND;
+    
+    private final CustomerStore store;
+    private final AsyncCustomerWriter writer;
+    private final Thread shutdownHook;
+    private final Object saveLock = new Object();
+    
+    // Saves handed to the writer but not yet in the store, keyed by PhoneKey
+    private final Map<Long, Customer> pending = new ConcurrentHashMap<>();
+    
+    // Every stored phone, for typeahead on the login screen; off the heap with the mapped store
+    private final PhonePrefixIndex phonePrefixes;
+    
+    // Names and addresses, for typo-tolerant search; filled in the background. Null when turned off.
+    private final CustomerSearchIndex searchIndex;
     
     /**
      * Constructor - Loads fromexisting customer data
      */
     public CustomerManager() {
-        customers = new HashMap<>();
-        loadCustomers();
+        this(new File(CUSTOMER_DIR));
     }
     
     /**
-     * Loads customers from file storage if it exists in record.
+     * Constructor - Loads existing customer data from the given directory
+     * @param dir Directory holding the customer files
      */
-    @SuppressWarnings("unchecked")
-    private void loadCustomers() {
-        try {
-            File dir = new File(CUSTOMER_DIR);
-            if (!dir.exists()) {
-                dir.mkdirs();
+    public CustomerManager(File dir) {
+        this(dir, System.getProperty(STORE_PROPERTY, "heap"));
+    }
+    
+    /**
+     * Constructor - Loads existing customer data with a specific storage backend
+     * @param dir Directory holding the customer files
+     * @param storeType "heap" to hold all customers in memory, or "mapped"
+     *                  to keep them in a memory-mapped file with an on-disk index
+     */
+    public CustomerManager(File dir, String storeType) {
+        boolean mapped = "mapped".equals(storeType);
+        store = loadCustomers(dir, storeType);
+        phonePrefixes = new PhonePrefixIndex(mapped);
+        phonePrefixes.build(store);
+        writer = new AsyncCustomerWriter(store, (key, customer) -> pending.remove(key, customer));
+        shutdownHook = new Thread(this::flushOnExit, "customer-flush");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        
+        if (!"on".equals(System.getProperty(SEARCH_PROPERTY, mapped ? "off" : "on"))) {
+            searchIndex = null;
+            return;
+        }
+        searchIndex = new CustomerSearchIndex();
+        Thread indexer = new Thread(this::buildSearchIndex, "customer-search-index");
+        indexer.setDaemon(true);
+        indexer.start();
+    }
+    
+    /**
+     * Indexes every stored customer for searchCustomers. Customers saved
+     * while this runs are indexed by saveCustomer and are not overwritten:
+     * a copy read from the store before such a save is only added if the
+     * phone is still absent, checked under the index's own lock.
+     */
+    private void buildSearchIndex() {
+        long[][] keys = { new long[Math.max(16, store.size())] };
+        int[] count = { 0 };
+        store.forEachKey(key -> {
+            if (count[0] == keys[0].length) {
+                keys[0] = Arrays.copyOf(keys[0], count[0] * 2);
             }
-            
-            File file = new File(CUSTOMER_FILE);
-            if (file.exists()) {
-                try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-                    customers = (Map<String, Customer>) ois.readObject();
-                }
+            keys[0][count[0]++] = key;
+        });
+        for (int i = 0; i < count[0]; i++) {
+            long key = keys[0][i];
+            Customer customer = store.find(key);
+            if (customer != null) {
+                searchIndex.addIfAbsent(key, customer);
             }
-        } catch (Exception e) {
-            System.err.println("Error loading customers: " + e.getMessage());
-            customers = new HashMap<>();
         }
     }
     
     /**
-     * Saves customers to file storage
+     * Gets the manager shared by every register in this JVM, opening the
+     * default customer directory on first use
+     * @return Shared CustomerManager
      */
-    private void saveCustomers() {
+    public static CustomerManager getShared() {
+        FutureTask<CustomerManager> load = startLoad(false);
+        load.run(); // Loads here unless the background load already started
         try {
-            File dir = new File(CUSTOMER_DIR);
-            if (!dir.exists()) {
-                dir.mkdirs();
+            return load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading customers", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error loading customers", e.getCause());
+        }
+    }
+    
+    /**
+     * Starts opening the shared manager on a background thread, so the
+     * customer file loads while the window is being built
+     * @return The load; get() waits for it
+     */
+    public static Future<CustomerManager> loadShared() {
+        return startLoad(true);
+    }
+    
+    /**
+     * Gets the shared manager if it has finished opening, without waiting
+     * for it or starting it
+     * @return Shared CustomerManager, or null if it is not open yet
+     */
+    public static synchronized CustomerManager getSharedIfLoaded() {
+        if (sharedLoad == null || !sharedLoad.isDone()) {
+            return null;
+        }
+        try {
+            return sharedLoad.get();
+        } catch (InterruptedException | ExecutionException e) {
+            return null;
+        }
+    }
+    
+    private static synchronized FutureTask<CustomerManager> startLoad(boolean background) {
+        if (sharedLoad == null) {
+            sharedLoad = new FutureTask<>(CustomerManager::new);
+            if (background) {
+                Thread loader = new Thread(sharedLoad, "customer-load");
+                loader.setDaemon(true);
+                loader.start();
             }
-            
-            try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(CUSTOMER_FILE))) {
-                oos.writeObject(customers);
+        }
+        return sharedLoad;
+    }
+    
+    /**
+     * Opens the customer store if it exists in record.
+     */
+    private static CustomerStore loadCustomers(File dir, String storeType) {
+        try {
+            if ("mapped".equals(storeType)) {
+                return new MappedCustomerStore(dir);
             }
+            return new HeapCustomerStore(dir);
         } catch (Exception e) {
-            System.err.println("Error saving customers: " + e.getMessage());
+            System.err.println("Error loading customers: " + e.getMessage());
+            return new EmptyCustomerStore();
         }
     }
     
@@ -69,17 +192,149 @@ public class CustomerManager {
      * @return Customer object or null if not found
      */
     public Customer findCustomer(String phone) {
-        return customers.get(phone.replaceAll("[^0-9]", ""));
+        return FIND_TIMES.sample() ? timedLookup(phone) : lookup(phone); // Kept small enough to inline
+    }
+    
+    private Customer timedLookup(String phone) {
+        long start = System.nanoTime();
+        Customer customer = lookup(phone);
+        FIND_TIMES.recordSince(start);
+        return customer;
+    }
+    
+    private Customer lookup(String phone) {
+        long key = PhoneKey.of(phone);
+        if (key == PhoneKey.INVALID) {
+            return null;
+        }
+        if (!pending.isEmpty()) {
+            Customer customer = pending.get(key);
+            if (customer != null) {
+                return customer;
+            }
+        }
+        return store.find(key);
     }
     
     /**
-     * Adds or updates a customer
+     * Adds or updates a customer. The customer is visible to lookups right
+     * away; writing it to disk happens on the background writer thread.
+     * Concurrent saves of the same phone end with the same customer both in
+     * memory and on disk.
      * @param customer Customer to save
+     * @throws IllegalArgumentException If the phone number is missing or not a valid PhoneKey
      */
     public void saveCustomer(Customer customer) {
-        String phone = customer.getPhone().replaceAll("[^0-9]", "");
-        customers.put(phone, customer);
-        saveCustomers();
+        long start = System.nanoTime();
+        long key = PhoneKey.of(customer.getPhone());
+        if (key == PhoneKey.INVALID) {
+            throw new IllegalArgumentException("Phone number is too long: " + customer.getPhone());
+        }
+        if (key == PhoneKey.EMPTY) {
+            throw new IllegalArgumentException("Phone number is missing");
+        }
+        synchronized (saveLock) {
+            pending.put(key, customer);
+            phonePrefixes.add(key);
+            if (searchIndex != null) {
+                searchIndex.add(key, customer);
+            }
+            writer.submit(key, customer);
+        }
+        Metrics.CUSTOMER_SAVE.recordSince(start);
+    }
+    
+    /**
+     * Adds or updates many customers at once, such as a list imported from
+     * another store. They are visible to lookups right away and are handed
+     * to the background writer as a single batch.
+     * @param keys PhoneKeys of the customers
+     * @param customers Customers to save, matching keys
+     * @param count Number of entries to save
+     * @throws IllegalArgumentException If any key is not a valid PhoneKey;
+     *         nothing is saved in that case
+     */
+    public void saveCustomers(long[] keys, Customer[] customers, int count) {
+        for (int i = 0; i < count; i++) {
+            if (keys[i] == PhoneKey.INVALID || keys[i] == PhoneKey.EMPTY) {
+                throw new IllegalArgumentException("Invalid phone number: " + customers[i].getPhone());
+            }
+        }
+        synchronized (saveLock) {
+            for (int i = 0; i < count; i++) {
+                pending.put(keys[i], customers[i]);
+                if (searchIndex != null) {
+                    searchIndex.add(keys[i], customers[i]);
+                }
+            }
+            phonePrefixes.addAll(keys, count);
+            writer.submitAll(keys, customers, count);
+        }
+    }
+    
+    /**
+     * Finds customers whose phone number starts with the digits typed so far.
+     * Safe to call from a background thread.
+     * @param typed Partial phone number in any format
+     * @param limit Maximum number of customers to return
+     * @return Matching customers, shortest phone numbers first
+     */
+    public List<Customer> findCustomersByPhonePrefix(String typed, int limit) {
+        long start = System.nanoTime();
+        List<Customer> matches = resolve(phonePrefixes.match(typed, limit));
+        Metrics.CUSTOMER_PREFIX_SEARCH.recordSince(start);
+        return matches;
+    }
+    
+    /**
+     * Checks whether name and address search is turned on (see SEARCH_PROPERTY)
+     * @return True if searchCustomers can find anyone
+     */
+    public boolean isSearchEnabled() {
+        return searchIndex != null;
+    }
+    
+    /**
+     * Finds customers by name, street, subdivision or intersection, tolerating
+     * misspellings. Customers still being indexed after startup are not found
+     * yet. Safe to call from a background thread.
+     * @param query Free-text search
+     * @param limit Maximum number of customers to return
+     * @return Matching customers, best match first; none if search is off
+     */
+    public List<Customer> searchCustomers(String query, int limit) {
+        if (searchIndex == null) {
+            return new ArrayList<>();
+        }
+        long start = System.nanoTime();
+        List<Customer> matches = resolve(searchIndex.search(query, limit));
+        Metrics.CUSTOMER_SEARCH.recordSince(start);
+        return matches;
+    }
+    
+    /**
+     * Gets the approximate heap used by the name and address search index
+     * @return Size in bytes, 0 if search is off
+     */
+    public long getSearchIndexMemoryBytes() {
+        return searchIndex != null ? searchIndex.estimateMemoryBytes() : 0;
+    }
+    
+    /**
+     * Looks up customers by PhoneKey, skipping any that have gone missing
+     */
+    private List<Customer> resolve(long[] keys) {
+        List<Customer> matches = new ArrayList<>(keys.length);
+        for (long key : keys) {
+            Customer customer = pending.isEmpty() ? null : pending.get(key);
+            if (customer == null) {
+                customer = store.find(key);
+            }
+            if (customer != null) {
+                matches.add(customer);
+            }
+        }
+        return matches;
     }
     
     /**
@@ -88,7 +343,73 @@ public class CustomerManager {
      * @return True if customer exists
      */
     public boolean customerExists(String phone) {
-        return customers.containsKey(phone.replaceAll("[^0-9]", ""));
+        long key = PhoneKey.of(phone);
+        return key != PhoneKey.INVALID
+            && ((!pending.isEmpty() && pending.containsKey(key)) || store.contains(key));
+    }
+    
+    /**
+     * Gets the number of stored customers
+     * @return Customer count
+     */
+    public int getCustomerCount() {
+        return store.size();
+    }
+    
+    /**
+     * Waits until every saved customer is written and synced to disk.
+     * Runs automatically when the application shuts down.
+     * @throws IOException If any customer could not be written; it is still
+     *         found by lookups and is tried again in the background, unless
+     *         the store can never take it, which is reported once
+     */
+    public void flush() throws IOException {
+        writer.flush();
+    }
+    
+    private void flushOnExit() {
+        try {
+            flush();
+        } catch (IOException e) {
+            System.err.println("Error saving customers on exit: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Flushes pending saves and closes the customer store
+     */
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("Error saving customers: " + e.getMessage());
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already shutting down; the hook is running or has run
+        }
+        try {
+            store.close();
+        } catch (IOException e) {
+            System.err.println("Error closing customers: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * In-memory stand-in used when the customer files cannot be opened,
+     * so the register keeps working for the rest of the session
+     */
+    private static class EmptyCustomerStore implements CustomerStore {
+        private final LongCustomerMap customers = new LongCustomerMap();
+        
+        public Customer find(long key) { return customers.get(key); }
+        public boolean contains(long key) { return customers.containsKey(key); }
+        public void save(long key, Customer customer) { customers.put(key, customer); }
+        public void flush() { }
+        public void sync() { }
+        public void forEachKey(LongConsumer action) { customers.forEachKey(action); }
+        public int size() { return customers.size(); }
+        public void close() { }
     }
 }
-
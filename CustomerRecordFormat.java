@@ -0,0 +1,111 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CustomerRecordFormat - Binary layout shared by the customer record reader and writer
+ *
+ * A customer file starts with a header:
+ *   u32 magic, u16 format version, u16 field count
+ * followed by any number of records:
+ *   u32 payload length, u32 CRC32 of the payload, payload
+ * where the payload is one (u16 byte length, UTF-8 bytes) pair per field in
+ * FIELD order. All integers are big-endian.
+ *
+ * The field count in the header lets a newer build append fields without
+ * breaking older files: missing trailing fields read as "" and unknown
+ * trailing fields are skipped.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public final class CustomerRecordFormat {
+    public static final int MAGIC = 0x49444352; // "IDCR"
+    public static final int VERSION = 1;
+    public static final int HEADER_LENGTH = 8;
+    public static final int RECORD_OVERHEAD = 8;
+    public static final int MAX_PAYLOAD = 1 << 20;
+    public static final int MAX_FIELD_LENGTH = 0xFFFF;
+
+    /** Field order within a record payload */
+    public static final String[] FIELDS = {
+        "phone", "name", "address", "city", "state", "zip",
+        "subdivision", "intersection", "chargeAccountType", "cardLast4"
+    };
+    public static final int FIELD_COUNT = FIELDS.length;
+
+    private CustomerRecordFormat() {
+    }
+
+    /**
+     * Gets the field values of a customer in record order
+     * @param customer Customer to read
+     * @param fields Array of FIELD_COUNT entries to fill
+     */
+    static void fieldsOf(Customer customer, String[] fields) {
+        fields[0] = customer.getPhone();
+        fields[1] = customer.getName();
+        fields[2] = customer.getAddress();
+        fields[3] = customer.getCity();
+        fields[4] = customer.getState();
+        fields[5] = customer.getZip();
+        fields[6] = customer.getSubdivision();
+        fields[7] = customer.getIntersection();
+        fields[8] = customer.getChargeAccountType();
+        fields[9] = customer.getCardLast4();
+    }
+
+    /**
+     * Builds a customer from field values in record order
+     * @param fields Array of FIELD_COUNT entries
+     * @return New customer
+     */
+    static Customer customerOf(String[] fields) {
+        return new Customer(fields[0], fields[1], fields[2], fields[3], fields[4],
+                            fields[5], fields[6], fields[7], fields[8], fields[9]);
+    }
+
+    /**
+     * Decodes every field of a payload that has already been checked
+     * @param buf Buffer holding the payload
+     * @param offset Where the payload starts
+     * @param fields Array of FIELD_COUNT entries to fill
+     */
+    static void decodeFields(byte[] buf, int offset, String[] fields) {
+        int p = offset;
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            int length = ((buf[p] & 0xFF) << 8) | (buf[p + 1] & 0xFF);
+            fields[i] = decodeField(buf, p + 2, length);
+            p += 2 + length;
+        }
+    }
+
+    /**
+     * Gets the length of a checked payload with every field
+     * @param buf Buffer holding the payload
+     * @param offset Where the payload starts
+     * @return Payload length in bytes
+     */
+    static int payloadLength(byte[] buf, int offset) {
+        int p = offset;
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            p += 2 + (((buf[p] & 0xFF) << 8) | (buf[p + 1] & 0xFF));
+        }
+        return p - offset;
+    }
+
+    /**
+     * Reads the PhoneKey of the phone field of a checked payload
+     * @param buf Buffer holding the payload
+     * @param offset Where the payload starts
+     * @return PhoneKey of the phone number
+     */
+    static long phoneKeyOf(byte[] buf, int offset) {
+        return PhoneKey.of(buf, offset + 2, ((buf[offset] & 0xFF) << 8) | (buf[offset + 1] & 0xFF));
+    }
+
+    /**
+     * Decodes a UTF-8 field
+     */
+    static String decodeField(byte[] buf, int offset, int length) {
+        return length == 0 ? "" : new String(buf, offset, length, StandardCharsets.UTF_8);
+    }
+}
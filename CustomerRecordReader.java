@@ -0,0 +1,177 @@
+import java.io.*;
+import java.util.zip.CRC32;
+
+/**
+ * CustomerRecordReader - Streams customers in from CustomerRecordFormat
+ *
+ * Reads through its own block buffers. Records are checked as they are
+ * read, but their fields are left encoded: each customer keeps a reference
+ * to its record in the block and decodes it when first read (see
+ * Customer), so loading a file makes one object per customer and no
+ * garbage. Blocks are therefore never reused; each holds the records of
+ * the customers made from it until all of them are decoded. Files written
+ * with a different field count are decoded straight away.
+ * A truncated or corrupt record ends the stream; getValidLength() then tells
+ * the caller where the last good record ended.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class CustomerRecordReader implements Closeable {
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final CRC32 crc = new CRC32();
+    private final String[] fields = new String[CustomerRecordFormat.FIELD_COUNT];
+    private final int version;
+    private final int fieldCount;
+    private byte[] buf = new byte[BLOCK_SIZE];
+    private int pos;
+    private int limit;
+    private long validLength;
+    private boolean corrupt;
+
+    /**
+     * Constructor - Reads and checks the file header
+     * @param in Stream to read from
+     * @throws IOException If the header is missing or from an unsupported version
+     */
+    public CustomerRecordReader(InputStream in) throws IOException {
+        this.in = in;
+        if (!fill(CustomerRecordFormat.HEADER_LENGTH)) {
+            throw new EOFException("Missing customer file header");
+        }
+        if (getInt(pos) != CustomerRecordFormat.MAGIC) {
+            throw new IOException("Not a customer record file");
+        }
+        version = getShort(pos + 4);
+        fieldCount = getShort(pos + 6);
+        if (version > CustomerRecordFormat.VERSION) {
+            throw new IOException("Customer file version " + version + " is newer than supported version "
+                                  + CustomerRecordFormat.VERSION);
+        }
+        pos += CustomerRecordFormat.HEADER_LENGTH;
+        validLength = CustomerRecordFormat.HEADER_LENGTH;
+    }
+
+    /**
+     * Reads the next customer
+     * @return The customer, or null at end of data or at a torn/corrupt record
+     * @throws IOException If the stream cannot be read
+     */
+    public Customer read() throws IOException {
+        if (corrupt) {
+            return null;
+        }
+        if (!fill(CustomerRecordFormat.RECORD_OVERHEAD)) {
+            corrupt = limit > pos; // a partial record header is a torn write
+            return null;
+        }
+
+        int payloadLength = getInt(pos);
+        int checksum = getInt(pos + 4);
+        if (payloadLength < 0 || payloadLength > CustomerRecordFormat.MAX_PAYLOAD
+                || !fill(CustomerRecordFormat.RECORD_OVERHEAD + payloadLength)) {
+            corrupt = true;
+            return null;
+        }
+
+        int start = pos + CustomerRecordFormat.RECORD_OVERHEAD;
+        int end = start + payloadLength;
+        crc.reset();
+        crc.update(buf, start, payloadLength);
+        if ((int) crc.getValue() != checksum) {
+            corrupt = true;
+            return null;
+        }
+
+        boolean lazy = fieldCount == fields.length;
+        int p = start;
+        for (int i = 0; i < fieldCount; i++) {
+            if (p + 2 > end) {
+                corrupt = true;
+                return null;
+            }
+            int length = getShort(p);
+            p += 2;
+            if (p + length > end) {
+                corrupt = true;
+                return null;
+            }
+            if (!lazy && i < fields.length) {
+                fields[i] = CustomerRecordFormat.decodeField(buf, p, length);
+            }
+            p += length;
+        }
+        for (int i = fieldCount; i < fields.length; i++) {
+            fields[i] = "";
+        }
+
+        pos = end;
+        validLength += CustomerRecordFormat.RECORD_OVERHEAD + payloadLength;
+        return lazy ? Customer.fromRecord(buf, start) : CustomerRecordFormat.customerOf(fields);
+    }
+
+    /**
+     * Checks whether reading stopped at a bad record rather than a clean end of data
+     * @return True if a torn or corrupt record was found
+     */
+    public boolean isCorrupt() {
+        return corrupt;
+    }
+
+    /**
+     * Gets the number of bytes covered by the header and the records read so far
+     * @return Length of the valid prefix of the file
+     */
+    public long getValidLength() {
+        return validLength;
+    }
+
+    /**
+     * Gets the format version of the file being read
+     * @return Format version from the header
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Makes sure at least n bytes are buffered from pos onwards
+     * @return False if the stream ended first
+     */
+    private boolean fill(int n) throws IOException {
+        if (limit - pos >= n) {
+            return true;
+        }
+        // Customers may point into the old block, so the rest moves to a new one
+        byte[] next = new byte[Math.max(n, BLOCK_SIZE)];
+        System.arraycopy(buf, pos, next, 0, limit - pos);
+        buf = next;
+        limit -= pos;
+        pos = 0;
+
+        while (limit < n) {
+            int read = in.read(buf, limit, buf.length - limit);
+            if (read < 0) {
+                return false;
+            }
+            limit += read;
+        }
+        return true;
+    }
+
+    private int getInt(int p) {
+        return ((buf[p] & 0xFF) << 24) | ((buf[p + 1] & 0xFF) << 16)
+             | ((buf[p + 2] & 0xFF) << 8) | (buf[p + 3] & 0xFF);
+    }
+
+    private int getShort(int p) {
+        return ((buf[p] & 0xFF) << 8) | (buf[p + 1] & 0xFF);
+    }
+}
@@ -0,0 +1,133 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * CustomerRecordWriter - Streams customers out in CustomerRecordFormat
+ *
+ * Each record is encoded into a reusable buffer and handed to the underlying
+ * stream with a single write call, so appending to an unbuffered
+ * FileOutputStream costs one system call per record.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class CustomerRecordWriter implements Closeable, Flushable {
+    private final OutputStream out;
+    private final CRC32 crc = new CRC32();
+    private final String[] fields = new String[CustomerRecordFormat.FIELD_COUNT];
+    private byte[] buf = new byte[512];
+
+    /**
+     * Constructor
+     * @param out Stream to write to
+     * @param writeHeader True to start with a file header (false when appending to an existing file)
+     * @throws IOException If the header cannot be written
+     */
+    public CustomerRecordWriter(OutputStream out, boolean writeHeader) throws IOException {
+        this.out = out;
+        if (writeHeader) {
+            putInt(0, CustomerRecordFormat.MAGIC);
+            putShort(4, CustomerRecordFormat.VERSION);
+            putShort(6, CustomerRecordFormat.FIELD_COUNT);
+            out.write(buf, 0, CustomerRecordFormat.HEADER_LENGTH);
+        }
+    }
+
+    /**
+     * Writes one customer record
+     * @param customer Customer to write
+     * @return Number of bytes written
+     * @throws IOException If the record cannot be written
+     * @throws IllegalArgumentException If a field is longer than the format allows
+     */
+    public int write(Customer customer) throws IOException {
+        int pos = CustomerRecordFormat.RECORD_OVERHEAD;
+        byte[] record = customer.getRecord();
+        if (record != null) {
+            // Still encoded as read, so copied without decoding
+            int offset = customer.getRecordOffset();
+            int length = CustomerRecordFormat.payloadLength(record, offset);
+            ensureCapacity(pos + length);
+            System.arraycopy(record, offset, buf, pos, length);
+            pos += length;
+        } else {
+            CustomerRecordFormat.fieldsOf(customer, fields);
+            for (String field : fields) {
+                pos = putField(pos, field != null ? field : "");
+            }
+        }
+
+        int payloadLength = pos - CustomerRecordFormat.RECORD_OVERHEAD;
+        crc.reset();
+        crc.update(buf, CustomerRecordFormat.RECORD_OVERHEAD, payloadLength);
+        putInt(0, payloadLength);
+        putInt(4, (int) crc.getValue());
+        out.write(buf, 0, pos);
+        return pos;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Encodes one length-prefixed field at pos, taking a copy-free path for ASCII
+     * @return Position after the field
+     */
+    private int putField(int pos, String value) throws IOException {
+        int length = value.length();
+        ensureCapacity(pos + 2 + length);
+
+        int start = pos + 2;
+        int i = 0;
+        while (i < length) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            buf[start + i] = (byte) c;
+            i++;
+        }
+
+        int encodedLength = length;
+        if (i < length) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            encodedLength = utf8.length;
+            ensureCapacity(start + encodedLength);
+            System.arraycopy(utf8, 0, buf, start, encodedLength);
+        }
+
+        if (encodedLength > CustomerRecordFormat.MAX_FIELD_LENGTH) {
+            throw new IllegalArgumentException("Customer field too long: " + encodedLength + " bytes");
+        }
+        putShort(pos, encodedLength);
+        return start + encodedLength;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buf.length) {
+            byte[] bigger = new byte[Math.max(capacity, buf.length * 2)];
+            System.arraycopy(buf, 0, bigger, 0, buf.length);
+            buf = bigger;
+        }
+    }
+
+    private void putInt(int pos, int value) {
+        buf[pos] = (byte) (value >>> 24);
+        buf[pos + 1] = (byte) (value >>> 16);
+        buf[pos + 2] = (byte) (value >>> 8);
+        buf[pos + 3] = (byte) value;
+    }
+
+    private void putShort(int pos, int value) {
+        buf[pos] = (byte) (value >>> 8);
+        buf[pos + 1] = (byte) value;
+    }
+}
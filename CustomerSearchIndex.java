@@ -0,0 +1,467 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * CustomerSearchIndex - Typo-tolerant search over customer names and addresses
+ *
+ * Each customer's name, address, subdivision and intersection are split into
+ * words, and every word is indexed by its trigrams with a space on either
+ * side (" smith " gives " sm", "smi", "mit", "ith", "th "). A query is split
+ * the same way and customers are ranked by the share of the query's
+ * trigrams they contain, so a misspelling only costs the two or three
+ * trigrams around the mistake. Ties go to the customer with less indexed
+ * text, which favours a match on the name over one buried in an address.
+ *
+ * A trigram packs into 18 bits, so the posting lists are held in an array
+ * indexed directly by trigram. Customers are numbered in the order they are
+ * indexed and each posting list stores the gaps between those numbers as
+ * variable-length bytes, which keeps it to a byte or two per entry. Trigrams
+ * found in more than a tenth of all customers ("st ", " ma") say little
+ * about which customer is meant and are skipped at query time unless the
+ * query has nothing rarer.
+ *
+ * Re-indexing a customer (same phone) adds a fresh entry and hides the old
+ * one.
+ *
+ * Searches share a read lock and keep their working arrays per thread, so
+ * several run at once. add() never waits for them: it queues the customer
+ * and applies the queue only if the write lock is free, otherwise the
+ * search holding the lock applies it when it finishes. A slow search
+ * therefore never holds up saveCustomer on the event dispatch thread; the
+ * customer is found by every search that starts after that one.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class CustomerSearchIndex {
+    private static final int GRAM_BITS = 6;
+    private static final int GRAM_SPACE = 1 << (3 * GRAM_BITS);
+    private static final int SPACE = 0;
+    private static final double COMMON_FRACTION = 0.1;
+    private static final double MIN_SCORE = 0.3;
+    private static final int MAX_GRAMS = 255;
+
+    // Posting lists, indexed by trigram
+    private final byte[][] postings = new byte[GRAM_SPACE][];
+    private final int[] postingBytes = new int[GRAM_SPACE];
+    private final int[] postingDocs = new int[GRAM_SPACE];
+    private final int[] lastDoc = new int[GRAM_SPACE];
+
+    // Per indexed customer
+    private long[] docKeys = new long[1024];
+    private byte[] docGrams = new byte[1024];
+    private final BitSet hidden = new BitSet();
+    private int docCount;
+
+    // PhoneKey -> current doc, open addressing
+    private long[] slotKeys = new long[2048];
+    private int[] slotDocs = new int[2048];
+    private int keyCount;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ConcurrentLinkedQueue<Queued> queued = new ConcurrentLinkedQueue<>();
+    private final int[] indexGrams = new int[4096]; // Used under the write lock
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Constructor
+     */
+    public CustomerSearchIndex() {
+        Arrays.fill(lastDoc, -1);
+    }
+
+    /**
+     * Indexes a customer, replacing any earlier entry for the same phone.
+     * Never waits for a search in progress.
+     * @param key PhoneKey of the customer
+     * @param customer Customer to index
+     */
+    public void add(long key, Customer customer) {
+        if (queued.isEmpty() && lock.writeLock().tryLock()) {
+            try {
+                index(key, customer);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } else {
+            queued.add(new Queued(key, customer));
+        }
+        applyQueuedIfFree();
+    }
+
+    /**
+     * Indexes a customer unless its phone is already indexed or queued,
+     * checking and adding under one lock so a newer entry from add() is
+     * never replaced. Waits for searches in progress.
+     * @param key PhoneKey of the customer
+     * @param customer Customer to index
+     * @return True if the customer was added
+     */
+    public boolean addIfAbsent(long key, Customer customer) {
+        lock.writeLock().lock();
+        try {
+            applyQueued();
+            if (slotKeys[findSlot(key)] == key) {
+                return false;
+            }
+            index(key, customer);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+            applyQueuedIfFree();
+        }
+    }
+
+    /**
+     * Checks whether a phone has been indexed or queued for indexing
+     * @param key PhoneKey of the customer
+     * @return True if indexed
+     */
+    public boolean contains(long key) {
+        for (Queued entry : queued) {
+            if (entry.key == key) {
+                return true;
+            }
+        }
+        lock.readLock().lock();
+        try {
+            return slotKeys[findSlot(key)] == key;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the customers that best match a free-text query
+     * @param query Words from a name, street, subdivision or intersection
+     * @param limit Maximum number of results
+     * @return PhoneKeys of matching customers, best match first
+     */
+    public long[] search(String query, int limit) {
+        applyQueuedIfFree();
+        lock.readLock().lock();
+        try {
+            return search(scratch.get(), query, limit);
+        } finally {
+            lock.readLock().unlock();
+            applyQueuedIfFree();
+        }
+    }
+
+    /**
+     * Gets the number of customers currently indexed
+     * @return Customer count
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return keyCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Estimates the heap used by the index, not counting each searching
+     * thread's working arrays (about a byte per indexed customer)
+     * @return Approximate size in bytes
+     */
+    public long estimateMemoryBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 4L * GRAM_SPACE * 4;  // posting array references and the three int tables
+            for (byte[] list : postings) {
+                if (list != null) {
+                    bytes += 16 + list.length;
+                }
+            }
+            bytes += 8L * docKeys.length + docGrams.length;
+            bytes += 12L * slotKeys.length + hidden.size() / 8;
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Applies queued customers if no search or other writer holds the lock.
+     * Called again by whoever releases the lock, so nothing stays queued
+     * once the index is idle.
+     */
+    private void applyQueuedIfFree() {
+        while (!queued.isEmpty() && lock.writeLock().tryLock()) {
+            try {
+                applyQueued();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Indexes queued customers in the order they were added; needs the
+     * write lock
+     */
+    private void applyQueued() {
+        Queued entry;
+        while ((entry = queued.poll()) != null) {
+            index(entry.key, entry.customer);
+        }
+    }
+
+    /**
+     * Adds a customer's entry; needs the write lock
+     */
+    private void index(long key, Customer customer) {
+        int slot = findSlot(key);
+        if (slotKeys[slot] == key) {
+            hidden.set(slotDocs[slot]);
+        } else {
+            slotKeys[slot] = key;
+            keyCount++;
+        }
+
+        int doc = docCount++;
+        if (doc == docKeys.length) {
+            docKeys = Arrays.copyOf(docKeys, doc * 2);
+            docGrams = Arrays.copyOf(docGrams, doc * 2);
+        }
+        docKeys[doc] = key;
+        slotDocs[slot] = doc;
+
+        int gramCount = grams(customer.getName(), indexGrams, 0);
+        gramCount = grams(customer.getAddress(), indexGrams, gramCount);
+        gramCount = grams(customer.getSubdivision(), indexGrams, gramCount);
+        gramCount = grams(customer.getIntersection(), indexGrams, gramCount);
+        gramCount = distinct(indexGrams, gramCount);
+        docGrams[doc] = (byte) Math.min(gramCount, MAX_GRAMS);
+        for (int i = 0; i < gramCount; i++) {
+            append(indexGrams[i], doc);
+        }
+
+        if (keyCount * 2 > slotKeys.length) {
+            growSlots();
+        }
+    }
+
+    /**
+     * Runs a search; needs the read lock
+     */
+    private long[] search(Scratch work, String query, int limit) {
+        int queryGrams = distinct(work.grams, grams(query, work.grams, 0));
+        if (queryGrams == 0 || limit <= 0) {
+            return new long[0];
+        }
+        if (work.hits.length < docCount) {
+            work.hits = new byte[Math.max(docCount, work.hits.length * 2)];
+        }
+
+        // Rarest trigrams first; common ones only if nothing rarer exists
+        Integer[] order = new Integer[queryGrams];
+        for (int i = 0; i < queryGrams; i++) {
+            order[i] = work.grams[i];
+        }
+        Arrays.sort(order, Comparator.comparingInt(gram -> postingDocs[gram]));
+        int commonLimit = Math.max(16, (int) (docCount * COMMON_FRACTION));
+        int used = 0;
+        int touchedCount = 0;
+        for (Integer gram : order) {
+            if (used > 0 && postingDocs[gram] > commonLimit) {
+                break;
+            }
+            used++;
+            touchedCount = countHits(work, gram, touchedCount);
+        }
+
+        // Keep the best matches in a small min-heap ordered worst first
+        PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, (a, b) -> compare(work.hits, b, a));
+        int minHits = (int) Math.ceil(used * MIN_SCORE);
+        for (int i = 0; i < touchedCount; i++) {
+            int doc = work.touched[i];
+            if (work.hits[doc] >= minHits && !hidden.get(doc)) {
+                best.add(doc);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        for (int i = 0; i < touchedCount; i++) {
+            work.hits[work.touched[i]] = 0;
+        }
+
+        long[] result = new long[best.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = docKeys[best.poll()];
+        }
+        return result;
+    }
+
+    /**
+     * Ranks doc a against doc b: more hits first, then less indexed text
+     */
+    private int compare(byte[] hits, int a, int b) {
+        if (hits[a] != hits[b]) {
+            return hits[b] - hits[a];
+        }
+        return (docGrams[a] & 0xFF) - (docGrams[b] & 0xFF);
+    }
+
+    /**
+     * Adds one hit for every doc in a posting list
+     * @return New number of touched docs
+     */
+    private int countHits(Scratch work, int gram, int touchedCount) {
+        byte[] hits = work.hits;
+        byte[] list = postings[gram];
+        int end = postingBytes[gram];
+        int doc = -1;
+        int p = 0;
+        while (p < end) {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = list[p++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            doc += gap;
+
+            if (hits[doc] == 0) {
+                if (touchedCount == work.touched.length) {
+                    work.touched = Arrays.copyOf(work.touched, touchedCount * 2);
+                }
+                work.touched[touchedCount++] = doc;
+            }
+            if (hits[doc] != Byte.MAX_VALUE) {
+                hits[doc]++;
+            }
+        }
+        return touchedCount;
+    }
+
+    /**
+     * Appends doc to a posting list as a variable-length gap
+     */
+    private void append(int gram, int doc) {
+        byte[] list = postings[gram];
+        int p = postingBytes[gram];
+        if (list == null) {
+            list = postings[gram] = new byte[8];
+        } else if (p + 5 > list.length) {
+            list = postings[gram] = Arrays.copyOf(list, Math.max(p + 5, list.length + (list.length >> 1)));
+        }
+        int gap = doc - lastDoc[gram];
+        while (gap >= 0x80) {
+            list[p++] = (byte) (gap | 0x80);
+            gap >>>= 7;
+        }
+        list[p++] = (byte) gap;
+        postingBytes[gram] = p;
+        postingDocs[gram]++;
+        lastDoc[gram] = doc;
+    }
+
+    /**
+     * Appends the trigrams of every word in text to a buffer. Sliding a
+     * window over the text with a separator added at each end, the windows
+     * whose middle character is part of a word are exactly the trigrams of
+     * the words padded with one space on each side.
+     * @return New number of trigrams in the buffer
+     */
+    private static int grams(String text, int[] gramBuffer, int count) {
+        if (text == null) {
+            return count;
+        }
+        int previous = SPACE;
+        int current = SPACE;
+        for (int i = 0, n = text.length(); i <= n && count < gramBuffer.length; i++) {
+            int next = i < n ? code(text.charAt(i)) : SPACE;
+            if (current != SPACE) {
+                gramBuffer[count++] = (previous << (2 * GRAM_BITS)) | (current << GRAM_BITS) | next;
+            }
+            previous = current;
+            current = next;
+        }
+        return count;
+    }
+
+    /**
+     * Maps a character to its 6-bit trigram code: 0 for separators,
+     * 1-26 for letters (case-insensitive) and 27-36 for digits
+     */
+    private static int code(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 1;
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 1;
+        }
+        if (c >= '0' && c <= '9') {
+            return c - '0' + 27;
+        }
+        return SPACE;
+    }
+
+    /**
+     * Sorts and removes duplicates from the first count entries
+     * @return Number of distinct entries
+     */
+    private static int distinct(int[] values, int count) {
+        Arrays.sort(values, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || values[unique - 1] != values[i]) {
+                values[unique++] = values[i];
+            }
+        }
+        return unique;
+    }
+
+    private int findSlot(long key) {
+        int mask = slotKeys.length - 1;
+        long h = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (slotKeys[slot] != 0 && slotKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * A customer waiting for the write lock
+     */
+    private static class Queued {
+        final long key;
+        final Customer customer;
+
+        Queued(long key, Customer customer) {
+            this.key = key;
+            this.customer = customer;
+        }
+    }
+
+    /**
+     * One thread's working arrays for searching
+     */
+    private static class Scratch {
+        byte[] hits = new byte[1024]; // Per doc, cleared after each search
+        int[] touched = new int[1024];
+        final int[] grams = new int[4096];
+    }
+
+    private void growSlots() {
+        long[] oldKeys = slotKeys;
+        int[] oldDocs = slotDocs;
+        slotKeys = new long[oldKeys.length * 2];
+        slotDocs = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = findSlot(oldKeys[i]);
+                slotKeys[slot] = oldKeys[i];
+                slotDocs[slot] = oldDocs[i];
+            }
+        }
+    }
+}
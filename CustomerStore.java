@@ -0,0 +1,62 @@
+import java.io.*;
+import java.util.function.LongConsumer;
+
+/**
+ * CustomerStore - Storage backend used by CustomerManager
+ *
+ * Customers are keyed by PhoneKey. Lookups may
+ * run on any thread while a single writer thread calls save, flush and sync.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public interface CustomerStore extends Closeable {
+
+    /**
+     * Finds a customer
+     * @param key PhoneKey of the customer
+     * @return Customer object or null if not found
+     */
+    Customer find(long key);
+
+    /**
+     * Checks if a customer exists
+     * @param key PhoneKey of the customer
+     * @return True if customer exists
+     */
+    boolean contains(long key);
+
+    /**
+     * Adds or updates a customer
+     * @param key PhoneKey of the customer
+     * @param customer Customer to save
+     * @throws IOException If the customer cannot be stored now
+     * @throws IllegalArgumentException If the customer can never be stored
+     */
+    void save(long key, Customer customer) throws IOException;
+    
+    /**
+     * Hands any buffered saves to the operating system
+     * @throws IOException If the data cannot be written
+     */
+    void flush() throws IOException;
+    
+    /**
+     * Forces saved data to the storage device
+     * @throws IOException If the data cannot be synced
+     */
+    void sync() throws IOException;
+
+    /**
+     * Calls action with the PhoneKey of every stored customer, without
+     * loading the customers themselves
+     * @param action Callback for each key
+     */
+    void forEachKey(LongConsumer action);
+    
+    /**
+     * Gets the number of stored customers
+     * @return Customer count
+     */
+    int size();
+}
@@ -0,0 +1,69 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * EscPosBackend - Sends jobs as raw ESC/POS bytes to a network receipt
+ * printer (the usual raw port is 9100)
+ *
+ * ESC/POS printers print text as it arrives, so a job is just the printer
+ * reset, the lines of text, a paper feed and a cut. Kitchen tickets are
+ * printed in double width and height. Characters outside ASCII are sent
+ * as '?'.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class EscPosBackend implements PrintBackend {
+    private static final byte ESC = 0x1B;
+    private static final byte GS = 0x1D;
+    private static final byte[] RESET = {ESC, '@'};
+    private static final byte[] DOUBLE_SIZE = {GS, '!', 0x11};
+    private static final byte[] NORMAL_SIZE = {GS, '!', 0x00};
+    private static final byte[] FEED_AND_CUT = {ESC, 'd', 4, GS, 'V', 66, 0};
+    private static final int TIMEOUT_MILLIS = 5000;
+
+    private final String host;
+    private final int port;
+
+    /**
+     * Constructor
+     * @param host Printer host name or address
+     * @param port Raw printing port
+     */
+    public EscPosBackend(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    public void print(PrintJob job) throws IOException {
+        byte[] bytes = encode(job);
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), TIMEOUT_MILLIS);
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+            OutputStream out = socket.getOutputStream();
+            out.write(bytes);
+            out.flush();
+        }
+    }
+
+    /**
+     * Encodes a job as the bytes an ESC/POS printer expects
+     * @param job Job to encode
+     * @return ESC/POS byte stream
+     */
+    public static byte[] encode(PrintJob job) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(job.getText().length() + 16);
+        boolean large = job.getKind() == PrintJob.Kind.KITCHEN_TICKET;
+        out.writeBytes(RESET);
+        out.writeBytes(large ? DOUBLE_SIZE : NORMAL_SIZE);
+        out.writeBytes(job.getText().getBytes(StandardCharsets.US_ASCII));
+        if (large) {
+            out.writeBytes(NORMAL_SIZE);
+        }
+        out.writeBytes(FEED_AND_CUT);
+        return out.toByteArray();
+    }
+}
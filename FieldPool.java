@@ -0,0 +1,58 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * FieldPool - Shares one String instance between all customers for fields
+ * that repeat across many records (city, state, ZIP, subdivision, card type)
+ *
+ * A thousand customers in Kennesaw then hold a thousand references to one
+ * "Kennesaw" instead of a thousand copies of it. The pool stops growing at
+ * MAX_ENTRIES distinct values so an unexpectedly varied field cannot make
+ * it a leak; values past that point are simply not shared. Interning can be
+ * turned off with -Dpizza.internCustomerFields=false to measure the
+ * difference.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public final class FieldPool {
+    /** System property that disables interning when set to "false" */
+    public static final String INTERN_PROPERTY = "pizza.internCustomerFields";
+
+    private static final int MAX_ENTRIES = 1 << 16;
+    private static final boolean ENABLED = !"false".equals(System.getProperty(INTERN_PROPERTY));
+    private static final ConcurrentHashMap<String, String> POOL = new ConcurrentHashMap<>();
+
+    private FieldPool() {
+    }
+
+    /**
+     * Gets the shared instance of a value
+     * @param value Field value, may be null
+     * @return An equal String, shared with other customers when possible
+     */
+    public static String intern(String value) {
+        if (value == null || !ENABLED) {
+            return value;
+        }
+        if (value.isEmpty()) {
+            return "";
+        }
+        String pooled = POOL.get(value);
+        if (pooled != null) {
+            return pooled;
+        }
+        if (POOL.size() >= MAX_ENTRIES) {
+            return value;
+        }
+        pooled = POOL.putIfAbsent(value, value);
+        return pooled != null ? pooled : value;
+    }
+
+    /**
+     * Gets the number of distinct values in the pool
+     * @return Pool size
+     */
+    public static int size() {
+        return POOL.size();
+    }
+}
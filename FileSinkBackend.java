@@ -0,0 +1,41 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ * FileSinkBackend - Writes each job to its own file instead of a printer
+ *
+ * Used to try the register, or test the spooler, without a printer. Jobs
+ * are written as text (.txt) or, in raw mode, as the ESC/POS bytes a
+ * receipt printer would be sent (.escpos). Each file is written under a
+ * temporary name and then renamed, so a file that exists is complete.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class FileSinkBackend implements PrintBackend {
+    private final File dir;
+    private final boolean raw;
+
+    /**
+     * Constructor
+     * @param dir Directory for printed jobs, created if missing
+     * @param raw True to write ESC/POS bytes instead of text
+     */
+    public FileSinkBackend(File dir, boolean raw) {
+        this.dir = dir;
+        this.raw = raw;
+    }
+
+    @Override
+    public void print(PrintJob job) throws IOException {
+        Files.createDirectories(dir.toPath());
+        String name = String.format("%tY%<tm%<td-%<tH%<tM%<tS-%d-%s.%s", job.getTimeMillis(), job.getId(),
+                                    job.getKind() == PrintJob.Kind.RECEIPT ? "receipt" : "kitchen",
+                                    raw ? "escpos" : "txt");
+        byte[] bytes = raw ? EscPosBackend.encode(job) : job.getText().getBytes(StandardCharsets.UTF_8);
+        Path temp = dir.toPath().resolve(name + ".tmp");
+        Files.write(temp, bytes);
+        Files.move(temp, dir.toPath().resolve(name), StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,90 @@
+import java.io.*;
+import java.util.function.LongConsumer;
+
+/**
+ * HeapCustomerStore - Keeps every customer in memory, persisted through a CustomerJournal
+ *
+ * Customers are held in a LongCustomerMap, so lookups never lock or wait
+ * for the writer thread, which is the only thread that adds customers and
+ * appends to or compacts the journal.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class HeapCustomerStore implements CustomerStore {
+    private final CustomerJournal journal;
+    private final LongCustomerMap customers = new LongCustomerMap();
+
+    /**
+     * Constructor - Loads existing customer data
+     * @param dir Directory holding the customer files
+     * @throws IOException If the customer files cannot be read
+     */
+    public HeapCustomerStore(File dir) throws IOException {
+        this(new CustomerJournal(dir));
+    }
+
+    /**
+     * Constructor - Loads existing customer data through a given journal
+     * @param journal Journal over the customer files, not yet loaded
+     * @throws IOException If the customer files cannot be read
+     */
+    HeapCustomerStore(CustomerJournal journal) throws IOException {
+        this.journal = journal;
+        journal.load(customer -> {
+            long key = customer.getPhoneKey();
+            if (key != PhoneKey.INVALID) {
+                customers.put(key, customer);
+            }
+        });
+    }
+
+    @Override
+    public Customer find(long key) {
+        return customers.get(key);
+    }
+
+    @Override
+    public boolean contains(long key) {
+        return customers.containsKey(key);
+    }
+
+    /**
+     * Appends the customer to the journal, compacting it when it grows too
+     * large. A customer the journal cannot take is not added to the map,
+     * so it is never written into a snapshot.
+     */
+    @Override
+    public void save(long key, Customer customer) throws IOException {
+        journal.append(customer);
+        customers.put(key, customer);
+        if (journal.needsCompaction()) {
+            journal.compact(customers);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        journal.flush();
+    }
+
+    @Override
+    public void sync() throws IOException {
+        journal.sync();
+    }
+
+    @Override
+    public void forEachKey(LongConsumer action) {
+        customers.forEachKey(action);
+    }
+
+    @Override
+    public int size() {
+        return customers.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+}
@@ -0,0 +1,340 @@
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Json - Small JSON reader and writer for the order API
+ *
+ * Nothing here looks at classes through reflection: the API writes each
+ * response field by field with a Writer, and parse() turns a request body
+ * into plain maps, lists, Strings, Longs, Doubles and Booleans that the
+ * API reads by name.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public final class Json {
+    private static final int MAX_DEPTH = 32;
+
+    private final String text;
+    private int pos;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Parses a JSON document
+     * @param text JSON text
+     * @return Map for an object, List for an array, or a String, Long,
+     *         Double, Boolean or null
+     * @throws IllegalArgumentException If the text is not valid JSON
+     */
+    public static Object parse(String text) {
+        Json json = new Json(text);
+        Object value = json.value(0);
+        json.skipSpace();
+        if (json.pos != text.length()) {
+            throw json.error("Unexpected text after the value");
+        }
+        return value;
+    }
+
+    private Object value(int depth) {
+        if (depth > MAX_DEPTH) {
+            throw error("Nested too deeply");
+        }
+        skipSpace();
+        if (pos >= text.length()) {
+            throw error("Unexpected end of input");
+        }
+        char c = text.charAt(pos);
+        switch (c) {
+            case '{':
+                return object(depth);
+            case '[':
+                return array(depth);
+            case '"':
+                return string();
+            case 't':
+                return literal("true", Boolean.TRUE);
+            case 'f':
+                return literal("false", Boolean.FALSE);
+            case 'n':
+                return literal("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return number();
+                }
+                throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> object(int depth) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        pos++;
+        skipSpace();
+        if (peek('}')) {
+            pos++;
+            return map;
+        }
+        while (true) {
+            skipSpace();
+            if (!peek('"')) {
+                throw error("Expected a field name");
+            }
+            String name = string();
+            skipSpace();
+            expect(':');
+            map.put(name, value(depth + 1));
+            skipSpace();
+            if (peek(',')) {
+                pos++;
+            } else {
+                expect('}');
+                return map;
+            }
+        }
+    }
+
+    private List<Object> array(int depth) {
+        List<Object> list = new ArrayList<>();
+        pos++;
+        skipSpace();
+        if (peek(']')) {
+            pos++;
+            return list;
+        }
+        while (true) {
+            list.add(value(depth + 1));
+            skipSpace();
+            if (peek(',')) {
+                pos++;
+            } else {
+                expect(']');
+                return list;
+            }
+        }
+    }
+
+    private String string() {
+        pos++; // opening quote
+        StringBuilder sb = null;
+        int start = pos;
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c == '"') {
+                String s = sb == null ? text.substring(start, pos) : sb.append(text, start, pos).toString();
+                pos++;
+                return s;
+            }
+            if (c == '\\') {
+                if (sb == null) {
+                    sb = new StringBuilder();
+                }
+                sb.append(text, start, pos);
+                if (++pos >= text.length()) {
+                    break;
+                }
+                char escape = text.charAt(pos++);
+                switch (escape) {
+                    case '"': case '\\': case '/': sb.append(escape); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw error("Bad \\u escape");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Bad \\u escape");
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        throw error("Bad escape \\" + escape);
+                }
+                start = pos;
+            } else if (c < 0x20) {
+                throw error("Control character in string");
+            } else {
+                pos++;
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private Object number() {
+        int start = pos;
+        boolean integral = true;
+        if (peek('-')) {
+            pos++;
+        }
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                pos++;
+            } else if (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                integral = false;
+                pos++;
+            } else {
+                break;
+            }
+        }
+        String number = text.substring(start, pos);
+        try {
+            return integral ? (Object) Long.parseLong(number) : (Object) Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            throw error("Bad number " + number);
+        }
+    }
+
+    private Object literal(String word, Object value) {
+        if (!text.startsWith(word, pos)) {
+            throw error("Unexpected text");
+        }
+        pos += word.length();
+        return value;
+    }
+
+    private void skipSpace() {
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private boolean peek(char c) {
+        return pos < text.length() && text.charAt(pos) == c;
+    }
+
+    private void expect(char c) {
+        if (!peek(c)) {
+            throw error("Expected '" + c + "'");
+        }
+        pos++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + pos);
+    }
+
+    /**
+     * Builds a JSON document one value at a time. Commas are added where
+     * needed, so callers only open, fill and close objects and arrays.
+     */
+    public static final class Writer {
+        private final StringBuilder sb = new StringBuilder(256);
+
+        public Writer beginObject() {
+            comma();
+            sb.append('{');
+            return this;
+        }
+
+        public Writer endObject() {
+            sb.append('}');
+            return this;
+        }
+
+        public Writer beginArray() {
+            comma();
+            sb.append('[');
+            return this;
+        }
+
+        public Writer endArray() {
+            sb.append(']');
+            return this;
+        }
+
+        /**
+         * Starts a field of the current object; follow with its value
+         * @param name Field name
+         * @return This writer
+         */
+        public Writer name(String name) {
+            comma();
+            quote(name);
+            sb.append(':');
+            return this;
+        }
+
+        public Writer value(String value) {
+            comma();
+            if (value == null) {
+                sb.append("null");
+            } else {
+                quote(value);
+            }
+            return this;
+        }
+
+        public Writer value(long value) {
+            comma();
+            sb.append(value);
+            return this;
+        }
+
+        public Writer value(boolean value) {
+            comma();
+            sb.append(value);
+            return this;
+        }
+
+        // Shorthand for a named field
+        public Writer field(String name, String value) { return name(name).value(value); }
+        public Writer field(String name, long value) { return name(name).value(value); }
+        public Writer field(String name, boolean value) { return name(name).value(value); }
+
+        /**
+         * Gets the document as UTF-8
+         * @return Encoded JSON
+         */
+        public byte[] toBytes() {
+            return sb.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String toString() {
+            return sb.toString();
+        }
+
+        private void comma() {
+            int length = sb.length();
+            if (length > 0) {
+                char last = sb.charAt(length - 1);
+                if (last != '{' && last != '[' && last != ':') {
+                    sb.append(',');
+                }
+            }
+        }
+
+        private void quote(String s) {
+            sb.append('"');
+            for (int i = 0, n = s.length(); i < n; i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"': sb.append("\\\""); break;
+                    case '\\': sb.append("\\\\"); break;
+                    case '\n': sb.append("\\n"); break;
+                    case '\r': sb.append("\\r"); break;
+                    case '\t': sb.append("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            sb.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            sb.append(c);
+                        }
+                }
+            }
+            sb.append('"');
+        }
+    }
+}
@@ -0,0 +1,302 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * KitchenDisplayPanel - Board of paid orders waiting in the kitchen
+ *
+ * Tickets are shown as tiles, soonest promised time first. A tile turns
+ * orange when its order is due within WARNING_MINUTES and red once it is
+ * late. Clicking a tile bumps it off the board when the order is done.
+ *
+ * Orders arrive on a KitchenQueue from any register or API thread. The
+ * board does not repaint for each one: a Swing timer empties the queue
+ * every REFRESH_MILLIS and repaints once for everything that arrived, or
+ * once a second to move the clocks on.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class KitchenDisplayPanel extends JPanel {
+    /** How often the queue is emptied onto the board */
+    public static final int REFRESH_MILLIS = 250;
+    /** Minutes before the promised time that a ticket turns orange */
+    public static final int WARNING_MINUTES = 5;
+
+    private static final int TILE_WIDTH = 220;
+    private static final int TILE_HEIGHT = 190;
+    private static final int GAP = 10;
+    private static final int PADDING = 8;
+    private static final Color ON_TIME = new Color(0, 130, 0);
+    private static final Color DUE_SOON = new Color(230, 130, 0);
+    private static final Color LATE = new Color(200, 0, 0);
+    private static final Color TILE = new Color(255, 250, 250);
+    private static final Font NAME_FONT = new Font("Arial", Font.BOLD, 14);
+    private static final Font TEXT_FONT = new Font("Arial", Font.PLAIN, 12);
+
+    private PizzaOrderingSystem app;
+    private final KitchenQueue queue;
+    private final List<KitchenOrder> tickets = new ArrayList<>(); // Sorted by promised time
+    private final Board board = new Board();
+    private final StringBuilder line = new StringBuilder(64);
+    private JLabel countLabel;
+    private JButton backButton;
+    private Timer timer;
+    private long paintedSecond; // Clock second last painted
+
+    /**
+     * Constructor
+     * @param app Reference to main application
+     * @param queue Queue the kitchen's orders arrive on
+     */
+    public KitchenDisplayPanel(PizzaOrderingSystem app, KitchenQueue queue) {
+        this.app = app;
+        this.queue = queue;
+        initializeComponents();
+        layoutComponents();
+        timer.start();
+    }
+
+    /**
+     * Initializes UI components
+     */
+    private void initializeComponents() {
+        countLabel = new JLabel();
+        countLabel.setFont(new Font("Arial", Font.BOLD, 16));
+        countLabel.setForeground(new Color(0, 100, 0)); // Dark green
+
+        backButton = new JButton("Back to Login");
+        backButton.setBackground(new Color(200, 0, 0)); // Red
+        backButton.setForeground(Color.BLACK);
+        backButton.setFont(new Font("Arial", Font.BOLD, 14));
+        backButton.setFocusPainted(false);
+        backButton.addActionListener(e -> app.showLogin());
+
+        board.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = board.tileAt(e.getX(), e.getY());
+                if (index >= 0) {
+                    tickets.remove(index);
+                    boardChanged();
+                }
+            }
+        });
+
+        timer = new Timer(REFRESH_MILLIS, e -> refresh());
+        updateCount();
+    }
+
+    /**
+     * Lays out components
+     */
+    private void layoutComponents() {
+        setLayout(new BorderLayout(10, 10));
+        setBackground(Color.WHITE);
+        setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        JLabel titleLabel = new JLabel("Kitchen Orders");
+        titleLabel.setFont(new Font("Arial", Font.BOLD, 24));
+        titleLabel.setForeground(new Color(200, 0, 0)); // Red
+
+        JPanel topPanel = new JPanel(new BorderLayout());
+        topPanel.setBackground(Color.WHITE);
+        topPanel.add(titleLabel, BorderLayout.WEST);
+        topPanel.add(countLabel, BorderLayout.CENTER);
+        topPanel.add(backButton, BorderLayout.EAST);
+        countLabel.setHorizontalAlignment(SwingConstants.CENTER);
+
+        JScrollPane scrollPane = new JScrollPane(board);
+        scrollPane.getViewport().setBackground(Color.WHITE);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(TILE_HEIGHT / 4);
+
+        add(topPanel, BorderLayout.NORTH);
+        add(scrollPane, BorderLayout.CENTER);
+    }
+
+    /**
+     * Moves every waiting order onto the board, then repaints if anything
+     * arrived or the clock has moved on
+     */
+    private void refresh() {
+        int added = queue.drain(this::insert);
+        long second = System.currentTimeMillis() / 1000;
+        if (added > 0) {
+            boardChanged();
+        } else if (second != paintedSecond && !tickets.isEmpty() && isShowing()) {
+            board.repaint();
+        }
+    }
+
+    /**
+     * Adds a ticket after those promised no later, so equal times keep
+     * their arrival order
+     */
+    private void insert(KitchenOrder order) {
+        int low = 0;
+        int high = tickets.size();
+        long promised = order.getPromisedMillis();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (tickets.get(mid).getPromisedMillis() <= promised) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        tickets.add(low, order);
+    }
+
+    private void boardChanged() {
+        updateCount();
+        board.revalidate();
+        board.repaint();
+    }
+
+    private void updateCount() {
+        countLabel.setText(tickets.size() == 1 ? "1 ticket" : tickets.size() + " tickets");
+    }
+
+    /**
+     * Gets the number of tickets on the board
+     * @return Ticket count
+     */
+    public int getTicketCount() {
+        return tickets.size();
+    }
+
+    /**
+     * Tiles laid out left to right, wrapping to the width of the view
+     */
+    private class Board extends JComponent implements Scrollable {
+        Board() {
+            setOpaque(true);
+            setBackground(Color.WHITE);
+        }
+
+        private int columns() {
+            return Math.max(1, (getWidth() - GAP) / (TILE_WIDTH + GAP));
+        }
+
+        int tileAt(int x, int y) {
+            int column = (x - GAP) / (TILE_WIDTH + GAP);
+            int row = (y - GAP) / (TILE_HEIGHT + GAP);
+            if (x < GAP || y < GAP || column >= columns()
+                || (x - GAP) % (TILE_WIDTH + GAP) >= TILE_WIDTH || (y - GAP) % (TILE_HEIGHT + GAP) >= TILE_HEIGHT) {
+                return -1;
+            }
+            int index = row * columns() + column;
+            return index < tickets.size() ? index : -1;
+        }
+
+        @Override
+        public Dimension getPreferredSize() {
+            int columns = getWidth() > 0 ? columns() : 3;
+            int rows = (tickets.size() + columns - 1) / columns;
+            return new Dimension(GAP + columns * (TILE_WIDTH + GAP), GAP + rows * (TILE_HEIGHT + GAP));
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            long now = System.currentTimeMillis();
+            paintedSecond = now / 1000;
+            g.setColor(getBackground());
+            g.fillRect(0, 0, getWidth(), getHeight());
+            ((Graphics2D) g).setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                                              RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+            // Only the tiles inside the clip are drawn
+            Rectangle clip = g.getClipBounds();
+            int columns = columns();
+            int firstRow = Math.max(0, (clip.y - GAP) / (TILE_HEIGHT + GAP));
+            int lastRow = (clip.y + clip.height) / (TILE_HEIGHT + GAP);
+            int end = Math.min(tickets.size(), (lastRow + 1) * columns);
+            for (int i = firstRow * columns; i < end; i++) {
+                int x = GAP + (i % columns) * (TILE_WIDTH + GAP);
+                int y = GAP + (i / columns) * (TILE_HEIGHT + GAP);
+                paintTile(g, tickets.get(i), x, y, now);
+            }
+        }
+
+        private void paintTile(Graphics g, KitchenOrder order, int x, int y, long now) {
+            long secondsLeft = Math.floorDiv(order.getPromisedMillis() - now, 1000);
+            Color color = secondsLeft < 0 ? LATE : secondsLeft <= WARNING_MINUTES * 60 ? DUE_SOON : ON_TIME;
+
+            g.setColor(TILE);
+            g.fillRect(x, y, TILE_WIDTH, TILE_HEIGHT);
+            g.setColor(color);
+            g.fillRect(x, y, TILE_WIDTH, 44);
+            g.drawRect(x, y, TILE_WIDTH - 1, TILE_HEIGHT - 1);
+
+            // Header: who, how, and time left
+            g.setColor(Color.WHITE);
+            g.setFont(NAME_FONT);
+            FontMetrics metrics = g.getFontMetrics();
+            g.drawString(fit(order.getCustomerName(), metrics, TILE_WIDTH - 2 * PADDING),
+                         x + PADDING, y + 4 + metrics.getAscent());
+            line.setLength(0);
+            line.append(order.getOrderType()).append("  ");
+            appendClock(Math.abs(secondsLeft));
+            line.append(secondsLeft < 0 ? " late" : " left");
+            g.setFont(TEXT_FONT);
+            metrics = g.getFontMetrics();
+            g.drawString(line.toString(), x + PADDING, y + 40 - metrics.getDescent());
+
+            // Items, as many as fit
+            g.setColor(Color.BLACK);
+            int lineHeight = metrics.getHeight();
+            int textY = y + 44 + PADDING + metrics.getAscent();
+            int bottom = y + TILE_HEIGHT - PADDING;
+            List<OrderItem> items = order.getItems();
+            for (int i = 0; i < items.size(); i++) {
+                if (textY + lineHeight > bottom && i < items.size() - 1) {
+                    g.drawString("+ " + (items.size() - i) + " more", x + PADDING, textY);
+                    break;
+                }
+                OrderItem item = items.get(i);
+                line.setLength(0);
+                line.append(item.getQuantity()).append(" x ");
+                item.appendDescription(line);
+                g.drawString(fit(line.toString(), metrics, TILE_WIDTH - 2 * PADDING), x + PADDING, textY);
+                textY += lineHeight;
+            }
+        }
+
+        /**
+         * Appends seconds as m:ss
+         */
+        private void appendClock(long seconds) {
+            long remainder = seconds % 60;
+            line.append(seconds / 60).append(':').append((char) ('0' + remainder / 10))
+                .append((char) ('0' + remainder % 10));
+        }
+
+        /**
+         * Cuts text to fit a width, ending it with "..."
+         */
+        private String fit(String text, FontMetrics metrics, int width) {
+            if (metrics.stringWidth(text) <= width) {
+                return text;
+            }
+            int end = text.length();
+            while (end > 0 && metrics.stringWidth(text.substring(0, end)) + metrics.stringWidth("...") > width) {
+                end--;
+            }
+            return text.substring(0, end) + "...";
+        }
+
+        // Scroll vertically only; tiles wrap to the view width
+        @Override
+        public Dimension getPreferredScrollableViewportSize() { return getPreferredSize(); }
+        @Override
+        public int getScrollableUnitIncrement(Rectangle visible, int orientation, int direction) { return TILE_HEIGHT / 4; }
+        @Override
+        public int getScrollableBlockIncrement(Rectangle visible, int orientation, int direction) { return visible.height; }
+        @Override
+        public boolean getScrollableTracksViewportWidth() { return true; }
+        @Override
+        public boolean getScrollableTracksViewportHeight() { return false; }
+    }
+}
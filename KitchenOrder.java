@@ -0,0 +1,52 @@
+import java.util.*;
+
+/**
+ * KitchenOrder - A paid order waiting to be made
+ *
+ * The promised time is when the customer was told the order would be
+ * ready: PICKUP_MINUTES after it was placed for pickup, DELIVERY_MINUTES
+ * for delivery (which leaves time for the drive).
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class KitchenOrder {
+    /** Minutes until a pickup order is promised */
+    public static final int PICKUP_MINUTES = 20;
+    /** Minutes until a delivery order must leave the kitchen */
+    public static final int DELIVERY_MINUTES = 30;
+
+    private final String customerName;
+    private final String orderType;
+    private final List<OrderItem> items;
+    private final long placedMillis;
+    private final long promisedMillis;
+
+    /**
+     * Constructor
+     * @param customerName Name to call out, or null
+     * @param orderType Pickup or Delivery
+     * @param items Items to make
+     * @param placedMillis When the order was paid
+     */
+    public KitchenOrder(String customerName, String orderType, List<OrderItem> items, long placedMillis) {
+        this.customerName = customerName != null ? customerName : "Walk-in";
+        this.orderType = orderType;
+        this.items = Collections.unmodifiableList(new ArrayList<>(items));
+        this.placedMillis = placedMillis;
+        int minutes = "Delivery".equals(orderType) ? DELIVERY_MINUTES : PICKUP_MINUTES;
+        this.promisedMillis = placedMillis + minutes * 60_000L;
+    }
+
+    // Getters
+    public String getCustomerName() { return customerName; }
+    public String getOrderType() { return orderType; }
+    public List<OrderItem> getItems() { return items; }
+    public long getPlacedMillis() { return placedMillis; }
+    public long getPromisedMillis() { return promisedMillis; }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%s) due %tR", customerName, orderType, new Date(promisedMillis));
+    }
+}
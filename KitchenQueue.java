@@ -0,0 +1,106 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * KitchenQueue - Lock-free queue carrying paid orders to the kitchen
+ *
+ * Any number of registers and API threads may add orders; only one thread
+ * may take them out (the kitchen display, on the Swing event thread).
+ * Orders are linked in a list: a producer swaps itself in as the tail with
+ * one atomic exchange and then links the previous tail to it, so adding
+ * never locks, never retries and never waits for the consumer. The
+ * consumer follows the links from a dummy head node. An order whose
+ * producer has swapped in but not yet linked is picked up on the next
+ * drain.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class KitchenQueue {
+    private static KitchenQueue shared;
+
+    private final AtomicReference<Node> tail;
+    private final AtomicLong added = new AtomicLong();
+    private Node head; // Consumer only
+
+    /**
+     * A linked order; the dummy head node holds none
+     */
+    private static final class Node {
+        KitchenOrder order;
+        volatile Node next;
+
+        Node(KitchenOrder order) {
+            this.order = order;
+        }
+    }
+
+    /**
+     * Constructor
+     */
+    public KitchenQueue() {
+        head = new Node(null);
+        tail = new AtomicReference<>(head);
+    }
+
+    /**
+     * Gets the queue shared by every register in this JVM
+     * @return Shared KitchenQueue
+     */
+    public static synchronized KitchenQueue getShared() {
+        if (shared == null) {
+            shared = new KitchenQueue();
+        }
+        return shared;
+    }
+
+    /**
+     * Adds an order. Safe from any thread; never blocks.
+     * @param order Order to make
+     */
+    public void offer(KitchenOrder order) {
+        Node node = new Node(order);
+        Node previous = tail.getAndSet(node);
+        previous.next = node;
+        added.incrementAndGet();
+    }
+
+    /**
+     * Takes the oldest order. Consumer thread only.
+     * @return The order, or null if none is waiting
+     */
+    public KitchenOrder poll() {
+        Node next = head.next;
+        if (next == null) {
+            return null;
+        }
+        KitchenOrder order = next.order;
+        next.order = null; // next becomes the dummy head
+        head = next;
+        return order;
+    }
+
+    /**
+     * Takes every waiting order, oldest first. Consumer thread only.
+     * @param action Called with each order
+     * @return Number of orders taken
+     */
+    public int drain(Consumer<KitchenOrder> action) {
+        int count = 0;
+        KitchenOrder order;
+        while ((order = poll()) != null) {
+            action.accept(order);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of orders ever added
+     * @return Order count
+     */
+    public long getAddedCount() {
+        return added.get();
+    }
+}
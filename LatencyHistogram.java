@@ -0,0 +1,291 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram - Lock-free histogram of operation times, in nanoseconds
+ *
+ * Buckets are laid out as in HdrHistogram: every power of two is split
+ * into SUB_BUCKETS equal parts, so a percentile read from the histogram is
+ * within 1/SUB_BUCKETS (about 3%) of the true value anywhere from a few
+ * nanoseconds to MAX_NANOS, in a fixed 9 KB of counters.
+ *
+ * record() is safe from any number of threads at once. It is a handful of
+ * arithmetic and one atomic add, never locks and never allocates, so it
+ * can sit on the register's hot paths. The mean is worked out from the
+ * buckets, to the same 3%, rather than kept as a second shared sum.
+ * Reads add up the buckets as they are, so a snapshot taken while others
+ * record may be a few events behind; it is never torn within one bucket.
+ *
+ * Timing an operation takes two System.nanoTime() calls. Each is a
+ * serializing clock read on x86, which also stops the processor from
+ * overlapping the operation's memory accesses with its neighbours', so on
+ * lookups of a few tens of nanoseconds it can cost more than the lookup.
+ * A histogram made with sampleEvery above 1 has sample() pick about one
+ * operation in that many to time, and counts each one it records that
+ * many times over.
+ *
+ * The event rate is a one-minute exponentially weighted moving average,
+ * as Unix load averages are. It is brought up to date when read, so
+ * recording does no timekeeping.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_BITS = 40;
+    /** Longest time told apart; longer times count as this long */
+    public static final long MAX_NANOS = (1L << MAX_BITS) - 1;
+    private static final int BUCKETS = (MAX_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private static final long TICK_NANOS = 5_000_000_000L;
+    private static final double ONE_MINUTE_ALPHA = 1 - Math.exp(-5.0 / 60);
+
+    private final String name;
+    private final int sampleMask;
+    private int sampleTicks; // Unsynchronized; a lost update only moves the next sample
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    // Rate, kept by readers
+    private long rateTickNanos = System.nanoTime();
+    private long rateCount;
+    private double ratePerSecond;
+    private boolean rateStarted;
+
+    /**
+     * Constructor - Records every operation
+     * @param name What is being timed
+     */
+    public LatencyHistogram(String name) {
+        this(name, 1);
+    }
+
+    /**
+     * Constructor - Records about one operation in sampleEvery
+     * @param name What is being timed
+     * @param sampleEvery Power of two; each record counts this many operations
+     */
+    public LatencyHistogram(String name, int sampleEvery) {
+        if (sampleEvery < 1 || Integer.bitCount(sampleEvery) != 1) {
+            throw new IllegalArgumentException("sampleEvery must be a power of two: " + sampleEvery);
+        }
+        this.name = name;
+        this.sampleMask = sampleEvery - 1;
+    }
+
+    /**
+     * Decides whether to time the operation about to start. Always true
+     * unless the histogram samples. A plain counter, as ThreadLocalRandom
+     * measurably slowed the lookups being sampled.
+     * @return True if the caller should time it and record it
+     */
+    public boolean sample() {
+        return (++sampleTicks & sampleMask) == 0;
+    }
+
+    /**
+     * Records one operation, or sampleEvery operations for a histogram
+     * that samples
+     * @param nanos How long it took
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0; // nanoTime is monotonic, but a caller's arithmetic may not be
+        }
+        counts.addAndGet(bucket(Math.min(nanos, MAX_NANOS)), sampleMask + 1);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * Records an operation that started at a System.nanoTime() reading
+     * @param startNanos System.nanoTime() when the operation started
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Gets what is being timed
+     * @return Name given to the constructor
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of operations recorded
+     * @return Operation count; an estimate for a histogram that samples
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the time that a share of operations took no longer than
+     * @param percentile Percentile, 0 to 100
+     * @return Time in nanoseconds, or 0 if nothing has been recorded
+     */
+    public long getPercentile(double percentile) {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return percentile(copy, count, percentile);
+    }
+
+    /**
+     * Takes a summary of the histogram
+     * @return Count, mean, percentiles, maximum and rate
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        long max = maxNanos.get();
+        double rate = rate(count);
+        double total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (copy[i] != 0) {
+                long lowest = i == 0 ? 0 : highestInBucket(i - 1) + 1;
+                total += copy[i] * ((lowest + Math.min(highestInBucket(i), max)) / 2.0);
+            }
+        }
+        return new Snapshot(name, count, count > 0 ? total / count : 0,
+                            Math.min(percentile(copy, count, 50), max), Math.min(percentile(copy, count, 90), max),
+                            Math.min(percentile(copy, count, 99), max), Math.min(percentile(copy, count, 99.9), max),
+                            max, rate);
+    }
+
+    /**
+     * Forgets everything recorded so far. Operations recorded while this
+     * runs may be partly kept.
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        maxNanos.set(0);
+        rateTickNanos = System.nanoTime();
+        rateCount = 0;
+        ratePerSecond = 0;
+        rateStarted = false;
+    }
+
+    /**
+     * Brings the moving average up to date for every whole tick since the
+     * last read, taking the events since then as spread evenly over them
+     */
+    private synchronized double rate(long count) {
+        long ticks = (System.nanoTime() - rateTickNanos) / TICK_NANOS;
+        if (ticks > 0) {
+            double tickRate = (count - rateCount) * 1e9 / (ticks * TICK_NANOS);
+            ratePerSecond = rateStarted ? tickRate + (ratePerSecond - tickRate) * Math.pow(1 - ONE_MINUTE_ALPHA, ticks)
+                                        : tickRate;
+            rateStarted = true;
+            rateCount = count;
+            rateTickNanos += ticks * TICK_NANOS;
+        }
+        return ratePerSecond;
+    }
+
+    private static long percentile(long[] counts, long count, double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return highestInBucket(i);
+            }
+        }
+        return MAX_NANOS;
+    }
+
+    /**
+     * Values below SUB_BUCKETS have a bucket each; above, the top
+     * SUB_BUCKET_BITS + 1 bits of a value pick its bucket
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Largest value that falls into a bucket
+     */
+    static long highestInBucket(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >> SUB_BUCKET_BITS) - 1;
+        long mantissa = SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1));
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * Summary of a histogram at one moment, in microseconds; shown as a
+     * composite value over JMX
+     */
+    public static final class Snapshot {
+        private final String name;
+        private final long count;
+        private final double meanNanos;
+        private final long p50Nanos;
+        private final long p90Nanos;
+        private final long p99Nanos;
+        private final long p999Nanos;
+        private final long maxNanos;
+        private final double ratePerSecond;
+
+        Snapshot(String name, long count, double meanNanos, long p50Nanos, long p90Nanos, long p99Nanos,
+                 long p999Nanos, long maxNanos, double ratePerSecond) {
+            this.name = name;
+            this.count = count;
+            this.meanNanos = meanNanos;
+            this.p50Nanos = p50Nanos;
+            this.p90Nanos = p90Nanos;
+            this.p99Nanos = p99Nanos;
+            this.p999Nanos = p999Nanos;
+            this.maxNanos = maxNanos;
+            this.ratePerSecond = ratePerSecond;
+        }
+
+        // Getters
+        public String getName() { return name; }
+        public long getCount() { return count; }
+        public double getMeanMicros() { return meanNanos / 1e3; }
+        public double getP50Micros() { return p50Nanos / 1e3; }
+        public double getP90Micros() { return p90Nanos / 1e3; }
+        public double getP99Micros() { return p99Nanos / 1e3; }
+        public double getP999Micros() { return p999Nanos / 1e3; }
+        public double getMaxMicros() { return maxNanos / 1e3; }
+        public double getRatePerSecond() { return ratePerSecond; }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d ops, %.1f/s, mean %.2f us, p50 %.2f us, p99 %.2f us, p99.9 %.2f us, max %.2f us",
+                                 name, count, ratePerSecond, getMeanMicros(), getP50Micros(), getP99Micros(),
+                                 getP999Micros(), getMaxMicros());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * LegacyCustomerConverter - Converts the old serialized customers.dat file
+ * into CustomerRecordFormat
+ *
+ * Used automatically by CustomerJournal on first start, and can be run by
+ * hand:  java LegacyCustomerConverter customers/customers.dat customers.snapshot
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class LegacyCustomerConverter {
+
+    /**
+     * Reads a legacy file containing a serialized Map of phone to Customer
+     * @param legacyFile The customers.dat file
+     * @return Customers found in the file
+     * @throws IOException If the file cannot be read or is not a customer map
+     */
+    @SuppressWarnings("unchecked")
+    public static Collection<Customer> readLegacy(File legacyFile) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(legacyFile)))) {
+            return ((Map<String, Customer>) ois.readObject()).values();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Unreadable legacy customer file: " + legacyFile, e);
+        }
+    }
+
+    /**
+     * Converts a legacy file into a new record file
+     * @param legacyFile The customers.dat file
+     * @param target File to write in CustomerRecordFormat
+     * @return Number of customers converted
+     * @throws IOException If either file cannot be accessed
+     */
+    public static int convert(File legacyFile, File target) throws IOException {
+        Collection<Customer> customers = readLegacy(legacyFile);
+        try (FileOutputStream fos = new FileOutputStream(target);
+             CustomerRecordWriter writer = new CustomerRecordWriter(new BufferedOutputStream(fos), true)) {
+            for (Customer customer : customers) {
+                writer.write(customer);
+            }
+            writer.flush();
+            fos.getFD().sync();
+        }
+        return customers.size();
+    }
+
+    /**
+     * Command line entry point
+     * @param args Legacy file and target file
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: java LegacyCustomerConverter <customers.dat> <target file>");
+            System.exit(2);
+        }
+        try {
+            int count = convert(new File(args[0]), new File(args[1]));
+            System.out.println("Converted " + count + " customers to " + args[1]);
+        } catch (IOException e) {
+            System.err.println("Conversion failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -1,6 +1,10 @@
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.*;
+import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * LoginPanel - Handles customer login/registration
@@ -9,10 +13,13 @@ import java.awt.event.*;
  * @version 2.0
  */
 public class LoginPanel extends JPanel {
+    private static final int MAX_SUGGESTIONS = 8;
+    
     private PizzaOrderingSystem app;
-    private CustomerManager customerManager;
+    private CustomerManager customerManager; // Null until the customer store has loaded
     
     private JTextField phoneField;
+    private JTextField searchField;
     private JTextField nameField;
     private JTextField addressField;
     private JTextField cityField;
@@ -24,17 +31,66 @@ public class LoginPanel extends JPanel {
     private JTextField cardLast4Field;
     private JButton loginButton;
     private JButton newCustomerButton;
+    private JButton kitchenButton;
     private JLabel statusLabel;
     
+    // Phone typeahead
+    private DefaultListModel<Customer> suggestionModel;
+    private JList<Customer> suggestionList;
+    private SwingWorker<List<Customer>, Void> suggestionWorker;
+    
     /**
      * Constructor
      * @param app Reference to main application to show the menu after login or registration.
      */
     public LoginPanel(PizzaOrderingSystem app) {
         this.app = app;
-        this.customerManager = new CustomerManager();
         initializeComponents();
         layoutComponents();
+        loadCustomers();
+    }
+    
+    /**
+     * Waits in the background for the customer store, which main() starts
+     * loading before the window is built. Until it is ready the fields can
+     * be filled in but logging in and registering are disabled.
+     */
+    private void loadCustomers() {
+        loginButton.setEnabled(false);
+        newCustomerButton.setEnabled(false);
+        statusLabel.setText("Loading customers...");
+        new SwingWorker<CustomerManager, Void>() {
+            @Override
+            protected CustomerManager doInBackground() throws Exception {
+                return CustomerManager.loadShared().get();
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    customerManager = get();
+                } catch (Exception e) {
+                    System.err.println("Error loading customers: " + e.getMessage());
+                    statusLabel.setText("Customers could not be loaded");
+                    return;
+                }
+                loginButton.setEnabled(true);
+                newCustomerButton.setEnabled(true);
+                statusLabel.setText(" ");
+                app.customersLoaded();
+                if (!customerManager.isSearchEnabled()) {
+                    searchField.setEnabled(false);
+                    searchField.setToolTipText("Search is off; start with -D" + CustomerManager.SEARCH_PROPERTY + "=on");
+                }
+                
+                // Catch up on anything typed while loading
+                if (searchField.isEnabled() && !searchField.getText().trim().isEmpty()) {
+                    updateSearchResults();
+                } else {
+                    updateSuggestions();
+                }
+            }
+        }.execute();
     }
     
     /**
@@ -42,6 +98,7 @@ public class LoginPanel extends JPanel {
      */
     private void initializeComponents() {
         phoneField = new JTextField(15);
+        searchField = new JTextField(15);
         nameField = new JTextField(20);
         addressField = new JTextField(20);
         cityField = new JTextField(15);
@@ -55,6 +112,7 @@ public class LoginPanel extends JPanel {
         // Style text fields to create a visually appealing layout.
         Color fieldBg = new Color(255, 250, 250); // Light white with slight red tint
         phoneField.setBackground(fieldBg);
+        searchField.setBackground(fieldBg);
         nameField.setBackground(fieldBg);
         addressField.setBackground(fieldBg);
         cityField.setBackground(fieldBg);
@@ -79,9 +137,41 @@ public class LoginPanel extends JPanel {
         newCustomerButton.setFocusPainted(false);
         newCustomerButton.addActionListener(e -> handleNewCustomer());
         
+        kitchenButton = new JButton("Kitchen Display");
+        kitchenButton.setBackground(new Color(200, 0, 0)); // Red
+        kitchenButton.setForeground(Color.BLACK);
+        kitchenButton.setFont(new Font("Arial", Font.BOLD, 14));
+        kitchenButton.setFocusPainted(false);
+        kitchenButton.addActionListener(e -> app.showKitchen());
+        
         statusLabel = new JLabel(" ");
         statusLabel.setForeground(new Color(200, 0, 0)); // Red
         statusLabel.setFont(new Font("Arial", Font.BOLD, 12));
+        
+        // Matching customers appear as each digit of the phone, or each
+        // letter of a name or address in the search box, is typed
+        suggestionModel = new DefaultListModel<>();
+        suggestionList = new JList<>(suggestionModel);
+        suggestionList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        suggestionList.setVisibleRowCount(MAX_SUGGESTIONS);
+        suggestionList.setBackground(fieldBg);
+        suggestionList.setForeground(new Color(0, 100, 0)); // Dark green
+        suggestionList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                selectSuggestion();
+            }
+        });
+        phoneField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { updateSuggestions(); }
+            public void removeUpdate(DocumentEvent e) { updateSuggestions(); }
+            public void changedUpdate(DocumentEvent e) { updateSuggestions(); }
+        });
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { updateSearchResults(); }
+            public void removeUpdate(DocumentEvent e) { updateSearchResults(); }
+            public void changedUpdate(DocumentEvent e) { updateSearchResults(); }
+        });
     }
     
     /**
@@ -121,6 +211,29 @@ public class LoginPanel extends JPanel {
         gbc.gridx = 1;
         centerPanel.add(phoneField, gbc);
         
+        // Name/address search and typeahead matches beside the phone and address fields
+        gbc.gridx = 2;
+        gbc.gridheight = 6;
+        gbc.fill = GridBagConstraints.BOTH;
+        JPanel searchPanel = new JPanel(new BorderLayout(0, 5));
+        searchPanel.setBackground(Color.WHITE);
+        searchPanel.setBorder(BorderFactory.createTitledBorder(
+            BorderFactory.createLineBorder(new Color(0, 150, 0), 1), "Matching Customers"));
+        JPanel searchRow = new JPanel(new BorderLayout(5, 0));
+        searchRow.setBackground(Color.WHITE);
+        JLabel searchLabel = new JLabel("Find by Name/Address:");
+        searchLabel.setFont(new Font("Arial", Font.BOLD, 12));
+        searchLabel.setForeground(new Color(0, 100, 0)); // Dark green
+        searchRow.add(searchLabel, BorderLayout.NORTH);
+        searchRow.add(searchField, BorderLayout.CENTER);
+        searchPanel.add(searchRow, BorderLayout.NORTH);
+        JScrollPane suggestionScroll = new JScrollPane(suggestionList);
+        searchPanel.add(suggestionScroll, BorderLayout.CENTER);
+        searchPanel.setPreferredSize(new Dimension(240, 200));
+        centerPanel.add(searchPanel, gbc);
+        gbc.gridheight = 1;
+        gbc.fill = GridBagConstraints.NONE;
+        
         gbc.gridx = 0;
         gbc.gridy = 2;
         JLabel nameLabel = new JLabel("Name:");
@@ -230,6 +343,7 @@ public class LoginPanel extends JPanel {
         buttonPanel.setBackground(Color.WHITE);
         buttonPanel.add(loginButton);
         buttonPanel.add(newCustomerButton);
+        buttonPanel.add(kitchenButton);
         centerPanel.add(buttonPanel, gbc);
         
         gbc.gridy = 14;
@@ -238,16 +352,101 @@ public class LoginPanel extends JPanel {
         add(centerPanel, BorderLayout.CENTER);
     }
     
+    /**
+     * Looks up customers matching the phone digits typed so far
+     */
+    private void updateSuggestions() {
+        String typed = phoneField.getText();
+        if (customerManager == null) {
+            return;
+        }
+        if (PhoneKey.of(typed) == PhoneKey.EMPTY) {
+            showMatches(null);
+        } else {
+            showMatches(() -> customerManager.findCustomersByPhonePrefix(typed, MAX_SUGGESTIONS));
+        }
+    }
+    
+    /**
+     * Looks up customers whose name or address resembles the search text
+     */
+    private void updateSearchResults() {
+        String query = searchField.getText();
+        if (customerManager == null) {
+            return;
+        }
+        if (query.trim().isEmpty()) {
+            showMatches(null);
+        } else {
+            showMatches(() -> customerManager.searchCustomers(query, MAX_SUGGESTIONS));
+        }
+    }
+    
+    /**
+     * Runs a customer lookup on a background thread and lists the results.
+     * A newer keystroke cancels the previous lookup, and results from a
+     * lookup that is no longer current are discarded.
+     * @param lookup Lookup to run, or null to just clear the list
+     */
+    private void showMatches(Supplier<List<Customer>> lookup) {
+        if (suggestionWorker != null) {
+            suggestionWorker.cancel(false);
+            suggestionWorker = null;
+        }
+        if (lookup == null) {
+            suggestionModel.clear();
+            return;
+        }
+        
+        suggestionWorker = new SwingWorker<List<Customer>, Void>() {
+            @Override
+            protected List<Customer> doInBackground() {
+                return lookup.get();
+            }
+            
+            @Override
+            protected void done() {
+                if (isCancelled() || this != suggestionWorker) {
+                    return;
+                }
+                try {
+                    suggestionModel.clear();
+                    for (Customer customer : get()) {
+                        suggestionModel.addElement(customer);
+                    }
+                } catch (Exception e) {
+                    System.err.println("Error finding customers: " + e.getMessage());
+                }
+            }
+        };
+        suggestionWorker.execute();
+    }
+    
+    /**
+     * Logs in the customer picked from the typeahead list
+     */
+    private void selectSuggestion() {
+        Customer customer = suggestionList.getSelectedValue();
+        if (customer != null) {
+            phoneField.setText(customer.getPhone());
+            handleLogin();
+        }
+    }
+    
     /**
      * Handles login attempt by checking if the customer exists in the system.
      */
     private void handleLogin() {
         String phone = phoneField.getText().trim();
+        if (customerManager == null) {
+            return;
+        }
         if (phone.isEmpty()) {
             statusLabel.setText("Please enter a phone number");
             return;
         }
         
+        long start = System.nanoTime();
         Customer customer = customerManager.findCustomer(phone);
         if (customer != null) {
             // Populate fields with customer data for display
@@ -265,8 +464,10 @@ public class LoginPanel extends JPanel {
             app.showMenu(customer);
             statusLabel.setText(" ");
         } else {
+            Metrics.LOGINS_NOT_FOUND.incrementAndGet();
             statusLabel.setText("Customer not found. Please register as new customer.");
         }
+        Metrics.LOGIN.recordSince(start);
     }
     
     /**
@@ -284,11 +485,23 @@ public class LoginPanel extends JPanel {
         String chargeAccountType = (String) chargeAccountCombo.getSelectedItem();
         String cardLast4 = cardLast4Field.getText().trim();
         
+        if (customerManager == null) {
+            return;
+        }
         if (phone.isEmpty() || name.isEmpty() || address.isEmpty() || 
             city.isEmpty() || state.isEmpty() || zip.isEmpty()) {
             statusLabel.setText("Please fill in all required fields");
             return;
         }
+        long key = PhoneKey.of(phone);
+        if (key == PhoneKey.EMPTY) {
+            statusLabel.setText("Please enter a phone number");
+            return;
+        }
+        if (key == PhoneKey.INVALID) {
+            statusLabel.setText("Phone number can have at most " + PhoneKey.MAX_DIGITS + " digits");
+            return;
+        }
         
         Customer customer = new Customer(phone, name, address, city, state, zip,
                                         subdivision, intersection, chargeAccountType, cardLast4);
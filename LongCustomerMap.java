@@ -0,0 +1,196 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.function.LongConsumer;
+
+/**
+ * LongCustomerMap - Open-addressing hash map from PhoneKey to Customer
+ *
+ * Keys live in a plain long[] next to a Customer[], probed linearly, so a
+ * lookup does no boxing and no allocation. The map is built for one writer
+ * thread and any number of reader threads: each slot's value is published
+ * before its key with release/acquire ordering, and a resize builds a new
+ * table and swaps it in through a volatile field, so readers never lock and
+ * never see a half-written entry. Entries are never removed.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class LongCustomerMap implements Iterable<Customer> {
+    private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(Customer[].class);
+    private static final int MIN_CAPACITY = 16;
+
+    private volatile Table table;
+    private volatile int size;
+
+    /**
+     * Constructor
+     */
+    public LongCustomerMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Constructor
+     * @param expected Number of entries to size the table for
+     */
+    public LongCustomerMap(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expected * 2 && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        table = new Table(capacity);
+    }
+
+    /**
+     * Finds the customer for a key
+     * @param key PhoneKey of the customer
+     * @return Customer or null if not found
+     */
+    public Customer get(long key) {
+        Table t = table;
+        int slot = t.find(key);
+        return slot >= 0 ? (Customer) VALUES.getAcquire(t.values, slot) : null;
+    }
+
+    /**
+     * Checks if a key is present
+     * @param key PhoneKey of the customer
+     * @return True if present
+     */
+    public boolean containsKey(long key) {
+        return table.find(key) >= 0;
+    }
+
+    /**
+     * Adds or replaces a customer. Must only be called from one thread at a time.
+     * @param key PhoneKey of the customer (must not be 0)
+     * @param customer Customer to store
+     */
+    public void put(long key, Customer customer) {
+        Table t = table;
+        if (t.insert(key, customer)) {
+            size++;
+            if (size * 2 > t.keys.length) {
+                table = t.resize(t.keys.length * 2);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of entries
+     * @return Entry count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Calls action for every key in the table as it was when the call started
+     * @param action Callback for each key
+     */
+    public void forEachKey(LongConsumer action) {
+        Table t = table;
+        for (int slot = 0; slot < t.keys.length; slot++) {
+            long key = (long) KEYS.getAcquire(t.keys, slot);
+            if (key != 0) {
+                action.accept(key);
+            }
+        }
+    }
+
+    /**
+     * Iterates over the customers in the table as it was when iteration started
+     * @return Iterator over the stored customers
+     */
+    @Override
+    public Iterator<Customer> iterator() {
+        Table t = table;
+        return new Iterator<Customer>() {
+            private int slot = advance(0);
+
+            private int advance(int from) {
+                while (from < t.keys.length && (long) KEYS.getAcquire(t.keys, from) == 0) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return slot < t.keys.length;
+            }
+
+            @Override
+            public Customer next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Customer customer = (Customer) VALUES.getAcquire(t.values, slot);
+                slot = advance(slot + 1);
+                return customer;
+            }
+        };
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * One generation of the key and value arrays
+     */
+    private static final class Table {
+        final long[] keys;
+        final Customer[] values;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new Customer[capacity];
+            mask = capacity - 1;
+        }
+
+        int find(long key) {
+            for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+                long k = (long) KEYS.getAcquire(keys, slot);
+                if (k == key) {
+                    return slot;
+                }
+                if (k == 0) {
+                    return -1;
+                }
+            }
+        }
+
+        /**
+         * @return True if the key was new
+         */
+        boolean insert(long key, Customer customer) {
+            for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+                long k = keys[slot];
+                if (k == key) {
+                    VALUES.setRelease(values, slot, customer);
+                    return false;
+                }
+                if (k == 0) {
+                    VALUES.setRelease(values, slot, customer);
+                    KEYS.setRelease(keys, slot, key);
+                    return true;
+                }
+            }
+        }
+
+        Table resize(int capacity) {
+            Table bigger = new Table(capacity);
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != 0) {
+                    bigger.insert(keys[slot], values[slot]);
+                }
+            }
+            return bigger;
+        }
+    }
+}
@@ -0,0 +1,569 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * MappedCustomerStore - Customer storage that keeps no customers on the heap
+ *
+ * Records live in customers.mapped, a memory-mapped file in
+ * CustomerRecordFormat that only ever grows at the end. customers.index is
+ * a memory-mapped open-addressing hash table of (phone key, record offset)
+ * slots, so a lookup touches an index page and a data page and only the
+ * customer that was asked for is decoded onto the heap. Updating a customer
+ * appends a new record and repoints its slot; the old record stays in the
+ * file as dead space.
+ *
+ * Lookups share a read lock, so registers on different threads read in
+ * parallel; saves, syncs and index growth take the write lock because they
+ * can remap the buffers that lookups read from.
+ *
+ * The index is derived data: if it is missing or damaged it is rebuilt by
+ * scanning the data file, and records appended after the last index update
+ * (for example after a crash) are picked up the same way.
+ *
+ * Java cannot unmap a file, and Windows will not delete, rename over or
+ * truncate a file that is still mapped. So an index is never replaced in
+ * place: a grown or rebuilt index is written to the next generation's file
+ * (customers.index, customers.index.1, customers.index.2, ...) and the
+ * store switches to it. Older generations are deleted when that is allowed,
+ * which on Windows is the next time the store is opened.
+ *
+ * Index layout (big-endian):
+ *   header: u32 magic, u32 version, u32 slot count, u32 entry count, u64 data end, 8 bytes reserved
+ *   slots:  u64 phone key (0 = empty), u64 record offset
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class MappedCustomerStore implements CustomerStore {
+    private static final String DATA_FILE = "customers.mapped";
+    private static final String INDEX_FILE = "customers.index";
+    private static final int INDEX_MAGIC = 0x49444958; // "IDIX"
+    private static final int INDEX_VERSION = 1;
+    private static final int INDEX_HEADER = 32;
+    private static final int SLOT_SIZE = 16;
+    private static final int MIN_SLOTS = 1 << 12;
+    private static final long MIN_DATA_CAPACITY = 1 << 20;
+
+    private final File dir;
+    private final File dataFile;
+    private File indexFile;
+    private int indexGeneration;
+    private final CRC32 crc = new CRC32();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final CustomerRecordWriter recordWriter;
+    private RandomAccessFile dataRaf;
+    private MappedByteBuffer data;
+    private RandomAccessFile indexRaf;
+    private MappedByteBuffer index;
+    private int slots;
+    private int count;
+    private long dataEnd;
+    private byte[] scratch = new byte[256];
+
+    /**
+     * Constructor - Opens or creates the mapped files, importing customers
+     * from a heap store (snapshot, journal or legacy file) the first time.
+     * @param dir Directory holding the customer files
+     * @throws IOException If the files cannot be opened
+     */
+    public MappedCustomerStore(File dir) throws IOException {
+        this.dir = dir;
+        this.dataFile = new File(dir, DATA_FILE);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+
+        boolean newData = !dataFile.exists() || dataFile.length() < CustomerRecordFormat.HEADER_LENGTH;
+        dataRaf = new RandomAccessFile(dataFile, "rw");
+        mapData(Math.max(MIN_DATA_CAPACITY, dataRaf.length()));
+        recordWriter = new CustomerRecordWriter(new DataOutput(), newData);
+        if (data.getInt(0) != CustomerRecordFormat.MAGIC) {
+            dataRaf.close();
+            throw new IOException("Not a customer record file: " + dataFile);
+        }
+
+        if (!newData && openIndex()) {
+            recoverTail();
+        } else {
+            // Records are roughly 100 bytes, so this errs on the large side
+            rebuildIndex(slotsFor((int) Math.min(1 << 28, dataRaf.length() / 100)));
+        }
+
+        if (newData) {
+            importHeapStore();
+        }
+    }
+
+    @Override
+    public Customer find(long key) {
+        if (key <= 0) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(key);
+            return slot >= 0 ? decodeAt(index.getLong(slotPosition(slot) + 8)) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(long key) {
+        if (key <= 0) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            return findSlot(key) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void save(long key, Customer customer) throws IOException {
+        if (key == PhoneKey.INVALID) {
+            throw new IllegalArgumentException("Phone number has more than " + PhoneKey.MAX_DIGITS + " digits: "
+                                               + customer.getPhone());
+        }
+        if (key == PhoneKey.EMPTY) {
+            throw new IllegalArgumentException("Phone number is missing");
+        }
+        if (key <= 0) {
+            throw new IllegalArgumentException("Not a valid phone key: " + key);
+        }
+        lock.writeLock().lock();
+        try {
+            long offset = dataEnd;
+            recordWriter.write(customer);
+            put(key, offset);
+            writeIndexHeader();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachKey(LongConsumer action) {
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < slots; slot++) {
+                long key = index.getLong(slotPosition(slot));
+                if (key != 0) {
+                    action.accept(key);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes go straight into the mapping, so there is nothing to flush
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Forces both mapped files to disk. Only a read lock is needed since the
+     * buffers are not remapped while it is held, so lookups carry on meanwhile.
+     */
+    @Override
+    public void sync() {
+        lock.readLock().lock();
+        try {
+            data.force();
+            index.force();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            sync();
+            dataRaf.close();
+            indexRaf.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Maps the data file with at least the given capacity
+     */
+    private void mapData(long capacity) throws IOException {
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IOException("Customer data file is full (2 GB limit)");
+        }
+        if (dataRaf.length() < capacity) {
+            dataRaf.setLength(capacity);
+        }
+        data = dataRaf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    /**
+     * Opens the newest index generation whose header is intact, so an index
+     * left half written by a crash while growing falls back to the one
+     * before it, and deletes the others
+     * @return False if the index must be rebuilt
+     */
+    private boolean openIndex() throws IOException {
+        int newest = newestIndexGeneration();
+        for (int generation = newest; generation >= 0; generation--) {
+            if (openIndex(indexFile(generation))) {
+                indexGeneration = generation;
+                indexFile = indexFile(generation);
+                deleteOldIndexes(newest);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Maps one index file if its header is intact. The header is read
+     * before mapping, so a damaged file is never mapped and can still be
+     * deleted.
+     */
+    private boolean openIndex(File file) throws IOException {
+        if (!file.exists() || file.length() < INDEX_HEADER) {
+            return false;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        boolean valid = false;
+        try {
+            int magic = raf.readInt();
+            int version = raf.readInt();
+            int slotCount = raf.readInt();
+            int entries = raf.readInt();
+            long end = raf.readLong();
+            valid = magic == INDEX_MAGIC
+                 && version == INDEX_VERSION
+                 && Integer.bitCount(slotCount) == 1
+                 && raf.length() == INDEX_HEADER + (long) slotCount * SLOT_SIZE
+                 && end >= CustomerRecordFormat.HEADER_LENGTH
+                 && end <= data.capacity();
+            if (valid) {
+                index = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+                indexRaf = raf;
+                slots = slotCount;
+                count = entries;
+                dataEnd = end;
+            }
+        } finally {
+            if (!valid) {
+                raf.close();
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Creates a new empty index in the next generation's file and fills it
+     * by scanning the data file
+     */
+    private void rebuildIndex(int slotCount) throws IOException {
+        indexGeneration = newestIndexGeneration();
+        if (indexFile(indexGeneration).exists()) {
+            indexGeneration++;
+        }
+        indexFile = indexFile(indexGeneration);
+        indexRaf = new RandomAccessFile(indexFile, "rw");
+        createIndex(indexRaf, slotCount);
+        count = 0;
+        dataEnd = CustomerRecordFormat.HEADER_LENGTH;
+        recoverTail();
+        deleteOldIndexes(indexGeneration);
+    }
+
+    /**
+     * Gets the file of an index generation
+     */
+    private File indexFile(int generation) {
+        return new File(dir, generation == 0 ? INDEX_FILE : INDEX_FILE + "." + generation);
+    }
+
+    /**
+     * Finds the highest index generation with a file in the directory
+     * @return Generation, 0 if there are none
+     */
+    private int newestIndexGeneration() {
+        int newest = 0;
+        String[] names = dir.list();
+        for (String name : names != null ? names : new String[0]) {
+            if (name.startsWith(INDEX_FILE + ".")) {
+                try {
+                    newest = Math.max(newest, Integer.parseInt(name.substring(INDEX_FILE.length() + 1)));
+                } catch (NumberFormatException e) {
+                    // Not an index generation
+                }
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * Deletes every index generation up to newest other than the one in
+     * use. One still mapped by this process cannot be deleted on Windows;
+     * it is left for the next time the store is opened.
+     */
+    private void deleteOldIndexes(int newest) {
+        for (int generation = 0; generation <= newest; generation++) {
+            if (generation != indexGeneration) {
+                indexFile(generation).delete();
+            }
+        }
+    }
+
+    private void createIndex(RandomAccessFile raf, int slotCount) throws IOException {
+        long length = INDEX_HEADER + (long) slotCount * SLOT_SIZE;
+        raf.setLength(length);
+        index = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        slots = slotCount;
+    }
+
+    /**
+     * Indexes any valid records found after dataEnd
+     */
+    private void recoverTail() {
+        long key;
+        while ((key = recordKeyAt(dataEnd)) != 0) {
+            long offset = dataEnd;
+            dataEnd += CustomerRecordFormat.RECORD_OVERHEAD + data.getInt((int) offset);
+            put(key, offset);
+        }
+        writeIndexHeader();
+    }
+
+    /**
+     * Reads the phone key of the record at offset without decoding the customer
+     * @return Key, 0 if there is no valid record there, or PhoneKey.INVALID for an unindexable phone
+     */
+    private long recordKeyAt(long offset) {
+        int pos = (int) offset;
+        if (offset + CustomerRecordFormat.RECORD_OVERHEAD + 2 > data.capacity()) {
+            return 0;
+        }
+        int payloadLength = data.getInt(pos);
+        if (payloadLength < 2 || pos + CustomerRecordFormat.RECORD_OVERHEAD + (long) payloadLength > data.capacity()) {
+            return 0;
+        }
+        int start = pos + CustomerRecordFormat.RECORD_OVERHEAD;
+        byte[] payload = scratchFor(payloadLength);
+        ByteBuffer view = data.duplicate();
+        view.position(start);
+        view.get(payload, 0, payloadLength);
+        crc.reset();
+        crc.update(payload, 0, payloadLength);
+        if ((int) crc.getValue() != data.getInt(pos + 4)) {
+            return 0;
+        }
+
+        int phoneLength = ((payload[0] & 0xFF) << 8) | (payload[1] & 0xFF);
+        return PhoneKey.of(payload, 2, Math.min(phoneLength, payloadLength - 2));
+    }
+
+    /**
+     * Decodes the customer record at offset. Runs under the read lock, so it
+     * decodes into its own buffer rather than the shared scratch space.
+     */
+    private Customer decodeAt(long offset) {
+        int pos = (int) offset;
+        int payloadLength = data.getInt(pos);
+        byte[] payload = new byte[payloadLength];
+        ByteBuffer view = data.duplicate();
+        view.position(pos + CustomerRecordFormat.RECORD_OVERHEAD);
+        view.get(payload, 0, payloadLength);
+
+        String[] fields = new String[CustomerRecordFormat.FIELD_COUNT];
+        Arrays.fill(fields, "");
+        int p = 0;
+        for (int i = 0; i < fields.length && p + 2 <= payloadLength; i++) {
+            int length = ((payload[p] & 0xFF) << 8) | (payload[p + 1] & 0xFF);
+            fields[i] = new String(payload, p + 2, length, StandardCharsets.UTF_8);
+            p += 2 + length;
+        }
+        return CustomerRecordFormat.customerOf(fields);
+    }
+
+    /**
+     * Finds the slot holding key
+     * @return Slot number, or -1 if the key is not indexed
+     */
+    private int findSlot(long key) {
+        int mask = slots - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            long slotKey = index.getLong(slotPosition(slot));
+            if (slotKey == key) {
+                return slot;
+            }
+            if (slotKey == 0) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Points key at a record offset, growing the index past half full
+     */
+    private void put(long key, long offset) {
+        if (key < 0) {
+            return;
+        }
+        int mask = slots - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int position = slotPosition(slot);
+            long slotKey = index.getLong(position);
+            if (slotKey == key) {
+                index.putLong(position + 8, offset);
+                return;
+            }
+            if (slotKey == 0) {
+                index.putLong(position, key);
+                index.putLong(position + 8, offset);
+                count++;
+                break;
+            }
+        }
+        if (count * 2 > slots) {
+            growIndex();
+        }
+    }
+
+    /**
+     * Rehashes the index into the next generation's file, with twice as
+     * many slots, and switches to it once it is complete
+     */
+    private void growIndex() {
+        try {
+            File newFile = indexFile(indexGeneration + 1);
+            Files.deleteIfExists(newFile.toPath());
+            RandomAccessFile newRaf = new RandomAccessFile(newFile, "rw");
+            MappedByteBuffer oldIndex = index;
+            int oldSlots = slots;
+
+            createIndex(newRaf, slots * 2);
+            count = 0;
+            for (int slot = 0; slot < oldSlots; slot++) {
+                int position = INDEX_HEADER + slot * SLOT_SIZE;
+                long key = oldIndex.getLong(position);
+                if (key != 0) {
+                    put(key, oldIndex.getLong(position + 8));
+                }
+            }
+            writeIndexHeader();
+            index.force();
+
+            indexRaf.close();
+            indexRaf = newRaf;
+            indexFile = newFile;
+            indexGeneration++;
+            deleteOldIndexes(indexGeneration);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error growing customer index", e);
+        }
+    }
+
+    private void writeIndexHeader() {
+        index.putInt(0, INDEX_MAGIC);
+        index.putInt(4, INDEX_VERSION);
+        index.putInt(8, slots);
+        index.putInt(12, count);
+        index.putLong(16, dataEnd);
+    }
+
+    /**
+     * Copies customers from the heap store files into a fresh mapped store
+     */
+    private void importHeapStore() throws IOException {
+        boolean hasHeapFiles = new File(dir, "customers.snapshot").exists()
+                            || new File(dir, "customers.journal").exists()
+                            || new File(dir, "customers.dat").exists();
+        if (!hasHeapFiles) {
+            return;
+        }
+        try (CustomerJournal journal = new CustomerJournal(dir)) {
+            journal.load(customer -> {
+                try {
+                    save(PhoneKey.of(customer.getPhone()), customer);
+                } catch (IOException | IllegalArgumentException e) {
+                    System.err.println("Skipping customer during import: " + e.getMessage());
+                }
+            });
+        }
+        sync();
+    }
+
+    private static int slotsFor(int records) {
+        int slotCount = MIN_SLOTS;
+        while (slotCount < records * 2 && slotCount < (1 << 30)) {
+            slotCount <<= 1;
+        }
+        return slotCount;
+    }
+
+    private static int slotPosition(int slot) {
+        return INDEX_HEADER + slot * SLOT_SIZE;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private byte[] scratchFor(int length) {
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        return scratch;
+    }
+
+    /**
+     * Stream that writes into the mapped data file at dataEnd, growing the mapping as needed
+     */
+    private class DataOutput extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            ensureData(1);
+            data.put((int) dataEnd, (byte) b);
+            dataEnd++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureData(len);
+            ByteBuffer view = data.duplicate();
+            view.position((int) dataEnd);
+            view.put(b, off, len);
+            dataEnd += len;
+        }
+
+        private void ensureData(int len) throws IOException {
+            if (dataEnd + len > data.capacity()) {
+                mapData(Math.max(dataEnd + len, (long) data.capacity() * 2));
+            }
+        }
+    }
+}
@@ -0,0 +1,416 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Menu - One immutable version of the menu: names, prices and their index
+ *
+ * A Menu never changes once built, so any number of threads may read it
+ * without locking. MenuManager swaps in a new Menu when the menu file is
+ * edited; orders keep the Menu they were started with, and every item
+ * remembers the Menu it was ordered from, so a price or name change never
+ * alters an order already being taken.
+ *
+ * Names are indexed by lower-case name when the menu is built, and prices
+ * are compiled into a PricingEngine, so lookups while taking orders do no
+ * searching and no arithmetic beyond a table read.
+ *
+ * Menu files are plain text, one entry per line, in menu order:
+ *
+ *   size = Small, 9.99
+ *   crust = Thin Crust, 0.50
+ *   topping = Pepperoni
+ *   toppingPrice = 1.25
+ *   maxToppings = 4
+ *   beverage = Coke
+ *   beverageSize = Small (16oz), 2.49
+ *
+ * Blank lines and lines starting with # are ignored. Items are stored by
+ * their position in each section, so new entries must be added at the end
+ * of a section; checkPositions() tells whether a new version of a menu
+ * keeps every existing entry where it was.
+ *
+ * The built-in menu is the menu.txt packed with the classes, read from the
+ * class path the first time Menu is used.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public final class Menu {
+    /**
+     * The parts of the menu that hold named choices
+     */
+    public enum Section {
+        SIZE("size", 16),
+        CRUST("crust", 16),
+        TOPPING("topping", 16),
+        BEVERAGE("beverage", 1 << 16),
+        BEVERAGE_SIZE("beverageSize", 16);
+
+        private final String key;
+        private final int limit; // Most entries OrderItem can hold
+
+        Section(String key, int limit) {
+            this.key = key;
+            this.limit = limit;
+        }
+
+        /**
+         * Gets the name of this section in menu files
+         * @return File key
+         */
+        public String getKey() {
+            return key;
+        }
+    }
+
+    private static final Section[] SECTIONS = Section.values();
+
+    /** Class path resource holding the built-in menu */
+    public static final String BUILT_IN_RESOURCE = "/menu.txt";
+
+    /** The menu used when there is no menu file */
+    public static final Menu BUILT_IN = loadBuiltIn();
+
+    private final long version;
+    private final int fingerprint;
+    private final String source;
+    private final String[][] names; // By section ordinal
+    private final List<Map<String, Integer>> index; // Lower-case name to position, by section ordinal
+    private final long[] sizeCents;
+    private final long[] crustCents;
+    private final long toppingCents;
+    private final int maxToppings;
+    private final long[] beverageSizeCents;
+    private final PricingEngine pricing;
+
+    private Menu(long version, String source, String[][] names, long[] sizeCents, long[] crustCents,
+                 long toppingCents, int maxToppings, long[] beverageSizeCents) {
+        this.version = version;
+        this.source = source;
+        this.names = names;
+        this.sizeCents = sizeCents;
+        this.crustCents = crustCents;
+        this.toppingCents = toppingCents;
+        this.maxToppings = maxToppings;
+        this.beverageSizeCents = beverageSizeCents;
+        index = new ArrayList<>(SECTIONS.length);
+        for (Section section : SECTIONS) {
+            String[] sectionNames = names[section.ordinal()];
+            Map<String, Integer> map = new HashMap<>(sectionNames.length * 2);
+            for (int i = 0; i < sectionNames.length; i++) {
+                map.putIfAbsent(sectionNames[i].toLowerCase(Locale.ROOT), i);
+            }
+            index.add(map);
+        }
+        // Priced for every topping; maxToppings is a rule for taking orders
+        pricing = new PricingEngine(sizeCents, crustCents, toppingCents, names[Section.TOPPING.ordinal()].length,
+                                    beverageSizeCents);
+        fingerprint = fingerprint(names);
+    }
+
+    /**
+     * Builds a menu that only names its entries, for describing items
+     * ordered from a menu that is no longer loaded. Every price is zero.
+     * @param source Where the names came from, for messages
+     * @param names Names by section ordinal
+     * @return The menu
+     */
+    static Menu namesOnly(String source, String[][] names) {
+        int toppings = names[Section.TOPPING.ordinal()].length;
+        return new Menu(0, source, names, new long[names[Section.SIZE.ordinal()].length],
+                        new long[names[Section.CRUST.ordinal()].length], 0, toppings,
+                        new long[names[Section.BEVERAGE_SIZE.ordinal()].length]);
+    }
+
+    /**
+     * Reads a menu file
+     * @param file Menu file
+     * @param version Version to give the menu
+     * @return The menu
+     * @throws IOException If the file cannot be read or is not a valid menu
+     */
+    public static Menu load(File file, long version) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                 new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            return parse(reader, version, file.getPath());
+        }
+    }
+
+    /**
+     * Reads a menu in the menu file format
+     * @param reader Menu text
+     * @param version Version to give the menu
+     * @param source Where the menu came from, for messages
+     * @return The menu
+     * @throws IOException If the text cannot be read or is not a valid menu
+     */
+    public static Menu parse(BufferedReader reader, long version, String source) throws IOException {
+        List<List<String>> names = new ArrayList<>();
+        for (int i = 0; i < SECTIONS.length; i++) {
+            names.add(new ArrayList<>());
+        }
+        List<Long> sizeCents = new ArrayList<>();
+        List<Long> crustCents = new ArrayList<>();
+        List<Long> beverageSizeCents = new ArrayList<>();
+        long toppingCents = -1;
+        int maxToppings = -1;
+
+        String line;
+        int number = 0;
+        while ((line = reader.readLine()) != null) {
+            number++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int equals = line.indexOf('=');
+            if (equals < 0) {
+                throw error(source, number, "expected key = value");
+            }
+            String key = line.substring(0, equals).trim();
+            String value = line.substring(equals + 1).trim();
+            try {
+                switch (key) {
+                    case "size":
+                        sizeCents.add(priced(value, names.get(Section.SIZE.ordinal())));
+                        break;
+                    case "crust":
+                        crustCents.add(priced(value, names.get(Section.CRUST.ordinal())));
+                        break;
+                    case "topping":
+                        named(value, names.get(Section.TOPPING.ordinal()));
+                        break;
+                    case "toppingPrice":
+                        toppingCents = cents(value);
+                        break;
+                    case "maxToppings":
+                        maxToppings = Integer.parseInt(value);
+                        break;
+                    case "beverage":
+                        named(value, names.get(Section.BEVERAGE.ordinal()));
+                        break;
+                    case "beverageSize":
+                        beverageSizeCents.add(priced(value, names.get(Section.BEVERAGE_SIZE.ordinal())));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown key " + key);
+                }
+            } catch (IllegalArgumentException e) {
+                throw error(source, number, e.getMessage());
+            }
+        }
+
+        String[][] sectionNames = new String[SECTIONS.length][];
+        for (Section section : SECTIONS) {
+            List<String> list = names.get(section.ordinal());
+            if (list.isEmpty() && section != Section.TOPPING) {
+                throw new IOException(source + ": no " + section.getKey() + " entries");
+            }
+            if (list.size() > section.limit) {
+                throw new IOException(source + ": at most " + section.limit + " " + section.getKey() + " entries");
+            }
+            sectionNames[section.ordinal()] = list.toArray(new String[0]);
+        }
+        if (toppingCents < 0) {
+            throw new IOException(source + ": toppingPrice is missing");
+        }
+        if (maxToppings < 0) {
+            maxToppings = sectionNames[Section.TOPPING.ordinal()].length;
+        }
+        if (maxToppings > sectionNames[Section.TOPPING.ordinal()].length) {
+            throw new IOException(source + ": maxToppings is more than the number of toppings");
+        }
+        Menu menu = new Menu(version, source, sectionNames, toArray(sizeCents), toArray(crustCents), toppingCents,
+                             maxToppings, toArray(beverageSizeCents));
+        long dearest = 0;
+        for (int size = 0; size < sizeCents.size(); size++) {
+            for (int crust = 0; crust < crustCents.size(); crust++) {
+                dearest = Math.max(dearest, menu.pricing.pizzaCents(size, crust, maxToppings));
+            }
+        }
+        for (long cents : beverageSizeCents) {
+            dearest = Math.max(dearest, cents);
+        }
+        if (dearest > OrderItem.MAX_UNIT_CENTS) {
+            throw new IOException(source + ": prices above $" + PricingEngine.format(OrderItem.MAX_UNIT_CENTS));
+        }
+        return menu;
+    }
+
+    /**
+     * Checks that a new version of a menu keeps every entry of the old one
+     * at its position, so items ordered from either mean the same thing.
+     * Entries may be renamed in place and added at the end of a section.
+     * @param previous Menu in use
+     * @param next Menu to replace it
+     * @throws IOException If next removes an entry or moves one to another position
+     */
+    public static void checkPositions(Menu previous, Menu next) throws IOException {
+        for (Section section : SECTIONS) {
+            String[] oldNames = previous.names[section.ordinal()];
+            String[] newNames = next.names[section.ordinal()];
+            for (int i = 0; i < oldNames.length; i++) {
+                int moved = next.find(section, oldNames[i]);
+                if (moved >= 0 && moved != i) {
+                    throw new IOException(next.source + ": " + section.getKey() + " " + oldNames[i]
+                                          + " moved; add new entries at the end of a section");
+                }
+                if (i >= newNames.length || (moved < 0 && previous.find(section, newNames[i]) >= 0)) {
+                    throw new IOException(next.source + ": " + section.getKey() + " " + oldNames[i]
+                                          + " was removed; rename it in place instead");
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets a name
+     * @param section Part of the menu
+     * @param position Position in the section
+     * @return The name, or a placeholder if the menu no longer has that position
+     */
+    public String getName(Section section, int position) {
+        String[] sectionNames = names[section.ordinal()];
+        return position >= 0 && position < sectionNames.length ? sectionNames[position]
+                                                                : "(" + section.getKey() + " " + position + ")";
+    }
+
+    /**
+     * Gets the names in a section, in menu order
+     * @param section Part of the menu
+     * @return Copy of the names
+     */
+    public String[] getNames(Section section) {
+        return names[section.ordinal()].clone();
+    }
+
+    /**
+     * Gets the number of entries in a section
+     * @param section Part of the menu
+     * @return Entry count
+     */
+    public int getCount(Section section) {
+        return names[section.ordinal()].length;
+    }
+
+    /**
+     * Finds an entry by name, ignoring case
+     * @param section Part of the menu
+     * @param name Name to find
+     * @return Position in the section, or -1 if not on the menu
+     */
+    public int find(Section section, String name) {
+        Integer position = index.get(section.ordinal()).get(name.toLowerCase(Locale.ROOT));
+        return position != null ? position : -1;
+    }
+
+    /**
+     * Gets a checksum of every name in menu order. Two menus with the same
+     * fingerprint describe a packed OrderItem the same way, whatever their
+     * prices.
+     * @return Fingerprint, never 0
+     */
+    public int getFingerprint() {
+        return fingerprint;
+    }
+
+    // Getters
+    public long getVersion() { return version; }
+    public String getSource() { return source; }
+    public long getToppingCents() { return toppingCents; }
+    public int getMaxToppings() { return maxToppings; }
+    public PricingEngine getPricing() { return pricing; }
+
+    /**
+     * Gets the pizza prices by size
+     * @return Copy of the prices in cents
+     */
+    public long[] getSizeCents() {
+        return sizeCents.clone();
+    }
+
+    /**
+     * Gets the crust surcharges
+     * @return Copy of the prices in cents
+     */
+    public long[] getCrustCents() {
+        return crustCents.clone();
+    }
+
+    /**
+     * Gets the beverage prices by size
+     * @return Copy of the prices in cents
+     */
+    public long[] getBeverageSizeCents() {
+        return beverageSizeCents.clone();
+    }
+
+    @Override
+    public String toString() {
+        return source + " (version " + version + ")";
+    }
+
+    /**
+     * Reads "Name, 1.25", adding the name and returning the price
+     */
+    private static long priced(String value, List<String> names) {
+        int comma = value.lastIndexOf(',');
+        if (comma < 0) {
+            throw new IllegalArgumentException("expected name, price");
+        }
+        named(value.substring(0, comma).trim(), names);
+        return cents(value.substring(comma + 1));
+    }
+
+    private static void named(String name, List<String> names) {
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("name is missing");
+        }
+        names.add(name);
+    }
+
+    private static long cents(String value) {
+        long cents = PricingEngine.parseCents(value);
+        if (cents < 0) {
+            throw new IllegalArgumentException("price is negative");
+        }
+        return cents;
+    }
+
+    private static Menu loadBuiltIn() {
+        InputStream in = Menu.class.getResourceAsStream(BUILT_IN_RESOURCE);
+        if (in == null) {
+            throw new IllegalStateException("Built-in menu " + BUILT_IN_RESOURCE + " is missing from the class path");
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return parse(reader, 0, "built-in menu");
+        } catch (IOException e) {
+            throw new IllegalStateException("Built-in menu is not valid: " + e.getMessage(), e);
+        }
+    }
+
+    private static int fingerprint(String[][] names) {
+        CRC32 crc = new CRC32();
+        for (Section section : SECTIONS) {
+            for (String name : names[section.ordinal()]) {
+                crc.update((section.getKey() + "=" + name + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int value = (int) crc.getValue();
+        return value != 0 ? value : 1; // 0 stands for no menu
+    }
+
+    private static long[] toArray(List<Long> values) {
+        long[] array = new long[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    private static IOException error(String source, int line, String message) {
+        return new IOException(source + " line " + line + ": " + message);
+    }
+}
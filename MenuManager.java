@@ -0,0 +1,205 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * MenuManager - Holds the current Menu and reloads it when its file changes
+ *
+ * The current menu is one volatile reference. Readers take it without
+ * locking; a reload builds a complete new Menu off to the side and then
+ * swaps the reference, so a reader sees either the old menu or the new
+ * one, never a mix. A file that does not parse, or that removes or moves
+ * an entry of the menu in use (see Menu.checkPositions), is reported and
+ * the menu in use is kept.
+ *
+ * startWatching() starts a background thread that waits on a WatchService
+ * for the menu file to be saved and reloads it, so prices can be changed
+ * mid-shift without restarting the registers. Listeners hear about each
+ * new menu on the watcher thread.
+ *
+ * The shared manager reads MENU_PROPERTY, or menu.txt in the working
+ * directory; without a menu file the built-in menu is used until one is
+ * created.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class MenuManager {
+    /** System property naming the menu file */
+    public static final String MENU_PROPERTY = "pizza.menu";
+    /** Menu file used when MENU_PROPERTY is not set */
+    public static final String DEFAULT_MENU_FILE = "menu.txt";
+
+    // Editors often save in several writes; wait for them to finish
+    private static final long SETTLE_MILLIS = 200;
+
+    private static MenuManager shared;
+
+    private final File file;
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile Menu menu;
+    private long lastVersion;
+    private Thread watcher;
+    private WatchService watchService;
+
+    /**
+     * Callback told when a new menu has been loaded, on the watcher thread
+     */
+    public interface Listener {
+        /**
+         * @param menu The new menu
+         */
+        void menuChanged(Menu menu);
+    }
+
+    /**
+     * Constructor - Loads the menu file, or uses the built-in menu if it
+     * is missing or not valid
+     * @param file Menu file
+     */
+    public MenuManager(File file) {
+        this.file = file;
+        menu = Menu.BUILT_IN;
+        if (file.exists()) {
+            load(false);
+        }
+    }
+
+    /**
+     * Gets the manager shared by every register in this JVM
+     * @return Shared MenuManager
+     */
+    public static synchronized MenuManager getShared() {
+        if (shared == null) {
+            shared = new MenuManager(new File(System.getProperty(MENU_PROPERTY, DEFAULT_MENU_FILE)));
+        }
+        return shared;
+    }
+
+    /**
+     * Gets the current menu. Never locks.
+     * @return Current Menu
+     */
+    public Menu getMenu() {
+        return menu;
+    }
+
+    /**
+     * Gets the menu file
+     * @return Menu file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Reads the menu file and makes it the current menu
+     * @return False if the file could not be read or removes or moves an
+     *         entry of the current menu; the current menu is kept
+     */
+    public synchronized boolean reload() {
+        return load(true);
+    }
+
+    private boolean load(boolean keepPositions) {
+        Menu loaded;
+        try {
+            loaded = Menu.load(file, lastVersion + 1);
+            if (keepPositions) {
+                Menu.checkPositions(menu, loaded);
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading menu: " + e.getMessage());
+            return false;
+        }
+        lastVersion = loaded.getVersion();
+        menu = loaded;
+        for (Listener listener : listeners) {
+            listener.menuChanged(loaded);
+        }
+        return true;
+    }
+
+    /**
+     * Adds a callback for new menus
+     * @param listener Callback, run on the thread that loaded the menu
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a callback added with addListener
+     * @param listener Callback to remove
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts reloading the menu whenever its file is saved. Does nothing if
+     * already watching.
+     * @throws IOException If the file's directory cannot be watched
+     */
+    public synchronized void startWatching() throws IOException {
+        if (watcher != null) {
+            return;
+        }
+        Path dir = file.getAbsoluteFile().toPath().getParent();
+        watchService = dir.getFileSystem().newWatchService();
+        dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Path name = file.toPath().getFileName();
+        WatchService service = watchService;
+        watcher = new Thread(() -> watch(service, name), "menu-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Stops watching the menu file
+     */
+    public synchronized void stopWatching() {
+        if (watcher == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("Error closing menu watcher: " + e.getMessage());
+        }
+        watcher = null;
+        watchService = null;
+    }
+
+    /**
+     * Watcher loop: reload after each burst of changes to the menu file
+     */
+    private void watch(WatchService service, Path name) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = menuEvents(key, name);
+                // Let the save finish, and fold the rest of it into one reload
+                Thread.sleep(SETTLE_MILLIS);
+                WatchKey more;
+                while ((more = service.poll()) != null) {
+                    changed |= menuEvents(more, name);
+                }
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+
+    private static boolean menuEvents(WatchKey key, Path name) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            changed |= name.equals(event.context());
+        }
+        key.reset();
+        return changed;
+    }
+}
@@ -2,22 +2,30 @@ import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import java.awt.*;
 import java.awt.event.*;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
  * MenuPanel - Main menu interface for building orders
  * 
+ * The size, crust, topping and beverage controls are built from the Menu
+ * of the current order. When the menu file is reloaded they are rebuilt
+ * from the new Menu as soon as the order is empty; an order already being
+ * taken keeps the menu it started with.
+ * 
  * @author Infinite Doughmain Team
  * @version 2.0
  */
 public class MenuPanel extends JPanel {
     private PizzaOrderingSystem app;
+    private Menu shownMenu; // Menu the controls were built from
+    private boolean changingMenu; // Controls are being rebuilt
     
     // Pizza components
     private JComboBox<String> sizeCombo;
     private JComboBox<String> crustCombo;
     private JCheckBox[] toppingBoxes;
+    private JPanel toppingPanel;
+    private JLabel toppingLabel;
     private JButton addPizzaButton;
     
     // Beverage components
@@ -38,10 +46,19 @@ public class MenuPanel extends JPanel {
     private ButtonGroup orderTypeGroup;
     
     // Order display
-    private JTextArea orderDisplay;
+    private JList<OrderItem> orderList;
+    private OrderListModel orderModel;
+    private JSpinner itemQuantitySpinner;
+    private JButton setQuantityButton;
+    private JButton removeItemButton;
     private JLabel totalLabel;
+    private JLabel customerLabel;
     private JButton viewOrderButton;
     private JButton clearOrderButton;
+    private JButton reorderButton;
+    private JButton parkButton;
+    private JButton resumeButton;
+    private long displayedVersion = -1; // Order version shown in orderList
     
     /**
      * Constructor
@@ -51,34 +68,32 @@ public class MenuPanel extends JPanel {
         this.app = app;
         initializeComponents();
         layoutComponents();
+        MenuManager.getShared().addListener(menu -> SwingUtilities.invokeLater(this::showCurrentMenu));
     }
     
     /**
      * Initializes UI components
      */
     private void initializeComponents() {
+        shownMenu = app.getMenu();
+        
         // Pizza size
-        sizeCombo = new JComboBox<>(PizzaOrderingSystem.getPizzaSizes());
+        sizeCombo = new JComboBox<>(shownMenu.getNames(Menu.Section.SIZE));
         sizeCombo.setBackground(Color.WHITE);
         sizeCombo.addActionListener(e -> updatePizzaPrice());
         
         // Crust type
-        crustCombo = new JComboBox<>(PizzaOrderingSystem.getCrustTypes());
+        crustCombo = new JComboBox<>(shownMenu.getNames(Menu.Section.CRUST));
         crustCombo.setBackground(Color.WHITE);
         crustCombo.addActionListener(e -> updatePizzaPrice());
         
-        // Toppings (max 4)
-        String[] toppings = PizzaOrderingSystem.getToppings();
-        toppingBoxes = new JCheckBox[toppings.length];
-        for (int i = 0; i < toppings.length; i++) {
-            toppingBoxes[i] = new JCheckBox(toppings[i]);
-            toppingBoxes[i].setBackground(Color.WHITE);
-            toppingBoxes[i].setForeground(new Color(0, 100, 0)); // Dark green text
-            toppingBoxes[i].addActionListener(e -> {
-                checkToppingLimit();
-                updatePizzaPrice();
-            });
-        }
+        // Toppings (up to the menu's limit)
+        toppingPanel = new JPanel(new GridLayout(0, 2));
+        toppingPanel.setBackground(Color.WHITE);
+        toppingLabel = new JLabel();
+        toppingLabel.setFont(new Font("Arial", Font.BOLD, 12));
+        toppingLabel.setForeground(new Color(0, 100, 0)); // Dark green
+        createToppingBoxes();
         
         addPizzaButton = new JButton("Add Pizza to Order");
         addPizzaButton.setBackground(new Color(0, 150, 0)); // Green
@@ -88,9 +103,9 @@ public class MenuPanel extends JPanel {
         addPizzaButton.addActionListener(e -> addPizza());
         
         // Beverages
-        beverageCombo = new JComboBox<>(PizzaOrderingSystem.getBeverages());
+        beverageCombo = new JComboBox<>(shownMenu.getNames(Menu.Section.BEVERAGE));
         beverageCombo.setBackground(Color.WHITE);
-        bevSizeCombo = new JComboBox<>(PizzaOrderingSystem.getBevSizes());
+        bevSizeCombo = new JComboBox<>(shownMenu.getNames(Menu.Section.BEVERAGE_SIZE));
         bevSizeCombo.setBackground(Color.WHITE);
         bevQuantitySpinner = new JSpinner(new SpinnerNumberModel(1, 1, 10, 1));
         ((JSpinner.DefaultEditor) bevQuantitySpinner.getEditor()).getTextField().setBackground(Color.WHITE);
@@ -123,11 +138,38 @@ public class MenuPanel extends JPanel {
         app.setOrderType("Pickup");
         
         // Order display
-        orderDisplay = new JTextArea(10, 40);
-        orderDisplay.setEditable(false);
-        orderDisplay.setFont(new Font("Monospaced", Font.PLAIN, 12));
-        orderDisplay.setBackground(new Color(255, 250, 250)); // Light white with slight red tint
-        orderDisplay.setForeground(new Color(0, 80, 0)); // Dark green text
+        orderModel = new OrderListModel(app.getCurrentOrder());
+        orderList = new JList<>(orderModel);
+        orderList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        orderList.setVisibleRowCount(10);
+        orderList.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        orderList.setBackground(new Color(255, 250, 250)); // Light white with slight red tint
+        orderList.setForeground(new Color(0, 80, 0)); // Dark green text
+        new OrderItemRenderer().configure(orderList);
+        orderList.addListSelectionListener(e -> updateItemControls());
+        orderList.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_DELETE, 0), "removeItem");
+        orderList.getActionMap().put("removeItem", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                removeSelectedItem();
+            }
+        });
+        
+        itemQuantitySpinner = new JSpinner(new SpinnerNumberModel(1, 1, 99, 1));
+        
+        setQuantityButton = new JButton("Set Quantity");
+        setQuantityButton.setFocusPainted(false);
+        setQuantityButton.addActionListener(e -> {
+            int index = orderList.getSelectedIndex();
+            if (index >= 0) {
+                app.setItemQuantity(index, (Integer) itemQuantitySpinner.getValue());
+            }
+        });
+        
+        removeItemButton = new JButton("Remove Item");
+        removeItemButton.setFocusPainted(false);
+        removeItemButton.addActionListener(e -> removeSelectedItem());
+        updateItemControls();
         
         totalLabel = new JLabel("Total: $0.00");
         totalLabel.setFont(new Font("Arial", Font.BOLD, 18));
@@ -149,6 +191,32 @@ public class MenuPanel extends JPanel {
             app.clearOrder();
             updateOrderDisplay();
         });
+        
+        reorderButton = new JButton("Reorder Last");
+        reorderButton.setBackground(new Color(0, 150, 0)); // Green
+        reorderButton.setForeground(Color.BLACK);
+        reorderButton.setFont(new Font("Arial", Font.BOLD, 14));
+        reorderButton.setFocusPainted(false);
+        reorderButton.setEnabled(false);
+        reorderButton.addActionListener(e -> {
+            if (app.reorderLast()) {
+                showOrderType();
+            }
+        });
+        
+        parkButton = new JButton("Park Order");
+        parkButton.setFocusPainted(false);
+        parkButton.setToolTipText("Set this order aside to serve another customer");
+        parkButton.addActionListener(e -> {
+            if (!app.parkOrder()) {
+                JOptionPane.showMessageDialog(this, "There is nothing to park yet.",
+                                              "Park Order", JOptionPane.INFORMATION_MESSAGE);
+            }
+        });
+        
+        resumeButton = new JButton("Resume Order");
+        resumeButton.setFocusPainted(false);
+        resumeButton.addActionListener(e -> resumeParkedOrder());
     }
     
     /**
@@ -168,8 +236,7 @@ public class MenuPanel extends JPanel {
         
         JPanel customerPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         customerPanel.setBackground(Color.WHITE);
-        Customer customer = app.getCurrentCustomer();
-        JLabel customerLabel = new JLabel("Customer: " + (customer != null ? customer.getName() : ""));
+        customerLabel = new JLabel("Customer: ");
         customerLabel.setFont(new Font("Arial", Font.BOLD, 14));
         customerLabel.setForeground(new Color(0, 100, 0)); // Dark green
         customerPanel.add(customerLabel);
@@ -234,17 +301,9 @@ public class MenuPanel extends JPanel {
         
         gbc.gridx = 0; gbc.gridy = 2;
         gbc.gridwidth = 3;
-        JLabel toppingLabel = new JLabel("Toppings (select up to 4):");
-        toppingLabel.setFont(new Font("Arial", Font.BOLD, 12));
-        toppingLabel.setForeground(new Color(0, 100, 0)); // Dark green
         pizzaPanel.add(toppingLabel, gbc);
         
         gbc.gridy = 3;
-        JPanel toppingPanel = new JPanel(new GridLayout(4, 2));
-        toppingPanel.setBackground(Color.WHITE);
-        for (JCheckBox box : toppingBoxes) {
-            toppingPanel.add(box);
-        }
         pizzaPanel.add(toppingPanel, gbc);
         
         gbc.gridy = 4;
@@ -318,15 +377,36 @@ public class MenuPanel extends JPanel {
         orderBorder.setTitleFont(new Font("Arial", Font.BOLD, 14));
         orderBorder.setTitleColor(new Color(200, 0, 0)); // Red
         bottomPanel.setBorder(orderBorder);
-        JScrollPane scrollPane = new JScrollPane(orderDisplay);
+        JScrollPane scrollPane = new JScrollPane(orderList);
         scrollPane.setBackground(Color.WHITE);
         scrollPane.setBorder(BorderFactory.createLineBorder(new Color(200, 0, 0), 1));
         bottomPanel.add(scrollPane, BorderLayout.CENTER);
         
+        JPanel itemPanel = new JPanel(new GridBagLayout());
+        itemPanel.setBackground(Color.WHITE);
+        GridBagConstraints gbc3 = new GridBagConstraints();
+        gbc3.insets = new Insets(3, 5, 3, 5);
+        gbc3.fill = GridBagConstraints.HORIZONTAL;
+        gbc3.gridx = 0; gbc3.gridy = 0;
+        itemPanel.add(new JLabel("Qty:"), gbc3);
+        gbc3.gridx = 1;
+        itemPanel.add(itemQuantitySpinner, gbc3);
+        gbc3.gridx = 0; gbc3.gridy = 1;
+        gbc3.gridwidth = 2;
+        itemPanel.add(setQuantityButton, gbc3);
+        gbc3.gridy = 2;
+        itemPanel.add(removeItemButton, gbc3);
+        gbc3.gridy = 3;
+        itemPanel.add(parkButton, gbc3);
+        gbc3.gridy = 4;
+        itemPanel.add(resumeButton, gbc3);
+        bottomPanel.add(itemPanel, BorderLayout.EAST);
+        
         JPanel bottomButtons = new JPanel(new FlowLayout());
         bottomButtons.setBackground(Color.WHITE);
         bottomButtons.add(totalLabel);
         bottomButtons.add(viewOrderButton);
+        bottomButtons.add(reorderButton);
         bottomButtons.add(clearOrderButton);
         bottomPanel.add(bottomButtons, BorderLayout.SOUTH);
         
@@ -339,33 +419,76 @@ public class MenuPanel extends JPanel {
         bevSizeCombo.addActionListener(e -> updateBeveragePrice());
     }
     
+    /**
+     * Creates a check box for each topping on the shown menu
+     */
+    private void createToppingBoxes() {
+        String[] toppings = shownMenu.getNames(Menu.Section.TOPPING);
+        toppingBoxes = new JCheckBox[toppings.length];
+        toppingPanel.removeAll();
+        for (int i = 0; i < toppings.length; i++) {
+            toppingBoxes[i] = new JCheckBox(toppings[i]);
+            toppingBoxes[i].setBackground(Color.WHITE);
+            toppingBoxes[i].setForeground(new Color(0, 100, 0)); // Dark green text
+            toppingBoxes[i].addActionListener(e -> {
+                checkToppingLimit();
+                updatePizzaPrice();
+            });
+            toppingPanel.add(toppingBoxes[i]);
+        }
+        toppingLabel.setText("Toppings (select up to " + shownMenu.getMaxToppings() + "):");
+    }
+    
+    /**
+     * Rebuilds the menu controls if the current order's menu is not the
+     * one shown, such as after the menu file was reloaded
+     */
+    private void showCurrentMenu() {
+        Menu menu = app.getMenu();
+        if (menu == shownMenu) {
+            return;
+        }
+        shownMenu = menu;
+        changingMenu = true;
+        sizeCombo.setModel(new DefaultComboBoxModel<>(menu.getNames(Menu.Section.SIZE)));
+        crustCombo.setModel(new DefaultComboBoxModel<>(menu.getNames(Menu.Section.CRUST)));
+        beverageCombo.setModel(new DefaultComboBoxModel<>(menu.getNames(Menu.Section.BEVERAGE)));
+        bevSizeCombo.setModel(new DefaultComboBoxModel<>(menu.getNames(Menu.Section.BEVERAGE_SIZE)));
+        createToppingBoxes();
+        changingMenu = false;
+        toppingPanel.revalidate();
+        toppingPanel.repaint();
+        updatePizzaPrice();
+        updateBeveragePrice();
+    }
+    
     /**
      * Updates pizza price display
      */
     private void updatePizzaPrice() {
+        if (changingMenu) {
+            return;
+        }
         int sizeIdx = sizeCombo.getSelectedIndex();
         int crustIdx = crustCombo.getSelectedIndex();
         
-        double sizePrice = PizzaOrderingSystem.getSizePrices()[sizeIdx];
-        double crustPrice = PizzaOrderingSystem.getCrustPrices()[crustIdx];
+        PricingEngine pricing = shownMenu.getPricing();
         
         int toppingCount = 0;
         for (JCheckBox box : toppingBoxes) {
             if (box.isSelected()) toppingCount++;
         }
-        double toppingPrice = toppingCount * PizzaOrderingSystem.getToppingPrice();
-        
-        double total = sizePrice + crustPrice + toppingPrice;
         
         // Update labels
         if (sizePriceLabel != null) {
-            sizePriceLabel.setText(String.format("$%.2f", sizePrice));
+            sizePriceLabel.setText("$" + PricingEngine.format(pricing.sizeCents(sizeIdx)));
         }
         if (crustPriceLabel != null) {
-            crustPriceLabel.setText(String.format("$%.2f", crustPrice));
+            crustPriceLabel.setText("$" + PricingEngine.format(pricing.crustCents(crustIdx)));
         }
         if (pizzaPriceLabel != null) {
-            pizzaPriceLabel.setText(String.format("Pizza Price: $%.2f", total));
+            pizzaPriceLabel.setText("Pizza Price: $"
+                                    + PricingEngine.format(pricing.pizzaCents(sizeIdx, crustIdx, toppingCount)));
         }
     }
     
@@ -373,16 +496,19 @@ public class MenuPanel extends JPanel {
      * Updates beverage price display
      */
     private void updateBeveragePrice() {
+        if (changingMenu) {
+            return;
+        }
         int sizeIdx = bevSizeCombo.getSelectedIndex();
-        double price = PizzaOrderingSystem.getBevPrices()[sizeIdx];
+        long price = shownMenu.getPricing().beverageCents(sizeIdx);
         
         if (bevPriceLabel != null) {
-            bevPriceLabel.setText(String.format("$%.2f", price));
+            bevPriceLabel.setText("$" + PricingEngine.format(price));
         }
     }
     
     /**
-     * Enforces maximum of 4 toppings
+     * Enforces the menu's maximum number of toppings
      */
     private void checkToppingLimit() {
         int selected = 0;
@@ -390,7 +516,7 @@ public class MenuPanel extends JPanel {
             if (box.isSelected()) selected++;
         }
         
-        if (selected >= 4) {
+        if (selected >= shownMenu.getMaxToppings()) {
             for (JCheckBox box : toppingBoxes) {
                 if (!box.isSelected()) {
                     box.setEnabled(false);
@@ -407,32 +533,20 @@ public class MenuPanel extends JPanel {
      * Adds pizza to order
      */
     private void addPizza() {
-        String size = (String) sizeCombo.getSelectedItem();
-        String crust = (String) crustCombo.getSelectedItem();
+        long start = System.nanoTime();
+        int sizeIdx = sizeCombo.getSelectedIndex();
+        int crustIdx = crustCombo.getSelectedIndex();
         
-        List<String> selectedToppings = new ArrayList<>();
-        for (JCheckBox box : toppingBoxes) {
-            if (box.isSelected()) {
-                selectedToppings.add(box.getText());
+        // Topping i of the menu is bit i of the mask
+        int toppingMask = 0;
+        for (int i = 0; i < toppingBoxes.length; i++) {
+            if (toppingBoxes[i].isSelected()) {
+                toppingMask |= 1 << i;
             }
         }
         
-        // Build description
-        StringBuilder desc = new StringBuilder(size + " " + crust + " Pizza");
-        if (!selectedToppings.isEmpty()) {
-            desc.append(" with ");
-            desc.append(String.join(", ", selectedToppings));
-        }
-        
-        // Calculate price
-        int sizeIdx = sizeCombo.getSelectedIndex();
-        int crustIdx = crustCombo.getSelectedIndex();
-        double price = PizzaOrderingSystem.getSizePrices()[sizeIdx] + 
-                      PizzaOrderingSystem.getCrustPrices()[crustIdx] + 
-                      (selectedToppings.size() * PizzaOrderingSystem.getToppingPrice());
-        
-        OrderItem item = new OrderItem(desc.toString(), price, 1);
-        app.addToOrder(item);
+        long price = shownMenu.getPricing().pizzaCents(sizeIdx, crustIdx, Integer.bitCount(toppingMask));
+        app.addToOrder(OrderItem.pizza(shownMenu, sizeIdx, crustIdx, toppingMask, price, 1));
         
         // Reset form
         sizeCombo.setSelectedIndex(0);
@@ -441,49 +555,144 @@ public class MenuPanel extends JPanel {
             box.setSelected(false);
         }
         updatePizzaPrice();
+        Metrics.ADD_PIZZA.recordSince(start);
     }
     
     /**
      * Adds beverage to order
      */
     private void addBeverage() {
-        String beverage = (String) beverageCombo.getSelectedItem();
-        String size = (String) bevSizeCombo.getSelectedItem();
-        int quantity = (Integer) bevQuantitySpinner.getValue();
-        
+        int beverageIdx = beverageCombo.getSelectedIndex();
         int sizeIdx = bevSizeCombo.getSelectedIndex();
-        double price = PizzaOrderingSystem.getBevPrices()[sizeIdx];
+        int quantity = (Integer) bevQuantitySpinner.getValue();
         
-        String desc = size + " " + beverage;
-        OrderItem item = new OrderItem(desc, price, quantity);
-        app.addToOrder(item);
+        long price = shownMenu.getPricing().beverageCents(sizeIdx);
+        app.addToOrder(OrderItem.beverage(shownMenu, beverageIdx, sizeIdx, price, quantity));
     }
     
     /**
      * Refreshes the panel (called when switching to this view)
      */
     public void refresh() {
+        Customer customer = app.getCurrentCustomer();
+        customerLabel.setText("Customer: " + (customer != null ? customer.getName() : ""));
         updateOrderDisplay();
+        showCurrentMenu();
+        showOrderType();
+        int parked = app.getParkedOrders().size();
+        resumeButton.setText(parked > 0 ? "Resume Order (" + parked + ")" : "Resume Order");
+        
+        // Offer the customer's previous order, if they have one
+        OrderRecord last = app.getLastOrder();
+        reorderButton.setEnabled(last != null);
+        reorderButton.setToolTipText(last != null ? "Previous order: " + last : null);
     }
     
     /**
-     * Updates the order display area
+     * Updates the order list after the whole order was replaced, unless it
+     * already shows the current version of the order
      */
     public void updateOrderDisplay() {
-        StringBuilder sb = new StringBuilder();
-        List<OrderItem> order = app.getCurrentOrder();
-        
-        if (order.isEmpty()) {
-            sb.append("No items in order yet.\n");
+        if (displayedVersion == app.getOrderVersion()) {
+            return;
+        }
+        orderModel.reset(app.getCurrentOrder());
+        updateTotal();
+    }
+    
+    /**
+     * Shows an item just added to the order. The list is told about the
+     * one new row only, so adding to a long order takes the same time as
+     * adding to a short one.
+     * @param index Position of the new item
+     */
+    public void itemAdded(int index) {
+        orderModel.itemAdded(index);
+        orderList.ensureIndexIsVisible(index);
+        updateTotal();
+    }
+    
+    /**
+     * Drops an item removed from the order
+     * @param index Position the item was at
+     */
+    public void itemRemoved(int index) {
+        orderModel.itemRemoved(index);
+        updateTotal();
+    }
+    
+    /**
+     * Redraws an item whose quantity changed
+     * @param index Position of the item
+     */
+    public void itemChanged(int index) {
+        orderModel.itemChanged(index);
+        updateTotal();
+    }
+    
+    /**
+     * Selects the radio button for the current order type
+     */
+    private void showOrderType() {
+        if (app.getOrderType().equals("Delivery")) {
+            deliveryRadio.setSelected(true);
         } else {
-            for (int i = 0; i < order.size(); i++) {
-                OrderItem item = order.get(i);
-                sb.append(String.format("%d. %s\n", i + 1, item.toString()));
+            pickupRadio.setSelected(true);
+        }
+    }
+    
+    /**
+     * Lets the cashier pick a parked order and switches to it
+     */
+    private void resumeParkedOrder() {
+        List<OrderSession> parked = app.getParkedOrders();
+        if (parked.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "There are no parked orders.",
+                                          "Resume Order", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        Object choice = JOptionPane.showInputDialog(this, "Choose an order to resume:", "Resume Order",
+                                                    JOptionPane.QUESTION_MESSAGE, null,
+                                                    parked.toArray(), parked.get(0));
+        if (choice != null && !app.resumeOrder((OrderSession) choice)) {
+            JOptionPane.showMessageDialog(this, "That order was resumed on another register.",
+                                          "Resume Order", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+    
+    /**
+     * Removes the selected line from the order
+     */
+    private void removeSelectedItem() {
+        int index = orderList.getSelectedIndex();
+        if (index >= 0) {
+            app.removeFromOrder(index);
+            if (orderModel.getSize() > 0) {
+                orderList.setSelectedIndex(Math.min(index, orderModel.getSize() - 1));
             }
         }
-        
-        orderDisplay.setText(sb.toString());
-        totalLabel.setText(String.format("Total: $%.2f", app.calculateTotal()));
+    }
+    
+    /**
+     * Enables the line controls when a line is selected and shows its quantity
+     */
+    private void updateItemControls() {
+        int index = orderList.getSelectedIndex();
+        boolean selected = index >= 0 && index < orderModel.getSize();
+        setQuantityButton.setEnabled(selected);
+        removeItemButton.setEnabled(selected);
+        itemQuantitySpinner.setEnabled(selected);
+        if (selected) {
+            int quantity = orderModel.getElementAt(index).getQuantity();
+            itemQuantitySpinner.setValue(Math.max(1, Math.min(99, quantity)));
+        }
+    }
+    
+    private void updateTotal() {
+        totalLabel.setText("Total: $" + PricingEngine.format(app.getSubtotalCents()));
+        displayedVersion = app.getOrderVersion();
+        showCurrentMenu();
+        updateItemControls();
     }
 }
 
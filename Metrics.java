@@ -0,0 +1,126 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.ObjectName;
+
+/**
+ * Metrics - Timings and counters for the register's slow-feeling steps
+ *
+ * The hot paths record into the static histograms and counters here:
+ *
+ *   long start = System.nanoTime();
+ *   ...
+ *   Metrics.CUSTOMER_FIND.recordSince(start);
+ *
+ * Recording is lock-free and allocates nothing (see LatencyHistogram), so
+ * it is always on. CUSTOMER_FIND, around lookups of tens of nanoseconds,
+ * samples rather than timing every call. register() publishes everything
+ * as a platform MXBean named OBJECT_NAME, for JConsole, VisualVM or any
+ * JMX client; nothing is summarized until a client asks.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public final class Metrics implements MetricsMXBean {
+    /** JMX name the metrics are published under */
+    public static final String OBJECT_NAME = "InfiniteDoughmain:type=Metrics";
+
+    /** CustomerManager.findCustomer, sampling one lookup in 32 */
+    public static final LatencyHistogram CUSTOMER_FIND = new LatencyHistogram("customerFind", 32);
+    /** CustomerManager.saveCustomer */
+    public static final LatencyHistogram CUSTOMER_SAVE = new LatencyHistogram("customerSave");
+    /** CustomerManager.findCustomersByPhonePrefix, the login typeahead */
+    public static final LatencyHistogram CUSTOMER_PREFIX_SEARCH = new LatencyHistogram("customerPrefixSearch");
+    /** CustomerManager.searchCustomers, name and address search */
+    public static final LatencyHistogram CUSTOMER_SEARCH = new LatencyHistogram("customerSearch");
+    /** LoginPanel.handleLogin, through showing the menu */
+    public static final LatencyHistogram LOGIN = new LatencyHistogram("login");
+    /** MenuPanel.addPizza, through updating the order list */
+    public static final LatencyHistogram ADD_PIZZA = new LatencyHistogram("addPizza");
+    /** OrderSummaryPanel.refresh */
+    public static final LatencyHistogram SUMMARY_REFRESH = new LatencyHistogram("summaryRefresh");
+
+    /** Logins for a phone number that is not on file */
+    public static final AtomicLong LOGINS_NOT_FOUND = new AtomicLong();
+    /** Orders saved to the order history */
+    public static final AtomicLong ORDERS_RECORDED = new AtomicLong();
+
+    private static final LatencyHistogram[] ALL = {
+        CUSTOMER_FIND, CUSTOMER_SAVE, CUSTOMER_PREFIX_SEARCH, CUSTOMER_SEARCH, LOGIN, ADD_PIZZA, SUMMARY_REFRESH};
+
+    private static boolean registered;
+
+    private Metrics() {
+    }
+
+    /**
+     * Publishes the metrics as a platform MXBean. Does nothing after the
+     * first call.
+     */
+    public static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Metrics(), new ObjectName(OBJECT_NAME));
+            registered = true;
+        } catch (Exception e) {
+            System.err.println("Error publishing metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Calls register() on a background thread, keeping the JMX classes
+     * off the startup path
+     */
+    public static void registerInBackground() {
+        Thread thread = new Thread(Metrics::register, "metrics-register");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override public LatencyHistogram.Snapshot getCustomerFind() { return CUSTOMER_FIND.snapshot(); }
+    @Override public LatencyHistogram.Snapshot getCustomerSave() { return CUSTOMER_SAVE.snapshot(); }
+    @Override public LatencyHistogram.Snapshot getCustomerPrefixSearch() { return CUSTOMER_PREFIX_SEARCH.snapshot(); }
+    @Override public LatencyHistogram.Snapshot getCustomerSearch() { return CUSTOMER_SEARCH.snapshot(); }
+    @Override public LatencyHistogram.Snapshot getLogin() { return LOGIN.snapshot(); }
+    @Override public LatencyHistogram.Snapshot getAddPizza() { return ADD_PIZZA.snapshot(); }
+    @Override public LatencyHistogram.Snapshot getSummaryRefresh() { return SUMMARY_REFRESH.snapshot(); }
+    @Override public long getLoginsNotFound() { return LOGINS_NOT_FOUND.get(); }
+    @Override public long getOrdersRecorded() { return ORDERS_RECORDED.get(); }
+
+    @Override
+    public int getCustomerCount() {
+        CustomerManager customers = CustomerManager.getSharedIfLoaded();
+        return customers != null ? customers.getCustomerCount() : -1;
+    }
+
+    @Override
+    public long getSearchIndexBytes() {
+        CustomerManager customers = CustomerManager.getSharedIfLoaded();
+        return customers != null ? customers.getSearchIndexMemoryBytes() : -1;
+    }
+
+    @Override
+    public int getOpenOrderSessions() {
+        return OrderSessionManager.getShared().size();
+    }
+
+    @Override
+    public int getParkedOrderSessions() {
+        return OrderSessionManager.getShared().getParkedSessions().size();
+    }
+
+    @Override
+    public long getKitchenOrdersSent() {
+        return KitchenQueue.getShared().getAddedCount();
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : ALL) {
+            histogram.reset();
+        }
+        LOGINS_NOT_FOUND.set(0);
+        ORDERS_RECORDED.set(0);
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * MetricsMXBean - What Metrics publishes over JMX
+ *
+ * Timings are summaries of a LatencyHistogram, in microseconds, with the
+ * one-minute rate in operations per second. Store sizes are read when
+ * asked for.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public interface MetricsMXBean {
+    // CustomerManager
+    LatencyHistogram.Snapshot getCustomerFind();
+    LatencyHistogram.Snapshot getCustomerSave();
+    LatencyHistogram.Snapshot getCustomerPrefixSearch();
+    LatencyHistogram.Snapshot getCustomerSearch();
+
+    // Register screens
+    LatencyHistogram.Snapshot getLogin();
+    LatencyHistogram.Snapshot getAddPizza();
+    LatencyHistogram.Snapshot getSummaryRefresh();
+
+    // Counters
+    long getLoginsNotFound();
+    long getOrdersRecorded();
+
+    // Store sizes
+    /** @return Customers on file, or -1 while the customer file is loading */
+    int getCustomerCount();
+    /** @return Heap used by the customer search index, or -1 while loading */
+    long getSearchIndexBytes();
+    int getOpenOrderSessions();
+    int getParkedOrderSessions();
+    long getKitchenOrdersSent();
+
+    /**
+     * Clears every timing and counter
+     */
+    void reset();
+}
@@ -0,0 +1,525 @@
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * OrderApiServer - Headless HTTP API for taking orders without the Swing UI
+ *
+ * Online and phone-app orders go through the same CustomerManager,
+ * PricingEngine and OrderJournal as the registers. Requests and responses
+ * are JSON (see Json) and all amounts are whole cents.
+ *
+ *   GET  /api/menu                     Menu with prices
+ *   GET  /api/customers/{phone}        One customer, or 404
+ *   GET  /api/customers?q=text&limit=n Typo-tolerant name/address search
+ *   POST /api/customers                Register or update a customer
+ *   POST /api/orders/price             Price a list of items
+ *   POST /api/orders                   Price and record an order
+ *
+ * Items are objects such as {"type":"pizza","size":"Large","crust":
+ * "Thin Crust","toppings":["Pepperoni"],"quantity":2} or {"type":
+ * "beverage","beverage":"Coke","size":"Large (2L)"}. Menu choices may be
+ * given by name (any case) or by index. Each request is priced from the
+ * menu current when it arrives, even if the menu file is reloaded while
+ * it runs.
+ *
+ * Each request runs on its own virtual thread when the JVM has them (Java
+ * 21 and later), found through reflection so the code still builds on
+ * JDK 11; otherwise requests share a fixed pool of platform threads.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class OrderApiServer {
+    /** System property overriding the port of the headless API */
+    public static final String PORT_PROPERTY = "pizza.apiPort";
+
+    private static final int FALLBACK_THREADS = 64;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int MAX_ITEMS = 500;
+    private static final int DEFAULT_SEARCH_LIMIT = 10;
+
+    static {
+        // The JDK server writes headers and body separately; without this,
+        // Nagle's algorithm holds the body back until the client's delayed
+        // ACK, adding about 40 ms to every response
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final CustomerManager customers;
+    private final OrderJournal journal;
+    private final PrintSpooler kitchenPrinter;
+    private final KitchenQueue kitchen;
+    private final MenuManager menus = MenuManager.getShared();
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Constructor - Binds the server; call start() to begin serving
+     * @param port Port to listen on, or 0 for any free port
+     * @param customers Customer storage
+     * @param journal Order history, or null to price orders without recording them
+     * @param kitchenPrinter Spooler for kitchen tickets, or null for none
+     * @throws IOException If the port cannot be bound
+     */
+    public OrderApiServer(int port, CustomerManager customers, OrderJournal journal, PrintSpooler kitchenPrinter)
+            throws IOException {
+        this(port, customers, journal, kitchenPrinter, null);
+    }
+
+    /**
+     * Constructor - Binds the server; call start() to begin serving
+     * @param port Port to listen on, or 0 for any free port
+     * @param customers Customer storage
+     * @param journal Order history, or null to price orders without recording them
+     * @param kitchenPrinter Spooler for kitchen tickets, or null for none
+     * @param kitchen Queue feeding a kitchen display, or null for none
+     * @throws IOException If the port cannot be bound
+     */
+    public OrderApiServer(int port, CustomerManager customers, OrderJournal journal, PrintSpooler kitchenPrinter,
+                          KitchenQueue kitchen) throws IOException {
+        this.customers = customers;
+        this.journal = journal;
+        this.kitchenPrinter = kitchenPrinter;
+        this.kitchen = kitchen;
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        executor = newExecutor();
+        server.setExecutor(executor);
+        server.createContext("/api/menu", exchange -> handle(exchange, "GET", this::menu));
+        server.createContext("/api/customers", exchange ->
+            handle(exchange, "POST".equals(exchange.getRequestMethod()) ? "POST" : "GET", this::customers));
+        server.createContext("/api/orders/price", exchange -> handle(exchange, "POST", this::price));
+        server.createContext("/api/orders", exchange -> handle(exchange, "POST", this::order));
+    }
+
+    /**
+     * Starts serving requests
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops serving, giving requests in progress up to a second to finish
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    /**
+     * Gets the port the server is bound to
+     * @return Port number
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Creates a virtual-thread-per-request executor if the JVM has one,
+     * otherwise a fixed pool
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(FALLBACK_THREADS, task -> {
+                Thread thread = new Thread(task, "order-api");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Handles one endpoint: the result is a status and a JSON body
+     */
+    private interface Endpoint {
+        int respond(HttpExchange exchange, Json.Writer out) throws IOException;
+    }
+
+    private void handle(HttpExchange exchange, String method, Endpoint endpoint) throws IOException {
+        Json.Writer out = new Json.Writer();
+        int status;
+        try {
+            if (!method.equals(exchange.getRequestMethod())) {
+                status = error(out, 405, "Use " + method);
+            } else {
+                status = endpoint.respond(exchange, out);
+            }
+        } catch (IllegalArgumentException | ClassCastException e) {
+            out = new Json.Writer();
+            status = error(out, 400, e.getMessage());
+        } catch (Exception e) {
+            System.err.println("Error handling " + exchange.getRequestURI() + ": " + e.getMessage());
+            out = new Json.Writer();
+            status = error(out, 500, "Internal error");
+        }
+        byte[] body = out.toBytes();
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream stream = exchange.getResponseBody()) {
+            stream.write(body);
+        }
+    }
+
+    private static int error(Json.Writer out, int status, String message) {
+        out.beginObject().field("error", message).endObject();
+        return status;
+    }
+
+    // ---- Endpoints ----
+
+    private int menu(HttpExchange exchange, Json.Writer out) {
+        Menu menu = menus.getMenu();
+        PricingEngine pricing = menu.getPricing();
+        out.beginObject().field("version", menu.getVersion());
+        out.name("sizes").beginArray();
+        for (int i = 0; i < menu.getCount(Menu.Section.SIZE); i++) {
+            out.beginObject().field("name", menu.getName(Menu.Section.SIZE, i))
+               .field("cents", pricing.sizeCents(i)).endObject();
+        }
+        out.endArray().name("crusts").beginArray();
+        for (int i = 0; i < menu.getCount(Menu.Section.CRUST); i++) {
+            out.beginObject().field("name", menu.getName(Menu.Section.CRUST, i))
+               .field("cents", pricing.crustCents(i)).endObject();
+        }
+        out.endArray().name("toppings").beginArray();
+        for (int i = 0; i < menu.getCount(Menu.Section.TOPPING); i++) {
+            out.value(menu.getName(Menu.Section.TOPPING, i));
+        }
+        out.endArray().field("toppingCents", menu.getToppingCents()).field("maxToppings", menu.getMaxToppings());
+        out.name("beverages").beginArray();
+        for (int i = 0; i < menu.getCount(Menu.Section.BEVERAGE); i++) {
+            out.value(menu.getName(Menu.Section.BEVERAGE, i));
+        }
+        out.endArray().name("beverageSizes").beginArray();
+        for (int i = 0; i < menu.getCount(Menu.Section.BEVERAGE_SIZE); i++) {
+            out.beginObject().field("name", menu.getName(Menu.Section.BEVERAGE_SIZE, i))
+               .field("cents", pricing.beverageCents(i)).endObject();
+        }
+        out.endArray().endObject();
+        return 200;
+    }
+
+    private int customers(HttpExchange exchange, Json.Writer out) throws IOException {
+        if ("POST".equals(exchange.getRequestMethod())) {
+            return register(readObject(exchange), out);
+        }
+        String path = exchange.getRequestURI().getPath();
+        String prefix = "/api/customers/";
+        if (path.startsWith(prefix) && path.length() > prefix.length()) {
+            Customer customer = customers.findCustomer(path.substring(prefix.length()));
+            if (customer == null) {
+                return error(out, 404, "No customer with that phone number");
+            }
+            writeCustomer(out, customer);
+            return 200;
+        }
+
+        Map<String, String> query = query(exchange.getRequestURI());
+        String text = query.get("q");
+        if (text == null || text.isBlank()) {
+            return error(out, 400, "Give a phone number in the path or a search with ?q=");
+        }
+        if (!customers.isSearchEnabled()) {
+            return error(out, 501, "Customer search is off; start with -D" + CustomerManager.SEARCH_PROPERTY + "=on");
+        }
+        int limit = Math.min(100, parseInt(query.getOrDefault("limit", ""), DEFAULT_SEARCH_LIMIT));
+        out.beginObject().name("customers").beginArray();
+        for (Customer customer : customers.searchCustomers(text, limit)) {
+            writeCustomer(out, customer);
+        }
+        out.endArray().endObject();
+        return 200;
+    }
+
+    private int register(Map<String, Object> body, Json.Writer out) {
+        String phone = requiredText(body, "phone");
+        long key = PhoneKey.of(phone);
+        if (key == PhoneKey.EMPTY) {
+            return error(out, 400, "Phone number has no digits");
+        }
+        if (key == PhoneKey.INVALID) {
+            return error(out, 400, "Phone number can have at most " + PhoneKey.MAX_DIGITS + " digits");
+        }
+        Customer customer = new Customer(phone, requiredText(body, "name"), requiredText(body, "address"),
+                                         requiredText(body, "city"), requiredText(body, "state"),
+                                         requiredText(body, "zip"), text(body, "subdivision"),
+                                         text(body, "intersection"), text(body, "chargeAccountType"),
+                                         text(body, "cardLast4"));
+        boolean existed = customers.customerExists(phone);
+        customers.saveCustomer(customer);
+        writeCustomer(out, customer);
+        return existed ? 200 : 201;
+    }
+
+    private int price(HttpExchange exchange, Json.Writer out) throws IOException {
+        List<OrderItem> items = items(readObject(exchange));
+        out.beginObject();
+        writeTotals(out, items, subtotal(items));
+        out.endObject();
+        return 200;
+    }
+
+    private int order(HttpExchange exchange, Json.Writer out) throws IOException {
+        Map<String, Object> body = readObject(exchange);
+        String phone = requiredText(body, "phone");
+        Customer customer = customers.findCustomer(phone);
+        if (customer == null) {
+            return error(out, 404, "Register the customer before ordering");
+        }
+        String orderType = choice(body.getOrDefault("orderType", "Pickup"), new String[] {"Pickup", "Delivery"},
+                                  "orderType") == 0 ? "Pickup" : "Delivery";
+        String[] payments = {"Cash", "Check", "Credit"};
+        String paymentType = payments[choice(body.getOrDefault("paymentType", "Cash"), payments, "paymentType")];
+        long paymentCents = number(body.getOrDefault("paymentCents", 0L), "paymentCents");
+        List<OrderItem> items = items(body);
+        if (items.isEmpty()) {
+            throw new IllegalArgumentException("An order needs at least one item");
+        }
+        long subtotal = subtotal(items);
+
+        long orderId = -1;
+        if (journal != null) {
+            OrderRecord record = new OrderRecord(System.currentTimeMillis(), orderType, paymentType,
+                                                 paymentCents, items);
+            orderId = journal.append(PhoneKey.of(customer.getPhone()), record);
+            Metrics.ORDERS_RECORDED.incrementAndGet();
+        }
+        if (kitchenPrinter != null) {
+            kitchenPrinter.submit(PrintJob.kitchenTicket(orderType, customer.getName(), items));
+        }
+        if (kitchen != null) {
+            kitchen.offer(new KitchenOrder(customer.getName(), orderType, items, System.currentTimeMillis()));
+        }
+
+        long total = subtotal + PricingEngine.taxCents(subtotal);
+        out.beginObject().field("orderId", orderId).field("orderType", orderType)
+           .field("paymentType", paymentType);
+        writeTotals(out, items, subtotal);
+        out.field("changeCents", Math.max(0, paymentCents - total)).endObject();
+        return 201;
+    }
+
+    // ---- Reading requests ----
+
+    /**
+     * Builds priced order items from the "items" array of a request
+     */
+    private List<OrderItem> items(Map<String, Object> body) {
+        Menu menu = menus.getMenu();
+        PricingEngine pricing = menu.getPricing();
+        Object value = body.get("items");
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException("items must be an array");
+        }
+        List<?> list = (List<?>) value;
+        if (list.size() > MAX_ITEMS) {
+            throw new IllegalArgumentException("At most " + MAX_ITEMS + " items per order");
+        }
+        List<OrderItem> items = new ArrayList<>(list.size());
+        for (Object entry : list) {
+            if (!(entry instanceof Map)) {
+                throw new IllegalArgumentException("Each item must be an object");
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> item = (Map<String, Object>) entry;
+            int quantity = (int) Math.min(Integer.MAX_VALUE, number(item.getOrDefault("quantity", 1L), "quantity"));
+            if (quantity < 1 || quantity > OrderItem.MAX_QUANTITY) {
+                throw new IllegalArgumentException("quantity must be between 1 and " + OrderItem.MAX_QUANTITY);
+            }
+            String type = requiredText(item, "type");
+            if (type.equalsIgnoreCase("pizza")) {
+                int size = choice(item.get("size"), menu, Menu.Section.SIZE);
+                int crust = choice(item.getOrDefault("crust", 0L), menu, Menu.Section.CRUST);
+                int mask = 0;
+                Object toppings = item.getOrDefault("toppings", Collections.emptyList());
+                if (!(toppings instanceof List)) {
+                    throw new IllegalArgumentException("toppings must be an array");
+                }
+                for (Object topping : (List<?>) toppings) {
+                    mask |= 1 << choice(topping, menu, Menu.Section.TOPPING);
+                }
+                int count = Integer.bitCount(mask);
+                if (count > menu.getMaxToppings()) {
+                    throw new IllegalArgumentException("At most " + menu.getMaxToppings() + " toppings per pizza");
+                }
+                items.add(OrderItem.pizza(menu, size, crust, mask, pricing.pizzaCents(size, crust, count), quantity));
+            } else if (type.equalsIgnoreCase("beverage")) {
+                int beverage = choice(item.get("beverage"), menu, Menu.Section.BEVERAGE);
+                int size = choice(item.get("size"), menu, Menu.Section.BEVERAGE_SIZE);
+                items.add(OrderItem.beverage(menu, beverage, size, pricing.beverageCents(size), quantity));
+            } else {
+                throw new IllegalArgumentException("Unknown item type " + type);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Finds a menu choice given by index or by name
+     */
+    private static int choice(Object value, String[] names, String field) {
+        if (value instanceof Long) {
+            long index = (Long) value;
+            if (index >= 0 && index < names.length) {
+                return (int) index;
+            }
+        } else if (value instanceof String) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equalsIgnoreCase((String) value)) {
+                    return i;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unknown " + field + ": " + value);
+    }
+
+    /**
+     * Finds a menu entry given by index or by name, using the menu's index
+     */
+    private static int choice(Object value, Menu menu, Menu.Section section) {
+        if (value instanceof Long) {
+            long index = (Long) value;
+            if (index >= 0 && index < menu.getCount(section)) {
+                return (int) index;
+            }
+        } else if (value instanceof String) {
+            int index = menu.find(section, (String) value);
+            if (index >= 0) {
+                return index;
+            }
+        }
+        throw new IllegalArgumentException("Unknown " + section.getKey() + ": " + value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> readObject(HttpExchange exchange) throws IOException {
+        byte[] bytes;
+        try (InputStream in = exchange.getRequestBody()) {
+            bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+        }
+        if (bytes.length > MAX_BODY_BYTES) {
+            throw new IllegalArgumentException("Request body is too large");
+        }
+        Object body = Json.parse(new String(bytes, StandardCharsets.UTF_8));
+        if (!(body instanceof Map)) {
+            throw new IllegalArgumentException("Request body must be a JSON object");
+        }
+        return (Map<String, Object>) body;
+    }
+
+    private static String text(Map<String, Object> body, String field) {
+        Object value = body.get(field);
+        if (value != null && !(value instanceof String)) {
+            throw new IllegalArgumentException(field + " must be a string");
+        }
+        return value == null ? "" : ((String) value).trim();
+    }
+
+    private static String requiredText(Map<String, Object> body, String field) {
+        String value = text(body, field);
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException(field + " is required");
+        }
+        return value;
+    }
+
+    private static long number(Object value, String field) {
+        if (!(value instanceof Long)) {
+            throw new IllegalArgumentException(field + " must be a whole number");
+        }
+        return (Long) value;
+    }
+
+    private static Map<String, String> query(URI uri) {
+        Map<String, String> query = new HashMap<>();
+        String raw = uri.getRawQuery();
+        if (raw == null) {
+            return query;
+        }
+        for (String pair : raw.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                          URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static int parseInt(String text, int otherwise) {
+        try {
+            return Math.max(1, Integer.parseInt(text));
+        } catch (NumberFormatException e) {
+            return otherwise;
+        }
+    }
+
+    // ---- Writing responses ----
+
+    private static long subtotal(List<OrderItem> items) {
+        long subtotal = 0;
+        for (OrderItem item : items) {
+            subtotal = Math.addExact(subtotal, item.getTotalCents());
+        }
+        return subtotal;
+    }
+
+    private static void writeTotals(Json.Writer out, List<OrderItem> items, long subtotal) {
+        long tax = PricingEngine.taxCents(subtotal);
+        out.name("items").beginArray();
+        for (OrderItem item : items) {
+            out.beginObject().field("description", item.getDescription()).field("quantity", item.getQuantity())
+               .field("unitCents", item.getUnitCents()).field("totalCents", item.getTotalCents()).endObject();
+        }
+        out.endArray().field("subtotalCents", subtotal).field("taxCents", tax).field("totalCents", subtotal + tax);
+    }
+
+    private static void writeCustomer(Json.Writer out, Customer customer) {
+        out.beginObject().field("phone", customer.getPhone()).field("name", customer.getName())
+           .field("address", customer.getAddress()).field("city", customer.getCity())
+           .field("state", customer.getState()).field("zip", customer.getZip())
+           .field("subdivision", customer.getSubdivision()).field("intersection", customer.getIntersection())
+           .field("chargeAccountType", customer.getChargeAccountType()).endObject();
+    }
+
+    /**
+     * Runs the API with the shared customer manager and order history
+     * @param port Port to listen on
+     * @return The running server
+     * @throws IOException If the server cannot start
+     */
+    public static OrderApiServer startShared(int port) throws IOException {
+        return startShared(port, null);
+    }
+
+    /**
+     * Runs the API with the shared customer manager and order history
+     * @param port Port to listen on
+     * @param kitchen Queue feeding a kitchen display in this JVM, or null for none
+     * @return The running server
+     * @throws IOException If the server cannot start
+     */
+    public static OrderApiServer startShared(int port, KitchenQueue kitchen) throws IOException {
+        OrderJournal journal = null;
+        try {
+            journal = OrderJournal.getShared();
+        } catch (IOException e) {
+            System.err.println("Error opening order history: " + e.getMessage());
+        }
+        boolean printing = System.getProperty(PrintSpooler.KITCHEN_PRINTER_PROPERTY) != null
+                        || System.getProperty(PrintSpooler.PRINTER_PROPERTY) != null;
+        OrderApiServer api = new OrderApiServer(port, CustomerManager.getShared(), journal,
+                                                printing ? PrintSpooler.getShared() : null, kitchen);
+        api.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(api::stop, "order-api-stop"));
+        return api;
+    }
+}
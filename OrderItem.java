@@ -1,49 +1,375 @@
 /**
  * OrderItem class - Represents an item in an order
  * 
+ * An item is one packed long rather than a block of text: pizzas keep
+ * their size and crust as ordinals and their toppings as a bitmask over
+ * the menu's toppings, beverages keep their beverage and size ordinals,
+ * and every item keeps its quantity and unit price in cents. The
+ * description shown to people is built from those only when asked for,
+ * using the Menu the item was ordered from, so reloading the menu never
+ * renames an item already ordered. Items that do not come from the menu
+ * keep a free-text description instead.
+ * 
+ * Bit layout, lowest bits first:
+ *   kind:2, size:4, crust:4, choice:16 (topping mask or beverage),
+ *   quantity:16, unit cents:22
+ * A custom item has no size, crust or choice; bit 0 of its choice is set
+ * when it stands in for a pizza or beverage that left the menu.
+ * 
  * @author Infinite Doughmain Team
  * @version 2.0
  */
 public class OrderItem {
-    private String description;
-    private double price;
-    private int quantity;
+    /**
+     * What an item is
+     */
+    public enum Kind { CUSTOM, PIZZA, BEVERAGE }
+    
+    /** Largest quantity an item can hold */
+    public static final int MAX_QUANTITY = 0xFFFF;
+    /** Largest unit price an item can hold, in cents */
+    public static final long MAX_UNIT_CENTS = (1L << 22) - 1;
+    
+    private static final int KIND_SHIFT = 0;
+    private static final int SIZE_SHIFT = 2;
+    private static final int CRUST_SHIFT = 6;
+    private static final int CHOICE_SHIFT = 10;
+    private static final int QUANTITY_SHIFT = 26;
+    private static final int CENTS_SHIFT = 42;
+    private static final Kind[] KINDS = Kind.values();
+    private static final int OFF_MENU = 1; // Choice of a custom item standing in for one that left the menu
+    
+    private final long bits;
+    private final Object detail; // Description (String) of a custom item, otherwise its Menu
+    
+    /**
+     * Constructor - A custom item with its own description
+     * @param description Item description
+     * @param unitCents Price of one item in cents
+     * @param quantity Item quantity
+     */
+    public OrderItem(String description, long unitCents, int quantity) {
+        this(pack(Kind.CUSTOM, 0, 0, 0, unitCents, quantity), description);
+    }
     
     /**
-     * Constructor
+     * Constructor - A custom item with its own description
      * @param description Item description
-     * @param price Item price
+     * @param price Item price in dollars, rounded to the nearest cent
      * @param quantity Item quantity
      */
     public OrderItem(String description, double price, int quantity) {
-        this.description = description;
-        this.price = price;
-        this.quantity = quantity;
+        this(description, PricingEngine.toCents(price), quantity);
+    }
+    
+    private OrderItem(long bits, Object detail) {
+        this.bits = bits;
+        this.detail = detail;
+    }
+    
+    /**
+     * Creates a pizza from the current menu
+     * @param size Position in the menu's sizes
+     * @param crust Position in the menu's crusts
+     * @param toppingMask Bit i set for topping i of the menu
+     * @param unitCents Price of one pizza in cents
+     * @param quantity Number of pizzas
+     * @return The item
+     */
+    public static OrderItem pizza(int size, int crust, int toppingMask, long unitCents, int quantity) {
+        return pizza(MenuManager.getShared().getMenu(), size, crust, toppingMask, unitCents, quantity);
+    }
+    
+    /**
+     * Creates a pizza
+     * @param menu Menu the pizza is ordered from
+     * @param size Position in the menu's sizes
+     * @param crust Position in the menu's crusts
+     * @param toppingMask Bit i set for topping i of the menu
+     * @param unitCents Price of one pizza in cents
+     * @param quantity Number of pizzas
+     * @return The item
+     */
+    public static OrderItem pizza(Menu menu, int size, int crust, int toppingMask, long unitCents, int quantity) {
+        return new OrderItem(pack(Kind.PIZZA, size, crust, toppingMask, unitCents, quantity), menu);
+    }
+    
+    /**
+     * Creates a beverage from the current menu
+     * @param beverage Position in the menu's beverages
+     * @param size Position in the menu's beverage sizes
+     * @param unitCents Price of one beverage in cents
+     * @param quantity Number of beverages
+     * @return The item
+     */
+    public static OrderItem beverage(int beverage, int size, long unitCents, int quantity) {
+        return beverage(MenuManager.getShared().getMenu(), beverage, size, unitCents, quantity);
+    }
+    
+    /**
+     * Creates a beverage
+     * @param menu Menu the beverage is ordered from
+     * @param beverage Position in the menu's beverages
+     * @param size Position in the menu's beverage sizes
+     * @param unitCents Price of one beverage in cents
+     * @param quantity Number of beverages
+     * @return The item
+     */
+    public static OrderItem beverage(Menu menu, int beverage, int size, long unitCents, int quantity) {
+        return new OrderItem(pack(Kind.BEVERAGE, size, 0, beverage, unitCents, quantity), menu);
+    }
+    
+    /**
+     * Recreates a pizza or beverage from its packed form, described by the
+     * current menu
+     * @param bits Value returned by toBits()
+     * @return The item
+     * @throws IllegalArgumentException If the bits are not a pizza or beverage
+     */
+    public static OrderItem fromBits(long bits) {
+        return fromBits(bits, MenuManager.getShared().getMenu());
+    }
+    
+    /**
+     * Recreates a pizza or beverage from its packed form. If its size,
+     * crust, a topping or the beverage is not on the menu, it comes back as
+     * a custom item saying so, with its price and quantity.
+     * @param bits Value returned by toBits()
+     * @param menu Menu the item was ordered from
+     * @return The item
+     * @throws IllegalArgumentException If the bits are not a pizza or beverage
+     */
+    public static OrderItem fromBits(long bits, Menu menu) {
+        Kind kind = kindOf(bits);
+        if (kind == Kind.CUSTOM) {
+            throw new IllegalArgumentException("Custom items need their description");
+        }
+        OrderItem item = new OrderItem(bits, menu);
+        if (!item.isOnMenu(menu)) {
+            String description = (kind == Kind.PIZZA ? "Pizza" : "Beverage") + " no longer on the menu";
+            return new OrderItem(pack(Kind.CUSTOM, 0, 0, OFF_MENU, item.getUnitCents(), item.getQuantity()),
+                                 description);
+        }
+        return item;
+    }
+    
+    /**
+     * Recreates any item from its packed form; pizzas and beverages are
+     * described by the current menu
+     * @param bits Value returned by toBits()
+     * @param description Description of a custom item, ignored for other kinds
+     * @return The item
+     */
+    public static OrderItem fromBits(long bits, String description) {
+        return kindOf(bits) == Kind.CUSTOM ? new OrderItem(bits, description) : fromBits(bits);
+    }
+    
+    /**
+     * Copies this item with a different quantity
+     * @param quantity New number of items
+     * @return The item
+     * @throws IllegalArgumentException If quantity is out of range
+     */
+    public OrderItem withQuantity(int quantity) {
+        if (quantity < 0 || quantity > MAX_QUANTITY) {
+            throw new IllegalArgumentException("Quantity must be between 0 and " + MAX_QUANTITY);
+        }
+        return new OrderItem((bits & ~(0xFFFFL << QUANTITY_SHIFT)) | ((long) quantity << QUANTITY_SHIFT), detail);
+    }
+    
+    /**
+     * Copies this item onto another menu at that menu's price. The size,
+     * crust, toppings or beverage are found on that menu by name, so an
+     * item from an older menu still matches after entries are added or
+     * prices change. Custom items are returned as they are, except those
+     * fromBits() made for items that had left the menu.
+     * @param target Menu to take positions and prices from
+     * @return The item, or null if something in it is not on the menu
+     */
+    public OrderItem repricedFor(Menu target) {
+        Kind kind = getKind();
+        if (kind == Kind.CUSTOM) {
+            return isOffMenu() ? null : this;
+        }
+        Menu menu = (Menu) detail;
+        PricingEngine pricing = target.getPricing();
+        if (kind == Kind.BEVERAGE) {
+            int beverage = target.find(Menu.Section.BEVERAGE, menu.getName(Menu.Section.BEVERAGE, getBeverage()));
+            int size = target.find(Menu.Section.BEVERAGE_SIZE, menu.getName(Menu.Section.BEVERAGE_SIZE, getSize()));
+            if (beverage < 0 || size < 0) {
+                return null;
+            }
+            return beverage(target, beverage, size, pricing.beverageCents(size), getQuantity());
+        }
+        int size = target.find(Menu.Section.SIZE, menu.getName(Menu.Section.SIZE, getSize()));
+        int crust = target.find(Menu.Section.CRUST, menu.getName(Menu.Section.CRUST, getCrust()));
+        int toppingMask = 0;
+        for (int mask = getToppingMask(); mask != 0; mask &= mask - 1) {
+            int topping = target.find(Menu.Section.TOPPING,
+                                      menu.getName(Menu.Section.TOPPING, Integer.numberOfTrailingZeros(mask)));
+            if (topping < 0) {
+                return null;
+            }
+            toppingMask |= 1 << topping;
+        }
+        if (size < 0 || crust < 0) {
+            return null;
+        }
+        return pizza(target, size, crust, toppingMask, pricing.pizzaCents(size, crust, Integer.bitCount(toppingMask)),
+                     getQuantity());
+    }
+    
+    /**
+     * Gets the packed form of this item, which holds everything but a
+     * custom item's description
+     * @return Packed item
+     */
+    public long toBits() {
+        return bits;
     }
     
     /**
      * Gets the total price for this item (price * quantity)
-     * @return Total price
+     * @return Total price in cents
+     */
+    public long getTotalCents() {
+        return PricingEngine.lineCents(getUnitCents(), getQuantity());
+    }
+    
+    /**
+     * Gets the unit price
+     * @return Unit price in cents
+     */
+    public long getUnitCents() {
+        return bits >>> CENTS_SHIFT;
+    }
+    
+    /**
+     * Gets the total price for this item (price * quantity)
+     * @return Total price in dollars
      */
     public double getPrice() {
-        return price * quantity;
+        return getTotalCents() / 100.0;
     }
     
     /**
      * Gets the unit price
-     * @return Unit price
+     * @return Unit price in dollars
      */
     public double getUnitPrice() {
-        return price;
+        return getUnitCents() / 100.0;
+    }
+    
+    // Getters for the packed fields
+    public Kind getKind() { return kindOf(bits); }
+    public int getQuantity() { return (int) (bits >>> QUANTITY_SHIFT) & 0xFFFF; }
+    public int getSize() { return (int) (bits >>> SIZE_SHIFT) & 0xF; }
+    public int getCrust() { return (int) (bits >>> CRUST_SHIFT) & 0xF; }
+    public int getToppingMask() { return getKind() == Kind.PIZZA ? choice() : 0; }
+    public int getToppingCount() { return Integer.bitCount(getToppingMask()); }
+    public int getBeverage() { return getKind() == Kind.BEVERAGE ? choice() : -1; }
+    
+    /**
+     * Gets the menu this item was ordered from
+     * @return The Menu, or null for a custom item
+     */
+    public Menu getMenu() {
+        return detail instanceof Menu ? (Menu) detail : null;
     }
     
-    // Getters
-    public String getDescription() { return description; }
-    public int getQuantity() { return quantity; }
+    /**
+     * Checks whether this is the custom item fromBits() makes for a pizza
+     * or beverage that is no longer on its menu
+     * @return True if it stands in for an item that left the menu
+     */
+    public boolean isOffMenu() {
+        return getKind() == Kind.CUSTOM && (choice() & OFF_MENU) != 0;
+    }
+    
+    /**
+     * Checks that every choice in this item is on a menu
+     * @param menu Menu to check against
+     * @return True for a custom item, or a pizza or beverage the menu can describe
+     */
+    public boolean isOnMenu(Menu menu) {
+        switch (getKind()) {
+            case PIZZA:
+                return getSize() < menu.getCount(Menu.Section.SIZE) && getCrust() < menu.getCount(Menu.Section.CRUST)
+                    && getToppingMask() >>> menu.getCount(Menu.Section.TOPPING) == 0;
+            case BEVERAGE:
+                return getBeverage() < menu.getCount(Menu.Section.BEVERAGE)
+                    && getSize() < menu.getCount(Menu.Section.BEVERAGE_SIZE);
+            default:
+                return true;
+        }
+    }
+    
+    /**
+     * Builds the description shown on screen and on receipts
+     * @return Item description
+     */
+    public String getDescription() {
+        return getKind() == Kind.CUSTOM ? (String) detail : appendDescription(new StringBuilder()).toString();
+    }
+    
+    /**
+     * Appends the description to a builder without creating a String
+     * @param sb Builder to append to
+     * @return The builder
+     */
+    public StringBuilder appendDescription(StringBuilder sb) {
+        switch (getKind()) {
+            case PIZZA: {
+                Menu menu = (Menu) detail;
+                sb.append(menu.getName(Menu.Section.SIZE, getSize())).append(' ')
+                  .append(menu.getName(Menu.Section.CRUST, getCrust())).append(" Pizza");
+                String separator = " with ";
+                for (int mask = getToppingMask(); mask != 0; mask &= mask - 1) {
+                    sb.append(separator).append(menu.getName(Menu.Section.TOPPING, Integer.numberOfTrailingZeros(mask)));
+                    separator = ", ";
+                }
+                return sb;
+            }
+            case BEVERAGE: {
+                Menu menu = (Menu) detail;
+                return sb.append(menu.getName(Menu.Section.BEVERAGE_SIZE, getSize())).append(' ')
+                         .append(menu.getName(Menu.Section.BEVERAGE, getBeverage()));
+            }
+            default:
+                return sb.append((String) detail);
+        }
+    }
     
     @Override
     public String toString() {
-        return String.format("%s x%d - $%.2f", description, quantity, getPrice());
+        return getDescription() + " x" + getQuantity() + " - $" + PricingEngine.format(getTotalCents());
+    }
+    
+    private int choice() {
+        return (int) (bits >>> CHOICE_SHIFT) & 0xFFFF;
+    }
+    
+    /**
+     * Reads the kind of a packed item
+     * @param bits Value returned by toBits()
+     * @return Kind of item
+     */
+    public static Kind kindOf(long bits) {
+        return KINDS[(int) (bits >>> KIND_SHIFT) & 0x3];
+    }
+    
+    private static long pack(Kind kind, int size, int crust, int choice, long unitCents, int quantity) {
+        if (size < 0 || size > 0xF || crust < 0 || crust > 0xF || choice < 0 || choice > 0xFFFF) {
+            throw new IllegalArgumentException("Menu choice out of range");
+        }
+        if (quantity < 0 || quantity > MAX_QUANTITY) {
+            throw new IllegalArgumentException("Quantity must be between 0 and " + MAX_QUANTITY);
+        }
+        if (unitCents < 0 || unitCents > MAX_UNIT_CENTS) {
+            throw new IllegalArgumentException("Unit price must be between $0.00 and $"
+                                               + PricingEngine.format(MAX_UNIT_CENTS));
+        }
+        return ((long) kind.ordinal() << KIND_SHIFT) | ((long) size << SIZE_SHIFT) | ((long) crust << CRUST_SHIFT)
+             | ((long) choice << CHOICE_SHIFT) | ((long) quantity << QUANTITY_SHIFT) | (unitCents << CENTS_SHIFT);
     }
 }
-
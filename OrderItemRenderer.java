@@ -0,0 +1,40 @@
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * OrderItemRenderer - Draws one line of the current order
+ *
+ * A JList asks the renderer only for the rows it is painting, so a long
+ * order costs no more to draw than a short one. Use configure() to give
+ * the list fixed row sizes as well; otherwise the list measures every row
+ * each time the order changes.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class OrderItemRenderer extends DefaultListCellRenderer {
+    private static final OrderItem PROTOTYPE =
+        new OrderItem("XL Hand-Tossed Pizza with Pepperoni, Sausage, Green Peppers, Extra Cheese", 99_999, 10);
+
+    /**
+     * Installs this renderer on a list and fixes its row height and width,
+     * so the list can place any row without measuring the others
+     * @param list List of order items
+     */
+    public void configure(JList<OrderItem> list) {
+        list.setCellRenderer(this);
+        list.setPrototypeCellValue(PROTOTYPE);
+    }
+
+    @Override
+    public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                  boolean isSelected, boolean cellHasFocus) {
+        super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+        if (value == PROTOTYPE) {
+            setText("999. " + value);
+        } else if (value != null) {
+            setText((index + 1) + ". " + value);
+        }
+        return this;
+    }
+}
@@ -0,0 +1,641 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * OrderJournal - Append-only history of finalized orders
+ *
+ * Every order is appended to orders.journal and forced to disk before
+ * append() returns. Each record carries the offset of the same customer's
+ * previous order, and an in-memory table maps each customer to the offset
+ * of their latest order, so the last N orders of a customer are one table
+ * lookup plus N positioned reads however long the journal grows.
+ *
+ * The table is saved to orders.heads every HEADS_EVERY orders and on
+ * close, together with the journal length it covers. On open only the
+ * journal beyond that length is scanned, and a torn record at the end is
+ * cut off.
+ *
+ * Packed items only hold positions in the menu, so each record names the
+ * menu its items were ordered from by the menu's fingerprint, and the
+ * names of every menu used are kept in orders.menus. Orders are read back
+ * against the menu they were taken from, however the menu file has
+ * changed since. An item whose menu is unknown is read against the current
+ * menu, and becomes a custom item saying it is no longer on the menu if
+ * the current menu has nothing at its position.
+ *
+ * Journal layout (big-endian):
+ *   header: u32 magic "IDOJ", u16 version, u16 reserved
+ *   record: u32 payload length, u32 CRC32 of payload, payload
+ *   payload: u64 customer key, u64 previous order offset (-1 if none),
+ *            u64 time millis, utf order type, utf payment type,
+ *            u64 payment cents, u32 menu fingerprint (0 if none),
+ *            u16 item count,
+ *            items: u64 packed OrderItem, utf description (custom items only)
+ *
+ * Menus file layout: the same header with magic "IDOM", then records of
+ * u32 payload length, u32 CRC32 of payload and a payload of u32 menu
+ * fingerprint followed by, for each menu section, u16 count and utf names.
+ *
+ * Version 1 journals stored each item as utf description, u64 unit price
+ * cents and u32 quantity, and version 2 journals had no menu fingerprint.
+ * Both are rewritten in the current format the first time they are
+ * opened: version 1 items become custom items, and version 2 items are
+ * read against the menu in use at the time.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class OrderJournal implements Closeable {
+    private static final String DEFAULT_DIR = "orders";
+    private static final String JOURNAL_FILE = "orders.journal";
+    private static final String HEADS_FILE = "orders.heads";
+    private static final String MENUS_FILE = "orders.menus";
+    private static final int MAGIC = 0x49444F4A; // "IDOJ"
+    private static final int HEADS_MAGIC = 0x49444F48; // "IDOH"
+    private static final int MENUS_MAGIC = 0x49444F4D; // "IDOM"
+    private static final short VERSION = 3;
+    private static final short MENUS_VERSION = 1;
+    private static final int HEADER_LENGTH = 8;
+    private static final int RECORD_OVERHEAD = 8;
+    private static final int MAX_PAYLOAD = 1 << 20;
+    private static final int HEADS_EVERY = 256;
+
+    private static OrderJournal shared;
+
+    private final File dir;
+    private final FileChannel channel;
+    private final CRC32 crc = new CRC32();
+    private final LongLongMap heads = new LongLongMap();
+    private final Map<Integer, Menu> menus = new ConcurrentHashMap<>(); // By fingerprint
+    private long end;
+    private int appendsSinceHeads;
+
+    /**
+     * Gets the order journal shared by every register in this JVM, opening
+     * the default orders directory on first use
+     * @return Shared OrderJournal
+     * @throws IOException If the journal cannot be opened
+     */
+    public static synchronized OrderJournal getShared() throws IOException {
+        if (shared == null) {
+            OrderJournal journal = new OrderJournal(new File(DEFAULT_DIR));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing order journal: " + e.getMessage());
+                }
+            }, "order-journal-close"));
+            shared = journal;
+        }
+        return shared;
+    }
+
+    /**
+     * Constructor - Opens or creates the journal in a directory
+     * @param dir Directory holding the order files
+     * @throws IOException If the journal cannot be opened or is not an order journal
+     */
+    public OrderJournal(File dir) throws IOException {
+        this.dir = dir;
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        loadMenus();
+        File journalFile = new File(dir, JOURNAL_FILE);
+        int version = versionOf(journalFile);
+        if (version == 1 || version == 2) {
+            migrate(journalFile, version);
+        }
+        channel = FileChannel.open(journalFile.toPath(),
+                                   StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < HEADER_LENGTH) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+            channel.force(true);
+            end = HEADER_LENGTH;
+        } else {
+            ByteBuffer header = readFully(0, HEADER_LENGTH);
+            if (header.getInt() != MAGIC || header.getShort() != VERSION) {
+                channel.close();
+                throw new IOException("Not a supported order journal: " + new File(dir, JOURNAL_FILE));
+            }
+            end = loadHeads();
+            recoverTail();
+        }
+    }
+
+    /**
+     * Appends a finalized order and forces it to disk
+     * @param customerKey PhoneKey of the customer
+     * @param order Order to record
+     * @return Offset of the new record
+     * @throws IOException If the journal cannot be written
+     * @throws IllegalArgumentException If the key is not a customer's PhoneKey
+     */
+    public synchronized long append(long customerKey, OrderRecord order) throws IOException {
+        if (customerKey == PhoneKey.INVALID || customerKey == PhoneKey.EMPTY) {
+            throw new IllegalArgumentException("Orders must belong to a customer with a phone number");
+        }
+        ByteBuffer record = encode(customerKey, heads.get(customerKey), order, crc);
+        long offset = end;
+        while (record.hasRemaining()) {
+            channel.write(record, end + record.position());
+        }
+        channel.force(false);
+        end += record.limit();
+        heads.put(customerKey, offset);
+
+        if (++appendsSinceHeads >= HEADS_EVERY) {
+            saveHeads();
+        }
+        return offset;
+    }
+
+    /**
+     * Gets a customer's most recent orders, newest first
+     * @param customerKey PhoneKey of the customer
+     * @param limit Maximum number of orders
+     * @return Up to limit orders
+     * @throws IOException If the journal cannot be read
+     */
+    public List<OrderRecord> recentOrders(long customerKey, int limit) throws IOException {
+        List<OrderRecord> orders = new ArrayList<>();
+        long offset;
+        synchronized (this) {
+            offset = heads.get(customerKey);
+        }
+        while (offset >= 0 && orders.size() < limit) {
+            ByteBuffer payload = readPayload(offset);
+            if (payload == null) {
+                break;
+            }
+            payload.getLong(); // customer key
+            offset = payload.getLong();
+            orders.add(decode(payload));
+        }
+        return orders;
+    }
+
+    /**
+     * Gets a customer's most recent order
+     * @param customerKey PhoneKey of the customer
+     * @return The latest order, or null if the customer has none
+     * @throws IOException If the journal cannot be read
+     */
+    public OrderRecord lastOrder(long customerKey) throws IOException {
+        List<OrderRecord> orders = recentOrders(customerKey, 1);
+        return orders.isEmpty() ? null : orders.get(0);
+    }
+
+    /**
+     * Gets the number of customers with at least one order
+     * @return Customer count
+     */
+    public synchronized int getCustomerCount() {
+        return heads.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            saveHeads();
+            channel.close();
+        }
+    }
+
+    /**
+     * Builds a complete record, length and checksum included, first saving
+     * the names of its menu if this journal has not seen that menu yet.
+     * Items from any other menu than the first item's are kept as custom
+     * items with their description.
+     */
+    private ByteBuffer encode(long customerKey, long previous, OrderRecord order, CRC32 crc)
+            throws IOException {
+        Menu menu = null;
+        for (OrderItem item : order.getItems()) {
+            if (item.getMenu() != null) {
+                menu = item.getMenu();
+                break;
+            }
+        }
+        int menuId = 0;
+        if (menu != null) {
+            menuId = menu.getFingerprint();
+            if (!menus.containsKey(menuId)) {
+                saveMenu(menu);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0); // length and checksum, filled in below
+        out.writeInt(0);
+        out.writeLong(customerKey);
+        out.writeLong(previous);
+        out.writeLong(order.getTimeMillis());
+        out.writeUTF(order.getOrderType());
+        out.writeUTF(order.getPaymentType());
+        out.writeLong(order.getPaymentCents());
+        out.writeInt(menuId);
+        out.writeShort(order.getItems().size());
+        for (OrderItem item : order.getItems()) {
+            if (item.getMenu() != null && item.getMenu().getFingerprint() != menuId) {
+                item = new OrderItem(item.getDescription(), item.getUnitCents(), item.getQuantity());
+            }
+            out.writeLong(item.toBits());
+            if (item.getKind() == OrderItem.Kind.CUSTOM) {
+                out.writeUTF(item.getDescription());
+            }
+        }
+        out.flush();
+
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        int payloadLength = record.limit() - RECORD_OVERHEAD;
+        crc.reset();
+        crc.update(record.array(), RECORD_OVERHEAD, payloadLength);
+        record.putInt(0, payloadLength);
+        record.putInt(4, (int) crc.getValue());
+        return record;
+    }
+
+    /**
+     * Decodes the part of a payload after the customer key and back-pointer
+     */
+    private OrderRecord decode(ByteBuffer payload) throws IOException {
+        return decode(payload, VERSION);
+    }
+
+    private OrderRecord decode(ByteBuffer payload, int version) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+            payload.array(), payload.position(), payload.remaining()));
+        long timeMillis = in.readLong();
+        String orderType = in.readUTF();
+        String paymentType = in.readUTF();
+        long paymentCents = in.readLong();
+        Menu menu = menu(version >= 3 ? in.readInt() : 0);
+        int itemCount = in.readUnsignedShort();
+        List<OrderItem> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            if (version == 1) {
+                String description = in.readUTF();
+                long unitCents = in.readLong();
+                int quantity = in.readInt();
+                items.add(new OrderItem(description, unitCents, quantity));
+            } else {
+                long bits = in.readLong();
+                items.add(OrderItem.kindOf(bits) == OrderItem.Kind.CUSTOM ? OrderItem.fromBits(bits, in.readUTF())
+                                                                          : OrderItem.fromBits(bits, menu));
+            }
+        }
+        return new OrderRecord(timeMillis, orderType, paymentType, paymentCents, items);
+    }
+
+    /**
+     * Finds the menu with a fingerprint, falling back to the current menu
+     * for orders without one or from a menu this journal never saved
+     */
+    private Menu menu(int menuId) {
+        Menu current = MenuManager.getShared().getMenu();
+        if (menuId == 0 || menuId == current.getFingerprint()) {
+            return current;
+        }
+        return menus.getOrDefault(menuId, current);
+    }
+
+    /**
+     * Reads and checks the record at offset
+     * @return Its payload, or null if there is no valid record there
+     */
+    private ByteBuffer readPayload(long offset) throws IOException {
+        if (offset + RECORD_OVERHEAD > channel.size()) {
+            return null;
+        }
+        ByteBuffer overhead = readFully(offset, RECORD_OVERHEAD);
+        int payloadLength = overhead.getInt();
+        int checksum = overhead.getInt();
+        if (payloadLength < 16 || payloadLength > MAX_PAYLOAD
+                || offset + RECORD_OVERHEAD + payloadLength > channel.size()) {
+            return null;
+        }
+        ByteBuffer payload = readFully(offset + RECORD_OVERHEAD, payloadLength);
+        CRC32 check = new CRC32();
+        check.update(payload.array(), 0, payloadLength);
+        return (int) check.getValue() == checksum ? payload : null;
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Order journal ends unexpectedly");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Indexes the records after end, cutting the journal at the first bad one
+     */
+    private void recoverTail() throws IOException {
+        ByteBuffer payload;
+        while ((payload = readPayload(end)) != null) {
+            heads.put(payload.getLong(0), end);
+            end += RECORD_OVERHEAD + payload.limit();
+        }
+        if (channel.size() > end) {
+            System.err.println("Error in order journal: dropping " + (channel.size() - end)
+                               + " bytes of incomplete order data");
+            channel.truncate(end);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Reads the format version from a journal's header
+     * @return Version, or -1 if the file is missing or not an order journal
+     */
+    private static int versionOf(File file) throws IOException {
+        if (!file.exists() || file.length() < HEADER_LENGTH) {
+            return -1;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC ? in.readUnsignedShort() : -1;
+        }
+    }
+
+    /**
+     * Rewrites an older journal in the current format through a temporary
+     * file, dropping its saved customer table
+     */
+    private void migrate(File journalFile, int version) throws IOException {
+        File tmp = new File(dir, JOURNAL_FILE + ".tmp");
+        CRC32 check = new CRC32();
+        LongLongMap latest = new LongLongMap();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)));
+             FileOutputStream fos = new FileOutputStream(tmp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            in.skipBytes(HEADER_LENGTH);
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(0);
+            long offset = HEADER_LENGTH;
+            while (true) {
+                int payloadLength;
+                int checksum;
+                byte[] payload;
+                try {
+                    payloadLength = in.readInt();
+                    checksum = in.readInt();
+                    if (payloadLength < 16 || payloadLength > MAX_PAYLOAD) {
+                        break;
+                    }
+                    payload = new byte[payloadLength];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                check.reset();
+                check.update(payload, 0, payloadLength);
+                if ((int) check.getValue() != checksum) {
+                    break;
+                }
+
+                ByteBuffer buffer = ByteBuffer.wrap(payload);
+                long customerKey = buffer.getLong();
+                buffer.getLong(); // old back-pointer
+                ByteBuffer record = encode(customerKey, latest.get(customerKey), decode(buffer, version), check);
+                out.write(record.array(), 0, record.limit());
+                latest.put(customerKey, offset);
+                offset += record.limit();
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmp.toPath(), journalFile.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(new File(dir, HEADS_FILE).toPath());
+    }
+
+    /**
+     * Loads the names of every menu orders were taken from, cutting the
+     * file at the first bad record
+     */
+    private void loadMenus() throws IOException {
+        File file = new File(dir, MENUS_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (bytes.length < HEADER_LENGTH || buffer.getInt() != MENUS_MAGIC || buffer.getShort() != MENUS_VERSION) {
+            throw new IOException("Not a supported order menus file: " + file);
+        }
+        int valid = HEADER_LENGTH;
+        CRC32 check = new CRC32();
+        while (valid + RECORD_OVERHEAD <= bytes.length) {
+            int payloadLength = buffer.getInt(valid);
+            int checksum = buffer.getInt(valid + 4);
+            if (payloadLength < 4 || payloadLength > bytes.length - valid - RECORD_OVERHEAD) {
+                break;
+            }
+            check.reset();
+            check.update(bytes, valid + RECORD_OVERHEAD, payloadLength);
+            if ((int) check.getValue() != checksum) {
+                break;
+            }
+            DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(bytes, valid + RECORD_OVERHEAD, payloadLength));
+            int menuId = in.readInt();
+            Menu.Section[] sections = Menu.Section.values();
+            String[][] names = new String[sections.length][];
+            for (Menu.Section section : sections) {
+                names[section.ordinal()] = new String[in.readUnsignedShort()];
+                for (int i = 0; i < names[section.ordinal()].length; i++) {
+                    names[section.ordinal()][i] = in.readUTF();
+                }
+            }
+            menus.put(menuId, Menu.namesOnly("menu of earlier orders", names));
+            valid += RECORD_OVERHEAD + payloadLength;
+        }
+        if (valid < bytes.length) {
+            System.err.println("Error in order menus: dropping " + (bytes.length - valid)
+                               + " bytes of incomplete menu data");
+            try (FileChannel menusChannel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                menusChannel.truncate(valid);
+                menusChannel.force(true);
+            }
+        }
+    }
+
+    /**
+     * Appends a menu's names to the menus file and forces it to disk
+     */
+    private void saveMenu(Menu menu) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        DataOutputStream out = new DataOutputStream(bytes);
+        File file = new File(dir, MENUS_FILE);
+        if (!file.exists() || file.length() == 0) {
+            out.writeInt(MENUS_MAGIC);
+            out.writeShort(MENUS_VERSION);
+            out.writeShort(0);
+        }
+        int start = out.size();
+        out.writeInt(0); // length and checksum, filled in below
+        out.writeInt(0);
+        out.writeInt(menu.getFingerprint());
+        for (Menu.Section section : Menu.Section.values()) {
+            String[] names = menu.getNames(section);
+            out.writeShort(names.length);
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+        }
+        out.flush();
+
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        int payloadLength = record.limit() - start - RECORD_OVERHEAD;
+        CRC32 check = new CRC32();
+        check.update(record.array(), start + RECORD_OVERHEAD, payloadLength);
+        record.putInt(start, payloadLength);
+        record.putInt(start + 4, (int) check.getValue());
+        try (FileOutputStream fos = new FileOutputStream(file, true)) {
+            fos.write(record.array(), 0, record.limit());
+            fos.getFD().sync();
+        }
+        menus.put(menu.getFingerprint(), menu);
+    }
+
+    /**
+     * Loads the saved customer table
+     * @return Journal length the table covers, or the header length if it must be rebuilt
+     */
+    private long loadHeads() {
+        File file = new File(dir, HEADS_FILE);
+        if (!file.exists()) {
+            return HEADER_LENGTH;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] bytes = new byte[(int) file.length()];
+            in.readFully(bytes);
+            if (bytes.length < 20) {
+                return HEADER_LENGTH;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            CRC32 check = new CRC32();
+            check.update(bytes, 0, bytes.length - 4);
+            if (buffer.getInt() != HEADS_MAGIC || buffer.getInt(bytes.length - 4) != (int) check.getValue()) {
+                return HEADER_LENGTH;
+            }
+            long covered = buffer.getLong();
+            int count = buffer.getInt();
+            if (covered > channel.size() || bytes.length != 20 + 16L * count) {
+                return HEADER_LENGTH;
+            }
+            for (int i = 0; i < count; i++) {
+                heads.put(buffer.getLong(), buffer.getLong());
+            }
+            return covered;
+        } catch (IOException e) {
+            System.err.println("Error loading order index: " + e.getMessage());
+            heads.clear();
+            return HEADER_LENGTH;
+        }
+    }
+
+    /**
+     * Writes the customer table through a temporary file
+     */
+    private void saveHeads() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(20 + 16 * heads.size());
+        buffer.putInt(HEADS_MAGIC).putLong(end).putInt(heads.size());
+        heads.forEach((key, offset) -> buffer.putLong(key).putLong(offset));
+        CRC32 check = new CRC32();
+        check.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) check.getValue());
+
+        File tmp = new File(dir, HEADS_FILE + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(buffer.array());
+            out.getFD().sync();
+        }
+        Files.move(tmp.toPath(), new File(dir, HEADS_FILE).toPath(),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        appendsSinceHeads = 0;
+    }
+
+    /**
+     * Open-addressing map from customer key to record offset, -1 when absent
+     */
+    private static class LongLongMap {
+        private long[] keys = new long[1024];
+        private long[] values = new long[1024];
+        private int size;
+
+        interface Entry {
+            void accept(long key, long value);
+        }
+
+        long get(long key) {
+            int slot = slot(keys, key);
+            return keys[slot] == key ? values[slot] : -1;
+        }
+
+        void put(long key, long value) {
+            int slot = slot(keys, key);
+            if (keys[slot] != key) {
+                keys[slot] = key;
+                size++;
+            }
+            values[slot] = value;
+            if (size * 2 > keys.length) {
+                long[] oldKeys = keys;
+                long[] oldValues = values;
+                keys = new long[oldKeys.length * 2];
+                values = new long[oldKeys.length * 2];
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != 0) {
+                        int newSlot = slot(keys, oldKeys[i]);
+                        keys[newSlot] = oldKeys[i];
+                        values[newSlot] = oldValues[i];
+                    }
+                }
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            Arrays.fill(keys, 0);
+            size = 0;
+        }
+
+        void forEach(Entry action) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    action.accept(keys[i], values[i]);
+                }
+            }
+        }
+
+        private static int slot(long[] keys, long key) {
+            int mask = keys.length - 1;
+            long h = key * 0x9E3779B97F4A7C15L;
+            int slot = (int) (h ^ (h >>> 32)) & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
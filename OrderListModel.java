@@ -0,0 +1,83 @@
+import javax.swing.*;
+import java.util.List;
+
+/**
+ * OrderListModel - List model over the items of the current order
+ *
+ * The model reads straight from the order list and is told about each
+ * change as it happens, so a JList showing it only hears about the rows
+ * that were inserted, removed or changed and never re-reads the rest of
+ * the order. The model keeps its own row count, which only moves when a
+ * change is reported, so listeners always see a size that matches the
+ * events they have been sent.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class OrderListModel extends AbstractListModel<OrderItem> {
+    private List<OrderItem> items;
+    private int size;
+
+    /**
+     * Constructor
+     * @param items Order items, read whenever a row is shown
+     */
+    public OrderListModel(List<OrderItem> items) {
+        this.items = items;
+        this.size = items.size();
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public OrderItem getElementAt(int index) {
+        return items.get(index);
+    }
+
+    /**
+     * Reports an item inserted into the order
+     * @param index Position of the new item
+     */
+    public void itemAdded(int index) {
+        size++;
+        fireIntervalAdded(this, index, index);
+    }
+
+    /**
+     * Reports an item removed from the order
+     * @param index Position the item was at
+     */
+    public void itemRemoved(int index) {
+        size--;
+        fireIntervalRemoved(this, index, index);
+    }
+
+    /**
+     * Reports an item replaced in place, such as a new quantity
+     * @param index Position of the item
+     */
+    public void itemChanged(int index) {
+        fireContentsChanged(this, index, index);
+    }
+
+    /**
+     * Reports that the whole order was replaced
+     * @param newItems Order items to show from now on, which may be a
+     *        different order's list
+     */
+    public void reset(List<OrderItem> newItems) {
+        if (size > 0) {
+            int removed = size;
+            size = 0;
+            fireIntervalRemoved(this, 0, removed - 1);
+        }
+        items = newItems;
+        size = items.size();
+        if (size > 0) {
+            fireIntervalAdded(this, 0, size - 1);
+        }
+    }
+}
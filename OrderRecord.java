@@ -0,0 +1,44 @@
+import java.util.*;
+
+/**
+ * OrderRecord - A finalized order as kept in the order history
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class OrderRecord {
+    private final long timeMillis;
+    private final String orderType;
+    private final String paymentType;
+    private final long paymentCents;
+    private final List<OrderItem> items;
+
+    /**
+     * Constructor
+     * @param timeMillis When the order was finalized
+     * @param orderType Pickup or Delivery
+     * @param paymentType Cash, Check or Credit
+     * @param paymentCents Amount tendered in cents
+     * @param items Items ordered
+     */
+    public OrderRecord(long timeMillis, String orderType, String paymentType, long paymentCents,
+                       List<OrderItem> items) {
+        this.timeMillis = timeMillis;
+        this.orderType = orderType;
+        this.paymentType = paymentType;
+        this.paymentCents = paymentCents;
+        this.items = Collections.unmodifiableList(new ArrayList<>(items));
+    }
+
+    // Getters
+    public long getTimeMillis() { return timeMillis; }
+    public String getOrderType() { return orderType; }
+    public String getPaymentType() { return paymentType; }
+    public long getPaymentCents() { return paymentCents; }
+    public List<OrderItem> getItems() { return items; }
+
+    @Override
+    public String toString() {
+        return String.format("%tD %<tR - %d items (%s)", new Date(timeMillis), items.size(), orderType);
+    }
+}
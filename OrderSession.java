@@ -0,0 +1,217 @@
+import java.util.*;
+
+/**
+ * OrderSession - One order being taken: its customer, items, order type
+ * and payment
+ *
+ * Every method locks only this session, so registers and API requests
+ * working on different sessions never wait for each other. The subtotal
+ * is kept up to date as items change.
+ *
+ * An order is pinned to the Menu of its first item: while the session has
+ * items, getMenu() returns that Menu even if the menu file is reloaded, so
+ * every item of one order is named and priced from the same menu. An empty
+ * session follows the current menu.
+ *
+ * A session's versions start at its ID times 2^32, so no two sessions
+ * share a version and a view that caches by version (the order list, the
+ * receipt) can never confuse one session's order with another's after
+ * switching between them, without the sessions sharing a counter.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class OrderSession {
+    private final long id;
+    private final long openedMillis;
+    private final List<OrderItem> items = new ArrayList<>();
+    private final List<OrderItem> itemsView = Collections.unmodifiableList(items);
+    private Customer customer;
+    private String orderType; // "Pickup" or "Delivery"
+    private String paymentType; // "Cash", "Check", or "Credit"
+    private long paymentCents; // Amount tendered
+    private long subtotalCents; // Running sum of items
+    private long version; // Changes whenever items change
+    private boolean recorded; // Current order already saved to history
+    private boolean parked;
+    private Menu menu; // Menu the order is pinned to, while it has items
+
+    /**
+     * Constructor
+     * @param id Session ID
+     * @param customer Customer, or null if not known yet
+     */
+    public OrderSession(long id, Customer customer) {
+        this.id = id;
+        this.customer = customer;
+        this.version = id << 32;
+        this.openedMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Adds an item to the end of the order
+     * @param item The order item to add
+     * @return Position of the new item
+     */
+    public synchronized int add(OrderItem item) {
+        subtotalCents = Math.addExact(subtotalCents, item.getTotalCents());
+        pin(item);
+        items.add(item);
+        changed();
+        return items.size() - 1;
+    }
+
+    /**
+     * Removes an item
+     * @param index Position of the item
+     * @return The removed item
+     */
+    public synchronized OrderItem remove(int index) {
+        OrderItem item = items.remove(index);
+        subtotalCents -= item.getTotalCents();
+        changed();
+        return item;
+    }
+
+    /**
+     * Changes the quantity of an item
+     * @param index Position of the item
+     * @param quantity New number of items
+     * @throws IllegalArgumentException If quantity is out of range
+     */
+    public synchronized void setQuantity(int index, int quantity) {
+        OrderItem old = items.get(index);
+        OrderItem item = old.withQuantity(quantity);
+        subtotalCents = Math.addExact(subtotalCents - old.getTotalCents(), item.getTotalCents());
+        items.set(index, item);
+        changed();
+    }
+
+    /**
+     * Replaces all items, such as when repeating an earlier order
+     * @param newItems Items to order
+     * @param newOrderType Pickup or Delivery
+     */
+    public synchronized void replaceItems(List<OrderItem> newItems, String newOrderType) {
+        long subtotal = 0;
+        for (OrderItem item : newItems) {
+            subtotal = Math.addExact(subtotal, item.getTotalCents());
+        }
+        items.clear();
+        menu = null;
+        for (OrderItem item : newItems) {
+            pin(item);
+            items.add(item);
+        }
+        subtotalCents = subtotal;
+        orderType = newOrderType;
+        changed();
+    }
+
+    /**
+     * Empties the order and forgets its order type and payment
+     */
+    public synchronized void clear() {
+        items.clear();
+        menu = null;
+        subtotalCents = 0;
+        orderType = null;
+        paymentType = null;
+        paymentCents = 0;
+        changed();
+    }
+
+    /**
+     * Gets a read-only view of the items. The view follows later changes;
+     * it is meant for the thread working on this session; other threads
+     * should use copyItems().
+     * @return Order items
+     */
+    public List<OrderItem> getItems() {
+        return itemsView;
+    }
+
+    /**
+     * Copies the items as they are now
+     * @return Order items
+     */
+    public synchronized List<OrderItem> copyItems() {
+        return new ArrayList<>(items);
+    }
+
+    /**
+     * Marks the session parked, so any register may resume it
+     */
+    public synchronized void park() {
+        parked = true;
+    }
+
+    /**
+     * Takes a parked session for one register
+     * @return False if the session is not parked (another register resumed it first)
+     */
+    public synchronized boolean resume() {
+        if (!parked) {
+            return false;
+        }
+        parked = false;
+        return true;
+    }
+
+    /**
+     * Gets the menu this order is taken from
+     * @return The Menu of the first item, or the current menu while the order is empty
+     */
+    public synchronized Menu getMenu() {
+        return menu != null && !items.isEmpty() ? menu : MenuManager.getShared().getMenu();
+    }
+
+    // Getters and setters
+    public long getId() { return id; }
+    public long getOpenedMillis() { return openedMillis; }
+    public synchronized Customer getCustomer() { return customer; }
+    public synchronized void setCustomer(Customer customer) { this.customer = customer; }
+    public synchronized String getOrderType() { return orderType != null ? orderType : "Pickup"; }
+    public synchronized void setOrderType(String orderType) { this.orderType = orderType; }
+    public synchronized String getPaymentType() { return paymentType != null ? paymentType : "Cash"; }
+    public synchronized long getPaymentCents() { return paymentCents; }
+    public synchronized long getSubtotalCents() { return subtotalCents; }
+    public synchronized long getVersion() { return version; }
+    public synchronized boolean isRecorded() { return recorded; }
+    public synchronized void setRecorded(boolean recorded) { this.recorded = recorded; }
+    public synchronized boolean isParked() { return parked; }
+    public synchronized boolean isEmpty() { return items.isEmpty(); }
+
+    /**
+     * Sets the payment type and amount
+     * @param paymentType Payment type (Cash, Check, Credit)
+     * @param paymentCents Amount tendered in cents
+     */
+    public synchronized void setPaymentInfo(String paymentType, long paymentCents) {
+        this.paymentType = paymentType;
+        this.paymentCents = paymentCents;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("#%d %s - %d items, $%s (%tR)", id, customer != null ? customer.getName() : "Walk-in",
+                             items.size(), PricingEngine.format(subtotalCents), new Date(openedMillis));
+    }
+
+    /**
+     * Pins the order to an item's menu if it is the first menu item
+     */
+    private void pin(OrderItem item) {
+        if (menu == null || items.isEmpty()) {
+            menu = item.getMenu();
+        }
+    }
+
+    /**
+     * Records that the items have changed
+     */
+    private void changed() {
+        version++;
+        recorded = false;
+    }
+}
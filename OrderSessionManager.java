@@ -0,0 +1,86 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OrderSessionManager - Open order sessions, keyed by session ID
+ *
+ * Sessions are held in a concurrent map, so opening, finding and closing
+ * a session never blocks work on the others, and each session does its
+ * own locking. A session stays open until it is closed, including while
+ * it is parked so the register can serve someone else.
+ *
+ * Safe to share between registers running in the same JVM (see getShared).
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class OrderSessionManager {
+    private static OrderSessionManager shared;
+
+    private final ConcurrentHashMap<Long, OrderSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    /**
+     * Gets the manager shared by every register in this JVM
+     * @return Shared OrderSessionManager
+     */
+    public static synchronized OrderSessionManager getShared() {
+        if (shared == null) {
+            shared = new OrderSessionManager();
+        }
+        return shared;
+    }
+
+    /**
+     * Opens a new, empty session
+     * @param customer Customer, or null if not known yet
+     * @return The session
+     */
+    public OrderSession open(Customer customer) {
+        OrderSession session = new OrderSession(nextId.getAndIncrement(), customer);
+        sessions.put(session.getId(), session);
+        return session;
+    }
+
+    /**
+     * Finds an open session
+     * @param id Session ID
+     * @return The session, or null if it is not open
+     */
+    public OrderSession get(long id) {
+        return sessions.get(id);
+    }
+
+    /**
+     * Closes a session
+     * @param id Session ID
+     * @return The session, or null if it was not open
+     */
+    public OrderSession close(long id) {
+        return sessions.remove(id);
+    }
+
+    /**
+     * Gets the parked sessions, oldest first
+     * @return Parked sessions
+     */
+    public List<OrderSession> getParkedSessions() {
+        List<OrderSession> parked = new ArrayList<>();
+        for (OrderSession session : sessions.values()) {
+            if (session.isParked()) {
+                parked.add(session);
+            }
+        }
+        parked.sort(Comparator.comparingLong(OrderSession::getId));
+        return parked;
+    }
+
+    /**
+     * Gets the number of open sessions
+     * @return Session count
+     */
+    public int size() {
+        return sessions.size();
+    }
+}
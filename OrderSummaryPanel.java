@@ -2,8 +2,6 @@ import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import java.awt.*;
 import java.awt.event.*;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 
 /**
  * OrderSummaryPanel - Displays completed order with items, prices, and totals
@@ -25,6 +23,16 @@ public class OrderSummaryPanel extends JPanel {
     private ButtonGroup paymentGroup;
     private JTextField paymentAmountField;
     private boolean paymentProcessed;
+    private final ReceiptRenderer receipt = new ReceiptRenderer();
+    private String shownOrderPart; // Receipt parts currently in summaryArea
+    private String shownPaymentPart;
+    private final PrintSpooler spooler = PrintSpooler.getShared();
+    private JLabel printStatusLabel;
+    private JLabel customerLabel;
+    private long ticketVersion = -1; // Order version last printed for the kitchen
+    private long kitchenVersion = -1; // Order version last sent to the kitchen display
+    private final KitchenQueue kitchen = KitchenQueue.getShared();
+    private final java.util.Set<PrintJob> printing = new java.util.HashSet<>(); // Jobs from this register
     
     /**
      * Constructor
@@ -101,6 +109,11 @@ public class OrderSummaryPanel extends JPanel {
         processPaymentButton.setFocusPainted(false);
         processPaymentButton.addActionListener(e -> processPayment());
         
+        printStatusLabel = new JLabel(" ");
+        printStatusLabel.setFont(new Font("Arial", Font.PLAIN, 12));
+        printStatusLabel.setForeground(new Color(0, 100, 0)); // Dark green
+        spooler.addListener((job, error) -> SwingUtilities.invokeLater(() -> showPrintResult(job, error)));
+        
         paymentProcessed = false;
     }
     
@@ -113,11 +126,11 @@ public class OrderSummaryPanel extends JPanel {
         else if (checkRadio.isSelected()) paymentType = "Check";
         else if (creditRadio.isSelected()) paymentType = "Credit";
         
-        double amount = 0.0;
+        long amount = 0;
         try {
             String amountText = paymentAmountField.getText().trim();
             if (!amountText.isEmpty()) {
-                amount = Double.parseDouble(amountText);
+                amount = PricingEngine.parseCents(amountText);
             }
         } catch (NumberFormatException e) {
             JOptionPane.showMessageDialog(this, 
@@ -128,8 +141,10 @@ public class OrderSummaryPanel extends JPanel {
         }
         
         app.setPaymentInfo(paymentType, amount);
+        app.recordCompletedOrder();
         paymentProcessed = true;
-        refresh();
+        updateReceipt();
+        sendKitchenTicket();
         
         // Hide payment panel after processing
         if (paymentPanel != null) {
@@ -154,8 +169,7 @@ public class OrderSummaryPanel extends JPanel {
         summaryLabel.setFont(new Font("Arial", Font.BOLD, 18));
         summaryLabel.setForeground(new Color(200, 0, 0)); // Red
         topPanel.add(summaryLabel);
-        Customer customer = app.getCurrentCustomer();
-        JLabel customerLabel = new JLabel("Customer: " + (customer != null ? customer.getName() : ""));
+        customerLabel = new JLabel("Customer: ");
         customerLabel.setFont(new Font("Arial", Font.BOLD, 14));
         customerLabel.setForeground(new Color(0, 100, 0)); // Dark green
         topPanel.add(customerLabel);
@@ -225,6 +239,7 @@ public class OrderSummaryPanel extends JPanel {
         buttonPanel.add(printButton);
         buttonPanel.add(newOrderButton);
         buttonPanel.add(backButton);
+        buttonPanel.add(printStatusLabel);
         bottomPanel.add(buttonPanel, BorderLayout.SOUTH);
         add(bottomPanel, BorderLayout.SOUTH);
     }
@@ -233,102 +248,83 @@ public class OrderSummaryPanel extends JPanel {
      * Refreshes the order summary display
      */
     public void refresh() {
+        long start = System.nanoTime();
         paymentProcessed = false; // Reset payment status when refreshing
+        Customer customer = app.getCurrentCustomer();
+        customerLabel.setText("Customer: " + (customer != null ? customer.getName() : ""));
         if (paymentPanel != null) {
             paymentPanel.setVisible(true);
         }
-        
-        StringBuilder sb = new StringBuilder();
-        SimpleDateFormat sdf = new SimpleDateFormat("MM/dd/yyyy HH:mm:ss");
-        
-        // Header
-        sb.append("=".repeat(60)).append("\n");
-        sb.append("          INFINITE DOUGHMAIN PIZZA\n");
-        sb.append("=".repeat(60)).append("\n");
-        sb.append("Order Date: ").append(sdf.format(new Date())).append("\n");
-        sb.append("Order Type: ").append(app.getOrderType().toUpperCase()).append("\n");
-        Customer customer = app.getCurrentCustomer();
-        if (customer != null) {
-            sb.append("Customer: ").append(customer.getName()).append("\n");
-            sb.append("Phone: ").append(customer.getPhone()).append("\n");
-            sb.append("Address: ").append(customer.getFullAddress()).append("\n");
-            if (app.getOrderType().equals("Delivery")) {
-                String deliveryInfo = customer.getDeliveryInfo();
-                if (deliveryInfo != null && !deliveryInfo.isEmpty() && !deliveryInfo.equals("No additional location info")) {
-                    sb.append("Delivery Info: ").append(deliveryInfo).append("\n");
-                }
-            }
-        }
-        sb.append("-".repeat(60)).append("\n\n");
-        
-        // Items
-        sb.append(String.format("%-40s %6s %10s\n", "Item", "Qty", "Price"));
-        sb.append("-".repeat(60)).append("\n");
-        
-        java.util.List<OrderItem> order = app.getCurrentOrder();
-        double subtotal = 0.0;
-        
-        for (OrderItem item : order) {
-            String desc = item.getDescription();
-            if (desc.length() > 40) {
-                desc = desc.substring(0, 37) + "...";
-            }
-            sb.append(String.format("%-40s %6d $%9.2f\n", 
-                desc, item.getQuantity(), item.getPrice()));
-            subtotal += item.getPrice();
-        }
-        
-        sb.append("-".repeat(60)).append("\n");
-        sb.append(String.format("%-40s %6s $%9.2f\n", "Subtotal", "", subtotal));
-        
-        double tax = subtotal * 0.08; // 8% tax
-        sb.append(String.format("%-40s %6s $%9.2f\n", "Tax (8%)", "", tax));
-        
-        double total = subtotal + tax;
-        sb.append("=".repeat(60)).append("\n");
-        sb.append(String.format("%-40s %6s $%9.2f\n", "TOTAL", "", total));
-        sb.append("=".repeat(60)).append("\n\n");
-        
-        // Payment information
-        if (paymentProcessed) {
-            String paymentType = app.getPaymentType();
-            double paymentAmount = app.getPaymentAmount();
-            
-            sb.append("Payment Method: ").append(paymentType).append("\n");
-            if (paymentAmount > 0) {
-                sb.append("Amount Tendered: $").append(String.format("%.2f", paymentAmount)).append("\n");
-                double change = paymentAmount - total;
-                if (change > 0) {
-                    sb.append("Change: $").append(String.format("%.2f", change)).append("\n");
-                }
-            }
-            sb.append("\n");
-            
-            // Signature line for credit card
-            if (paymentType.equals("Credit")) {
-                sb.append("-".repeat(60)).append("\n");
-                sb.append("Signature: _________________________________\n");
-                sb.append("-".repeat(60)).append("\n");
-            }
+        updateReceipt();
+        Metrics.SUMMARY_REFRESH.recordSince(start);
+    }
+    
+    /**
+     * Redraws the parts of the receipt that have changed. When only the
+     * payment has changed, just the payment lines at the end are replaced.
+     */
+    private void updateReceipt() {
+        String orderPart = receipt.renderOrder(app.getOrderVersion(), app.getCurrentCustomer(),
+                                               app.getOrderType(), app.getCurrentOrder(),
+                                               app.getSubtotalCents(), app.getTaxCents());
+        String paymentPart = receipt.renderPayment(paymentProcessed, app.getPaymentType(),
+                                                   app.getPaymentCents(), app.getTotalCents());
+        if (orderPart != shownOrderPart) {
+            summaryArea.setText(orderPart + paymentPart);
+        } else if (paymentPart != shownPaymentPart) {
+            summaryArea.replaceRange(paymentPart, orderPart.length(), summaryArea.getDocument().getLength());
         }
-        
-        sb.append("\nThank you for your order!\n");
-        
-        summaryArea.setText(sb.toString());
+        shownOrderPart = orderPart;
+        shownPaymentPart = paymentPart;
     }
     
     /**
-     * Prints the receipt (opens print dialog)
+     * Queues the receipt for printing; the register carries on while it prints
      */
     private void printReceipt() {
-        try {
-            summaryArea.print();
-        } catch (Exception e) {
+        queue(PrintJob.receipt(summaryArea.getText()));
+    }
+    
+    /**
+     * Sends the order to the kitchen display and queues a kitchen ticket,
+     * each once per version of the order
+     */
+    private void sendKitchenTicket() {
+        if (app.getCurrentOrder().isEmpty()) {
+            return;
+        }
+        Customer customer = app.getCurrentCustomer();
+        String name = customer != null ? customer.getName() : null;
+        if (kitchenVersion != app.getOrderVersion()) {
+            kitchen.offer(new KitchenOrder(name, app.getOrderType(), app.getCurrentOrder(), System.currentTimeMillis()));
+            kitchenVersion = app.getOrderVersion();
+        }
+        if (ticketVersion != app.getOrderVersion()
+            && queue(PrintJob.kitchenTicket(app.getOrderType(), name, app.getCurrentOrder()))) {
+            ticketVersion = app.getOrderVersion();
+        }
+    }
+    
+    private boolean queue(PrintJob job) {
+        if (!spooler.submit(job)) {
             JOptionPane.showMessageDialog(this, 
-                "Error printing: " + e.getMessage(), 
+                "The print queue is full. Please try again shortly.", 
                 "Print Error", 
                 JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
+        printing.add(job);
+        printStatusLabel.setText(job + " queued");
+        return true;
+    }
+    
+    /**
+     * Shows how a print job ended
+     */
+    private void showPrintResult(PrintJob job, java.io.IOException error) {
+        if (!printing.remove(job)) {
+            return; // Another register's job
         }
+        printStatusLabel.setText(error == null ? job + " printed" : job + " failed: " + error.getMessage());
     }
 }
-
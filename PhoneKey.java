@@ -0,0 +1,81 @@
+/**
+ * PhoneKey - Packs the digits of a phone number into a long
+ *
+ * Non-digit characters are skipped, so "(555) 123-4567", "555.123.4567" and
+ * "5551234567" all give the same key. The digits are packed as a decimal
+ * number behind a leading 1, which keeps "0123" and "123" apart and means a
+ * valid key is never 0. Up to MAX_DIGITS digits fit; longer numbers give
+ * INVALID. Nothing is allocated.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public final class PhoneKey {
+    public static final int MAX_DIGITS = 18;
+    public static final long INVALID = -1;
+    /** Key of a phone number with no digits at all */
+    public static final long EMPTY = 1;
+
+    private PhoneKey() {
+    }
+
+    /**
+     * Gets the key of a phone number in any format
+     * @param phone Phone number
+     * @return Key, or INVALID if the number has more than MAX_DIGITS digits
+     */
+    public static long of(CharSequence phone) {
+        long key = 1;
+        int digits = 0;
+        for (int i = 0, n = phone.length(); i < n; i++) {
+            int d = phone.charAt(i) - '0';
+            if (d >= 0 && d <= 9) {
+                if (++digits > MAX_DIGITS) {
+                    return INVALID;
+                }
+                key = key * 10 + d;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Gets the key of a phone number stored as ASCII/UTF-8 bytes
+     * @param buf Buffer holding the phone number
+     * @param offset Start of the phone number
+     * @param length Length in bytes
+     * @return Key, or INVALID if the number has more than MAX_DIGITS digits
+     */
+    public static long of(byte[] buf, int offset, int length) {
+        long key = 1;
+        int digits = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int d = buf[i] - '0';
+            if (d >= 0 && d <= 9) {
+                if (++digits > MAX_DIGITS) {
+                    return INVALID;
+                }
+                key = key * 10 + d;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Checks whether a phone number can be used as a customer identifier
+     * @param phone Phone number
+     * @return True if it has no more than MAX_DIGITS digits
+     */
+    public static boolean isValid(CharSequence phone) {
+        return of(phone) != INVALID;
+    }
+
+    /**
+     * Gets the digits a key was made from
+     * @param key Valid key
+     * @return Digits without the leading 1
+     */
+    public static String toDigits(long key) {
+        return Long.toString(key).substring(1);
+    }
+}
@@ -0,0 +1,246 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.*;
+import java.util.function.LongConsumer;
+
+/**
+ * PhonePrefixIndex - Sorted array of PhoneKeys for phone number typeahead
+ *
+ * A PhoneKey is the digits of a number behind a leading 1, so all L-digit
+ * numbers sit in [10^L, 2*10^L) and the L-digit numbers starting with a
+ * given prefix form one contiguous range. A prefix query is therefore one
+ * binary search per possible length, shortest numbers first, and costs
+ * O(log n) no matter how many customers match.
+ *
+ * Inserts shift the tail of the array, which is a single memory move of at
+ * most a few megabytes even for a million customers (moved a chunk at a
+ * time off the heap, as LongBuffer has no absolute bulk copy before Java
+ * 16). All methods are synchronized; queries hold the lock only for the
+ * binary searches.
+ *
+ * The keys take 8 bytes per customer, 8 MB for a million. An off-heap
+ * index keeps them in a direct buffer instead, for stores that keep the
+ * heap flat however many customers they hold; only building it borrows
+ * a heap array of the keys while they are sorted.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class PhonePrefixIndex {
+    private static final int SHIFT_CHUNK = 4096;
+    private static final long[] POWERS_OF_TEN = new long[PhoneKey.MAX_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final boolean offHeap;
+    private LongBuffer keys;
+    private int size;
+    private long[] shiftChunk; // Off-heap inserts only
+
+    /**
+     * Constructor - Keeps the keys on the heap
+     */
+    public PhonePrefixIndex() {
+        this(false);
+    }
+
+    /**
+     * Constructor
+     * @param offHeap True to keep the keys in a direct buffer
+     */
+    public PhonePrefixIndex(boolean offHeap) {
+        this.offHeap = offHeap;
+        keys = allocate(1024);
+    }
+
+    /**
+     * Replaces the contents of the index with the keys of a store
+     * @param store Store whose customers should be indexed
+     */
+    public void build(CustomerStore store) {
+        KeyCollector collector = new KeyCollector(store.size());
+        store.forEachKey(collector);
+        build(collector.keys, collector.count);
+    }
+
+    /**
+     * Replaces the contents of the index
+     * @param newKeys Keys to index, in any order (the array is taken over)
+     * @param count Number of valid entries in newKeys
+     */
+    public synchronized void build(long[] newKeys, int count) {
+        Arrays.sort(newKeys, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || newKeys[unique - 1] != newKeys[i]) {
+                newKeys[unique++] = newKeys[i];
+            }
+        }
+        if (!offHeap) {
+            keys = LongBuffer.wrap(newKeys.length > 0 ? newKeys : new long[1024]);
+        } else {
+            keys = allocate(Math.max(1024, unique + unique / 8));
+            keys.duplicate().put(newKeys, 0, unique);
+        }
+        size = unique;
+    }
+
+    /**
+     * Adds a key if it is not already present
+     * @param key PhoneKey to add
+     */
+    public synchronized void add(long key) {
+        int pos = binarySearch(key);
+        if (pos >= 0) {
+            return;
+        }
+        pos = -pos - 1;
+        if (size == keys.capacity()) {
+            LongBuffer grown = allocate(keys.capacity() * 2);
+            LongBuffer old = keys.duplicate();
+            old.limit(size);
+            grown.duplicate().put(old);
+            keys = grown;
+        }
+        shiftUp(pos);
+        keys.put(pos, key);
+        size++;
+    }
+
+    /**
+     * Moves the keys from pos to the end up one place, from the top down so
+     * that nothing is overwritten before it is moved
+     */
+    private void shiftUp(int pos) {
+        if (keys.hasArray()) {
+            long[] array = keys.array();
+            System.arraycopy(array, pos, array, pos + 1, size - pos);
+            return;
+        }
+        if (shiftChunk == null) {
+            shiftChunk = new long[SHIFT_CHUNK];
+        }
+        for (int end = size; end > pos; ) {
+            int start = Math.max(pos, end - SHIFT_CHUNK);
+            LongBuffer from = keys.duplicate();
+            from.position(start);
+            from.get(shiftChunk, 0, end - start);
+            LongBuffer to = keys.duplicate();
+            to.position(start + 1);
+            to.put(shiftChunk, 0, end - start);
+            end = start;
+        }
+    }
+
+    /**
+     * Adds many keys at once with a single sort rather than one array
+     * shift per key
+     * @param more Keys to add, in any order
+     * @param count Number of valid entries in more
+     */
+    public synchronized void addAll(long[] more, int count) {
+        long[] merged = new long[size + count];
+        keys.duplicate().get(merged, 0, size);
+        System.arraycopy(more, 0, merged, size, count);
+        build(merged, size + count);
+    }
+
+    /**
+     * Finds keys whose digits start with the digits typed so far
+     * @param typed Partial phone number in any format
+     * @param limit Maximum number of keys to return
+     * @return Matching keys, shortest numbers first and ascending within a length
+     */
+    public synchronized long[] match(CharSequence typed, int limit) {
+        long prefix = PhoneKey.of(typed);
+        if (prefix == PhoneKey.INVALID || prefix == PhoneKey.EMPTY || limit <= 0) {
+            return new long[0];
+        }
+        int prefixDigits = Long.toString(prefix).length() - 1;
+
+        long[] result = new long[limit];
+        int found = 0;
+        for (int length = prefixDigits; length <= PhoneKey.MAX_DIGITS && found < limit; length++) {
+            long scale = POWERS_OF_TEN[length - prefixDigits];
+            long low = prefix * scale;
+            long high = (prefix + 1) * scale;
+            int pos = binarySearch(low);
+            if (pos < 0) {
+                pos = -pos - 1;
+            }
+            while (pos < size && keys.get(pos) < high && found < limit) {
+                result[found++] = keys.get(pos++);
+            }
+        }
+        return found == limit ? result : Arrays.copyOf(result, found);
+    }
+
+    /**
+     * Gets the number of indexed keys
+     * @return Key count
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Gets the memory the keys take, on or off the heap
+     * @return Size in bytes
+     */
+    public synchronized long getMemoryBytes() {
+        return 8L * keys.capacity();
+    }
+
+    /**
+     * Arrays.binarySearch over the first size keys
+     */
+    private int binarySearch(long key) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = keys.get(mid);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private LongBuffer allocate(int capacity) {
+        if (!offHeap) {
+            return LongBuffer.allocate(capacity);
+        }
+        return ByteBuffer.allocateDirect(capacity * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    /**
+     * Gathers keys into a growing array
+     */
+    private static class KeyCollector implements LongConsumer {
+        long[] keys;
+        int count;
+
+        KeyCollector(int expected) {
+            keys = new long[Math.max(16, expected)];
+        }
+
+        @Override
+        public void accept(long key) {
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, keys.length * 2);
+            }
+            keys[count++] = key;
+        }
+    }
+}
@@ -18,35 +18,32 @@ public class PizzaOrderingSystem extends JFrame {
     private JPanel mainPanel;
     private CardLayout cardLayout;
     
-    // Menu data
-    private static final String[] PIZZA_SIZES = {"Small", "Medium", "Large", "XL"};
-    private static final double[] SIZE_PRICES = {9.99, 12.99, 15.99, 18.99};
-    private static final String[] CRUST_TYPES = {"Hand-Tossed", "Thin Crust", "Deep Dish"};
-    private static final double[] CRUST_PRICES = {0.00, 0.50, 1.50};
-    private static final String[] TOPPINGS = {"Pepperoni", "Sausage", "Mushrooms", "Onions", 
-                                              "Green Peppers", "Black Olives", "Bacon", "Extra Cheese"};
-    private static final double TOPPING_PRICE = 1.25;
-    private static final String[] BEVERAGES = {"Coke", "Sprite", "Fanta", "Root Beer", "Water"};
-    private static final String[] BEV_SIZES = {"Small (16oz)", "Medium (20oz)", "Large (2L)"};
-    private static final double[] BEV_PRICES = {2.49, 2.99, 3.49};
-    
-    // Current order
-    private java.util.List<OrderItem> currentOrder;
-    private Customer currentCustomer;
-    private String orderType; // "Pickup" or "Delivery"
-    private String paymentType; // "Cash", "Check", or "Credit"
-    private double paymentAmount; // Amount tendered
-    
-    // Components
+    // Order sessions; session is the one this register is working on
+    private final OrderSessionManager sessions = OrderSessionManager.getShared();
+    private OrderSession session;
+    
+    // Order history, opened on first use; null if it could not be opened
+    private OrderJournal orderJournal;
+    private boolean orderJournalOpened;
+    
+    // Set by --exit-after-startup: quit once started (used to train the AppCDS archive)
+    private static final String EXIT_AFTER_STARTUP = "--exit-after-startup";
+    private static boolean exitAfterStartup;
+    private static final String FIRST_FRAME = "first frame shown";
+    private static final String CUSTOMERS_READY = "customers loaded";
+    
+    // Components; all but the login card are built on first use
     private LoginPanel loginPanel;
     private MenuPanel menuPanel;
     private OrderSummaryPanel orderSummaryPanel;
+    private KitchenDisplayPanel kitchenPanel;
     
     /**
-     * Constructor - Initializes the application window
+     * Constructor - Initializes the application window with the login card;
+     * the other cards are built the first time they are shown
      */
     public PizzaOrderingSystem() {
-        currentOrder = new ArrayList<>();
+        session = sessions.open(null);
         setTitle("Infinite Doughmain - Pizza Ordering System");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setSize(900, 700);
@@ -59,19 +56,88 @@ public class PizzaOrderingSystem extends JFrame {
         mainPanel = new JPanel(cardLayout);
         mainPanel.setBackground(Color.WHITE);
         
-        // Initialize panels
         loginPanel = new LoginPanel(this);
-        menuPanel = new MenuPanel(this);
-        orderSummaryPanel = new OrderSummaryPanel(this);
-        
         mainPanel.add(loginPanel, "LOGIN");
-        mainPanel.add(menuPanel, "MENU");
-        mainPanel.add(orderSummaryPanel, "SUMMARY");
         
         add(mainPanel);
         showLogin();
     }
     
+    /**
+     * Gets the menu card, building it on first use
+     */
+    private MenuPanel menuPanel() {
+        if (menuPanel == null) {
+            menuPanel = new MenuPanel(this);
+            mainPanel.add(menuPanel, "MENU");
+            StartupTimer.mark("menu card built");
+        }
+        return menuPanel;
+    }
+    
+    /**
+     * Gets the order summary card, building it on first use
+     */
+    private OrderSummaryPanel orderSummaryPanel() {
+        if (orderSummaryPanel == null) {
+            orderSummaryPanel = new OrderSummaryPanel(this);
+            mainPanel.add(orderSummaryPanel, "SUMMARY");
+        }
+        return orderSummaryPanel;
+    }
+    
+    /**
+     * Gets the kitchen display card, building it on first use. Orders paid
+     * before then wait in the kitchen queue and appear when it opens.
+     */
+    private KitchenDisplayPanel kitchenPanel() {
+        if (kitchenPanel == null) {
+            kitchenPanel = new KitchenDisplayPanel(this, KitchenQueue.getShared());
+            mainPanel.add(kitchenPanel, "KITCHEN");
+        }
+        return kitchenPanel;
+    }
+    
+    /**
+     * Gets the order history, opening it on first use
+     * @return The journal, or null if it could not be opened
+     */
+    private OrderJournal orderJournal() {
+        if (!orderJournalOpened) {
+            orderJournalOpened = true;
+            try {
+                orderJournal = OrderJournal.getShared();
+            } catch (IOException e) {
+                System.err.println("Error opening order history: " + e.getMessage());
+            }
+        }
+        return orderJournal;
+    }
+    
+    /**
+     * Records the end of a startup phase. Once the window is showing and
+     * the customers are loaded, prints the startup report if asked for,
+     * and exits if started with --exit-after-startup.
+     * @param phase Phase that finished
+     */
+    void startupPhaseDone(String phase) {
+        StartupTimer.mark(phase);
+        if (StartupTimer.hasMarked(FIRST_FRAME) && StartupTimer.hasMarked(CUSTOMERS_READY)) {
+            StartupTimer.reportIfEnabled();
+            if (exitAfterStartup) {
+                System.exit(0);
+            }
+            Metrics.registerInBackground(); // After startup, so JMX does not slow it
+        }
+    }
+    
+    /**
+     * Called by the login card once the customer store has loaded
+     */
+    void customersLoaded() {
+        startupPhaseDone(CUSTOMERS_READY);
+    }
+    
     /**
      * Shows the login panel
      */
@@ -84,8 +150,8 @@ public class PizzaOrderingSystem extends JFrame {
      * @param customer The logged-in customer
      */
     public void showMenu(Customer customer) {
-        currentCustomer = customer;
-        menuPanel.refresh();
+        session.setCustomer(customer);
+        menuPanel().refresh();
         cardLayout.show(mainPanel, "MENU");
     }
     
@@ -93,25 +159,64 @@ public class PizzaOrderingSystem extends JFrame {
      * Shows the order summary panel
      */
     public void showOrderSummary() {
-        orderSummaryPanel.refresh();
+        orderSummaryPanel().refresh();
         cardLayout.show(mainPanel, "SUMMARY");
     }
     
+    /**
+     * Shows the kitchen display of paid orders
+     */
+    public void showKitchen() {
+        kitchenPanel();
+        cardLayout.show(mainPanel, "KITCHEN");
+    }
+    
     /**
      * Adds an item to the current order
      * @param item The order item to add
      */
     public void addToOrder(OrderItem item) {
-        currentOrder.add(item);
-        menuPanel.updateOrderDisplay();
+        menuPanel().itemAdded(session.add(item));
+    }
+    
+    /**
+     * Removes an item from the current order
+     * @param index Position of the item in the order
+     * @return The removed item
+     */
+    public OrderItem removeFromOrder(int index) {
+        OrderItem item = session.remove(index);
+        menuPanel().itemRemoved(index);
+        return item;
+    }
+    
+    /**
+     * Changes the quantity of an item in the current order
+     * @param index Position of the item in the order
+     * @param quantity New number of items
+     * @throws IllegalArgumentException If quantity is out of range
+     */
+    public void setItemQuantity(int index, int quantity) {
+        session.setQuantity(index, quantity);
+        menuPanel().itemChanged(index);
     }
     
     /**
      * Gets the current order list
-     * @return List of order items
+     * @return Read-only view of the order items
      */
     public java.util.List<OrderItem> getCurrentOrder() {
-        return currentOrder;
+        return session.getItems();
+    }
+    
+    /**
+     * Gets a number that changes whenever the items in the current order
+     * change, or another order is resumed, so a view can skip rebuilding
+     * when it has not
+     * @return Order version
+     */
+    public long getOrderVersion() {
+        return session.getVersion();
     }
     
     /**
@@ -119,18 +224,134 @@ public class PizzaOrderingSystem extends JFrame {
      * @return Current customer object
      */
     public Customer getCurrentCustomer() {
-        return currentCustomer;
+        return session.getCustomer();
     }
     
     /**
      * Clears the current order
      */
     public void clearOrder() {
-        currentOrder.clear();
-        orderType = null;
-        paymentType = null;
-        paymentAmount = 0.0;
-        menuPanel.updateOrderDisplay();
+        session.clear();
+        menuPanel().updateOrderDisplay();
+    }
+    
+    /**
+     * Parks the current order so the register can serve someone else, and
+     * starts a new order at the login screen
+     * @return False if there was nothing to park
+     */
+    public boolean parkOrder() {
+        if (session.isEmpty()) {
+            return false;
+        }
+        session.park();
+        session = sessions.open(null);
+        menuPanel().updateOrderDisplay();
+        showLogin();
+        return true;
+    }
+    
+    /**
+     * Gets the orders waiting to be resumed, oldest first
+     * @return Parked order sessions
+     */
+    public java.util.List<OrderSession> getParkedOrders() {
+        return sessions.getParkedSessions();
+    }
+    
+    /**
+     * Continues a parked order. The order being worked on is parked in its
+     * place, or dropped if it has no items.
+     * @param parked Session from getParkedOrders()
+     * @return False if another register resumed it first
+     */
+    public boolean resumeOrder(OrderSession parked) {
+        if (!parked.resume()) {
+            return false;
+        }
+        if (session.isEmpty()) {
+            sessions.close(session.getId());
+        } else {
+            session.park();
+        }
+        session = parked;
+        showMenu(parked.getCustomer());
+        return true;
+    }
+    
+    /**
+     * Saves the current order to the customer's order history. Called when
+     * payment is processed; an order is only saved once, however many
+     * times payment is processed for it.
+     */
+    public void recordCompletedOrder() {
+        Customer customer = session.getCustomer();
+        OrderJournal orderJournal = orderJournal();
+        if (orderJournal == null || customer == null || session.isEmpty() || session.isRecorded()) {
+            return;
+        }
+        long key = PhoneKey.of(customer.getPhone());
+        if (key == PhoneKey.INVALID || key == PhoneKey.EMPTY) {
+            return;
+        }
+        try {
+            orderJournal.append(key, new OrderRecord(System.currentTimeMillis(), getOrderType(),
+                                                     getPaymentType(), getPaymentCents(),
+                                                     session.copyItems()));
+            session.setRecorded(true);
+            Metrics.ORDERS_RECORDED.incrementAndGet();
+        } catch (IOException e) {
+            System.err.println("Error saving order history: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Gets the current customer's most recent order
+     * @return The order, or null if the customer has no order history
+     */
+    public OrderRecord getLastOrder() {
+        Customer customer = session.getCustomer();
+        OrderJournal orderJournal = orderJournal();
+        if (orderJournal == null || customer == null) {
+            return null;
+        }
+        try {
+            return orderJournal.lastOrder(PhoneKey.of(customer.getPhone()));
+        } catch (IOException e) {
+            System.err.println("Error reading order history: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Replaces the current order with the items of the customer's most
+     * recent order, priced from the current menu. Items no longer on the
+     * menu are left out, and the cashier is told which.
+     * @return True if there was a previous order to copy
+     */
+    public boolean reorderLast() {
+        OrderRecord last = getLastOrder();
+        if (last == null) {
+            return false;
+        }
+        Menu menu = MenuManager.getShared().getMenu();
+        java.util.List<OrderItem> items = new ArrayList<>();
+        StringBuilder missing = new StringBuilder();
+        for (OrderItem item : last.getItems()) {
+            OrderItem repriced = item.repricedFor(menu);
+            if (repriced != null) {
+                items.add(repriced);
+            } else {
+                missing.append("\n").append(item.getDescription());
+            }
+        }
+        session.replaceItems(items, last.getOrderType());
+        menuPanel().updateOrderDisplay();
+        if (missing.length() > 0) {
+            JOptionPane.showMessageDialog(this, "These items are no longer on the menu and were left out:" + missing,
+                                          "Reorder Last", JOptionPane.WARNING_MESSAGE);
+        }
+        return true;
     }
     
     /**
@@ -138,7 +359,7 @@ public class PizzaOrderingSystem extends JFrame {
      * @param orderType The order type
      */
     public void setOrderType(String orderType) {
-        this.orderType = orderType;
+        session.setOrderType(orderType);
     }
     
     /**
@@ -146,17 +367,16 @@ public class PizzaOrderingSystem extends JFrame {
      * @return Order type string
      */
     public String getOrderType() {
-        return orderType != null ? orderType : "Pickup";
+        return session.getOrderType();
     }
     
     /**
      * Sets the payment type and amount
      * @param paymentType Payment type (Cash, Check, Credit)
-     * @param paymentAmount Amount tendered
+     * @param paymentCents Amount tendered in cents
      */
-    public void setPaymentInfo(String paymentType, double paymentAmount) {
-        this.paymentType = paymentType;
-        this.paymentAmount = paymentAmount;
+    public void setPaymentInfo(String paymentType, long paymentCents) {
+        session.setPaymentInfo(paymentType, paymentCents);
     }
     
     /**
@@ -164,34 +384,108 @@ public class PizzaOrderingSystem extends JFrame {
      * @return Payment type string
      */
     public String getPaymentType() {
-        return paymentType != null ? paymentType : "Cash";
+        return session.getPaymentType();
     }
     
     /**
      * Gets the payment amount
-     * @return Payment amount
+     * @return Amount tendered in cents
      */
-    public double getPaymentAmount() {
-        return paymentAmount;
+    public long getPaymentCents() {
+        return session.getPaymentCents();
     }
     
     /**
-     * Calculates the total price of the current order
-     * @return Total price as double
+     * Gets the price of the current order before tax. The subtotal is kept
+     * up to date as items are added and removed, so this does not walk the
+     * order.
+     * @return Subtotal in cents
      */
-    public double calculateTotal() {
-        double total = 0.0;
-        for (OrderItem item : currentOrder) {
-            total += item.getPrice();
-        }
-        return total;
+    public long getSubtotalCents() {
+        return session.getSubtotalCents();
     }
     
     /**
-     * Main entry point
+     * Gets the tax on the current order
+     * @return Tax in cents
+     */
+    public long getTaxCents() {
+        return PricingEngine.taxCents(getSubtotalCents());
+    }
+    
+    /**
+     * Gets the price of the current order including tax
+     * @return Total in cents
+     */
+    public long getTotalCents() {
+        long subtotal = getSubtotalCents();
+        return subtotal + PricingEngine.taxCents(subtotal);
+    }
+    
+    /**
+     * Gets the menu the current order is taken from
+     * @return The order's Menu; the current menu while the order is empty
+     */
+    public Menu getMenu() {
+        return session.getMenu();
+    }
+    
+    /**
+     * Gets the pricing engine for the current menu
+     * @return PricingEngine compiled from the menu prices
+     */
+    public static PricingEngine getPricing() {
+        return PricingEngine.getDefault();
+    }
+    
+    /**
+     * Main entry point. With --headless [port] the order API is started
+     * instead of the register window. With --exit-after-startup the
+     * application quits as soon as it has started, which build.sh uses to
+     * record the classes for the AppCDS archive.
      * @param args Command line arguments
      */
     public static void main(String[] args) {
+        StartupTimer.mark("main");
+        java.util.List<String> options = new ArrayList<>(Arrays.asList(args));
+        exitAfterStartup = options.remove(EXIT_AFTER_STARTUP);
+        try {
+            MenuManager.getShared().startWatching();
+        } catch (IOException e) {
+            System.err.println("Error watching menu file: " + e.getMessage());
+        }
+        StartupTimer.mark("menu loaded");
+        if (!options.isEmpty() && options.get(0).equals("--headless")) {
+            int port = options.size() > 1 ? Integer.parseInt(options.get(1))
+                                          : Integer.getInteger(OrderApiServer.PORT_PROPERTY, 8080);
+            try {
+                OrderApiServer api = OrderApiServer.startShared(port);
+                System.out.println("Order API listening on http://localhost:" + api.getPort() + "/api");
+                StartupTimer.mark("order API listening");
+                StartupTimer.reportIfEnabled();
+                if (exitAfterStartup) {
+                    System.exit(0);
+                }
+                Metrics.registerInBackground();
+            } catch (IOException e) {
+                System.err.println("Error starting order API: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        
+        // Read the customer file and order history while the window is built
+        CustomerManager.loadShared();
+        Thread historyLoader = new Thread(() -> {
+            try {
+                OrderJournal.getShared();
+            } catch (IOException e) {
+                System.err.println("Error opening order history: " + e.getMessage());
+            }
+        }, "order-history-load");
+        historyLoader.setDaemon(true);
+        historyLoader.start();
+        
         SwingUtilities.invokeLater(() -> {
             try {
                 String lookAndFeel = UIManager.getSystemLookAndFeelClassName();
@@ -199,19 +493,51 @@ public class PizzaOrderingSystem extends JFrame {
             } catch (Exception e) {
                 e.printStackTrace();
             }
-            new PizzaOrderingSystem().setVisible(true);
+            StartupTimer.mark("look and feel set");
+            PizzaOrderingSystem frame = new PizzaOrderingSystem();
+            StartupTimer.mark("login card built");
+            frame.addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowOpened(WindowEvent e) {
+                    // Runs after the events queued by the first paint
+                    SwingUtilities.invokeLater(() -> frame.startupPhaseDone(FIRST_FRAME));
+                }
+            });
+            frame.setVisible(true);
         });
+        
+        // Online orders can also be taken alongside the registers, feeding the same kitchen display
+        Integer apiPort = Integer.getInteger(OrderApiServer.PORT_PROPERTY);
+        if (apiPort != null) {
+            try {
+                OrderApiServer.startShared(apiPort, KitchenQueue.getShared());
+            } catch (IOException e) {
+                System.err.println("Error starting order API: " + e.getMessage());
+            }
+        }
     }
     
-    // Static getters for menu data
-    public static String[] getPizzaSizes() { return PIZZA_SIZES; }
-    public static double[] getSizePrices() { return SIZE_PRICES; }
-    public static String[] getCrustTypes() { return CRUST_TYPES; }
-    public static double[] getCrustPrices() { return CRUST_PRICES; }
-    public static String[] getToppings() { return TOPPINGS; }
-    public static double getToppingPrice() { return TOPPING_PRICE; }
-    public static String[] getBeverages() { return BEVERAGES; }
-    public static String[] getBevSizes() { return BEV_SIZES; }
-    public static double[] getBevPrices() { return BEV_PRICES; }
+    // Static getters for the current menu (see MenuManager)
+    public static String[] getPizzaSizes() { return currentMenu().getNames(Menu.Section.SIZE); }
+    public static double[] getSizePrices() { return dollars(currentMenu().getSizeCents()); }
+    public static String[] getCrustTypes() { return currentMenu().getNames(Menu.Section.CRUST); }
+    public static double[] getCrustPrices() { return dollars(currentMenu().getCrustCents()); }
+    public static String[] getToppings() { return currentMenu().getNames(Menu.Section.TOPPING); }
+    public static double getToppingPrice() { return currentMenu().getToppingCents() / 100.0; }
+    public static String[] getBeverages() { return currentMenu().getNames(Menu.Section.BEVERAGE); }
+    public static String[] getBevSizes() { return currentMenu().getNames(Menu.Section.BEVERAGE_SIZE); }
+    public static double[] getBevPrices() { return dollars(currentMenu().getBeverageSizeCents()); }
+    
+    private static Menu currentMenu() {
+        return MenuManager.getShared().getMenu();
+    }
+    
+    private static double[] dollars(long[] cents) {
+        double[] dollars = new double[cents.length];
+        for (int i = 0; i < cents.length; i++) {
+            dollars[i] = cents[i] / 100.0;
+        }
+        return dollars;
+    }
 }
 
@@ -0,0 +1,186 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * PricingEngine - Exact order pricing in whole cents
+ *
+ * The prices of a Menu are compiled once into tables of long cents: every pizza price is looked up in a dense table indexed by
+ * (size, crust, topping count), and beverage prices by size. Sums and
+ * products of cents are exact, so the same items always give the same total
+ * whatever order they are added in, and nothing on the pricing path
+ * allocates.
+ *
+ * Tax is TAX_BASIS_POINTS hundredths of a percent of the subtotal, rounded
+ * half up to the cent once per order.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public final class PricingEngine {
+    /** Sales tax in hundredths of a percent (8%) */
+    public static final long TAX_BASIS_POINTS = 800;
+
+    private final long[] pizzaCents;
+    private final long[] sizeCents;
+    private final long[] crustCents;
+    private final long toppingCents;
+    private final long[] beverageCents;
+    private final int crusts;
+    private final int toppingSlots;
+
+    /**
+     * Gets the engine compiled from the current menu. Callers pricing a
+     * whole order should keep the engine of that order's Menu instead, so
+     * a menu reload part way through does not mix prices.
+     * @return PricingEngine of the current menu
+     */
+    public static PricingEngine getDefault() {
+        return MenuManager.getShared().getMenu().getPricing();
+    }
+
+    /**
+     * Constructor - Compiles menu prices in dollars into cent tables
+     * @param sizePrices Pizza price for each size
+     * @param crustPrices Surcharge for each crust
+     * @param toppingPrice Price per topping
+     * @param maxToppings Largest number of toppings to price
+     * @param beveragePrices Beverage price for each size
+     */
+    public PricingEngine(double[] sizePrices, double[] crustPrices, double toppingPrice, int maxToppings,
+                         double[] beveragePrices) {
+        this(toCents(sizePrices), toCents(crustPrices), toCents(toppingPrice), maxToppings, toCents(beveragePrices));
+    }
+
+    /**
+     * Constructor - Compiles menu prices in cents into tables
+     * @param sizeCents Pizza price for each size
+     * @param crustCents Surcharge for each crust
+     * @param toppingCents Price per topping
+     * @param maxToppings Largest number of toppings to price
+     * @param beverageCents Beverage price for each size
+     */
+    public PricingEngine(long[] sizeCents, long[] crustCents, long toppingCents, int maxToppings,
+                         long[] beverageCents) {
+        crusts = crustCents.length;
+        toppingSlots = maxToppings + 1;
+        this.sizeCents = sizeCents.clone();
+        this.crustCents = crustCents.clone();
+        this.toppingCents = toppingCents;
+        this.beverageCents = beverageCents.clone();
+
+        pizzaCents = new long[sizeCents.length * crusts * toppingSlots];
+        for (int size = 0; size < sizeCents.length; size++) {
+            for (int crust = 0; crust < crusts; crust++) {
+                for (int toppings = 0; toppings < toppingSlots; toppings++) {
+                    pizzaCents[(size * crusts + crust) * toppingSlots + toppings] =
+                        sizeCents[size] + crustCents[crust] + toppings * toppingCents;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the price of a pizza
+     * @param size Index into the pizza sizes
+     * @param crust Index into the crust types
+     * @param toppings Number of toppings
+     * @return Price in cents
+     * @throws IndexOutOfBoundsException If any argument is outside the menu
+     */
+    public long pizzaCents(int size, int crust, int toppings) {
+        if (crust < 0 || crust >= crusts || toppings < 0 || toppings >= toppingSlots) {
+            throw new IndexOutOfBoundsException("No price for crust " + crust + " with " + toppings + " toppings");
+        }
+        return pizzaCents[(size * crusts + crust) * toppingSlots + toppings];
+    }
+
+    /**
+     * Gets the base price of a pizza size
+     * @param size Index into the pizza sizes
+     * @return Price in cents
+     */
+    public long sizeCents(int size) {
+        return sizeCents[size];
+    }
+
+    /**
+     * Gets the surcharge for a crust
+     * @param crust Index into the crust types
+     * @return Price in cents
+     */
+    public long crustCents(int crust) {
+        return crustCents[crust];
+    }
+
+    /**
+     * Gets the price of a beverage
+     * @param size Index into the beverage sizes
+     * @return Price in cents
+     */
+    public long beverageCents(int size) {
+        return beverageCents[size];
+    }
+
+    /**
+     * Gets the price of an order line
+     * @param unitCents Price of one item in cents
+     * @param quantity Number of items
+     * @return Line price in cents
+     * @throws ArithmeticException If the price does not fit in a long
+     */
+    public static long lineCents(long unitCents, int quantity) {
+        return Math.multiplyExact(unitCents, quantity);
+    }
+
+    /**
+     * Gets the tax on a subtotal, rounded half up to the cent
+     * @param subtotalCents Subtotal in cents
+     * @return Tax in cents
+     */
+    public static long taxCents(long subtotalCents) {
+        long scaled = Math.multiplyExact(subtotalCents, TAX_BASIS_POINTS);
+        return Math.floorDiv(scaled + 5_000, 10_000);
+    }
+
+    /**
+     * Converts a price in dollars to the nearest cent
+     * @param dollars Price in dollars
+     * @return Price in cents
+     */
+    public static long toCents(double dollars) {
+        return Math.round(dollars * 100);
+    }
+
+    /**
+     * Parses an amount typed by the cashier, such as "20" or "18.5"
+     * @param text Amount in dollars
+     * @return Amount in cents, rounded half up
+     * @throws NumberFormatException If the text is not a number
+     */
+    public static long parseCents(String text) {
+        try {
+            return new BigDecimal(text.trim()).setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+    }
+
+    /**
+     * Formats cents as dollars without a currency sign, such as "12.50"
+     * @param cents Amount in cents
+     * @return Formatted amount
+     */
+    public static String format(long cents) {
+        long abs = Math.abs(cents);
+        long fraction = abs % 100;
+        return (cents < 0 ? "-" : "") + (abs / 100) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    private static long[] toCents(double[] dollars) {
+        long[] cents = new long[dollars.length];
+        for (int i = 0; i < dollars.length; i++) {
+            cents[i] = toCents(dollars[i]);
+        }
+        return cents;
+    }
+}
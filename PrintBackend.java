@@ -0,0 +1,20 @@
+import java.io.IOException;
+
+/**
+ * PrintBackend - Where PrintSpooler sends finished jobs
+ *
+ * Backends are only called from the spooler thread, one job at a time,
+ * so they may block for as long as the printer takes.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public interface PrintBackend {
+
+    /**
+     * Prints a job
+     * @param job Job to print
+     * @throws IOException If the job could not be printed; the spooler may retry it
+     */
+    void print(PrintJob job) throws IOException;
+}
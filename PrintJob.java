@@ -0,0 +1,102 @@
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PrintJob - A receipt or kitchen ticket waiting to be printed
+ *
+ * The text is fixed when the job is created, so a job can be printed on
+ * the spooler thread however the order changes afterwards.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class PrintJob {
+    /** Characters per line of a kitchen ticket, printed in large type */
+    public static final int TICKET_WIDTH = 24;
+
+    public enum Kind { RECEIPT, KITCHEN_TICKET }
+
+    private static final AtomicLong NEXT_ID = new AtomicLong(1);
+
+    private final long id;
+    private final Kind kind;
+    private final String text;
+    private final long timeMillis;
+
+    private PrintJob(Kind kind, String text, long timeMillis) {
+        this.id = NEXT_ID.getAndIncrement();
+        this.kind = kind;
+        this.text = text;
+        this.timeMillis = timeMillis;
+    }
+
+    /**
+     * Creates a customer receipt
+     * @param text Receipt text, as shown on the order summary
+     * @return The job
+     */
+    public static PrintJob receipt(String text) {
+        return new PrintJob(Kind.RECEIPT, text, System.currentTimeMillis());
+    }
+
+    /**
+     * Creates a kitchen ticket listing only what to make
+     * @param orderType Pickup or Delivery
+     * @param customerName Name to call out, or null
+     * @param items Items ordered
+     * @return The job
+     */
+    public static PrintJob kitchenTicket(String orderType, String customerName, List<OrderItem> items) {
+        long now = System.currentTimeMillis();
+        StringBuilder sb = new StringBuilder();
+        String time = String.format("%tR", new Date(now));
+        String type = orderType.toUpperCase();
+        sb.append(type).append(" ".repeat(Math.max(1, TICKET_WIDTH - type.length() - time.length())))
+          .append(time).append('\n');
+        if (customerName != null) {
+            wrap(sb, customerName, "");
+        }
+        sb.append("-".repeat(TICKET_WIDTH)).append('\n');
+        for (OrderItem item : items) {
+            wrap(sb, item.getQuantity() + " x " + item.getDescription(), "    ");
+        }
+        sb.append("-".repeat(TICKET_WIDTH)).append('\n');
+        return new PrintJob(Kind.KITCHEN_TICKET, sb.toString(), now);
+    }
+
+    // Getters
+    public long getId() { return id; }
+    public Kind getKind() { return kind; }
+    public String getText() { return text; }
+    public long getTimeMillis() { return timeMillis; }
+
+    @Override
+    public String toString() {
+        return (kind == Kind.RECEIPT ? "Receipt #" : "Kitchen ticket #") + id;
+    }
+
+    /**
+     * Appends text broken at spaces into lines of TICKET_WIDTH, indenting
+     * every line after the first
+     */
+    private static void wrap(StringBuilder sb, String text, String indent) {
+        String prefix = "";
+        int start = 0;
+        while (start < text.length()) {
+            int room = TICKET_WIDTH - prefix.length();
+            int end = Math.min(text.length(), start + room);
+            if (end < text.length()) {
+                int space = text.lastIndexOf(' ', end);
+                if (space > start) {
+                    end = space;
+                }
+            }
+            sb.append(prefix).append(text, start, end).append('\n');
+            start = end;
+            while (start < text.length() && text.charAt(start) == ' ') {
+                start++;
+            }
+            prefix = indent;
+        }
+    }
+}
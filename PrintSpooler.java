@@ -0,0 +1,225 @@
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PrintSpooler - Background print queue for receipts and kitchen tickets
+ *
+ * Registers hand jobs to submit(), which only adds them to a queue and
+ * never waits for a printer, so orders can still be taken while a slow or
+ * jammed printer works through a rush. A single spooler thread prints the
+ * jobs in the order they were submitted. Receipts and kitchen tickets can
+ * go to different backends (the counter printer and the kitchen printer).
+ *
+ * A job that fails is retried up to MAX_ATTEMPTS times, waiting a little
+ * longer before each retry; later jobs wait behind it so tickets are never
+ * printed out of order. Listeners hear about every job that is printed or
+ * given up on.
+ *
+ * The shared spooler picks its backends from system properties:
+ * PRINTER_PROPERTY for receipts and KITCHEN_PRINTER_PROPERTY for kitchen
+ * tickets (defaulting to the receipt printer). Each is one of "system"
+ * (the default printer), "file:DIR" (text files in DIR), "escpos-file:DIR"
+ * (ESC/POS byte files in DIR) or "escpos:HOST:PORT" (a network printer).
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class PrintSpooler {
+    /** System property choosing the receipt printer */
+    public static final String PRINTER_PROPERTY = "pizza.printer";
+    /** System property choosing the kitchen ticket printer */
+    public static final String KITCHEN_PRINTER_PROPERTY = "pizza.kitchenPrinter";
+    /** Times a job is tried before it is given up on */
+    public static final int MAX_ATTEMPTS = 3;
+
+    private static final int QUEUE_CAPACITY = 256;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private static PrintSpooler shared;
+
+    private final PrintBackend receiptBackend;
+    private final PrintBackend kitchenBackend;
+    private final long retryDelayMillis;
+    private final BlockingQueue<PrintJob> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Thread thread;
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean running = true;
+
+    /**
+     * Callback told when a job has finished, on the spooler thread
+     */
+    public interface Listener {
+        /**
+         * @param job The job
+         * @param error Null if the job printed, otherwise the last failure
+         */
+        void finished(PrintJob job, IOException error);
+    }
+
+    /**
+     * Constructor - Starts the spooler thread
+     * @param receiptBackend Where receipts are printed
+     * @param kitchenBackend Where kitchen tickets are printed
+     */
+    public PrintSpooler(PrintBackend receiptBackend, PrintBackend kitchenBackend) {
+        this(receiptBackend, kitchenBackend, RETRY_DELAY_MILLIS);
+    }
+
+    /**
+     * Constructor - Starts the spooler thread
+     * @param receiptBackend Where receipts are printed
+     * @param kitchenBackend Where kitchen tickets are printed
+     * @param retryDelayMillis Wait before the first retry; doubled for each later one
+     */
+    public PrintSpooler(PrintBackend receiptBackend, PrintBackend kitchenBackend, long retryDelayMillis) {
+        this.receiptBackend = receiptBackend;
+        this.kitchenBackend = kitchenBackend;
+        this.retryDelayMillis = retryDelayMillis;
+        thread = new Thread(this::run, "print-spooler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Gets the spooler shared by every register in this JVM, choosing its
+     * printers from system properties on first use
+     * @return Shared PrintSpooler
+     */
+    public static synchronized PrintSpooler getShared() {
+        if (shared == null) {
+            PrintBackend receipts = backendFor(System.getProperty(PRINTER_PROPERTY, "system"));
+            String kitchen = System.getProperty(KITCHEN_PRINTER_PROPERTY);
+            shared = new PrintSpooler(receipts, kitchen != null ? backendFor(kitchen) : receipts);
+            Runtime.getRuntime().addShutdownHook(new Thread(shared::close, "print-drain"));
+        }
+        return shared;
+    }
+
+    /**
+     * Creates a backend from a printer setting
+     * @param spec system, file:DIR, escpos-file:DIR or escpos:HOST:PORT
+     * @return The backend; the system printer if spec is not understood
+     */
+    public static PrintBackend backendFor(String spec) {
+        try {
+            if (spec.startsWith("file:")) {
+                return new FileSinkBackend(new File(spec.substring(5)), false);
+            }
+            if (spec.startsWith("escpos-file:")) {
+                return new FileSinkBackend(new File(spec.substring(12)), true);
+            }
+            if (spec.startsWith("escpos:")) {
+                int colon = spec.lastIndexOf(':');
+                return new EscPosBackend(spec.substring(7, colon), Integer.parseInt(spec.substring(colon + 1)));
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Error reading printer setting " + spec + ": " + e.getMessage());
+            return new SystemPrinterBackend();
+        }
+        if (!spec.equals("system")) {
+            System.err.println("Error reading printer setting " + spec + ": using the system printer");
+        }
+        return new SystemPrinterBackend();
+    }
+
+    /**
+     * Queues a job without waiting for it to print
+     * @param job Job to print
+     * @return False if the queue is full and the job was not accepted
+     */
+    public boolean submit(PrintJob job) {
+        if (!running) {
+            return false;
+        }
+        pending.incrementAndGet();
+        if (!queue.offer(job)) {
+            pending.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds a callback for finished jobs
+     * @param listener Callback, run on the spooler thread
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Gets the number of jobs waiting or printing
+     * @return Pending job count
+     */
+    public int getPendingJobs() {
+        return pending.get();
+    }
+
+    /**
+     * Stops taking jobs, gives the queued ones a few seconds to print and
+     * stops the spooler thread. Runs automatically when the application
+     * shuts down.
+     */
+    public void close() {
+        running = false;
+        long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT_MILLIS;
+        try {
+            while (pending.get() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (pending.get() > 0) {
+            System.err.println("Error printing: " + pending.get() + " jobs left unprinted");
+        }
+        thread.interrupt();
+    }
+
+    /**
+     * Spooler loop: print each job in turn, retrying failures
+     */
+    private void run() {
+        while (true) {
+            PrintJob job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return;
+                }
+                continue;
+            }
+
+            IOException error = null;
+            for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+                try {
+                    (job.getKind() == PrintJob.Kind.RECEIPT ? receiptBackend : kitchenBackend).print(job);
+                    error = null;
+                    break;
+                } catch (IOException e) {
+                    error = e;
+                } catch (RuntimeException e) {
+                    error = new IOException(e.toString(), e);
+                }
+                if (attempt < MAX_ATTEMPTS) {
+                    try {
+                        Thread.sleep(retryDelayMillis << (attempt - 1));
+                    } catch (InterruptedException e) {
+                        break; // Shutting down; report the failure now
+                    }
+                }
+            }
+            if (error != null) {
+                System.err.println("Error printing " + job + ": " + error.getMessage());
+            }
+            pending.decrementAndGet();
+            for (Listener listener : listeners) {
+                listener.finished(job, error);
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * ReceiptRenderer - Builds the receipt text shown on the order summary
+ *
+ * The fixed parts of the layout (rules, title, column headings and the
+ * padded labels of the totals) are built once in the constructor. Item
+ * lines, quantities, amounts and the date are then written straight into
+ * a reused StringBuilder, padding and formatting cents by hand, so no
+ * format strings are parsed and no temporary Strings are made per line.
+ *
+ * A receipt comes in two parts. The order part (header, items and totals)
+ * is cached and only rebuilt when the order version, the order type or the
+ * customer changes. The payment part (payment lines and the closing
+ * message) is cached separately, so processing a payment rebuilds only a
+ * few lines. Each method returns the same String while its part is
+ * unchanged, so a caller can compare with == to see what needs redrawing.
+ *
+ * A renderer is not thread-safe; use one per view.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class ReceiptRenderer {
+    /** Characters per receipt line */
+    public static final int WIDTH = 60;
+    private static final int DESCRIPTION_WIDTH = 40;
+    private static final int QUANTITY_WIDTH = 6;
+    private static final int PRICE_WIDTH = 9;
+
+    // Layout, built once
+    private final String doubleRule;
+    private final String singleRule;
+    private final String title;
+    private final String columnHeadings;
+    private final String subtotalLabel;
+    private final String taxLabel;
+    private final String totalLabel;
+    private final String signatureBlock;
+
+    private final StringBuilder sb = new StringBuilder(4096);
+    private final Calendar calendar = Calendar.getInstance();
+
+    // Cached order part and what it was built from
+    private String orderPart;
+    private long orderVersion;
+    private Customer orderCustomer;
+    private String orderType;
+
+    // Cached payment part and what it was built from
+    private String paymentPart;
+    private boolean paymentShown;
+    private String paymentType;
+    private long paymentCents;
+    private long paymentTotalCents;
+
+    /**
+     * Constructor - Builds the fixed parts of the layout
+     */
+    public ReceiptRenderer() {
+        doubleRule = "=".repeat(WIDTH) + "\n";
+        singleRule = "-".repeat(WIDTH) + "\n";
+        title = "          INFINITE DOUGHMAIN PIZZA\n";
+        columnHeadings = String.format("%-" + DESCRIPTION_WIDTH + "s %" + QUANTITY_WIDTH + "s %"
+                                       + (PRICE_WIDTH + 1) + "s\n", "Item", "Qty", "Price");
+        subtotalLabel = totalsLabel("Subtotal");
+        taxLabel = totalsLabel("Tax (8%)");
+        totalLabel = totalsLabel("TOTAL");
+        signatureBlock = singleRule + "Signature: _________________________________\n" + singleRule;
+    }
+
+    /**
+     * Gets the header, items and totals of a receipt
+     * @param version Order version; the cached text is reused while it is unchanged
+     * @param customer Customer, or null
+     * @param orderType Pickup or Delivery
+     * @param items Items ordered
+     * @param subtotalCents Subtotal in cents
+     * @param taxCents Tax in cents
+     * @return Order part of the receipt
+     */
+    public String renderOrder(long version, Customer customer, String orderType, List<OrderItem> items,
+                              long subtotalCents, long taxCents) {
+        if (orderPart != null && version == orderVersion && customer == orderCustomer
+            && orderType.equals(this.orderType)) {
+            return orderPart;
+        }
+        sb.setLength(0);
+
+        // Header
+        sb.append(doubleRule).append(title).append(doubleRule);
+        sb.append("Order Date: ");
+        appendDate(System.currentTimeMillis());
+        sb.append("\nOrder Type: ").append(orderType.toUpperCase()).append('\n');
+        if (customer != null) {
+            sb.append("Customer: ").append(customer.getName()).append('\n');
+            sb.append("Phone: ").append(customer.getPhone()).append('\n');
+            sb.append("Address: ").append(customer.getFullAddress()).append('\n');
+            if (orderType.equals("Delivery")) {
+                String deliveryInfo = customer.getDeliveryInfo();
+                if (deliveryInfo != null && !deliveryInfo.isEmpty() && !deliveryInfo.equals("No additional location info")) {
+                    sb.append("Delivery Info: ").append(deliveryInfo).append('\n');
+                }
+            }
+        }
+        sb.append(singleRule).append('\n');
+
+        // Items
+        sb.append(columnHeadings).append(singleRule);
+        for (int i = 0, n = items.size(); i < n; i++) {
+            appendLine(items.get(i));
+        }
+
+        // Totals
+        sb.append(singleRule);
+        sb.append(subtotalLabel);
+        appendCents(subtotalCents, PRICE_WIDTH);
+        sb.append('\n').append(taxLabel);
+        appendCents(taxCents, PRICE_WIDTH);
+        sb.append('\n').append(doubleRule).append(totalLabel);
+        appendCents(subtotalCents + taxCents, PRICE_WIDTH);
+        sb.append('\n').append(doubleRule).append('\n');
+
+        orderPart = sb.toString();
+        orderVersion = version;
+        orderCustomer = customer;
+        this.orderType = orderType;
+        return orderPart;
+    }
+
+    /**
+     * Gets the payment lines and closing message of a receipt
+     * @param shown True once payment has been processed
+     * @param paymentType Cash, Check or Credit
+     * @param paymentCents Amount tendered in cents
+     * @param totalCents Order total in cents, for the change due
+     * @return Payment part of the receipt
+     */
+    public String renderPayment(boolean shown, String paymentType, long paymentCents, long totalCents) {
+        if (paymentPart != null && shown == paymentShown && paymentType.equals(this.paymentType)
+            && paymentCents == this.paymentCents && totalCents == paymentTotalCents) {
+            return paymentPart;
+        }
+        sb.setLength(0);
+        if (shown) {
+            sb.append("Payment Method: ").append(paymentType).append('\n');
+            if (paymentCents > 0) {
+                sb.append("Amount Tendered: $");
+                appendCents(paymentCents, 0);
+                sb.append('\n');
+                long change = paymentCents - totalCents;
+                if (change > 0) {
+                    sb.append("Change: $");
+                    appendCents(change, 0);
+                    sb.append('\n');
+                }
+            }
+            sb.append('\n');
+
+            // Signature line for credit card
+            if (paymentType.equals("Credit")) {
+                sb.append(signatureBlock);
+            }
+        }
+        sb.append("\nThank you for your order!\n");
+
+        paymentPart = sb.toString();
+        paymentShown = shown;
+        this.paymentType = paymentType;
+        this.paymentCents = paymentCents;
+        paymentTotalCents = totalCents;
+        return paymentPart;
+    }
+
+    /**
+     * Appends one item line, cutting long descriptions to fit the column
+     */
+    private void appendLine(OrderItem item) {
+        int start = sb.length();
+        item.appendDescription(sb);
+        if (sb.length() - start > DESCRIPTION_WIDTH) {
+            sb.setLength(start + DESCRIPTION_WIDTH - 3);
+            sb.append("...");
+        }
+        pad(DESCRIPTION_WIDTH - (sb.length() - start));
+        sb.append(' ');
+        int quantity = item.getQuantity();
+        pad(QUANTITY_WIDTH - digits(quantity));
+        sb.append(quantity).append(" $");
+        appendCents(item.getTotalCents(), PRICE_WIDTH);
+        sb.append('\n');
+    }
+
+    /**
+     * Appends cents as dollars, such as "12.50", right-aligned in width
+     * characters. Gives the same text as PricingEngine.format.
+     */
+    private void appendCents(long cents, int width) {
+        long abs = Math.abs(cents);
+        long dollars = abs / 100;
+        int fraction = (int) (abs % 100);
+        pad(width - (digits(dollars) + 3 + (cents < 0 ? 1 : 0)));
+        if (cents < 0) {
+            sb.append('-');
+        }
+        sb.append(dollars).append('.').append((char) ('0' + fraction / 10)).append((char) ('0' + fraction % 10));
+    }
+
+    /**
+     * Appends a time as MM/dd/yyyy HH:mm:ss
+     */
+    private void appendDate(long millis) {
+        calendar.setTimeInMillis(millis);
+        appendTwoDigits(calendar.get(Calendar.MONTH) + 1);
+        sb.append('/');
+        appendTwoDigits(calendar.get(Calendar.DAY_OF_MONTH));
+        sb.append('/').append(calendar.get(Calendar.YEAR)).append(' ');
+        appendTwoDigits(calendar.get(Calendar.HOUR_OF_DAY));
+        sb.append(':');
+        appendTwoDigits(calendar.get(Calendar.MINUTE));
+        sb.append(':');
+        appendTwoDigits(calendar.get(Calendar.SECOND));
+    }
+
+    private void appendTwoDigits(int value) {
+        sb.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    private void pad(int spaces) {
+        for (int i = 0; i < spaces; i++) {
+            sb.append(' ');
+        }
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * Pads a totals label to line up its amount with the item prices
+     */
+    private static String totalsLabel(String label) {
+        return String.format("%-" + DESCRIPTION_WIDTH + "s %" + QUANTITY_WIDTH + "s $", label, "");
+    }
+}
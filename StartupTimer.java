@@ -0,0 +1,94 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * StartupTimer - Records how long each phase of starting the application takes
+ *
+ * Startup code calls mark() as each phase ends; a phase may end on any
+ * thread (the customer file loads in the background while the window is
+ * built).
+ *
+ * With -Dpizza.startupTiming=true the phases are printed once the window
+ * is showing and the customers are loaded. Times are then measured from
+ * the moment the JVM started, so the report includes JVM and class loading
+ * time before main(); without it they count from the first mark, and the
+ * management classes that know the JVM start time are never loaded.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public final class StartupTimer {
+    /** System property that turns on the startup report */
+    public static final String TIMING_PROPERTY = "pizza.startupTiming";
+
+    private static final long START_OFFSET_NANOS = Boolean.getBoolean(TIMING_PROPERTY) ? jvmAgeNanos() : 0;
+    private static final long START_NANOS = System.nanoTime();
+    private static final List<String> phases = new ArrayList<>();
+    private static final List<Long> times = new ArrayList<>();
+
+    private StartupTimer() {
+    }
+
+    /**
+     * Records the end of a phase
+     * @param phase Name of the phase
+     */
+    public static synchronized void mark(String phase) {
+        phases.add(phase);
+        times.add(elapsedNanos());
+    }
+
+    /**
+     * Gets the time since the JVM started, or since the first mark
+     * @return Elapsed time in milliseconds
+     */
+    public static double elapsedMillis() {
+        return elapsedNanos() / 1e6;
+    }
+
+    /**
+     * Checks whether a phase has been recorded
+     * @param phase Name of the phase
+     * @return True once mark(phase) has been called
+     */
+    public static synchronized boolean hasMarked(String phase) {
+        return phases.contains(phase);
+    }
+
+    /**
+     * Builds the report of every phase recorded so far
+     * @return One line per phase with its end time and duration
+     */
+    public static synchronized String report() {
+        StringBuilder sb = new StringBuilder("Startup phases (ms since JVM start):\n");
+        long previous = 0;
+        for (int i = 0; i < phases.size(); i++) {
+            long time = times.get(i);
+            sb.append(String.format("  %8.1f  %-28s +%.1f%n", time / 1e6, phases.get(i), (time - previous) / 1e6));
+            previous = Math.max(previous, time);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Prints the report if TIMING_PROPERTY is set
+     */
+    public static void reportIfEnabled() {
+        if (Boolean.getBoolean(TIMING_PROPERTY)) {
+            System.out.print(report());
+        }
+    }
+
+    private static long elapsedNanos() {
+        return START_OFFSET_NANOS + (System.nanoTime() - START_NANOS);
+    }
+
+    /**
+     * Time from JVM start to this class loading
+     */
+    private static long jvmAgeNanos() {
+        long started = ManagementFactory.getRuntimeMXBean().getStartTime();
+        return Math.max(0, (System.currentTimeMillis() - started) * 1_000_000L);
+    }
+}
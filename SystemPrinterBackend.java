@@ -0,0 +1,67 @@
+import java.awt.*;
+import java.awt.print.*;
+import java.io.IOException;
+
+/**
+ * SystemPrinterBackend - Prints jobs on the default printer through the
+ * Java print service
+ *
+ * No print dialog is shown. Receipts are drawn in small monospaced type;
+ * kitchen tickets in large bold type so they can be read from the line.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class SystemPrinterBackend implements PrintBackend {
+    private static final Font RECEIPT_FONT = new Font("Monospaced", Font.PLAIN, 9);
+    private static final Font TICKET_FONT = new Font("Monospaced", Font.BOLD, 18);
+
+    @Override
+    public void print(PrintJob job) throws IOException {
+        PrinterJob printerJob = PrinterJob.getPrinterJob();
+        if (printerJob.getPrintService() == null) {
+            throw new IOException("No printer available");
+        }
+        printerJob.setJobName("Infinite Doughmain " + job);
+        printerJob.setPrintable(new TextPrintable(job.getText().split("\n", -1),
+            job.getKind() == PrintJob.Kind.KITCHEN_TICKET ? TICKET_FONT : RECEIPT_FONT));
+        try {
+            printerJob.print();
+        } catch (PrinterException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Draws lines of text, as many as fit on each page
+     */
+    private static class TextPrintable implements Printable {
+        private final String[] lines;
+        private final Font font;
+
+        TextPrintable(String[] lines, Font font) {
+            this.lines = lines;
+            this.font = font;
+        }
+
+        @Override
+        public int print(Graphics graphics, PageFormat page, int pageIndex) {
+            graphics.setFont(font);
+            graphics.setColor(Color.BLACK);
+            FontMetrics metrics = graphics.getFontMetrics();
+            int lineHeight = metrics.getHeight();
+            int perPage = Math.max(1, (int) (page.getImageableHeight() / lineHeight));
+            int first = pageIndex * perPage;
+            if (first >= lines.length) {
+                return NO_SUCH_PAGE;
+            }
+            int x = (int) page.getImageableX();
+            int y = (int) page.getImageableY() + metrics.getAscent();
+            for (int i = first; i < Math.min(lines.length, first + perPage); i++) {
+                graphics.drawString(lines[i], x, y);
+                y += lineHeight;
+            }
+            return PAGE_EXISTS;
+        }
+    }
+}
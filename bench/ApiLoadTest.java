@@ -0,0 +1,173 @@
+import java.io.*;
+import java.net.URI;
+import java.net.http.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * ApiLoadTest - Drives the order API from several client threads and
+ * reports throughput and latency per endpoint
+ *
+ * Without a URL, a server is started in this JVM on a free port, with its
+ * customers and orders in a temporary directory. Each client registers
+ * its own customers first, then loops over a mix of requests: 40% phone
+ * lookups, 20% searches, 25% pricing and 15% order submissions, the last
+ * being written to the order history.
+ *
+ * Usage: java -cp .:bench/out ApiLoadTest [threads] [seconds] [url]
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class ApiLoadTest {
+    private static final String[] OPERATIONS = {"lookup", "search", "price", "order"};
+    private static final String ITEMS = "\"items\":[{\"type\":\"pizza\",\"size\":\"Large\",\"crust\":\"Thin Crust\","
+        + "\"toppings\":[\"Pepperoni\",\"Mushrooms\"],\"quantity\":2},"
+        + "{\"type\":\"beverage\",\"beverage\":\"Coke\",\"size\":2,\"quantity\":3}]";
+    private static final String[] NAMES = {"Smith", "Johnson", "Garcia", "Nguyen", "Patel", "Brown", "Lee"};
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        String base = args.length > 2 ? args[2] : null;
+
+        OrderApiServer server = null;
+        File dir = null;
+        if (base == null) {
+            dir = Files.createTempDirectory("api-load").toFile();
+            server = new OrderApiServer(0, new CustomerManager(new File(dir, "customers")),
+                                        new OrderJournal(new File(dir, "orders")), null);
+            server.start();
+            base = "http://localhost:" + server.getPort();
+        }
+        System.out.println("Load testing " + base + " with " + threads + " clients for " + seconds + " s");
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newFixedThreadPool(threads)).build();
+        long[][][] latencies = new long[threads][OPERATIONS.length][];
+        int[][] counts = new int[threads][OPERATIONS.length];
+        int[] errors = new int[threads];
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        long[] window = new long[2];
+        List<Thread> workers = new ArrayList<>();
+        String target = base;
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    run(client, target, id, seconds, latencies[id], counts[id], errors, ready, go);
+                } catch (Exception e) {
+                    System.err.println("Client " + id + " stopped: " + e);
+                }
+            });
+            for (int op = 0; op < OPERATIONS.length; op++) {
+                latencies[t][op] = new long[1 << 16];
+            }
+            workers.add(worker);
+            worker.start();
+        }
+        ready.await();
+        window[0] = System.nanoTime();
+        go.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        window[1] = System.nanoTime();
+
+        double elapsed = (window[1] - window[0]) / 1e9;
+        long all = 0;
+        System.out.printf("%-8s %10s %10s %10s %10s %10s%n", "Request", "Count", "Per sec", "p50 ms", "p99 ms", "Max ms");
+        for (int op = 0; op < OPERATIONS.length; op++) {
+            int total = 0;
+            for (int t = 0; t < threads; t++) {
+                total += counts[t][op];
+            }
+            long[] merged = new long[total];
+            int n = 0;
+            for (int t = 0; t < threads; t++) {
+                int kept = Math.min(counts[t][op], latencies[t][op].length);
+                System.arraycopy(latencies[t][op], 0, merged, n, kept);
+                n += kept;
+            }
+            merged = Arrays.copyOf(merged, n);
+            Arrays.sort(merged);
+            all += total;
+            System.out.printf("%-8s %10d %10.0f %10.2f %10.2f %10.2f%n", OPERATIONS[op], total, total / elapsed,
+                              percentile(merged, 0.50), percentile(merged, 0.99), percentile(merged, 1.0));
+        }
+        int errorCount = Arrays.stream(errors).sum();
+        System.out.printf("Total: %d requests in %.1f s = %.0f requests/s, %d errors%n",
+                          all, elapsed, all / elapsed, errorCount);
+
+        if (server != null) {
+            server.stop();
+            System.exit(0);
+        }
+    }
+
+    private static void run(HttpClient client, String base, int id, int seconds, long[][] latencies, int[] counts,
+                            int[] errors, CountDownLatch ready, CountDownLatch go) throws Exception {
+        Random random = new Random(id);
+        String[] phones = new String[50];
+        for (int i = 0; i < phones.length; i++) {
+            phones[i] = String.format("770%03d%04d", id, i);
+            String body = "{\"phone\":\"" + phones[i] + "\",\"name\":\"Customer " + NAMES[i % NAMES.length] + " " + i
+                        + "\",\"address\":\"" + (100 + i) + " Peachtree St\",\"city\":\"Marietta\",\"state\":\"GA\","
+                        + "\"zip\":\"30060\"}";
+            send(client, post(base + "/api/customers", body));
+        }
+        ready.countDown();
+        go.await();
+
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            int roll = random.nextInt(100);
+            int op = roll < 40 ? 0 : roll < 60 ? 1 : roll < 85 ? 2 : 3;
+            String phone = phones[random.nextInt(phones.length)];
+            HttpRequest request;
+            switch (op) {
+                case 0:
+                    request = HttpRequest.newBuilder(URI.create(base + "/api/customers/" + phone)).build();
+                    break;
+                case 1:
+                    request = HttpRequest.newBuilder(URI.create(base + "/api/customers?q="
+                                                                + NAMES[random.nextInt(NAMES.length)] + "&limit=5")).build();
+                    break;
+                case 2:
+                    request = post(base + "/api/orders/price", "{" + ITEMS + "}");
+                    break;
+                default:
+                    request = post(base + "/api/orders", "{\"phone\":\"" + phone + "\",\"orderType\":\"Delivery\","
+                                   + "\"paymentType\":\"Cash\",\"paymentCents\":10000," + ITEMS + "}");
+            }
+            long start = System.nanoTime();
+            int status = send(client, request);
+            long nanos = System.nanoTime() - start;
+            if (status >= 400) {
+                errors[id]++;
+            }
+            if (counts[op] < latencies[op].length) {
+                latencies[op][counts[op]] = nanos;
+            }
+            counts[op]++;
+        }
+    }
+
+    private static HttpRequest post(String url, String body) {
+        return HttpRequest.newBuilder(URI.create(url)).header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    private static int send(HttpClient client, HttpRequest request) throws Exception {
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray()).statusCode();
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1 + (p == 0 ? 1 : 0))] / 1e6;
+    }
+}
@@ -0,0 +1,172 @@
+import java.io.File;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * CustomerConcurrencyStress - Hammers one shared CustomerManager from many
+ * threads, checks that no update is lost, and measures how lookups scale
+ * with the number of reading threads
+ *
+ * Each thread owns a range of phones and saves several versions of each one
+ * while reading back everything it has written; every thread also saves to
+ * a small set of phones shared by all threads. Afterwards the last version of
+ * each owned phone must be found, both before and after reopening the store,
+ * and each shared phone must read the same in memory as on disk.
+ *
+ * Usage: java -cp .:bench/out CustomerConcurrencyStress [heap|mapped] [threads] [phonesPerThread]
+ * Exits with status 1 if an update was lost.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class CustomerConcurrencyStress {
+    private static final int VERSIONS = 5;
+    private static final int SHARED_PHONES = 16;
+
+    public static void main(String[] args) throws Exception {
+        String storeType = args.length > 0 ? args[0] : "heap";
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int perThread = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+
+        File dir = new File("bench/out/stress-" + storeType);
+        deleteDirectory(dir);
+        CustomerManager manager = new CustomerManager(dir, storeType);
+
+        AtomicInteger readFailures = new AtomicInteger();
+        long start = System.nanoTime();
+        runThreads(threads, t -> {
+            for (int version = 1; version <= VERSIONS; version++) {
+                for (int i = 0; i < perThread; i++) {
+                    String phone = ownedPhone(t, i);
+                    manager.saveCustomer(customer(phone, "T" + t + " v" + version));
+                    Customer found = manager.findCustomer(phone);
+                    if (found == null || !found.getName().equals("T" + t + " v" + version)) {
+                        readFailures.incrementAndGet();
+                    }
+                    if (i % 50 == 0) {
+                        String hot = sharedPhone((t + i) % SHARED_PHONES);
+                        manager.saveCustomer(customer(hot, "T" + t + " v" + version + " #" + i));
+                    }
+                }
+            }
+        });
+        long saveMillis = (System.nanoTime() - start) / 1_000_000;
+        int saves = threads * perThread * VERSIONS;
+        System.out.printf("%d threads saved %,d customers in %,d ms (%,d saves/s)%n",
+                          threads, saves, saveMillis, saves * 1000L / Math.max(1, saveMillis));
+
+        int lost = readFailures.get() + checkOwned(manager, threads, perThread, "in memory");
+        String[] sharedNames = new String[SHARED_PHONES];
+        for (int i = 0; i < SHARED_PHONES; i++) {
+            sharedNames[i] = manager.findCustomer(sharedPhone(i)).getName();
+        }
+        manager.close();
+
+        CustomerManager reopened = new CustomerManager(dir, storeType);
+        lost += checkOwned(reopened, threads, perThread, "after reopen");
+        for (int i = 0; i < SHARED_PHONES; i++) {
+            Customer onDisk = reopened.findCustomer(sharedPhone(i));
+            if (onDisk == null || !onDisk.getName().equals(sharedNames[i])) {
+                System.out.println("Shared phone " + sharedPhone(i) + " reads \"" + sharedNames[i]
+                                   + "\" in memory but \"" + (onDisk == null ? null : onDisk.getName())
+                                   + "\" on disk");
+                lost++;
+            }
+        }
+        System.out.println(lost == 0 ? "No lost updates" : lost + " lost updates");
+
+        measureReadScaling(reopened, threads, perThread);
+        reopened.close();
+        System.exit(lost == 0 ? 0 : 1);
+    }
+
+    private static int checkOwned(CustomerManager manager, int threads, int perThread, String when) {
+        int lost = 0;
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < perThread; i++) {
+                Customer found = manager.findCustomer(ownedPhone(t, i));
+                if (found == null || !found.getName().equals("T" + t + " v" + VERSIONS)) {
+                    lost++;
+                }
+            }
+        }
+        if (lost > 0) {
+            System.out.println(lost + " customers missing or stale " + when);
+        }
+        return lost;
+    }
+
+    /**
+     * Runs random lookups with 1, 2, 4, ... threads up to twice the core count
+     */
+    private static void measureReadScaling(CustomerManager manager, int owners, int perThread) throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("Read scaling (" + cores + " cores):");
+        for (int threads = 1; threads <= cores * 2; threads *= 2) {
+            AtomicLong reads = new AtomicLong();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1000);
+            runThreads(threads, t -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                while (System.nanoTime() < deadline) {
+                    for (int i = 0; i < 1000; i++) {
+                        String phone = ownedPhone(random.nextInt(owners), random.nextInt(perThread));
+                        if (manager.findCustomer(phone) != null) {
+                            count++;
+                        }
+                    }
+                }
+                reads.addAndGet(count);
+            });
+            System.out.printf("  %2d threads: %,d lookups/s%n", threads, reads.get());
+        }
+    }
+
+    private interface Task {
+        void run(int thread) throws Exception;
+    }
+
+    private static void runThreads(int threads, Task task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        Future<?>[] futures = new Future<?>[threads];
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures[t] = pool.submit(() -> {
+                ready.countDown();
+                go.await();
+                task.run(thread);
+                return null;
+            });
+        }
+        ready.await();
+        go.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+    }
+
+    private static String ownedPhone(int thread, int i) {
+        return String.format("4%02d%07d", thread, i);
+    }
+
+    private static String sharedPhone(int i) {
+        return String.format("5550000%03d", i);
+    }
+
+    private static Customer customer(String phone, String name) {
+        return new Customer(phone, name, "1 Main St", "Kennesaw", "GA", "30144", "", "", null, null);
+    }
+
+    private static void deleteDirectory(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+}
@@ -0,0 +1,72 @@
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * CustomerHeapBenchmark - Heap bytes per Customer at a given count
+ *
+ * Every field is built as a fresh String, as it would be when decoded from
+ * disk, so any sharing comes from Customer itself. Run once per layout:
+ *
+ *   java -Dpizza.internCustomerFields=false -cp .:bench/out CustomerHeapBenchmark   (no sharing)
+ *   java -cp .:bench/out CustomerHeapBenchmark                                       (interned fields)
+ *   java -Dpizza.packedCustomers=true -cp .:bench/out CustomerHeapBenchmark          (interned + packed)
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class CustomerHeapBenchmark {
+    private static final String[] FIRST = {"James", "Mary", "John", "Patricia", "Robert", "Jennifer",
+        "Michael", "Linda", "William", "Elizabeth", "David", "Barbara"};
+    private static final String[] LAST = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia",
+        "Miller", "Davis", "Rodriguez", "Martinez", "Wilson", "Anderson"};
+    private static final String[] STREETS = {"Main St", "Chastain Rd", "Barrett Pkwy", "Cobb Pkwy",
+        "Frey Rd", "Big Shanty Rd", "Jiles Rd", "Cherokee St"};
+    private static final String[] CITIES = {"Kennesaw", "Marietta", "Acworth", "Woodstock", "Powder Springs"};
+    private static final String[] ZIPS = {"30144", "30152", "30060", "30062", "30101", "30188", "30127"};
+    private static final String[] SUBDIVISIONS = {"", "Legacy Park", "Brookstone", "Hidden Lake",
+        "Kennesaw Mountain Estates", "Summerfield"};
+    private static final String[] CARDS = {"", "Visa", "MasterCard", "American Express", "Discover"};
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random random = new Random(3);
+
+        long before = usedHeapAfterGc();
+        Customer[] customers = new Customer[count];
+        for (int i = 0; i < count; i++) {
+            String card = fresh(CARDS[random.nextInt(CARDS.length)]);
+            customers[i] = new Customer(
+                String.format("770%07d", i),
+                fresh(FIRST[random.nextInt(FIRST.length)] + " " + LAST[random.nextInt(LAST.length)]),
+                (random.nextInt(9000) + 100) + " " + STREETS[random.nextInt(STREETS.length)],
+                fresh(CITIES[random.nextInt(CITIES.length)]), fresh("GA"), fresh(ZIPS[random.nextInt(ZIPS.length)]),
+                fresh(SUBDIVISIONS[random.nextInt(SUBDIVISIONS.length)]),
+                fresh(STREETS[random.nextInt(STREETS.length)] + " & " + STREETS[random.nextInt(STREETS.length)]),
+                card, card.isEmpty() ? "" : String.format("%04d", random.nextInt(10_000)));
+        }
+        long after = usedHeapAfterGc();
+
+        long perCustomer = (after - before - 16L - 4L * count) / count; // minus the array itself
+        System.out.printf("interned=%s packed=%s: %,d customers use %,d MB, %d bytes per customer%n",
+                          !"false".equals(System.getProperty(FieldPool.INTERN_PROPERTY)),
+                          Boolean.getBoolean(Customer.PACKED_PROPERTY),
+                          count, (after - before) >> 20, perCustomer);
+        if (customers[random.nextInt(count)].getName().isEmpty()) {
+            System.out.println(); // keeps the customers reachable until here
+        }
+    }
+
+    /**
+     * Copies a String so it is not shared with the constant it came from
+     */
+    private static String fresh(String value) {
+        return new String(value.toCharArray());
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,77 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * CustomerLoadBenchmark - Compares loading customers from the legacy
+ * serialized HashMap against CustomerRecordFormat
+ *
+ * Usage: java -cp .:bench CustomerLoadBenchmark [customers] [rounds]
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class CustomerLoadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        File dir = Files.createTempDirectory("customer-bench").toFile();
+        File legacyFile = new File(dir, "customers.dat");
+        File recordFile = new File(dir, "customers.snapshot");
+
+        HashMap<String, Customer> customers = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            String phone = String.format("770%07d", i);
+            customers.put(phone, new Customer(phone, "Customer " + i, random.nextInt(9999) + " Main St",
+                "Kennesaw", "GA", "30144", "Subdivision " + (i % 500), "Chastain & Barrett",
+                i % 3 == 0 ? "Visa" : "", i % 3 == 0 ? String.format("%04d", i % 10000) : ""));
+        }
+
+        try (ObjectOutputStream oos = new ObjectOutputStream(
+                new BufferedOutputStream(new FileOutputStream(legacyFile)))) {
+            oos.writeObject(customers);
+        }
+        try (CustomerRecordWriter writer = new CustomerRecordWriter(
+                new BufferedOutputStream(new FileOutputStream(recordFile)), true)) {
+            for (Customer customer : customers.values()) {
+                writer.write(customer);
+            }
+        }
+        customers = null;
+
+        System.out.printf("%,d customers: legacy %,d bytes, record format %,d bytes%n",
+                          count, legacyFile.length(), recordFile.length());
+
+        for (int round = 1; round <= rounds; round++) {
+            // Collect between measurements so neither side pays for the other's garbage
+            System.gc();
+            long start = System.nanoTime();
+            int legacyCount = LegacyCustomerConverter.readLegacy(legacyFile).size();
+            long legacyNanos = System.nanoTime() - start;
+
+            System.gc();
+            start = System.nanoTime();
+            Map<String, Customer> loaded = new HashMap<>(count * 2);
+            try (CustomerRecordReader reader = new CustomerRecordReader(new FileInputStream(recordFile))) {
+                Customer customer;
+                while ((customer = reader.read()) != null) {
+                    loaded.put(customer.getPhone(), customer);
+                }
+            }
+            long recordNanos = System.nanoTime() - start;
+            int recordCount = loaded.size();
+            loaded = null;
+
+            System.out.printf("round %d: legacy %,d ms (%,d), record format %,d ms (%,d)%n",
+                              round, legacyNanos / 1_000_000, legacyCount,
+                              recordNanos / 1_000_000, recordCount);
+        }
+
+        legacyFile.delete();
+        recordFile.delete();
+        dir.delete();
+    }
+}
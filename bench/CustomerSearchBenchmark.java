@@ -0,0 +1,68 @@
+import java.util.*;
+
+/**
+ * CustomerSearchBenchmark - Build time, memory and query latency of
+ * CustomerSearchIndex over synthetic customers
+ *
+ * Usage: java -cp .:bench CustomerSearchBenchmark [customers] [queries]
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class CustomerSearchBenchmark {
+    private static final String[] FIRST = {"James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael",
+        "Linda", "William", "Elizabeth", "David", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas",
+        "Sarah", "Charles", "Karen", "Tayshawn", "Keisha", "Darnell", "Latoya", "Andre", "Imani"};
+    private static final String[] LAST = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller",
+        "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas",
+        "Taylor", "Moore", "Jackson", "Martin", "Lee", "Perez", "Thompson", "White", "Harris", "Sanchez"};
+    private static final String[] STREETS = {"Main St", "Chastain Rd", "Barrett Pkwy", "Cobb Pkwy",
+        "Frey Rd", "Big Shanty Rd", "Jiles Rd", "Cherokee St", "Bells Ferry Rd", "Wade Green Rd"};
+    private static final String[] SUBDIVISIONS = {"", "Legacy Park", "Brookstone", "Hidden Lake",
+        "Kennesaw Mountain Estates", "Summerfield", "Pinetree Village"};
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        Random random = new Random(7);
+
+        System.gc();
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        CustomerSearchIndex index = new CustomerSearchIndex();
+        for (int i = 0; i < count; i++) {
+            String first = FIRST[random.nextInt(FIRST.length)];
+            String last = LAST[random.nextInt(LAST.length)] + (i % 97 == 0 ? "" : Integer.toString(i % 1000, 36));
+            index.add(PhoneKey.of(String.format("770%07d", i)), new Customer(String.format("770%07d", i),
+                first + " " + last, (random.nextInt(9000) + 100) + " " + STREETS[random.nextInt(STREETS.length)],
+                "Kennesaw", "GA", "30144", SUBDIVISIONS[random.nextInt(SUBDIVISIONS.length)],
+                STREETS[random.nextInt(STREETS.length)] + " & " + STREETS[random.nextInt(STREETS.length)],
+                null, null));
+        }
+        long buildMillis = (System.nanoTime() - start) / 1_000_000;
+        System.gc();
+        System.out.printf("%,d customers indexed in %,d ms; index estimate %,d MB, measured heap growth %,d MB%n",
+                          count, buildMillis, index.estimateMemoryBytes() >> 20, (usedHeap() - heapBefore) >> 20);
+
+        String[] samples = {"Jenifer Smtih", "tayshawn", "brookston", "chastain", "1234 barret", "keisha wilson",
+                            "hidden lake", "Robrt Garcai", "big shanty", "latoya"};
+        for (int round = 1; round <= 2; round++) {
+            long[] nanos = new long[queries];
+            int results = 0;
+            for (int q = 0; q < queries; q++) {
+                long t = System.nanoTime();
+                results += index.search(samples[q % samples.length], 10).length;
+                nanos[q] = System.nanoTime() - t;
+            }
+            Arrays.sort(nanos);
+            System.out.printf("round %d: %,d queries, p50 %.2f ms, p99 %.2f ms, max %.2f ms (%,d results)%n",
+                              round, queries, nanos[queries / 2] / 1e6, nanos[queries * 99 / 100] / 1e6,
+                              nanos[queries - 1] / 1e6, results);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,231 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.LongConsumer;
+
+/**
+ * CustomerWriterCheck - Exercises AsyncCustomerWriter against a failing store
+ *
+ * Saves a batch to a store that rejects one customer and then fails a
+ * sync, and checks that the rest of the batch is still written, that
+ * flush() throws while anything is unsaved, that the rejected customer is
+ * not reported as written, and that it is written and flush() succeeds
+ * once the store recovers. A customer the store can never take is
+ * reported by one flush() and not tried again.
+ *
+ * Then does the same against a real HeapCustomerStore whose journal file
+ * takes half of a write and fails with a full disk, and checks that every
+ * customer saved after the disk recovers is still there when the journal
+ * is replayed.
+ *
+ * Usage: java -cp .:bench/out CustomerWriterCheck
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class CustomerWriterCheck {
+    public static void main(String[] args) throws Exception {
+        boolean ok = true;
+        FlakyStore store = new FlakyStore();
+        Map<Long, Customer> written = new HashMap<>();
+        AsyncCustomerWriter writer = new AsyncCustomerWriter(store, (key, customer) -> {
+            synchronized (written) {
+                written.put(key, customer);
+            }
+        }, 1000, 10_000);
+
+        store.rejectKey = 3;
+        for (long key = 1; key <= 5; key++) {
+            writer.submit(key, customer(key));
+        }
+        ok &= check("flush() throws while a customer is unsaved", flushFails(writer));
+        synchronized (written) {
+            ok &= check("the rest of the batch was written", written.keySet().equals(Set.of(1L, 2L, 4L, 5L)));
+        }
+        ok &= check("the rejected customer was not reported written", store.find(3) == null);
+
+        store.rejectKey = 0;
+        store.failSyncs = 1;
+        writer.submit(6, customer(6));
+        ok &= check("flush() throws when the sync fails", flushFails(writer));
+        ok &= check("flush() succeeds once the store recovers", !flushFails(writer));
+        synchronized (written) {
+            ok &= check("the rejected customer was retried and written", written.containsKey(3L)
+                        && store.find(3) != null && written.size() == 6);
+        }
+
+        store.invalidKey = 8;
+        writer.submit(8, customer(8));
+        ok &= check("flush() reports a customer the store can never take", flushFails(writer));
+        writer.submit(9, customer(9));
+        ok &= check("the next flush() does not report it again", !flushFails(writer));
+        Thread.sleep(1500);
+        ok &= check("it is not retried", store.invalidAttempts == 1 && store.find(8) == null);
+
+        store.rejectKey = 7;
+        writer.submit(7, customer(7));
+        boolean closeFailed = false;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            closeFailed = true;
+        }
+        ok &= check("close() throws for a customer it could not save", closeFailed);
+
+        ok &= checkShortWrite();
+
+        System.out.println(ok ? "All checks passed" : "CHECKS FAILED");
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Fails a journal write part way, then recovers and reloads the store
+     */
+    private static boolean checkShortWrite() throws IOException {
+        boolean ok = true;
+        File dir = Files.createTempDirectory("customer-writer-check").toFile();
+        try {
+            ShortWriteJournal journal = new ShortWriteJournal(dir);
+            HeapCustomerStore store = new HeapCustomerStore(journal);
+            AsyncCustomerWriter writer = new AsyncCustomerWriter(store, (key, customer) -> { }, 1, 0);
+            for (long key = 1; key <= 3; key++) {
+                writer.submit(PhoneKey.of(customer(key).getPhone()), customer(key));
+            }
+            ok &= check("journal: first saves written", !flushFails(writer));
+
+            journal.out.failing = true;
+            for (long key = 4; key <= 5; key++) {
+                writer.submit(PhoneKey.of(customer(key).getPhone()), customer(key));
+            }
+            ok &= check("journal: flush() throws when the disk takes half a write", flushFails(writer));
+            ok &= check("journal: no torn bytes left in the file",
+                        journal.file.length() == journal.out.lengthBeforeFailure);
+
+            journal.out.failing = false;
+            for (long key = 6; key <= 7; key++) {
+                writer.submit(PhoneKey.of(customer(key).getPhone()), customer(key));
+            }
+            ok &= check("journal: flush() succeeds once the disk recovers", !flushFails(writer));
+            writer.close();
+            store.close();
+
+            HeapCustomerStore reloaded = new HeapCustomerStore(dir);
+            boolean all = reloaded.size() == 7;
+            for (long key = 1; key <= 7; key++) {
+                Customer found = reloaded.find(PhoneKey.of(customer(key).getPhone()));
+                all &= found != null && found.getName().equals("Customer " + key);
+            }
+            ok &= check("journal: every save is replayed after the failure", all);
+            reloaded.close();
+        } finally {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+        return ok;
+    }
+
+    private static boolean flushFails(AsyncCustomerWriter writer) {
+        try {
+            writer.flush();
+            return false;
+        } catch (IOException e) {
+            System.out.println("      flush: " + e.getMessage());
+            return true;
+        }
+    }
+
+    private static Customer customer(long key) {
+        String phone = String.format("770555%04d", key);
+        return new Customer(phone, "Customer " + key, "12 Peachtree St", "Marietta", "GA",
+                            "30060", "", "", "", "");
+    }
+
+    private static boolean check(String what, boolean passed) {
+        System.out.println((passed ? "ok    " : "FAIL  ") + what);
+        return passed;
+    }
+
+    /**
+     * Journal whose file fails writes with a full disk while failing is set
+     */
+    private static class ShortWriteJournal extends CustomerJournal {
+        final File file;
+        ShortWriteStream out;
+
+        ShortWriteJournal(File dir) {
+            super(dir);
+            file = new File(dir, "customers.journal");
+        }
+
+        @Override
+        FileOutputStream openFile(File file, boolean append) throws IOException {
+            out = new ShortWriteStream(file, append);
+            return out;
+        }
+    }
+
+    /**
+     * Writes the first half of a write and then fails, as a disk that fills
+     * up mid-write does
+     */
+    private static class ShortWriteStream extends FileOutputStream {
+        private final File file;
+        volatile boolean failing;
+        volatile long lengthBeforeFailure = -1;
+
+        ShortWriteStream(File file, boolean append) throws IOException {
+            super(file, append);
+            this.file = file;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (failing) {
+                lengthBeforeFailure = file.length();
+                super.write(b, off, len / 2);
+                throw new IOException("No space left on device");
+            }
+            super.write(b, off, len);
+        }
+    }
+
+    /**
+     * Store that rejects one key and fails a number of syncs
+     */
+    private static class FlakyStore implements CustomerStore {
+        private final Map<Long, Customer> customers = Collections.synchronizedMap(new HashMap<>());
+        volatile long rejectKey;
+        volatile long invalidKey;
+        volatile int invalidAttempts;
+        volatile int failSyncs;
+
+        public Customer find(long key) { return customers.get(key); }
+        public boolean contains(long key) { return customers.containsKey(key); }
+        public void flush() { }
+        public void forEachKey(LongConsumer action) { new ArrayList<>(customers.keySet()).forEach(action::accept); }
+        public int size() { return customers.size(); }
+        public void close() { }
+
+        public void save(long key, Customer customer) throws IOException {
+            if (key == rejectKey) {
+                throw new IOException("No space left on device");
+            }
+            if (key == invalidKey) {
+                invalidAttempts++;
+                throw new IllegalArgumentException("Customer field too long: 70000 bytes");
+            }
+            customers.put(key, customer);
+        }
+
+        public void sync() throws IOException {
+            if (failSyncs > 0) {
+                failSyncs--;
+                throw new IOException("Sync failed");
+            }
+        }
+    }
+}
@@ -0,0 +1,452 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * HotPathBenchmark - Times the ordering hot paths and compares them with a
+ * saved baseline
+ *
+ * Benchmarks:
+ *   customer.load    CustomerManager opening a customer snapshot (ms/op)
+ *   customer.find    findCustomer, one lookup in ten missing
+ *   customer.save    saveCustomer, flushed to disk every SAVE_BATCH saves
+ *   pricing.addPizza pricing a pizza and making its item, as MenuPanel.addPizza does
+ *   order.total      OrderSession.replaceItems on a large order, then subtotal and tax
+ *   order.addLine    adding and removing a line of a large order, then subtotal and tax
+ *   receipt.render   ReceiptRenderer after the order changed, as OrderSummaryPanel.refresh does
+ *
+ * Customer benchmarks run at each customer count, on data made by
+ * SyntheticData. Like JMH, each benchmark is warmed up before it is
+ * measured, its result is consumed so the JIT cannot remove the work, and
+ * the score is the mean of several timed iterations. customer.load is
+ * timed one open at a time (single shot); the rest run in batches sized
+ * to last about a millisecond and report nanoseconds per operation.
+ *
+ * Usage: java -Xmx2g -cp .:bench/out HotPathBenchmark [options]
+ *   --customers 10000,100000,1000000  customer counts
+ *   --filter text      only benchmarks whose name contains text
+ *   --quick            short iterations, for a smoke test; too noisy to compare
+ *   --baseline file    compare with a saved run; exits with 1 on a regression
+ *   --tolerance 0.25   slowdown over the baseline counted as a regression
+ *   --save file        save this run as a baseline
+ *
+ * bench/baseline.txt holds the baseline for the machine it names. Scores
+ * from another machine are not comparable; save a new baseline there
+ * first, then compare later runs with it.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class HotPathBenchmark {
+    private static final int SAVE_BATCH = 1_000;
+    private static final int KEYS = 4_096; // Power of two, for masking
+
+    private final List<Result> results = new ArrayList<>();
+    private final List<CustomerManager> opened = new ArrayList<>(); // Closed after each single shot
+    private final SyntheticData data = new SyntheticData(SyntheticData.DEFAULT_SEED);
+    private String filter = "";
+    private int warmups = 3;
+    private int iterations = 5;
+    private long iterationNanos = 1_000_000_000L;
+    private int loadWarmups = 1;
+    private int loadIterations = 3;
+    private long sink; // Every result is added here so no work is dead code
+
+    /**
+     * Benchmark body
+     */
+    private interface Op {
+        /**
+         * @param reps Number of operations to do
+         * @return Anything computed from the results
+         */
+        long run(int reps) throws Exception;
+    }
+
+    /**
+     * One benchmark's score
+     */
+    private static final class Result {
+        final String name;
+        final String params;
+        final String mode; // avgt: mean time per operation; ss: single shot
+        final double score;
+        final double stdev;
+        final String unit;
+
+        Result(String name, String params, String mode, double score, double stdev, String unit) {
+            this.name = name;
+            this.params = params;
+            this.mode = mode;
+            this.score = score;
+            this.stdev = stdev;
+            this.unit = unit;
+        }
+
+        String key() {
+            return name + " " + params;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        HotPathBenchmark bench = new HotPathBenchmark();
+        int[] customerCounts = {10_000, 100_000, 1_000_000};
+        String baseline = null;
+        String save = null;
+        double tolerance = 0.25;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--customers":
+                    customerCounts = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "--filter":
+                    bench.filter = args[++i];
+                    break;
+                case "--quick":
+                    bench.warmups = 1;
+                    bench.iterations = 3;
+                    bench.iterationNanos = 200_000_000L;
+                    bench.loadWarmups = 0;
+                    bench.loadIterations = 1;
+                    break;
+                case "--baseline":
+                    baseline = args[++i];
+                    break;
+                case "--tolerance":
+                    tolerance = Double.parseDouble(args[++i]);
+                    break;
+                case "--save":
+                    save = args[++i];
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        System.out.printf("JDK %s, %d CPU(s), max heap %,d MB%n", System.getProperty("java.version"),
+                          Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory() >> 20);
+        File root = Files.createTempDirectory("hot-path-bench").toFile();
+        try {
+            for (int count : customerCounts) {
+                bench.customerBenchmarks(new File(root, "customers-" + count), count);
+            }
+        } finally {
+            delete(root);
+        }
+        bench.orderBenchmarks();
+
+        Map<String, Result> previous = baseline != null ? load(baseline) : Collections.emptyMap();
+        int regressions = bench.print(previous, tolerance);
+        System.out.println("(checksum " + bench.sink + ")");
+        if (save != null) {
+            bench.save(save);
+            System.out.println("Saved baseline to " + save);
+        }
+        if (regressions > 0) {
+            System.out.println(regressions + " benchmark(s) more than " + Math.round(tolerance * 100)
+                               + "% slower than the baseline");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Load, find and save with count customers on disk
+     */
+    private void customerBenchmarks(File dir, int count) throws Exception {
+        String params = "customers=" + count;
+        if (!selected("customer.load") && !selected("customer.find") && !selected("customer.save")) {
+            return;
+        }
+        long start = System.nanoTime();
+        data.writeCustomers(dir, count);
+        System.out.printf("Wrote %,d customers in %,d ms%n", count, (System.nanoTime() - start) / 1_000_000);
+
+        if (selected("customer.load")) {
+            singleShot("customer.load", params, reps -> {
+                CustomerManager manager = new CustomerManager(dir, "heap");
+                opened.add(manager);
+                return manager.getCustomerCount();
+            });
+        }
+
+        if (!selected("customer.find") && !selected("customer.save")) {
+            return;
+        }
+        CustomerManager manager = new CustomerManager(dir, "heap");
+        awaitIndexing();
+        Random random = new Random(count);
+        String[] phones = new String[KEYS];
+        Customer[] edits = new Customer[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            int n = random.nextInt(count);
+            phones[i] = random.nextInt(10) == 0 ? SyntheticData.missingPhone(n) : SyntheticData.phone(n);
+            edits[i] = data.customer(n, 1 + random.nextInt(3));
+        }
+        if (selected("customer.find")) {
+            int[] next = {0};
+            average("customer.find", params, reps -> {
+                long found = 0;
+                for (int i = 0; i < reps; i++) {
+                    Customer customer = manager.findCustomer(phones[next[0]++ & (KEYS - 1)]);
+                    if (customer != null) {
+                        found += customer.getName().length();
+                    }
+                }
+                return found;
+            });
+        }
+        if (selected("customer.save")) {
+            int[] next = {0};
+            average("customer.save", params, reps -> {
+                for (int i = 0; i < reps; i++) {
+                    manager.saveCustomer(edits[next[0] & (KEYS - 1)]);
+                    if (++next[0] % SAVE_BATCH == 0) {
+                        manager.flush();
+                    }
+                }
+                return next[0];
+            });
+        }
+        manager.close();
+    }
+
+    /**
+     * Pricing, order totals and receipts
+     */
+    private void orderBenchmarks() throws Exception {
+        Menu menu = Menu.BUILT_IN;
+        Random random = new Random(SyntheticData.DEFAULT_SEED);
+
+        if (selected("pricing.addPizza")) {
+            int sizes = menu.getCount(Menu.Section.SIZE);
+            int crusts = menu.getCount(Menu.Section.CRUST);
+            int toppings = menu.getCount(Menu.Section.TOPPING);
+            int[] choices = new int[KEYS * 3];
+            for (int i = 0; i < choices.length; i += 3) {
+                choices[i] = random.nextInt(sizes);
+                choices[i + 1] = random.nextInt(crusts);
+                choices[i + 2] = SyntheticData.toppingMask(random, toppings, menu.getMaxToppings());
+            }
+            int[] next = {0};
+            average("pricing.addPizza", "", reps -> {
+                long total = 0;
+                for (int i = 0; i < reps; i++) {
+                    int at = (next[0]++ & (KEYS - 1)) * 3;
+                    int size = choices[at];
+                    int crust = choices[at + 1];
+                    int mask = choices[at + 2];
+                    long price = menu.getPricing().pizzaCents(size, crust, Integer.bitCount(mask));
+                    total += OrderItem.pizza(menu, size, crust, mask, price, 1).getTotalCents();
+                }
+                return total;
+            });
+        }
+
+        for (int lines : new int[] {1_000, 10_000}) {
+            List<OrderItem> items = SyntheticData.order(random, lines, menu);
+            OrderSession session = new OrderSession(1, data.customer(0));
+            if (selected("order.total")) {
+                average("order.total", "lines=" + lines, reps -> {
+                    long total = 0;
+                    for (int i = 0; i < reps; i++) {
+                        session.replaceItems(items, "Pickup");
+                        long subtotal = session.getSubtotalCents();
+                        total += subtotal + PricingEngine.taxCents(subtotal);
+                    }
+                    return total;
+                });
+            }
+            if (selected("order.addLine")) {
+                session.replaceItems(items, "Pickup");
+                OrderItem extra = items.get(0);
+                average("order.addLine", "lines=" + lines, reps -> {
+                    long total = 0;
+                    for (int i = 0; i < reps; i++) {
+                        session.remove(session.add(extra));
+                        long subtotal = session.getSubtotalCents();
+                        total += subtotal + PricingEngine.taxCents(subtotal);
+                    }
+                    return total;
+                });
+            }
+        }
+
+        Customer customer = data.customer(1);
+        for (int lines : new int[] {100, 1_000}) {
+            if (!selected("receipt.render")) {
+                break;
+            }
+            List<OrderItem> items = SyntheticData.order(random, lines, menu);
+            long subtotal = items.stream().mapToLong(OrderItem::getTotalCents).sum();
+            long tax = PricingEngine.taxCents(subtotal);
+            long total = subtotal + tax;
+            ReceiptRenderer renderer = new ReceiptRenderer();
+            long[] version = {0};
+            average("receipt.render", "lines=" + lines, reps -> {
+                long length = 0;
+                for (int i = 0; i < reps; i++) {
+                    length += renderer.renderOrder(++version[0], customer, "Delivery", items, subtotal, tax).length();
+                    length += renderer.renderPayment(true, "Cash", total + i, total).length();
+                }
+                return length;
+            });
+        }
+    }
+
+    private boolean selected(String name) {
+        return name.contains(filter);
+    }
+
+    /**
+     * Measures an operation timed one call at a time. Customer managers it
+     * opens are indexed and closed between calls, outside the timing.
+     */
+    private void singleShot(String name, String params, Op op) throws Exception {
+        double[] millis = new double[loadIterations];
+        for (int i = -loadWarmups; i < loadIterations; i++) {
+            System.gc();
+            long start = System.nanoTime();
+            sink += op.run(1);
+            long elapsed = System.nanoTime() - start;
+            awaitIndexing();
+            closeManagers();
+            if (i >= 0) {
+                millis[i] = elapsed / 1e6;
+            }
+        }
+        record(name, params, "ss", millis, "ms/op");
+    }
+
+    /**
+     * Measures the mean time per operation, JMH "average time" style
+     */
+    private void average(String name, String params, Op op) throws Exception {
+        // Batch size: double until one batch takes at least a millisecond
+        int batch = 1;
+        while (batch < (1 << 24)) {
+            long start = System.nanoTime();
+            sink += op.run(batch);
+            if (System.nanoTime() - start >= 1_000_000) {
+                break;
+            }
+            batch <<= 1;
+        }
+        double[] nanosPerOp = new double[iterations];
+        for (int i = -warmups; i < iterations; i++) {
+            long ops = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                sink += op.run(batch);
+                ops += batch;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < iterationNanos);
+            if (i >= 0) {
+                nanosPerOp[i] = (double) elapsed / ops;
+            }
+        }
+        record(name, params, "avgt", nanosPerOp, "ns/op");
+    }
+
+    private void record(String name, String params, String mode, double[] values, String unit) {
+        double mean = 0;
+        for (double value : values) {
+            mean += value;
+        }
+        mean /= values.length;
+        double squares = 0;
+        for (double value : values) {
+            squares += (value - mean) * (value - mean);
+        }
+        double stdev = values.length > 1 ? Math.sqrt(squares / (values.length - 1)) : 0;
+        Result result = new Result(name, params, mode, mean, stdev, unit);
+        results.add(result);
+        System.out.printf("  %-18s %-18s %,.3f %s%n", name, params, result.score, result.unit);
+    }
+
+    /**
+     * Prints the results table, with the change from the baseline
+     * @return Number of regressions
+     */
+    private int print(Map<String, Result> baseline, double tolerance) {
+        int regressions = 0;
+        System.out.println();
+        System.out.printf("%-18s %-18s %4s %4s %12s %10s  %-6s %12s %8s%n",
+                          "Benchmark", "Params", "Mode", "Cnt", "Score", "Stdev", "Units", "Baseline", "Change");
+        for (Result result : results) {
+            Result before = baseline.get(result.key());
+            String compared = "";
+            if (before != null && before.unit.equals(result.unit)) {
+                double change = result.score / before.score - 1;
+                compared = String.format("%12.3f %+7.0f%%", before.score, change * 100);
+                if (change > tolerance) {
+                    compared += "  REGRESSION";
+                    regressions++;
+                }
+            }
+            System.out.printf("%-18s %-18s %4s %4d %12.3f %10.3f  %-6s %s%n", result.name, result.params,
+                              result.mode, result.mode.equals("ss") ? loadIterations : iterations,
+                              result.score, result.stdev, result.unit, compared);
+        }
+        return regressions;
+    }
+
+    private void save(String file) throws IOException {
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                 new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            out.println("# HotPathBenchmark baseline: benchmark, params, mode, score, units");
+            out.printf("# JDK %s, %s %s, %d CPU(s), max heap %d MB%n", System.getProperty("java.version"),
+                       System.getProperty("os.name"), System.getProperty("os.arch"),
+                       Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory() >> 20);
+            for (Result result : results) {
+                out.printf(Locale.ROOT, "%s\t%s\t%s\t%.3f\t%s%n", result.name,
+                           result.params.isEmpty() ? "-" : result.params, result.mode, result.score, result.unit);
+            }
+        }
+    }
+
+    private static Map<String, Result> load(String file) throws IOException {
+        Map<String, Result> baseline = new HashMap<>();
+        for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            String params = fields[1].equals("-") ? "" : fields[1];
+            Result result = new Result(fields[0], params, fields[2], Double.parseDouble(fields[3]), 0, fields[4]);
+            baseline.put(result.key(), result);
+        }
+        return baseline;
+    }
+
+    /**
+     * Waits for CustomerManager's background search indexing, so it does
+     * not run during the next measurement
+     */
+    private static void awaitIndexing() throws InterruptedException {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("customer-search-index")) {
+                thread.join();
+            }
+        }
+    }
+
+    private void closeManagers() {
+        for (CustomerManager manager : opened) {
+            manager.close();
+        }
+        opened.clear();
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,126 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * KitchenQueueBenchmark - Enqueue latency of KitchenQueue under contention
+ *
+ * Runs 1, 2, 4 and 8 producer threads offering orders while one consumer
+ * takes them, as registers and API threads feed the kitchen display. Each
+ * offer is timed on its own and p50, p99, p99.9 and max are reported,
+ * next to ConcurrentLinkedQueue and LinkedBlockingQueue doing the same
+ * work. The consumer checks that no order is lost and that each
+ * producer's orders come out in the order they went in.
+ *
+ * Usage: java -cp .:bench/out KitchenQueueBenchmark [ordersPerProducer]
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class KitchenQueueBenchmark {
+    private static final int[] PRODUCERS = {1, 2, 4, 8};
+    private static final long PRODUCER_STRIDE = 1_000_000_000L;
+
+    public static void main(String[] args) throws Exception {
+        int perProducer = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        List<OrderItem> items = Arrays.asList(
+            OrderItem.pizza(3, 2, 0b1011, 2274, 2), OrderItem.beverage(0, 2, 349, 3));
+        boolean ok = true;
+
+        System.out.printf("%-22s %8s %10s %9s %9s %9s %9s%n",
+                          "Queue", "Threads", "Orders/s", "p50 us", "p99 us", "p99.9 us", "Max us");
+        for (int round = 0; round < 2; round++) {
+            boolean report = round == 1; // First round warms up
+            for (int producers : PRODUCERS) {
+                KitchenQueue kitchen = new KitchenQueue();
+                ok &= run("KitchenQueue", producers, perProducer, items, kitchen::offer, kitchen::poll, report);
+                ConcurrentLinkedQueue<KitchenOrder> linked = new ConcurrentLinkedQueue<>();
+                ok &= run("ConcurrentLinkedQueue", producers, perProducer, items, linked::offer, linked::poll, report);
+                LinkedBlockingQueue<KitchenOrder> blocking = new LinkedBlockingQueue<>();
+                ok &= run("LinkedBlockingQueue", producers, perProducer, items, blocking::offer, blocking::poll, report);
+            }
+        }
+        System.out.println(ok ? "All orders delivered in order" : "CHECKS FAILED");
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean run(String name, int producers, int perProducer, List<OrderItem> items,
+                               Consumer<KitchenOrder> offer, Supplier<KitchenOrder> poll, boolean report)
+            throws Exception {
+        // Orders are built up front so only the offer is timed; placedMillis
+        // carries producer and sequence number for the consumer to check
+        KitchenOrder[][] orders = new KitchenOrder[producers][perProducer];
+        for (int p = 0; p < producers; p++) {
+            for (int i = 0; i < perProducer; i++) {
+                orders[p][i] = new KitchenOrder("Register " + p, "Pickup", items, p * PRODUCER_STRIDE + i);
+            }
+        }
+        long[][] latencies = new long[producers][perProducer];
+        CyclicBarrier start = new CyclicBarrier(producers + 1);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            KitchenOrder[] mine = orders[p];
+            long[] times = latencies[p];
+            threads[p] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (Exception e) {
+                    return;
+                }
+                for (int i = 0; i < mine.length; i++) {
+                    long t0 = System.nanoTime();
+                    offer.accept(mine[i]);
+                    times[i] = System.nanoTime() - t0;
+                }
+            });
+            threads[p].start();
+        }
+
+        start.await();
+        long began = System.nanoTime();
+        long[] next = new long[producers];
+        long expected = (long) producers * perProducer;
+        boolean inOrder = true;
+        for (long taken = 0; taken < expected; ) {
+            KitchenOrder order = poll.get();
+            if (order == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            int p = (int) (order.getPlacedMillis() / PRODUCER_STRIDE);
+            inOrder &= order.getPlacedMillis() % PRODUCER_STRIDE == next[p]++;
+            taken++;
+        }
+        long elapsed = System.nanoTime() - began;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        boolean drained = poll.get() == null;
+
+        if (report) {
+            long[] merged = new long[(int) expected];
+            for (int p = 0; p < producers; p++) {
+                System.arraycopy(latencies[p], 0, merged, p * perProducer, perProducer);
+            }
+            Arrays.sort(merged);
+            System.out.printf("%-22s %8d %10.0f %9.2f %9.2f %9.2f %9.1f%n", name, producers, expected / (elapsed / 1e9),
+                              percentile(merged, 0.50), percentile(merged, 0.99), percentile(merged, 0.999),
+                              percentile(merged, 1.0));
+        }
+        if (!inOrder || !drained) {
+            System.out.println("FAIL  " + name + " with " + producers + " producers: "
+                               + (inOrder ? "extra orders" : "orders out of sequence"));
+            return false;
+        }
+        return true;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1e3;
+    }
+}
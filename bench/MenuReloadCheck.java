@@ -0,0 +1,171 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * MenuReloadCheck - Exercises menu reloading without the Swing UI
+ *
+ * Copies a menu file to a temporary directory and points the shared
+ * MenuManager at it. While reader threads price pizzas from the current
+ * menu as fast as they can, it changes a price and a name on disk and
+ * checks that the watcher swaps in the new menu, that an order started
+ * on the old menu keeps its names and prices, that an empty order moves
+ * to the new menu, that order history is read back with the menu it was
+ * taken from, and that a broken file, or one that removes or reorders
+ * entries, leaves the menu alone. It
+ * reports how long a save took to reach the registers and what reading
+ * the menu costs.
+ *
+ * Usage: java -cp .:bench/out MenuReloadCheck [menuFile] [readerThreads]
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class MenuReloadCheck {
+    public static void main(String[] args) throws Exception {
+        Path source = Paths.get(args.length > 0 ? args[0] : "menu.txt");
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        Path dir = Files.createTempDirectory("menu-check");
+        Path file = dir.resolve("menu.txt");
+        String original = Files.exists(source) ? new String(Files.readAllBytes(source), StandardCharsets.UTF_8)
+                                               : "size = Large, 15.99\ncrust = Hand-Tossed, 0.00\ntopping = Pepperoni\n"
+                                                 + "toppingPrice = 1.25\nbeverage = Coke\nbeverageSize = Large (2L), 3.49\n";
+        Files.write(file, original.getBytes(StandardCharsets.UTF_8));
+        System.setProperty(MenuManager.MENU_PROPERTY, file.toString());
+        MenuManager menus = MenuManager.getShared();
+        boolean ok = true;
+
+        Menu first = menus.getMenu();
+        ok &= check("menu file loaded (" + first + ")", first.getVersion() == 1);
+        int large = first.find(Menu.Section.SIZE, "Large");
+        int pepperoni = first.find(Menu.Section.TOPPING, "pepperoni");
+        ok &= check("names are indexed", large >= 0 && pepperoni >= 0);
+        long oldPrice = first.getPricing().pizzaCents(large, 0, 1);
+
+        // An order in progress on the first menu
+        OrderSession order = new OrderSession(1, null);
+        order.add(OrderItem.pizza(order.getMenu(), large, 0, 1 << pepperoni, oldPrice, 1));
+        String oldDescription = order.getItems().get(0).getDescription();
+        OrderSession empty = new OrderSession(2, null);
+
+        // The same order in the history, and one from a menu with an extra size
+        File ordersDir = dir.resolve("orders").toFile();
+        Menu bigger = Menu.parse(new BufferedReader(new StringReader(original + "\nsize = Party, 29.99\n")), 0,
+                                 "bigger menu");
+        try (OrderJournal journal = new OrderJournal(ordersDir)) {
+            journal.append(5551230001L, new OrderRecord(1, "Pickup", "Cash", oldPrice, order.getItems()));
+            journal.append(5551230002L, new OrderRecord(2, "Pickup", "Cash", 2999, List.of(
+                OrderItem.pizza(bigger, bigger.getCount(Menu.Section.SIZE) - 1, 0, 0, 2999, 1))));
+        }
+
+        // Readers price from whatever menu is current
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+        Thread[] threads = new Thread[readers];
+        for (int t = 0; t < readers; t++) {
+            threads[t] = new Thread(() -> {
+                long count = 0;
+                long sink = 0;
+                while (running.get()) {
+                    for (int i = 0; i < 1000; i++) {
+                        sink += menus.getMenu().getPricing().pizzaCents(0, 0, 1);
+                    }
+                    count += 1000;
+                }
+                reads.addAndGet(count + (sink == 42 ? 1 : 0));
+            });
+            threads[t].start();
+        }
+        long readStart = System.nanoTime();
+
+        // Change a price and a name on disk
+        CountDownLatch swapped = new CountDownLatch(1);
+        menus.addListener(menu -> swapped.countDown());
+        menus.startWatching();
+        Thread.sleep(100);
+        String changed = original.replace("Large, 15.99", "Large, 16.99").replace("topping = Pepperoni",
+                                                                                  "topping = Pepperoni Classic");
+        long saved = System.nanoTime();
+        Files.write(file, changed.getBytes(StandardCharsets.UTF_8));
+        boolean arrived = swapped.await(15, TimeUnit.SECONDS);
+        long swapMillis = (System.nanoTime() - saved) / 1_000_000;
+        Menu second = menus.getMenu();
+        ok &= check("saved file reached the registers in " + swapMillis + " ms", arrived && second.getVersion() == 2);
+        ok &= check("new menu has the new price", second.getPricing().sizeCents(large) == 1699);
+        ok &= check("new menu has the new name",
+                    second.getName(Menu.Section.TOPPING, pepperoni).equals("Pepperoni Classic"));
+        ok &= check("order in progress keeps its menu", order.getMenu() == first);
+        ok &= check("order in progress keeps its item: " + oldDescription,
+                    order.getItems().get(0).getDescription().equals(oldDescription)
+                    && order.getSubtotalCents() == oldPrice);
+        ok &= check("empty order moves to the new menu", empty.getMenu() == second);
+        order.clear();
+        ok &= check("cleared order moves to the new menu", order.getMenu() == second);
+
+        try (OrderJournal journal = new OrderJournal(ordersDir)) {
+            OrderItem item = journal.lastOrder(5551230001L).getItems().get(0);
+            ok &= check("order history keeps the menu it was taken from: " + item.getDescription(),
+                        item.getDescription().equals(oldDescription) && item.getUnitCents() == oldPrice);
+        }
+        Files.delete(ordersDir.toPath().resolve("orders.menus"));
+        try (OrderJournal journal = new OrderJournal(ordersDir)) {
+            OrderItem item = journal.lastOrder(5551230002L).getItems().get(0);
+            ok &= check("an item off the current menu says so: " + item,
+                        item.isOffMenu() && item.getDescription().contains("no longer on the menu")
+                        && item.getUnitCents() == 2999);
+            ok &= check("an item off the menu is not reordered", item.repricedFor(second) == null);
+        }
+        OrderItem lookalike = new OrderItem("Pizza no longer on the menu", 500L, 1);
+        ok &= check("a custom item is reordered whatever its description",
+                    !lookalike.isOffMenu() && lookalike.repricedFor(second) == lookalike);
+
+        // A broken save is reported and ignored
+        Files.write(file, "size = Large\n".getBytes(StandardCharsets.UTF_8));
+        Thread.sleep(2000);
+        ok &= check("broken file keeps the menu in use", menus.getMenu() == second);
+
+        // Entries may not be removed or moved
+        String[] toppings = second.getNames(Menu.Section.TOPPING);
+        if (toppings.length > 1) {
+            String reordered = changed.replace("topping = " + toppings[0] + "\n", "")
+                                    .replace("topping = " + toppings[1] + "\n",
+                                             "topping = " + toppings[1] + "\ntopping = " + toppings[0] + "\n");
+            Files.write(file, reordered.getBytes(StandardCharsets.UTF_8));
+            ok &= check("reordered toppings are rejected", !menus.reload() && menus.getMenu() == second);
+        }
+        String removed = changed.replace("beverage = " + second.getName(Menu.Section.BEVERAGE, 0) + "\n", "");
+        Files.write(file, removed.getBytes(StandardCharsets.UTF_8));
+        ok &= check("a removed beverage is rejected", !menus.reload() && menus.getMenu() == second);
+        Files.write(file, (changed + "\ntopping = Anchovies\n").getBytes(StandardCharsets.UTF_8));
+        ok &= check("an entry added at the end is accepted", menus.reload()
+                    && menus.getMenu().find(Menu.Section.TOPPING, "Anchovies") == toppings.length);
+
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - readStart) / 1e9;
+        System.out.printf("Readers: %,d menu reads in %.1f s across %d thread(s), %.1f ns per read%n",
+                          reads.get(), seconds, readers, seconds * 1e9 * readers / reads.get());
+
+        menus.stopWatching();
+        for (File orderFile : ordersDir.listFiles()) {
+            Files.delete(orderFile.toPath());
+        }
+        Files.delete(ordersDir.toPath());
+        Files.delete(file);
+        Files.delete(dir);
+        System.out.println(ok ? "All checks passed" : "CHECKS FAILED");
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean check(String what, boolean passed) {
+        System.out.println((passed ? "ok    " : "FAIL  ") + what);
+        return passed;
+    }
+}
@@ -0,0 +1,161 @@
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.*;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * MetricsCheck - Checks LatencyHistogram's accuracy, cost and allocation,
+ * and reads the metrics back over JMX
+ *
+ * Records a million random latencies spread over six orders of magnitude
+ * and compares the histogram's percentiles with the exact ones. Then
+ * times record() and recordSince() on one thread and with several
+ * threads recording into the same histogram, and counts the bytes the
+ * recording thread allocated. Finally registers Metrics, records through
+ * CustomerManager, and reads the results from the platform MBean server.
+ *
+ * Usage: java -cp .:bench/out MetricsCheck [threads]
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class MetricsCheck {
+    private static final int SAMPLES = 1_000_000;
+    private static final int RECORDS = 20_000_000;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        boolean ok = true;
+
+        // Buckets cover every value, in order, each within 1/32 of its top
+        boolean buckets = true;
+        Random random = new Random(25);
+        for (int i = 0; i < 1_000_000 && buckets; i++) {
+            long value = random.nextLong() & LatencyHistogram.MAX_NANOS >>> random.nextInt(40);
+            int bucket = LatencyHistogram.bucket(value);
+            long top = LatencyHistogram.highestInBucket(bucket);
+            buckets = top >= value && (bucket == 0 || LatencyHistogram.highestInBucket(bucket - 1) < value)
+                      && top - value <= top / 32;
+        }
+        ok &= check("every value falls in the one bucket that covers it, within 1/32", buckets);
+
+        // Percentiles against the exact values
+        LatencyHistogram histogram = new LatencyHistogram("check");
+        long[] samples = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            samples[i] = (long) Math.exp(3 + random.nextDouble() * 14); // About 20 ns to 24 ms
+            histogram.record(samples[i]);
+        }
+        Arrays.sort(samples);
+        ok &= check("count", histogram.getCount() == SAMPLES);
+        double exactMean = Arrays.stream(samples).average().orElse(0);
+        double mean = histogram.snapshot().getMeanMicros() * 1e3;
+        ok &= check(String.format("mean %,.0f ns, exact %,.0f ns (%+.2f%%)", mean, exactMean,
+                                  (mean / exactMean - 1) * 100),
+                    Math.abs(mean / exactMean - 1) <= 1.0 / 32);
+        for (double percentile : new double[] {50, 90, 99, 99.9, 100}) {
+            long exact = samples[(int) Math.ceil(percentile / 100 * SAMPLES) - 1];
+            long measured = histogram.getPercentile(percentile);
+            double error = (double) (measured - exact) / exact;
+            ok &= check(String.format("p%s %,d ns, exact %,d ns (%+.2f%%)", percentile, measured, exact, error * 100),
+                        error >= 0 && error <= 1.0 / 32);
+        }
+
+        // Cost and allocation of recording on one thread
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        LatencyHistogram timed = new LatencyHistogram("timed");
+        long id = Thread.currentThread().getId();
+        for (int round = 0; round < 3; round++) { // The last round is reported, once compiled
+            long allocated = threadBean.getThreadAllocatedBytes(id);
+            long start = System.nanoTime();
+            for (int i = 0; i < RECORDS; i++) {
+                timed.record(i & 0xFFFFF);
+            }
+            long recordNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < RECORDS; i++) {
+                timed.recordSince(start);
+            }
+            long sinceNanos = System.nanoTime() - start;
+            allocated = threadBean.getThreadAllocatedBytes(id) - allocated;
+            if (round == 2) {
+                double perRecord = (double) recordNanos / RECORDS;
+                double perSince = (double) sinceNanos / RECORDS;
+                ok &= check(String.format("record() %.1f ns, recordSince() with its nanoTime %.1f ns", perRecord, perSince),
+                            perRecord < 1000 && perSince < 1000);
+                ok &= check(String.format("%,d records allocated %,d bytes", 2L * RECORDS, allocated), allocated == 0);
+            }
+        }
+
+        // Sampling: one operation in 32 timed, each counted 32 times
+        LatencyHistogram sampled = new LatencyHistogram("sampled", 32);
+        int timedCalls = 0;
+        for (int i = 0; i < 32_000; i++) {
+            if (sampled.sample()) {
+                sampled.record(1000);
+                timedCalls++;
+            }
+        }
+        ok &= check(String.format("sampling timed %d of 32,000 and counts %,d", timedCalls, sampled.getCount()),
+                    timedCalls == 1000 && sampled.getCount() == 32_000 && sampled.getPercentile(50) >= 1000);
+
+        // Several threads recording into one histogram
+        LatencyHistogram shared = new LatencyHistogram("shared");
+        Thread[] workers = new Thread[threads];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < RECORDS / 4; i++) {
+                    shared.record(i & 0xFFFF);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double perRecord = (System.nanoTime() - start) / ((double) RECORDS / 4 * threads);
+        ok &= check(String.format("%d threads: no records lost, %.1f ns per record overall", threads, perRecord),
+                    shared.getCount() == (long) RECORDS / 4 * threads);
+
+        // Published over JMX
+        File dir = Files.createTempDirectory("metrics-check").toFile();
+        CustomerManager customers = new CustomerManager(dir, "heap");
+        customers.saveCustomer(new Customer("7705550123", "Jennifer Smith", "12 Peachtree St", "Marietta", "GA",
+                                            "30060", "", "", "", ""));
+        for (int i = 0; i < 1000; i++) {
+            customers.findCustomer(i % 2 == 0 ? "7705550123" : "4045550000");
+        }
+        Metrics.register();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+        CompositeData find = (CompositeData) server.getAttribute(name, "CustomerFind");
+        System.out.println("      " + Metrics.CUSTOMER_FIND.snapshot());
+        ok &= check("CustomerFind over JMX: about " + find.get("count") + " finds, p99 " + find.get("p99Micros") + " us",
+                    Math.abs((Long) find.get("count") - 1000) < 32 && (Double) find.get("p99Micros") > 0);
+        ok &= check("CustomerSave over JMX",
+                    (Long) ((CompositeData) server.getAttribute(name, "CustomerSave")).get("count") == 1);
+        ok &= check("CustomerCount is -1 before the shared customers load",
+                    (Integer) server.getAttribute(name, "CustomerCount") == -1);
+        server.invoke(name, "reset", null, null);
+        ok &= check("reset over JMX", Metrics.CUSTOMER_FIND.getCount() == 0);
+        customers.close();
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+
+        System.out.println(ok ? "All checks passed" : "CHECKS FAILED");
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean check(String what, boolean passed) {
+        System.out.println((passed ? "ok    " : "FAIL  ") + what);
+        return passed;
+    }
+}
@@ -0,0 +1,73 @@
+import javax.swing.*;
+import java.util.*;
+
+/**
+ * OrderListBenchmark - Times adding lines to a large order with the old
+ * rebuilt text area and with the incremental order list
+ *
+ * Both views are built without being shown, so this runs headless. After
+ * each add the list is asked for the bounds of the new row, which makes it
+ * bring its layout up to date the way painting would. Times are reported
+ * per add for each block of lines, so a cost that grows with the order
+ * shows up as rising numbers down the table.
+ *
+ * Usage: java -Djava.awt.headless=true -cp .:bench/out OrderListBenchmark [lines] [block]
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class OrderListBenchmark {
+    public static void main(String[] args) throws Exception {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int block = args.length > 1 ? Integer.parseInt(args[1]) : 250;
+        Random random = new Random(15);
+        OrderItem[] items = new OrderItem[lines];
+        for (int i = 0; i < lines; i++) {
+            items[i] = OrderItem.pizza(random.nextInt(4), random.nextInt(3), random.nextInt(256), 1599, 1);
+        }
+
+        SwingUtilities.invokeAndWait(() -> {
+            for (int warmup = 0; warmup < 2; warmup++) {
+                run(items, block, warmup == 1);
+            }
+        });
+    }
+
+    private static void run(OrderItem[] items, int block, boolean print) {
+        List<OrderItem> order = new ArrayList<>();
+        JTextArea text = new JTextArea(10, 40);
+        long[] textNanos = new long[items.length / block];
+        for (int i = 0; i < textNanos.length * block; i++) {
+            long start = System.nanoTime();
+            order.add(items[i]);
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < order.size(); j++) {
+                sb.append(String.format("%d. %s\n", j + 1, order.get(j).toString()));
+            }
+            text.setText(sb.toString());
+            textNanos[i / block] += System.nanoTime() - start;
+        }
+
+        order.clear();
+        OrderListModel model = new OrderListModel(Collections.unmodifiableList(order));
+        JList<OrderItem> list = new JList<>(model);
+        list.setVisibleRowCount(10);
+        new OrderItemRenderer().configure(list);
+        long[] listNanos = new long[textNanos.length];
+        for (int i = 0; i < listNanos.length * block; i++) {
+            long start = System.nanoTime();
+            order.add(items[i]);
+            model.itemAdded(i);
+            list.getCellBounds(i, i);
+            listNanos[i / block] += System.nanoTime() - start;
+        }
+
+        if (print) {
+            System.out.printf("%-14s %16s %16s%n", "Lines", "Text area us/add", "List us/add");
+            for (int b = 0; b < textNanos.length; b++) {
+                System.out.printf("%5d - %-6d %16.1f %16.1f%n", b * block + 1, (b + 1) * block,
+                                  textNanos[b] / 1e3 / block, listNanos[b] / 1e3 / block);
+            }
+        }
+    }
+}
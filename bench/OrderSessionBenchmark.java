@@ -0,0 +1,112 @@
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * OrderSessionBenchmark - Opens many order sessions at once and works on
+ * them from several threads
+ *
+ * Every session gets a customer and a few items, so the heap figure is
+ * for realistic open orders, not empty ones. The customers are created
+ * before the first heap reading and are not counted. Then each thread
+ * repeatedly adds, re-quantifies and removes items on its own share of
+ * the sessions, and the subtotals are checked against the items.
+ *
+ * Usage: java -cp .:bench/out OrderSessionBenchmark [sessions] [threads] [seconds]
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class OrderSessionBenchmark {
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        Random random = new Random(19);
+        PricingEngine pricing = PricingEngine.getDefault();
+
+        Customer[] customers = new Customer[count];
+        for (int i = 0; i < count; i++) {
+            customers[i] = new Customer(String.format("770%07d", i), "Customer " + i, i + " Peachtree St",
+                                        "Marietta", "GA", "30060", "", "", "", "");
+        }
+        OrderItem[] menu = new OrderItem[64];
+        for (int i = 0; i < menu.length; i++) {
+            int size = i % 4;
+            int crust = i % 3;
+            int mask = (i * 37) & 0xF;
+            menu[i] = OrderItem.pizza(size, crust, mask, pricing.pizzaCents(size, crust, Integer.bitCount(mask)), 1);
+        }
+
+        long before = usedHeap();
+        OrderSessionManager manager = new OrderSessionManager();
+        long start = System.nanoTime();
+        OrderSession[] sessions = new OrderSession[count];
+        for (int i = 0; i < count; i++) {
+            sessions[i] = manager.open(customers[i]);
+            for (int j = 3 + random.nextInt(6); j > 0; j--) {
+                sessions[i].add(menu[random.nextInt(menu.length)].withQuantity(1));
+            }
+            if (i % 2 == 0) {
+                sessions[i].park();
+            }
+        }
+        long openNanos = System.nanoTime() - start;
+        long after = usedHeap();
+        System.out.printf("Opened %d sessions in %.1f ms; %.0f bytes per open order (%.1f MB)%n", manager.size(),
+                          openNanos / 1e6, (after - before) / (double) count, (after - before) / 1e6);
+
+        start = System.nanoTime();
+        int parked = manager.getParkedSessions().size();
+        System.out.printf("Listed %d parked sessions in %.1f ms%n", parked, (System.nanoTime() - start) / 1e6);
+
+        for (int t : new int[] {1, threads}) {
+            long[] ops = new long[t];
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            List<Thread> workers = new ArrayList<>();
+            for (int w = 0; w < t; w++) {
+                int id = w;
+                int workers0 = t;
+                Thread worker = new Thread(() -> {
+                    Random r = new Random(id);
+                    long done = 0;
+                    while ((done & 1023) != 0 || System.nanoTime() < deadline) {
+                        OrderSession session = sessions[id + workers0 * r.nextInt(count / workers0)];
+                        int index = session.add(menu[r.nextInt(menu.length)]);
+                        session.setQuantity(index, 1 + r.nextInt(5));
+                        session.remove(index);
+                        done++;
+                    }
+                    ops[id] = done;
+                });
+                workers.add(worker);
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            long total = Arrays.stream(ops).sum();
+            System.out.printf("%d thread(s): %,.0f add/quantity/remove rounds per second%n", t, total / (double) seconds);
+        }
+
+        int wrong = 0;
+        for (OrderSession session : sessions) {
+            long sum = 0;
+            for (OrderItem item : session.copyItems()) {
+                sum += item.getTotalCents();
+            }
+            if (sum != session.getSubtotalCents()) {
+                wrong++;
+            }
+        }
+        System.out.println(wrong == 0 ? "All subtotals match their items" : wrong + " SUBTOTALS WRONG");
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
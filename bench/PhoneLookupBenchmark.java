@@ -0,0 +1,60 @@
+import java.util.*;
+
+/**
+ * PhoneLookupBenchmark - Lookups per second for the old regex/String-keyed
+ * lookup against PhoneKey with LongCustomerMap
+ *
+ * Usage: java -cp .:bench PhoneLookupBenchmark [customers] [seconds per round]
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class PhoneLookupBenchmark {
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 2.0;
+
+        Map<String, Customer> stringMap = new HashMap<>();
+        LongCustomerMap longMap = new LongCustomerMap();
+        String[] queries = new String[count];
+        for (int i = 0; i < count; i++) {
+            String digits = String.format("770%07d", i);
+            Customer customer = new Customer(digits, "Customer " + i, "1 Main St", "Kennesaw", "GA",
+                                             "30144", null, null, null, null);
+            stringMap.put(digits, customer);
+            longMap.put(PhoneKey.of(digits), customer);
+            // Look up with the punctuation a cashier would type
+            queries[i] = "(" + digits.substring(0, 3) + ") " + digits.substring(3, 6) + "-" + digits.substring(6);
+        }
+
+        for (int round = 1; round <= 3; round++) {
+            double before = measure(seconds, queries, q -> stringMap.get(q.replaceAll("[^0-9]", "")));
+            double after = measure(seconds, queries, q -> longMap.get(PhoneKey.of(q)));
+            System.out.printf("round %d: regex + HashMap<String> %,.0f lookups/s, PhoneKey + LongCustomerMap %,.0f lookups/s (%.1fx)%n",
+                              round, before, after, after / before);
+        }
+    }
+
+    private interface Lookup {
+        Customer find(String phone);
+    }
+
+    private static double measure(double seconds, String[] queries, Lookup lookup) {
+        long deadline = System.nanoTime() + (long) (seconds * 1e9);
+        long start = System.nanoTime();
+        long lookups = 0;
+        int i = 0;
+        Customer last = null;
+        while ((lookups & 1023) != 0 || System.nanoTime() < deadline) {
+            last = lookup.find(queries[i]);
+            if (++i == queries.length) {
+                i = 0;
+            }
+            lookups++;
+        }
+        sink = last;
+        return lookups / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,63 @@
+import java.util.Random;
+
+/**
+ * PricingBenchmark - Prices random orders with the old double arithmetic
+ * and with PricingEngine
+ *
+ * Each round prices the same pre-generated orders both ways; the sums are
+ * printed so the work cannot be optimized away. They differ because the
+ * double sum never rounds each order's tax to the cent.
+ *
+ * Usage: java -cp .:bench/out PricingBenchmark [orders] [rounds]
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class PricingBenchmark {
+    public static void main(String[] args) {
+        int orders = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Random random = new Random(12);
+        int[][] lines = new int[orders][];
+        for (int i = 0; i < orders; i++) {
+            lines[i] = new int[3 * (1 + random.nextInt(10))];
+            for (int j = 0; j < lines[i].length; j += 3) {
+                lines[i][j] = random.nextInt(4);
+                lines[i][j + 1] = random.nextInt(3);
+                lines[i][j + 2] = random.nextInt(5);
+            }
+        }
+        double[] sizes = PizzaOrderingSystem.getSizePrices();
+        double[] crusts = PizzaOrderingSystem.getCrustPrices();
+        double toppingPrice = PizzaOrderingSystem.getToppingPrice();
+        PricingEngine pricing = PricingEngine.getDefault();
+
+        for (int round = 1; round <= rounds; round++) {
+            long start = System.nanoTime();
+            double doubleSum = 0;
+            for (int[] order : lines) {
+                double subtotal = 0;
+                for (int j = 0; j < order.length; j += 3) {
+                    subtotal += sizes[order[j]] + crusts[order[j + 1]] + order[j + 2] * toppingPrice;
+                }
+                doubleSum += subtotal + subtotal * 0.08;
+            }
+            long doubleNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long centsSum = 0;
+            for (int[] order : lines) {
+                long subtotal = 0;
+                for (int j = 0; j < order.length; j += 3) {
+                    subtotal += pricing.pizzaCents(order[j], order[j + 1], order[j + 2]);
+                }
+                centsSum += subtotal + PricingEngine.taxCents(subtotal);
+            }
+            long centsNanos = System.nanoTime() - start;
+
+            System.out.printf("round %d: double %.1f ns/order (sum %.2f), engine %.1f ns/order (sum %s)%n",
+                              round, (double) doubleNanos / orders, doubleSum,
+                              (double) centsNanos / orders, PricingEngine.format(centsSum));
+        }
+    }
+}
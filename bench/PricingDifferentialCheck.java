@@ -0,0 +1,100 @@
+import java.util.Random;
+
+/**
+ * PricingDifferentialCheck - Compares PricingEngine with the double
+ * arithmetic it replaced
+ *
+ * Every pizza and beverage price, and a large number of random orders, are
+ * priced both ways. The old code's amounts are rendered with "%.2f" as
+ * the receipt did, and must match the engine's cents exactly.
+ *
+ * Usage: java -cp .:bench/out PricingDifferentialCheck [randomOrders]
+ * Exits with status 1 on the first few mismatches.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class PricingDifferentialCheck {
+    private static int mismatches;
+
+    public static void main(String[] args) {
+        int orders = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        PricingEngine pricing = PricingEngine.getDefault();
+        double[] sizes = PizzaOrderingSystem.getSizePrices();
+        double[] crusts = PizzaOrderingSystem.getCrustPrices();
+        double[] beverages = PizzaOrderingSystem.getBevPrices();
+        int maxToppings = PizzaOrderingSystem.getToppings().length;
+
+        int checked = 0;
+        for (int size = 0; size < sizes.length; size++) {
+            for (int crust = 0; crust < crusts.length; crust++) {
+                for (int toppings = 0; toppings <= maxToppings; toppings++) {
+                    check("pizza " + size + "/" + crust + "/" + toppings,
+                          legacyPizza(size, crust, toppings), pricing.pizzaCents(size, crust, toppings));
+                    checked++;
+                }
+            }
+        }
+        for (int size = 0; size < beverages.length; size++) {
+            for (int quantity = 1; quantity <= 10; quantity++) {
+                check("beverage " + size + " x" + quantity, beverages[size] * quantity,
+                      PricingEngine.lineCents(pricing.beverageCents(size), quantity));
+                checked++;
+            }
+        }
+
+        Random random = new Random(12);
+        for (int order = 0; order < orders && mismatches < 10; order++) {
+            double legacySubtotal = 0.0;
+            long subtotal = 0;
+            int lines = 1 + random.nextInt(30);
+            for (int line = 0; line < lines; line++) {
+                if (random.nextBoolean()) {
+                    int size = random.nextInt(sizes.length);
+                    int crust = random.nextInt(crusts.length);
+                    int toppings = random.nextInt(5);
+                    legacySubtotal += legacyPizza(size, crust, toppings);
+                    subtotal += pricing.pizzaCents(size, crust, toppings);
+                } else {
+                    int size = random.nextInt(beverages.length);
+                    int quantity = 1 + random.nextInt(10);
+                    legacySubtotal += beverages[size] * quantity;
+                    subtotal += PricingEngine.lineCents(pricing.beverageCents(size), quantity);
+                }
+            }
+            double legacyTax = legacySubtotal * 0.08;
+            double legacyTotal = legacySubtotal + legacyTax;
+            long tax = PricingEngine.taxCents(subtotal);
+            long total = subtotal + tax;
+            check("order " + order + " subtotal", legacySubtotal, subtotal);
+            check("order " + order + " tax", legacyTax, tax);
+            check("order " + order + " total", legacyTotal, total);
+
+            long tendered = (total / 2000 + 1) * 2000;
+            check("order " + order + " change", tendered / 100.0 - legacyTotal, tendered - total);
+            checked += 4;
+        }
+
+        System.out.printf("%,d amounts compared, %d mismatches%n", checked, mismatches);
+        System.exit(mismatches == 0 ? 0 : 1);
+    }
+
+    /**
+     * Pizza price as MenuPanel.addPizza computed it before PricingEngine
+     */
+    private static double legacyPizza(int size, int crust, int toppings) {
+        return PizzaOrderingSystem.getSizePrices()[size] + PizzaOrderingSystem.getCrustPrices()[crust]
+             + (toppings * PizzaOrderingSystem.getToppingPrice());
+    }
+
+    private static void check(String what, double legacy, long cents) {
+        String expected = String.format("%.2f", legacy);
+        String actual = PricingEngine.format(cents);
+        if (!expected.equals(actual)) {
+            mismatches++;
+            if (mismatches <= 10) {
+                System.out.println("Mismatch in " + what + ": double gives " + expected + ", engine gives " + actual);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * PrintSpoolerCheck - Exercises PrintSpooler without a printer
+ *
+ * Checks that a job which fails twice is printed on its third attempt,
+ * that a job which always fails is given up on after MAX_ATTEMPTS, and
+ * that the file sink writes both text and ESC/POS files. It then plays a
+ * rush against a printer taking the given milliseconds per job and
+ * reports how long submit() kept the register waiting.
+ *
+ * Usage: java -cp .:bench/out PrintSpoolerCheck [jobs] [printerMillis]
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class PrintSpoolerCheck {
+    public static void main(String[] args) throws Exception {
+        int jobs = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long printerMillis = args.length > 1 ? Long.parseLong(args[1]) : 20;
+        List<OrderItem> items = Arrays.asList(
+            OrderItem.pizza(3, 2, 0b1011, 2274, 2), OrderItem.beverage(0, 2, 349, 3));
+        boolean ok = true;
+
+        // Retries
+        int[] calls = new int[1];
+        Map<Long, IOException> results = new ConcurrentHashMap<>();
+        CountDownLatch finished = new CountDownLatch(2);
+        PrintSpooler flaky = new PrintSpooler(job -> {
+            calls[0]++;
+            if (job.getKind() == PrintJob.Kind.KITCHEN_TICKET || calls[0] < 3) {
+                throw new IOException("Printer offline");
+            }
+        }, job -> {
+            throw new IOException("Kitchen printer offline");
+        }, 10);
+        flaky.addListener((job, error) -> {
+            results.put(job.getId(), error != null ? error : new IOException("printed"));
+            finished.countDown();
+        });
+        PrintJob receipt = PrintJob.receipt("Receipt\n");
+        PrintJob ticket = PrintJob.kitchenTicket("Pickup", "Jennifer Smith", items);
+        flaky.submit(receipt);
+        flaky.submit(ticket);
+        finished.await(10, TimeUnit.SECONDS);
+        ok &= check("receipt printed on third attempt", "printed".equals(results.get(receipt.getId()).getMessage())
+                    && calls[0] == 3);
+        ok &= check("ticket given up after " + PrintSpooler.MAX_ATTEMPTS + " attempts",
+                    "Kitchen printer offline".equals(results.get(ticket.getId()).getMessage()));
+        flaky.close();
+
+        // File sink
+        Path dir = Files.createTempDirectory("print-check");
+        PrintSpooler files = new PrintSpooler(new FileSinkBackend(dir.toFile(), false),
+                                              new FileSinkBackend(dir.toFile(), true));
+        files.submit(PrintJob.receipt("Thank you for your order!\n"));
+        files.submit(ticket);
+        files.close();
+        String[] names = dir.toFile().list();
+        Arrays.sort(names);
+        ok &= check("file sink wrote " + Arrays.toString(names), names.length == 2
+                    && names[0].endsWith("-kitchen.escpos") == !names[1].endsWith("-kitchen.escpos"));
+        for (String name : names) {
+            byte[] bytes = Files.readAllBytes(dir.resolve(name));
+            if (name.endsWith(".escpos")) {
+                ok &= check("ESC/POS ticket starts with reset and ends with cut",
+                            bytes[0] == 0x1B && bytes[1] == '@' && bytes[bytes.length - 3] == 'V');
+            }
+            Files.delete(dir.resolve(name));
+        }
+        Files.delete(dir);
+        System.out.println("Kitchen ticket:\n" + ticket.getText());
+
+        // Rush
+        PrintSpooler slow = new PrintSpooler(job -> sleep(printerMillis), job -> sleep(printerMillis));
+        long worst = 0;
+        long total = 0;
+        int accepted = 0;
+        for (int i = 0; i < jobs; i++) {
+            PrintJob job = i % 2 == 0 ? PrintJob.receipt("Receipt " + i + "\n")
+                                      : PrintJob.kitchenTicket("Delivery", "Customer " + i, items);
+            long start = System.nanoTime();
+            if (slow.submit(job)) {
+                accepted++;
+            }
+            long nanos = System.nanoTime() - start;
+            worst = Math.max(worst, nanos);
+            total += nanos;
+        }
+        System.out.printf("Rush: %d of %d jobs accepted, submit mean %.1f us, worst %.1f us, %d still printing%n",
+                          accepted, jobs, total / 1e3 / jobs, worst / 1e3, slow.getPendingJobs());
+        long start = System.nanoTime();
+        while (slow.getPendingJobs() > 0) {
+            Thread.sleep(10);
+        }
+        System.out.printf("Drained in %.1f s (%d ms per job)%n", (System.nanoTime() - start) / 1e9, printerMillis);
+        System.out.println(ok ? "All checks passed" : "CHECKS FAILED");
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean check(String what, boolean passed) {
+        System.out.println((passed ? "ok    " : "FAIL  ") + what);
+        return passed;
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+}
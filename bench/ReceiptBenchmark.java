@@ -0,0 +1,164 @@
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * ReceiptBenchmark - Times rendering large receipts the old way and with
+ * ReceiptRenderer
+ *
+ * The old way is the String.format receipt that OrderSummaryPanel used to
+ * build on every refresh. ReceiptRenderer is timed three ways: a full
+ * render after the order changed, a render after only the payment
+ * changed, and a render with nothing changed. Before timing, the old and
+ * new text are compared line by line (the date line aside) and any
+ * difference is reported.
+ *
+ * Usage: java -cp .:bench/out ReceiptBenchmark [lines] [rounds]
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class ReceiptBenchmark {
+    public static void main(String[] args) {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        Random random = new Random(16);
+        PricingEngine pricing = PricingEngine.getDefault();
+        List<OrderItem> items = new ArrayList<>();
+        long subtotal = 0;
+        for (int i = 0; i < lines; i++) {
+            OrderItem item;
+            if (random.nextInt(3) == 0) {
+                int size = random.nextInt(3);
+                item = OrderItem.beverage(random.nextInt(5), size, pricing.beverageCents(size), 1 + random.nextInt(10));
+            } else {
+                int size = random.nextInt(4);
+                int crust = random.nextInt(3);
+                int mask = random.nextInt(256);
+                item = OrderItem.pizza(size, crust, mask, pricing.pizzaCents(size, crust, Integer.bitCount(mask)),
+                                       1 + random.nextInt(3));
+            }
+            items.add(item);
+            subtotal += item.getTotalCents();
+        }
+        long tax = PricingEngine.taxCents(subtotal);
+        Customer customer = new Customer("7705550123", "Jennifer Smith", "12 Peachtree St", "Marietta", "GA",
+                                         "30060", "Ivy Glen", "Roswell Rd", "Visa", "1234");
+        ReceiptRenderer renderer = new ReceiptRenderer();
+
+        String legacy = legacy(customer, "Delivery", items, subtotal, tax, true, "Credit", subtotal + tax + 500);
+        String rendered = renderer.renderOrder(0, customer, "Delivery", items, subtotal, tax)
+                        + renderer.renderPayment(true, "Credit", subtotal + tax + 500, subtotal + tax);
+        System.out.println(lines + "-line receipt, " + rendered.length() + " characters, "
+                           + differences(legacy, rendered) + " lines differ from the old renderer");
+
+        long sink = 0;
+        long version = 1;
+        for (int round = 1; round <= 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                sink += legacy(customer, "Delivery", items, subtotal, tax, i % 2 == 0, "Cash", i).length();
+            }
+            long legacyNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                sink += renderer.renderOrder(version++, customer, "Delivery", items, subtotal, tax).length();
+                sink += renderer.renderPayment(i % 2 == 0, "Cash", i, subtotal + tax).length();
+            }
+            long fullNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                sink += renderer.renderOrder(version, customer, "Delivery", items, subtotal, tax).length();
+                sink += renderer.renderPayment(i % 2 == 0, "Cash", i, subtotal + tax).length();
+            }
+            long paymentNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                sink += renderer.renderOrder(version, customer, "Delivery", items, subtotal, tax).length();
+                sink += renderer.renderPayment(true, "Cash", 1, subtotal + tax).length();
+            }
+            long cachedNanos = System.nanoTime() - start;
+
+            System.out.printf("Round %d: old %.1f us, full %.1f us, payment only %.2f us, unchanged %.3f us per receipt%n",
+                              round, legacyNanos / 1e3 / rounds, fullNanos / 1e3 / rounds,
+                              paymentNanos / 1e3 / rounds, cachedNanos / 1e3 / rounds);
+        }
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    /**
+     * Counts lines that differ, ignoring the order date
+     */
+    private static int differences(String a, String b) {
+        String[] left = a.split("\n", -1);
+        String[] right = b.split("\n", -1);
+        int differ = Math.abs(left.length - right.length);
+        for (int i = 0; i < Math.min(left.length, right.length); i++) {
+            if (!left[i].equals(right[i]) && !left[i].startsWith("Order Date: ")) {
+                differ++;
+            }
+        }
+        return differ;
+    }
+
+    /**
+     * The receipt as OrderSummaryPanel.refresh used to build it
+     */
+    private static String legacy(Customer customer, String orderType, List<OrderItem> order, long subtotal,
+                                 long tax, boolean paymentProcessed, String paymentType, long paymentAmount) {
+        StringBuilder sb = new StringBuilder();
+        SimpleDateFormat sdf = new SimpleDateFormat("MM/dd/yyyy HH:mm:ss");
+        sb.append("=".repeat(60)).append("\n");
+        sb.append("          INFINITE DOUGHMAIN PIZZA\n");
+        sb.append("=".repeat(60)).append("\n");
+        sb.append("Order Date: ").append(sdf.format(new Date())).append("\n");
+        sb.append("Order Type: ").append(orderType.toUpperCase()).append("\n");
+        sb.append("Customer: ").append(customer.getName()).append("\n");
+        sb.append("Phone: ").append(customer.getPhone()).append("\n");
+        sb.append("Address: ").append(customer.getFullAddress()).append("\n");
+        if (orderType.equals("Delivery")) {
+            String deliveryInfo = customer.getDeliveryInfo();
+            if (deliveryInfo != null && !deliveryInfo.isEmpty() && !deliveryInfo.equals("No additional location info")) {
+                sb.append("Delivery Info: ").append(deliveryInfo).append("\n");
+            }
+        }
+        sb.append("-".repeat(60)).append("\n\n");
+        sb.append(String.format("%-40s %6s %10s\n", "Item", "Qty", "Price"));
+        sb.append("-".repeat(60)).append("\n");
+        for (OrderItem item : order) {
+            String desc = item.getDescription();
+            if (desc.length() > 40) {
+                desc = desc.substring(0, 37) + "...";
+            }
+            sb.append(String.format("%-40s %6d $%9s\n",
+                desc, item.getQuantity(), PricingEngine.format(item.getTotalCents())));
+        }
+        sb.append("-".repeat(60)).append("\n");
+        sb.append(String.format("%-40s %6s $%9s\n", "Subtotal", "", PricingEngine.format(subtotal)));
+        sb.append(String.format("%-40s %6s $%9s\n", "Tax (8%)", "", PricingEngine.format(tax)));
+        long total = subtotal + tax;
+        sb.append("=".repeat(60)).append("\n");
+        sb.append(String.format("%-40s %6s $%9s\n", "TOTAL", "", PricingEngine.format(total)));
+        sb.append("=".repeat(60)).append("\n\n");
+        if (paymentProcessed) {
+            sb.append("Payment Method: ").append(paymentType).append("\n");
+            if (paymentAmount > 0) {
+                sb.append("Amount Tendered: $").append(PricingEngine.format(paymentAmount)).append("\n");
+                long change = paymentAmount - total;
+                if (change > 0) {
+                    sb.append("Change: $").append(PricingEngine.format(change)).append("\n");
+                }
+            }
+            sb.append("\n");
+            if (paymentType.equals("Credit")) {
+                sb.append("-".repeat(60)).append("\n");
+                sb.append("Signature: _________________________________\n");
+                sb.append("-".repeat(60)).append("\n");
+            }
+        }
+        sb.append("\nThank you for your order!\n");
+        return sb.toString();
+    }
+}
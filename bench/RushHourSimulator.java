@@ -0,0 +1,403 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * RushHourSimulator - Plays a busy evening of phone orders against the real
+ * customer store, order sessions, pricing and order history, without the
+ * window
+ *
+ * Callers arrive at random (a Poisson process) at the given mean rate,
+ * whether or not the registers have kept up, as on a real Friday night.
+ * Each is answered by the next free register, which does what the
+ * register screens do:
+ *
+ *   lookup        findCustomer on the caller's phone, as LoginPanel.handleLogin does
+ *   registration  for new callers: customerExists and saveCustomer, as LoginPanel does
+ *   pricing       pricing each item and adding it to an OrderSession, as MenuPanel does
+ *   finalization  totals and payment, the order history record, the kitchen
+ *                 display ticket and the receipt, as OrderSummaryPanel does
+ *
+ * The report gives p50, p99 and p99.9 for each step, and for the whole
+ * call from the moment the caller arrived, so time spent waiting for a
+ * register counts against the call. Throughput is orders finished per
+ * second of the run.
+ *
+ * Usage: java -cp .:bench/out RushHourSimulator [options]
+ *   --rate 40           callers per second
+ *   --seconds 30        length of the rush
+ *   --registers 4       registers answering calls
+ *   --customers 100000  customers already on file
+ *   --new 0.25          share of callers who are new customers
+ *   --items 1:35,2:30,3:15,4:10,6:6,10:3,25:1
+ *                       order sizes, as items:weight pairs
+ *   --seed 1            seed for arrivals, callers and orders
+ *   --dir path          keep the customer and order files here
+ *                       instead of in a temporary directory
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public class RushHourSimulator {
+    private static final String[] STEPS = {"lookup", "registration", "pricing", "finalization", "call"};
+    private static final int LOOKUP = 0;
+    private static final int REGISTRATION = 1;
+    private static final int PRICING = 2;
+    private static final int FINALIZATION = 3;
+    private static final int CALL = 4;
+    private static final String[] PAYMENT_TYPES = {"Cash", "Credit", "Credit", "Check"};
+    private static final Caller CLOSED = new Caller(0, false, 0, 0, 0); // Sent to each register when the rush ends
+
+    private final CustomerManager customers;
+    private final OrderJournal history;
+    private final KitchenQueue kitchen = new KitchenQueue();
+    private final OrderSessionManager sessions = new OrderSessionManager();
+    private final SyntheticData data;
+    private final int existingCustomers;
+    private final AtomicInteger newCustomers = new AtomicInteger();
+
+    /**
+     * One phone call, decided before it arrives
+     */
+    private static final class Caller {
+        final long arrivalNanos;
+        final boolean isNew;
+        final int customer; // SyntheticData customer number of returning callers
+        final int lines;
+        final long seed; // For the caller's choices
+
+        Caller(long arrivalNanos, boolean isNew, int customer, int lines, long seed) {
+            this.arrivalNanos = arrivalNanos;
+            this.isNew = isNew;
+            this.customer = customer;
+            this.lines = lines;
+            this.seed = seed;
+        }
+    }
+
+    /**
+     * Latencies recorded by one register
+     */
+    private static final class Timings {
+        final long[][] nanos = new long[STEPS.length][1024];
+        final int[] counts = new int[STEPS.length];
+        long items;
+
+        void add(int step, long value) {
+            if (counts[step] == nanos[step].length) {
+                nanos[step] = Arrays.copyOf(nanos[step], counts[step] * 2);
+            }
+            nanos[step][counts[step]++] = value;
+        }
+    }
+
+    private RushHourSimulator(File dir, int existingCustomers, long seed) throws IOException, InterruptedException {
+        this.existingCustomers = existingCustomers;
+        this.data = new SyntheticData(seed);
+        File customerDir = new File(dir, "customers");
+        if (!new File(customerDir, "customers.snapshot").exists()) {
+            long start = System.nanoTime();
+            data.writeCustomers(customerDir, existingCustomers);
+            System.out.printf("Wrote %,d customers in %,d ms%n", existingCustomers,
+                              (System.nanoTime() - start) / 1_000_000);
+        }
+        customers = new CustomerManager(customerDir, "heap");
+        history = new OrderJournal(new File(dir, "orders"));
+        // The store has long finished indexing by the evening rush
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("customer-search-index")) {
+                thread.join();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        double rate = 40;
+        int seconds = 30;
+        int registers = 4;
+        int existing = 100_000;
+        double newShare = 0.25;
+        String sizes = "1:35,2:30,3:15,4:10,6:6,10:3,25:1";
+        long seed = 1;
+        String dirName = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--rate":
+                    rate = Double.parseDouble(args[++i]);
+                    break;
+                case "--seconds":
+                    seconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--registers":
+                    registers = Integer.parseInt(args[++i]);
+                    break;
+                case "--customers":
+                    existing = Integer.parseInt(args[++i]);
+                    break;
+                case "--new":
+                    newShare = Double.parseDouble(args[++i]);
+                    break;
+                case "--items":
+                    sizes = args[++i];
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--dir":
+                    dirName = args[++i];
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        int[][] orderSizes = parseSizes(sizes);
+
+        File dir = dirName != null ? new File(dirName) : Files.createTempDirectory("rush-hour").toFile();
+        RushHourSimulator simulator = new RushHourSimulator(dir, existing, seed);
+        System.out.printf("Rush hour: %.1f callers/s for %d s, %d registers, %,d customers on file, %.0f%% new callers%n",
+                          rate, seconds, registers, existing, newShare * 100);
+        simulator.run(rate, seconds, registers, newShare, orderSizes, seed);
+        simulator.customers.close();
+        simulator.history.close();
+        if (dirName == null) {
+            delete(dir);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Sends callers to the registers until the rush is over, then waits for
+     * the last calls to finish and prints the report
+     */
+    private void run(double rate, int seconds, int registers, double newShare, int[][] orderSizes, long seed)
+            throws InterruptedException {
+        BlockingQueue<Caller> line = new LinkedBlockingQueue<>();
+        Timings[] timings = new Timings[registers];
+        Thread[] threads = new Thread[registers];
+        for (int r = 0; r < registers; r++) {
+            Timings mine = timings[r] = new Timings();
+            threads[r] = new Thread(() -> answer(line, mine), "register-" + r);
+            threads[r].start();
+        }
+        Thread kitchenDisplay = new Thread(this::cook, "kitchen-display");
+        kitchenDisplay.setDaemon(true);
+        kitchenDisplay.start();
+
+        // Open loop: arrival times are fixed in advance, never pushed back by slow registers
+        Random random = new Random(seed);
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        long arrival = start;
+        int callers = 0;
+        while (true) {
+            arrival += (long) (-Math.log(1 - random.nextDouble()) / rate * 1e9);
+            if (arrival >= end) {
+                break;
+            }
+            Caller caller = new Caller(arrival, random.nextDouble() < newShare, random.nextInt(existingCustomers),
+                                       pick(orderSizes, random), random.nextLong());
+            long wait = arrival - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            line.add(caller);
+            callers++;
+        }
+        int waiting = line.size();
+        for (int r = 0; r < registers; r++) {
+            line.add(CLOSED); // Behind everyone still waiting
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        report(timings, callers, waiting, elapsed);
+    }
+
+    /**
+     * Register loop: answers callers until the line closes
+     */
+    private void answer(BlockingQueue<Caller> line, Timings timings) {
+        ReceiptRenderer renderer = new ReceiptRenderer();
+        try {
+            Caller caller;
+            while ((caller = line.take()) != CLOSED) {
+                takeOrder(caller, renderer, timings);
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        } catch (IOException e) {
+            System.err.println("Error saving order history: " + e.getMessage());
+        }
+    }
+
+    /**
+     * One call, step by step
+     */
+    private void takeOrder(Caller caller, ReceiptRenderer renderer, Timings timings) throws IOException {
+        Random random = new Random(caller.seed);
+        String phone = caller.isNew ? SyntheticData.phone(existingCustomers + newCustomers.getAndIncrement())
+                                    : SyntheticData.phone(caller.customer);
+
+        long start = System.nanoTime();
+        Customer customer = customers.findCustomer(phone);
+        timings.add(LOOKUP, System.nanoTime() - start);
+
+        if (customer == null) {
+            Customer registered = data.customer(caller.customer, 1);
+            registered = new Customer(phone, registered.getName(), registered.getAddress(), registered.getCity(),
+                                      registered.getState(), registered.getZip(), registered.getSubdivision(),
+                                      registered.getIntersection(), registered.getChargeAccountType(),
+                                      registered.getCardLast4());
+            start = System.nanoTime();
+            if (!customers.customerExists(phone)) {
+                customers.saveCustomer(registered);
+            }
+            timings.add(REGISTRATION, System.nanoTime() - start);
+            customer = registered;
+        }
+
+        // What the caller asks for, decided before the register starts pricing
+        OrderSession session = sessions.open(customer);
+        Menu menu = session.getMenu();
+        int[] choices = new int[caller.lines * 4];
+        for (int i = 0; i < choices.length; i += 4) {
+            boolean beverage = random.nextInt(3) == 0;
+            choices[i] = beverage ? -1 - random.nextInt(menu.getCount(Menu.Section.BEVERAGE))
+                                  : random.nextInt(menu.getCount(Menu.Section.SIZE));
+            choices[i + 1] = beverage ? random.nextInt(menu.getCount(Menu.Section.BEVERAGE_SIZE))
+                                      : random.nextInt(menu.getCount(Menu.Section.CRUST));
+            choices[i + 2] = beverage ? 0 : SyntheticData.toppingMask(random, menu.getCount(Menu.Section.TOPPING),
+                                                                      menu.getMaxToppings());
+            choices[i + 3] = 1 + random.nextInt(beverage ? 4 : 2);
+        }
+        String orderType = random.nextBoolean() ? "Delivery" : "Pickup";
+        String paymentType = PAYMENT_TYPES[random.nextInt(PAYMENT_TYPES.length)];
+
+        start = System.nanoTime();
+        PricingEngine pricing = menu.getPricing();
+        for (int i = 0; i < choices.length; i += 4) {
+            if (choices[i] < 0) {
+                session.add(OrderItem.beverage(menu, -1 - choices[i], choices[i + 1],
+                                               pricing.beverageCents(choices[i + 1]), choices[i + 3]));
+            } else {
+                session.add(OrderItem.pizza(menu, choices[i], choices[i + 1], choices[i + 2],
+                                            pricing.pizzaCents(choices[i], choices[i + 1],
+                                                               Integer.bitCount(choices[i + 2])),
+                                            choices[i + 3]));
+            }
+        }
+        timings.add(PRICING, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        session.setOrderType(orderType);
+        long subtotal = session.getSubtotalCents();
+        long tax = PricingEngine.taxCents(subtotal);
+        long total = subtotal + tax;
+        long paid = paymentType.equals("Cash") ? (total + 499) / 500 * 500 : total; // Cash rounded up to $5
+        session.setPaymentInfo(paymentType, paid);
+        List<OrderItem> items = session.copyItems();
+        long now = System.currentTimeMillis();
+        history.append(PhoneKey.of(phone), new OrderRecord(now, orderType, paymentType, paid, items));
+        session.setRecorded(true);
+        kitchen.offer(new KitchenOrder(customer.getName(), orderType, items, now));
+        renderer.renderOrder(session.getVersion(), customer, orderType, items, subtotal, tax);
+        renderer.renderPayment(true, paymentType, paid, total);
+        sessions.close(session.getId());
+        long done = System.nanoTime();
+        timings.add(FINALIZATION, done - start);
+        timings.add(CALL, done - caller.arrivalNanos);
+        timings.items += caller.lines;
+    }
+
+    /**
+     * Empties the kitchen queue as often as the kitchen display does
+     */
+    private void cook() {
+        while (true) {
+            kitchen.drain(order -> { });
+            try {
+                Thread.sleep(KitchenDisplayPanel.REFRESH_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void report(Timings[] timings, int callers, int waiting, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%n%-13s %8s %10s %10s %10s %10s%n", "Step", "Count", "p50 ms", "p99 ms", "p99.9 ms", "Max ms");
+        for (int step = 0; step < STEPS.length; step++) {
+            int total = 0;
+            for (Timings t : timings) {
+                total += t.counts[step];
+            }
+            long[] merged = new long[total];
+            int n = 0;
+            for (Timings t : timings) {
+                System.arraycopy(t.nanos[step], 0, merged, n, t.counts[step]);
+                n += t.counts[step];
+            }
+            Arrays.sort(merged);
+            System.out.printf("%-13s %8d %10.3f %10.3f %10.3f %10.3f%n", STEPS[step], total,
+                              percentile(merged, 0.50), percentile(merged, 0.99), percentile(merged, 0.999),
+                              percentile(merged, 1.0));
+        }
+        long items = 0;
+        int orders = 0;
+        for (Timings t : timings) {
+            items += t.items;
+            orders += t.counts[CALL];
+        }
+        System.out.printf("%nThroughput: %,d orders in %.1f s = %.1f orders/s (%.1f callers/s arrived), %.1f items/s%n",
+                          orders, seconds, orders / seconds, callers / seconds, items / seconds);
+        System.out.printf("New customers registered: %,d; callers still waiting when the rush ended: %d%n",
+                          newCustomers.get(), waiting);
+    }
+
+    /**
+     * Reads "items:weight,..." into {items, cumulative weight} pairs
+     */
+    private static int[][] parseSizes(String text) {
+        String[] parts = text.split(",");
+        int[][] sizes = new int[parts.length][2];
+        int cumulative = 0;
+        for (int i = 0; i < parts.length; i++) {
+            String[] pair = parts[i].split(":");
+            sizes[i][0] = Integer.parseInt(pair[0].trim());
+            cumulative += pair.length > 1 ? Integer.parseInt(pair[1].trim()) : 1;
+            sizes[i][1] = cumulative;
+        }
+        return sizes;
+    }
+
+    private static int pick(int[][] sizes, Random random) {
+        int roll = random.nextInt(sizes[sizes.length - 1][1]);
+        for (int[] size : sizes) {
+            if (roll < size[1]) {
+                return size[0];
+            }
+        }
+        return sizes[sizes.length - 1][0];
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.max(0, Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1))] / 1e6;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
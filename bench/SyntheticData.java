@@ -0,0 +1,182 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * SyntheticData - Deterministic customers and orders for the benchmarks
+ *
+ * Customer i is worked out from i and the seed alone, so the first 10,000
+ * of a million customers are the same 10,000 customers a smaller run
+ * makes, and every run on every machine measures the same data. Orders
+ * come from a seeded Random and are the same for the same seed and menu.
+ *
+ * Phone numbers are one of four Atlanta-area codes followed by seven
+ * digits; phones starting with 555 are never generated, for lookups that
+ * should miss.
+ *
+ * @author Infinite Doughmain Team
+ * @version 2.0
+ */
+public final class SyntheticData {
+    /** Seed used by the benchmarks unless told otherwise */
+    public static final long DEFAULT_SEED = 20240601L;
+
+    private static final String[] AREA_CODES = {"770", "678", "404", "470"};
+    private static final String[] FIRST_NAMES = {
+        "James", "Mary", "Robert", "Patricia", "John", "Jennifer", "Michael", "Linda", "David", "Elizabeth",
+        "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Carlos", "Karen",
+        "Daniel", "Lisa", "Matthew", "Nancy", "Anthony", "Betty", "Mark", "Sandra", "Wei", "Ashley", "Priya", "Kim"};
+    private static final String[] LAST_NAMES = {
+        "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez",
+        "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore", "Jackson", "Martin",
+        "Lee", "Perez", "Thompson", "White", "Harris", "Sanchez", "Clark", "Nguyen", "Patel", "Walker", "Young"};
+    private static final String[] STREETS = {
+        "Main St", "Peachtree St", "Chastain Rd", "Barrett Pkwy", "Cobb Pkwy", "Roswell Rd", "Canton Rd",
+        "Church St", "Frey Rd", "Bells Ferry Rd", "Wade Green Rd", "Cherokee St", "Big Shanty Rd", "Moon Station Rd"};
+    private static final String[] CITIES = {"Kennesaw", "Marietta", "Acworth", "Woodstock", "Smyrna"};
+    private static final String[] ZIPS = {"30144", "30060", "30101", "30188", "30080"};
+    private static final String[] CARDS = {"Visa", "MasterCard", "Amex"};
+
+    private final long seed;
+
+    /**
+     * Constructor
+     * @param seed Seed; the same seed always gives the same data
+     */
+    public SyntheticData(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Gets the phone number of customer i
+     * @param i Customer number, 0 to 39,999,999
+     * @return Ten-digit phone number
+     */
+    public static String phone(int i) {
+        return AREA_CODES[i & 3] + digits(i >>> 2, 7);
+    }
+
+    /**
+     * Gets a phone number that no generated customer has
+     * @param i Any number, 0 to 9,999,999
+     * @return Ten-digit phone number starting with 555
+     */
+    public static String missingPhone(int i) {
+        return "555" + digits(i, 7);
+    }
+
+    /**
+     * Gets customer i
+     * @param i Customer number
+     * @return The customer
+     */
+    public Customer customer(int i) {
+        return customer(i, 0);
+    }
+
+    /**
+     * Gets customer i as they would be after changing their details
+     * @param i Customer number
+     * @param edit Which change; 0 is the original customer
+     * @return The customer, with the same phone number
+     */
+    public Customer customer(int i, int edit) {
+        long bits = mix(seed + i * 0x9E3779B97F4A7C15L + edit);
+        int city = pick(bits, 0, CITIES.length);
+        boolean card = (bits >>> 40 & 3) == 0; // A quarter have a charge account
+        return new Customer(phone(i),
+                            FIRST_NAMES[pick(bits, 8, FIRST_NAMES.length)] + " " + LAST_NAMES[pick(bits, 16, LAST_NAMES.length)],
+                            (1 + (bits >>> 24 & 0x1FFF)) + " " + STREETS[pick(bits, 42, STREETS.length)],
+                            CITIES[city], "GA", ZIPS[city],
+                            "Subdivision " + (bits >>> 48 & 0x1FF),
+                            STREETS[pick(bits, 50, STREETS.length)] + " & " + STREETS[pick(bits, 56, STREETS.length)],
+                            card ? CARDS[pick(bits, 37, CARDS.length)] : "",
+                            card ? digits((int) (bits >>> 44 & 0x3FFF) % 10_000, 4) : "");
+    }
+
+    /**
+     * Writes customers 0 to count - 1 as a customer snapshot, the file
+     * CustomerManager loads on startup
+     * @param dir Customer directory to create the snapshot in
+     * @param count Number of customers
+     * @throws IOException If the file cannot be written
+     */
+    public void writeCustomers(File dir, int count) throws IOException {
+        dir.mkdirs();
+        try (CustomerRecordWriter writer = new CustomerRecordWriter(
+                 new BufferedOutputStream(new FileOutputStream(new File(dir, "customers.snapshot")), 1 << 16), true)) {
+            for (int i = 0; i < count; i++) {
+                writer.write(customer(i));
+            }
+        }
+    }
+
+    /**
+     * Makes an order of pizzas and beverages, about two pizzas to each
+     * beverage, priced from a menu
+     * @param random Source of choices
+     * @param lines Number of items
+     * @param menu Menu to order from
+     * @return The items
+     */
+    public static List<OrderItem> order(Random random, int lines, Menu menu) {
+        PricingEngine pricing = menu.getPricing();
+        int sizes = menu.getCount(Menu.Section.SIZE);
+        int crusts = menu.getCount(Menu.Section.CRUST);
+        int toppings = menu.getCount(Menu.Section.TOPPING);
+        int beverages = menu.getCount(Menu.Section.BEVERAGE);
+        int beverageSizes = menu.getCount(Menu.Section.BEVERAGE_SIZE);
+        List<OrderItem> items = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            if (random.nextInt(3) == 0) {
+                int size = random.nextInt(beverageSizes);
+                items.add(OrderItem.beverage(menu, random.nextInt(beverages), size, pricing.beverageCents(size),
+                                             1 + random.nextInt(4)));
+            } else {
+                int size = random.nextInt(sizes);
+                int crust = random.nextInt(crusts);
+                int mask = toppingMask(random, toppings, menu.getMaxToppings());
+                items.add(OrderItem.pizza(menu, size, crust, mask,
+                                          pricing.pizzaCents(size, crust, Integer.bitCount(mask)),
+                                          1 + random.nextInt(3)));
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Picks up to max different toppings
+     * @param random Source of choices
+     * @param toppings Number of toppings on the menu
+     * @param max Most toppings allowed
+     * @return Bit i set for topping i
+     */
+    public static int toppingMask(Random random, int toppings, int max) {
+        int mask = 0;
+        for (int count = random.nextInt(max + 1); count > 0; count--) {
+            mask |= 1 << random.nextInt(toppings);
+        }
+        return mask;
+    }
+
+    private static int pick(long bits, int shift, int choices) {
+        return (int) ((bits >>> shift & 0xFF) % choices);
+    }
+
+    private static String digits(int value, int width) {
+        char[] chars = new char[width];
+        for (int i = width - 1; i >= 0; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * SplitMix64 finalizer: spreads consecutive inputs over all 64 bits
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
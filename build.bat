@@ -3,7 +3,8 @@ echo Building Pizza Ordering System...
 echo.
 
 echo Compiling Java files...
-javac *.java
+REM JDK 11 is the minimum; --release keeps newer JDKs from accepting later APIs
+javac --release 11 *.java
 
 if %ERRORLEVEL% NEQ 0 (
     echo Compilation failed!
@@ -13,7 +14,7 @@ if %ERRORLEVEL% NEQ 0 (
 
 echo.
 echo Creating JAR file...
-jar cvfe PizzaOrderingSystem.jar PizzaOrderingSystem *.class
+jar cvfe PizzaOrderingSystem.jar PizzaOrderingSystem *.class menu.txt
 
 if %ERRORLEVEL% NEQ 0 (
     echo JAR creation failed!
@@ -21,9 +22,29 @@ if %ERRORLEVEL% NEQ 0 (
     exit /b 1
 )
 
+echo.
+echo Creating AppCDS archive...
+REM Starts the application once with --exit-after-startup and saves the
+REM classes it loaded, so later starts map them in instead of loading them.
+REM Needs JDK 13 or later; the JAR works without the archive. It runs in a
+REM temporary directory so its customers and orders folders are thrown away.
+if exist PizzaOrderingSystem.jsa del PizzaOrderingSystem.jsa
+set BUILD_DIR=%CD%
+set TRAIN_DIR=%TEMP%\pizza-appcds-%RANDOM%
+mkdir "%TRAIN_DIR%"
+pushd "%TRAIN_DIR%"
+java -XX:ArchiveClassesAtExit="%BUILD_DIR%\PizzaOrderingSystem.jsa" -jar "%BUILD_DIR%\PizzaOrderingSystem.jar" --exit-after-startup > nul 2>&1
+popd
+rmdir /s /q "%TRAIN_DIR%"
+
 echo.
 echo Build successful!
-echo Run with: java -jar PizzaOrderingSystem.jar
+if exist PizzaOrderingSystem.jsa (
+    echo Run with: java -XX:SharedArchiveFile=PizzaOrderingSystem.jsa -jar PizzaOrderingSystem.jar
+) else (
+    echo AppCDS archive skipped ^(needs JDK 13+^)
+    echo Run with: java -jar PizzaOrderingSystem.jar
+)
 echo.
 pause
 